@@ -0,0 +1,43 @@
+package com.afcrowther.coinbase.connector;
+
+import org.openjdk.jmh.Main;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The entry point of the benchmarks jar. Takes the same arguments as the JMH main class, but always runs with the GC
+ * profiler ("-prof gc"), as the allocation rate of the hot path matters as much to us as its speed, so every result
+ * shows whether a benchmark allocates (gc.alloc.rate.norm should be ~0 B/op for everything on the hot path).
+ */
+public class BenchmarkMain {
+
+    // anything other than running the benchmarks is left to JMH itself
+    private static final List<String> NON_RUN_OPTIONS = Arrays.asList("-h", "-l", "-lp", "-lprof", "-lrf");
+
+    public static void main(String[] args) throws CommandLineOptionException, RunnerException, IOException {
+        boolean hasGcProfiler = false;
+        for (int i = 0; i < args.length; i++) {
+            if (NON_RUN_OPTIONS.contains(args[i])) {
+                Main.main(args);
+                return;
+            }
+            if (args[i].equals("-prof") && i + 1 < args.length && args[i + 1].startsWith("gc")) {
+                hasGcProfiler = true;
+            }
+        }
+        OptionsBuilder options = new OptionsBuilder();
+        options.parent(new CommandLineOptions(args));
+        if (!hasGcProfiler) {
+            options.addProfiler(GCProfiler.class);
+        }
+        new Runner(options.build()).run();
+    }
+}
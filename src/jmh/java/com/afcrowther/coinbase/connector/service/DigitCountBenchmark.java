@@ -0,0 +1,225 @@
+package com.afcrowther.coinbase.connector.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the way {@link LongUtils} counts the digits of a long, which is the first step of formatting every price and
+ * quantity we print, against the ways it used to, which are kept here as baselines.
+ *
+ * Each invocation counts the digits of a whole array of values, so that the branch predictor can't learn a single
+ * value, with the values either shaped like the feed (prices and quantities with their decimal points dropped, mostly 5
+ * to 10 digits) or spread evenly over every number of digits.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DigitCountBenchmark {
+
+    private static final int VALUES = 1024;
+    private static final long[] LOW_LONG_WITH_I_DIGITS = new long[] { 10l, 100l, 1000l, 10000l, 100000l, 1000000l,
+            10000000l, 100000000l, 1000000000l, 10000000000l, 100000000000l, 1000000000000l, 10000000000000l,
+            100000000000000l, 1000000000000000l, 10000000000000000l, 100000000000000000l, 1000000000000000000l };
+
+    @Param({ "feed", "uniform" })
+    public String distribution;
+
+    private long[] values;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        values = new long[VALUES];
+        for (int i = 0; i < VALUES; i++) {
+            int digits = distribution.equals("feed") ? 5 + random.nextInt(6) : 1 + random.nextInt(19);
+            long low = digits == 1 ? 0 : pow10(digits - 1);
+            long high = digits == 19 ? Long.MAX_VALUE : pow10(digits) - 1;
+            values[i] = low + (long) (random.nextDouble() * (high - low));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(VALUES)
+    public int ternary() {
+        int sum = 0;
+        for (long value : values) {
+            sum += getNumberOfDigits(value);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(VALUES)
+    public int binarySearch() {
+        int sum = 0;
+        for (long value : values) {
+            sum += getNumberOfDigitsBinarySearch(value);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(VALUES)
+    public int javaStdLib() {
+        int sum = 0;
+        for (long value : values) {
+            sum += getNumberOfDigitsJavaStdLib(value);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(VALUES)
+    public int branchFree() {
+        int sum = 0;
+        for (long value : values) {
+            sum += LongUtils.getNumberOfDigitsBranchFree(value);
+        }
+        return sum;
+    }
+
+    /**
+     * <p>
+     *     This method will return a value of 1 for the input number 0.
+     * </p>
+     * <p>
+     *     Internally this method uses cached values and comparisons to figure out the result with the observation that
+     *     any long value can have at most 19 digits. So warning to anyone reading this code, it is messy! However,
+     *     it is also faster that using actual math and it has the benefit of no floating point conversions.
+     *     </br>
+     *     Alternatives to this method would be to use the {@link Math#log10(double)} method, or, to use the formula:
+     *     "{@code log a (b) = log2 (b) / log2 (a)}" which may perform better (we could also cache the result of
+     *     log 2(10)).
+     * </p>
+     *
+     * @param value The number to get the number of digits of
+     * @return The number of digits in the provided number
+     */
+    static int getNumberOfDigits(long value) {
+        if (value > 0) {
+            value = -value;
+        }
+
+        return value <= -1000000000000000000l ? 19 :
+               value <= -100000000000000000l ? 18 :
+               value <= -10000000000000000l ? 17 :
+               value <= -1000000000000000l ? 16 :
+               value <= -100000000000000l ? 15 :
+               value <= -10000000000000l ? 14 :
+               value <= -1000000000000l ? 13 :
+               value <= -100000000000l ? 12 :
+               value <= -10000000000l ? 11 :
+               value <= -1000000000l ? 10 :
+               value <= -100000000l ? 9 :
+               value <= -10000000l ? 8 :
+               value <= -1000000l ? 7 :
+               value <= -100000l ? 6 :
+               value <= -10000l ? 5 :
+               value <= -1000l ? 4 :
+               value <= -100l ? 3 :
+               value <= -10l ? 2 : 1;
+    }
+
+    /**
+     * <p>
+     *     This method returns the number of digits in a number. This is done using a modified binary search whereby we
+     *     can compare the number of value of the long until we find the point at which the number provided is bigger
+     *     than {@code 1 * 10^n} where n is the number of digits but smaller than {@code 1 * 10^(n+1)}.
+     * </p>
+     * <br/>
+     * <p>
+     *     We can reduce the number of comparisons we make over linear search by doing a binary search. The Java std
+     *     library makes the note that a linear scan is preferred because the distribution of numbers tested leans
+     *     heavily towards zero, however in our case that is not true, as we are not expecting this method to be called
+     *     with any 0 values (this method is called to construct the console printing output, we don't print levels with
+     *     0 quantity or price, and in fact we will tend towards larger amount of digits as the numbers passed to this
+     *     method will often be numbers with large amounts of decimal places but with the actual decimal place character
+     *     removed, see - {@link Long#stringSize(long)}. However, unlike normal binary search, we will always perform
+     *     ceil(log(n)) comparisons (n being the size of the search space, 18 in this case) as we aren't ever guessing rather
+     *     we are dividing the search space until we arrive at a point that is within one place of the result, we can
+     *     then use a comparison to the mid + 1 or mid - 1 index (depending on if we have searched up or down
+     *     previously)
+     * </p>
+     * <br/>
+     */
+    static int getNumberOfDigitsBinarySearch(long value) {
+        if (value < 0) {
+            value = -value;
+        }
+        if (value == 0) {
+            return 1;
+        }
+
+        int low = 0, high = 18;
+        while (low <= high) {
+            // safe from overflow so can use this method to calculate mid point
+            int mid = (low + high) >>> 1;
+            long midValue = LOW_LONG_WITH_I_DIGITS[mid];
+
+            // check if we've finished
+            if (mid == low || mid == high) {
+                if (value < midValue) {
+                    return mid + 1;
+                } else if (value > LOW_LONG_WITH_I_DIGITS[mid + 1] ) {
+                    return mid + 3;
+                } else {
+                    return mid + 2;
+                }
+            }
+
+            if (value < midValue) {
+                high = mid - 1;
+            } else if (value > midValue) {
+                low = mid + 1;
+            } else {
+                // just in case we get an exact match (i.e. the number is 10000)
+                return mid + 2;
+            }
+        }
+        // will never reach this
+        return -1;
+    }
+
+    /**
+     * A slight modification of the {@link Long#stringSize(long)} method.
+     *
+     * @param value
+     * @return
+     */
+    static int getNumberOfDigitsJavaStdLib(long value) {
+        if (value >= 0) {
+            value = -value;
+        }
+        long p = -10;
+        for (int i = 1; i < 19; i++) {
+            if (value > p)
+                return i;
+            p = 10 * p;
+        }
+        return 19;
+    }
+
+    private static long pow10(int exponent) {
+        long result = 1;
+        for (int i = 0; i < exponent; i++) {
+            result *= 10;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,101 @@
+package com.afcrowther.coinbase.connector.service;
+
+import io.vertx.core.buffer.Buffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * <p>
+ *     Drives each of the {@link OrderBookEngine}s through recorded l2update messages (see {@link FeedSamples}), one
+ *     message per operation, the same way the message handler does live, so that we can pick the engine that suits the
+ *     patterns of the markets we connect to. With "-p feed=generated" the messages are generated instead, from a
+ *     snapshot of a full book, with the sweeps and bursts of changes the recording is too short to have much of.
+ * </p>
+ * <p>
+ *     {@link #throughput()} gives the messages per microsecond, {@link #latency()} the distribution of the time taken by
+ *     each message (the p0.50, p0.99 and p0.999 rows), and the GC profiler the bytes allocated per message
+ *     (gc.alloc.rate.norm), all for every engine, depth and market. Only BTC-USD is recorded in the test resources,
+ *     other markets can be run with "-p market=..." once their messages have been recorded (see {@link FeedSamples}).
+ * </p>
+ * <p>
+ *     The book is built up by replaying every message once before the measurements start, after that replaying the
+ *     messages leaves the book in the same state each time round, as each change sets the absolute quantity of a level.
+ * </p>
+ */
+@State(Scope.Thread)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EngineBenchmark {
+
+    @Param({ "sorted-array", "tick-ladder", "simple" })
+    public String engine;
+
+    @Param({ "1", "10", "50" })
+    public int depth;
+
+    @Param({ FeedSamples.DEFAULT_MARKET })
+    public String market;
+
+    @Param({ "recorded", "generated" })
+    public String feed;
+
+    private Buffer[] messages;
+    private int next;
+    private OrderBookAggregatorService orderBook;
+    private AtomicLongArray bidsOut;
+    private AtomicLongArray asksOut;
+
+    @Setup
+    public void setup() {
+        boolean generated = feed.equals("generated");
+        List<byte[]> samples = generated ? FeedSamples.generatedL2Updates(market) : FeedSamples.l2Updates(market);
+        messages = new Buffer[samples.size()];
+        for (int i = 0; i < messages.length; i++) {
+            messages[i] = Buffer.buffer(samples.get(i));
+        }
+        orderBook = OrderBookEngine.fromEngineName(engine).create(market, FeedSamples.product(market), depth);
+        bidsOut = new AtomicLongArray(depth * 2);
+        asksOut = new AtomicLongArray(depth * 2);
+        if (generated) {
+            orderBook.updateOrderBookFromSnapshot(Buffer.buffer(FeedSamples.generatedSnapshot(market)), bidsOut,
+                    asksOut);
+        }
+        for (Buffer message : messages) {
+            orderBook.updateOrderBook(message, bidsOut, asksOut);
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public boolean throughput() {
+        return updateOrderBook();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public boolean latency() {
+        return updateOrderBook();
+    }
+
+    private boolean updateOrderBook() {
+        Buffer message = messages[next];
+        next = next + 1 == messages.length ? 0 : next + 1;
+        return orderBook.updateOrderBook(message, bidsOut, asksOut);
+    }
+}
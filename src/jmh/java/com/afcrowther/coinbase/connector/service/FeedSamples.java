@@ -0,0 +1,157 @@
+package com.afcrowther.coinbase.connector.service;
+
+import com.afcrowther.coinbase.connector.domain.coinbase.Product;
+import com.afcrowther.coinbase.connector.standin.L2UpdateGenerator;
+import com.afcrowther.coinbase.connector.standin.L2UpdateGeneratorOptions;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Real messages from the Coinbase Pro level 2 feed for the benchmarks to run against, rather than made up numbers, so
+ * that the number of digits either side of the decimal point (which is what the parsers and formatters branch on) is
+ * what we would see live.
+ *
+ * The messages are read from the test resources, so the benchmarks should be run from the project root, or the path to
+ * a file of messages (one per line) given with "-jvmArgs -Dfeed.l2updates=...". The messages of markets other than
+ * BTC-USD are read from "l2updates-[market].txt" next to it, e.g. "l2updates-XLM-USD.txt".
+ *
+ * For rates and patterns beyond what we have recorded, the messages can be generated instead (see
+ * {@link #generatedSnapshot(String)} and {@link #generatedL2Updates(String)}), shaped with
+ * "-jvmArgs -Dfeed.generated.[option]=..." (see {@link #generatorOptions()}).
+ */
+final class FeedSamples {
+
+    static final String L2_UPDATES = System.getProperty("feed.l2updates", "src/test/resources/data/l2updates.txt");
+    static final String DEFAULT_MARKET = "BTC-USD";
+    // the same time on every generated message, so that the messages are the same on every run
+    static final long GENERATED_EPOCH_MICROS = 1619623622638954L;
+    static final int GENERATED_MESSAGES = Integer.getInteger("feed.generated.messages", 100_000);
+
+    private FeedSamples() {}
+
+    /**
+     * @return Each line of the l2update file of BTC-USD, as Latin 1 bytes
+     */
+    static List<byte[]> l2Updates() {
+        return l2Updates(DEFAULT_MARKET);
+    }
+
+    /**
+     * @param market The market of the messages, e.g. "BTC-USD"
+     * @return Each line of the l2update file of the market, as Latin 1 bytes
+     */
+    static List<byte[]> l2Updates(String market) {
+        Path path = Paths.get(L2_UPDATES);
+        if (!market.equals(DEFAULT_MARKET)) {
+            path = path.resolveSibling("l2updates-" + market + ".txt");
+        }
+        try {
+            List<byte[]> messages = new ArrayList<>();
+            for (String line : Files.readAllLines(path, StandardCharsets.ISO_8859_1)) {
+                if (!line.isEmpty()) {
+                    messages.add(line.getBytes(StandardCharsets.ISO_8859_1));
+                }
+            }
+            return messages;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read the l2updates from " + path.toAbsolutePath()
+                    + ", run the benchmarks from the project root or set -Dfeed.l2updates", e);
+        }
+    }
+
+    /**
+     * @param market The market of the messages, e.g. "BTC-USD"
+     * @return The details of the market the engines need, the increments of BTC-USD unless they are given with
+     *         "-Dfeed.[market].quote-increment" and "-Dfeed.[market].base-increment"
+     */
+    static Product product(String market) {
+        Product product = new Product();
+        product.setId(market);
+        product.setQuoteIncrement(System.getProperty("feed." + market + ".quote-increment", "0.01000000"));
+        product.setBaseIncrement(System.getProperty("feed." + market + ".base-increment", "0.00000001"));
+        return product;
+    }
+
+    /**
+     * @param market The market of the messages, e.g. "BTC-USD"
+     * @return The snapshot the generated messages of the market follow on from, as Latin 1 bytes
+     */
+    static byte[] generatedSnapshot(String market) {
+        L2UpdateGenerator generator = new L2UpdateGenerator(product(market), generatorOptions());
+        int length = generator.snapshot();
+        return Arrays.copyOf(generator.getFrame(), length);
+    }
+
+    /**
+     * @param market The market of the messages, e.g. "BTC-USD"
+     * @return "-Dfeed.generated.messages" (100,000 by default) generated l2update messages, as Latin 1 bytes, the same
+     *         on every run for the same options
+     */
+    static List<byte[]> generatedL2Updates(String market) {
+        L2UpdateGenerator generator = new L2UpdateGenerator(product(market), generatorOptions());
+        List<byte[]> messages = new ArrayList<>(GENERATED_MESSAGES);
+        for (int i = 0; i < GENERATED_MESSAGES; i++) {
+            messages.add(Arrays.copyOf(generator.getFrame(), generator.nextUpdate(GENERATED_EPOCH_MICROS)));
+        }
+        return messages;
+    }
+
+    /**
+     * @return The defaults of {@link L2UpdateGeneratorOptions}, other than those given with
+     *         "-Dfeed.generated.[levels|skew|sweep-probability|max-sweep-levels|burst-probability|max-changes|seed]"
+     */
+    static L2UpdateGeneratorOptions generatorOptions() {
+        L2UpdateGeneratorOptions defaults = new L2UpdateGeneratorOptions();
+        return new L2UpdateGeneratorOptions()
+                .setLevels(Integer.getInteger("feed.generated.levels", defaults.getLevels()))
+                .setSkew(doubleProperty("feed.generated.skew", defaults.getSkew()))
+                .setSweepProbability(doubleProperty("feed.generated.sweep-probability",
+                        defaults.getSweepProbability()))
+                .setMaxSweepLevels(Integer.getInteger("feed.generated.max-sweep-levels", defaults.getMaxSweepLevels()))
+                .setBurstProbability(doubleProperty("feed.generated.burst-probability",
+                        defaults.getBurstProbability()))
+                .setMaxChangesPerMessage(Integer.getInteger("feed.generated.max-changes",
+                        defaults.getMaxChangesPerMessage()))
+                .setSeed(Long.getLong("feed.generated.seed", defaults.getSeed()));
+    }
+
+    /**
+     * @param message An l2update message with a single change, e.g. {..."changes":[["sell","54157.12","0.011196"]]...}
+     * @return The index of the opening quotation mark of the price of the change
+     */
+    static int priceStart(byte[] message) {
+        int index = indexOf(message, (byte) '[', 0);
+        // the opening quotation mark of the side, then the closing one, then the comma
+        index = indexOf(message, (byte) '"', index + 3);
+        return index + 2;
+    }
+
+    /**
+     * @return The index of the next closing quotation mark after the start provided
+     */
+    static int numberEnd(byte[] message, int start) {
+        return indexOf(message, (byte) '"', start + 1);
+    }
+
+    private static double doubleProperty(String name, double defaultValue) {
+        String value = System.getProperty(name);
+        return value == null ? defaultValue : Double.parseDouble(value);
+    }
+
+    private static int indexOf(byte[] bytes, byte value, int from) {
+        for (int i = from; i < bytes.length; i++) {
+            if (bytes[i] == value) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Unexpected message " + new String(bytes, StandardCharsets.ISO_8859_1));
+    }
+}
@@ -0,0 +1,129 @@
+package com.afcrowther.coinbase.connector.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Formats a whole array of feed shaped values (see {@link DigitCountBenchmark}) with a fixed number of decimal places,
+ * into each of the targets {@link LongUtils} supports, and with the old digit at a time StringBuilder formatter as a
+ * baseline.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LongFormatBenchmark {
+
+    private static final int VALUES = 1024;
+
+    // 2 is a typical price scale, 8 a typical quantity scale
+    @Param({ "2", "8" })
+    public int decimals;
+
+    private long[] values;
+    private byte[] bytes;
+    private ByteBuffer direct;
+    private StringBuilder sb;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        values = new long[VALUES];
+        for (int i = 0; i < VALUES; i++) {
+            values[i] = 10_000 + (long) (random.nextDouble() * 10_000_000_000L);
+        }
+        bytes = new byte[64];
+        direct = ByteBuffer.allocateDirect(64);
+        sb = new StringBuilder(64);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(VALUES)
+    public int byteArray() {
+        int sum = 0;
+        for (long value : values) {
+            sum += LongUtils.putLong(value, bytes, 0, decimals);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(VALUES)
+    public int directByteBuffer() {
+        int sum = 0;
+        for (long value : values) {
+            direct.clear();
+            LongUtils.putLong(value, direct, decimals);
+            sum += direct.position();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(VALUES)
+    public int stringBuilder() {
+        int sum = 0;
+        for (long value : values) {
+            sb.setLength(0);
+            LongUtils.appendLongToStringBuilder(value, sb, decimals);
+            sum += sb.length();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(VALUES)
+    public int legacyStringBuilder() {
+        int sum = 0;
+        for (long value : values) {
+            sb.setLength(0);
+            legacyAppendLongToStringBuilder(value, sb, decimals);
+            sum += sb.length();
+        }
+        return sum;
+    }
+
+    // the formatter LongUtils had before the digit pair tables, one divide per digit and two passes over the output
+    private static void legacyAppendLongToStringBuilder(long value, StringBuilder sb, int numDecimalPoints) {
+        int numberOfDigits = Math.max(DigitCountBenchmark.getNumberOfDigits(value), numDecimalPoints + 1);
+        for (int i = 0; i < numberOfDigits; i++) {
+            sb.append(' ');
+        }
+        if (numDecimalPoints != 0) {
+            sb.append(' ');
+        }
+        int index = sb.length() - 1;
+        int indexOfDecimal = index - numDecimalPoints;
+        while (value != 0) {
+            char next = (char) ('0' + value % 10);
+            value = value / 10;
+            sb.setCharAt(index--, next);
+            if (index == indexOfDecimal) {
+                sb.setCharAt(index--, '.');
+            }
+        }
+        while (index > indexOfDecimal - 2) {
+            if (index == indexOfDecimal) {
+                sb.setCharAt(index--, '.');
+            } else {
+                sb.setCharAt(index--, '0');
+            }
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.afcrowther.coinbase.connector.service;
+
+import io.vertx.core.buffer.Buffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parses the prices and quantities of real l2update messages (see {@link FeedSamples}) with each of the parsers we
+ * have, from the Buffer the messages arrive in, from the plain array of a {@link BufferView}, and from Strings.
+ *
+ * Each invocation parses {@link #LEVELS} levels, cycling through the messages, so that the numbers of digits vary the
+ * way they do live rather than the branch predictor learning a single number.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParsingBenchmark {
+
+    private static final int LEVELS = 1024;
+
+    private byte[][] messages;
+    private Buffer[] buffers;
+    private int[] priceStarts;
+    private int[] priceEnds;
+    private String[] numbers;
+    private long[] output;
+
+    @Setup
+    public void setup() {
+        List<byte[]> samples = FeedSamples.l2Updates();
+        messages = new byte[LEVELS][];
+        buffers = new Buffer[LEVELS];
+        priceStarts = new int[LEVELS];
+        priceEnds = new int[LEVELS];
+        numbers = new String[LEVELS];
+        for (int i = 0; i < LEVELS; i++) {
+            byte[] message = samples.get(i % samples.size());
+            messages[i] = message;
+            buffers[i] = Buffer.buffer(message);
+            priceStarts[i] = FeedSamples.priceStart(message);
+            priceEnds[i] = FeedSamples.numberEnd(message, priceStarts[i]);
+            // alternate between the prices and quantities for the String parsers
+            int start = i % 2 == 0 ? priceStarts[i] : priceEnds[i] + 2;
+            numbers[i] = new String(message, start + 1, FeedSamples.numberEnd(message, start) - start - 1,
+                    StandardCharsets.ISO_8859_1);
+        }
+        output = new long[2];
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LEVELS)
+    public long parseOrderBookLevelBuffer() {
+        long sum = 0;
+        for (int i = 0; i < LEVELS; i++) {
+            sum += BufferUtils.parseOrderBookLevel(buffers[i], priceStarts[i], output);
+            sum += output[0] + output[1];
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LEVELS)
+    public long parseOrderBookLevelBytes() {
+        long sum = 0;
+        for (int i = 0; i < LEVELS; i++) {
+            sum += BufferUtils.parseOrderBookLevel(messages[i], priceStarts[i], output, Decimal64.UNSCALED,
+                    Decimal64.UNSCALED);
+            sum += output[0] + output[1];
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LEVELS)
+    public long parseOrderBookLevelBytesScaled() {
+        long sum = 0;
+        for (int i = 0; i < LEVELS; i++) {
+            // the scales of BTC-USD
+            sum += BufferUtils.parseOrderBookLevel(messages[i], priceStarts[i], output, 2, 8);
+            sum += output[0] + output[1];
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LEVELS)
+    public long convertBufferToLong() {
+        long sum = 0;
+        for (int i = 0; i < LEVELS; i++) {
+            sum += BufferUtils.convertBufferToLong(buffers[i], priceStarts[i] + 1, priceEnds[i]);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LEVELS)
+    public long convertBytesToLong() {
+        long sum = 0;
+        for (int i = 0; i < LEVELS; i++) {
+            sum += BufferUtils.convertBytesToLong(messages[i], priceStarts[i] + 1, priceEnds[i]);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LEVELS)
+    public long convertStringToLong() {
+        long sum = 0;
+        for (int i = 0; i < LEVELS; i++) {
+            sum += LongUtils.convertStringToLong(numbers[i]);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LEVELS)
+    public long decimal64Parse() {
+        long sum = 0;
+        for (int i = 0; i < LEVELS; i++) {
+            sum += Decimal64.parse(numbers[i], 8);
+        }
+        return sum;
+    }
+}
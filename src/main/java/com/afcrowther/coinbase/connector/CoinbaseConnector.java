@@ -1,7 +1,17 @@
 package com.afcrowther.coinbase.connector;
 
+import com.afcrowther.coinbase.connector.client.CoinbaseProEndpoints;
+import com.afcrowther.coinbase.connector.journal.JournalReplayer;
+import com.afcrowther.coinbase.connector.metrics.MetricsLogger;
 import com.afcrowther.coinbase.connector.printer.ConsolePrinter;
 import com.afcrowther.coinbase.connector.printer.Printer;
+import com.afcrowther.coinbase.connector.printer.PrinterType;
+import com.afcrowther.coinbase.connector.publisher.ConflationPolicy;
+import com.afcrowther.coinbase.connector.publisher.WaitStrategy;
+import com.afcrowther.coinbase.connector.service.OrderBookAggregatorService;
+import com.afcrowther.coinbase.connector.service.OrderBookEngine;
+import com.afcrowther.coinbase.connector.shard.ShardAssignment;
+import io.vertx.core.DeploymentOptions;
 import io.vertx.core.Future;
 import io.vertx.core.Handler;
 import io.vertx.core.Vertx;
@@ -11,8 +21,21 @@ import io.vertx.core.cli.CLI;
 import io.vertx.core.cli.CommandLine;
 import io.vertx.core.cli.Option;
 
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
 import static java.lang.String.format;
 
@@ -20,13 +43,25 @@ public class CoinbaseConnector {
 
     private static final String MARKET_STRING_REGEX = "[a-zA-Z]+-[a-zA-Z]+";
     private static final Pattern MARKET_STRING_REGEX_PATTERN = Pattern.compile(MARKET_STRING_REGEX);
+    private static final String DEFAULT_ENGINE = OrderBookEngine.SORTED_ARRAY.getEngineName();
+    private static final String DEFAULT_WAIT_STRATEGY = WaitStrategy.PARK.getStrategyName();
+    private static final String DEFAULT_CONFLATION = ConflationPolicy.LATEST.getPolicyName();
+    private static final int DEFAULT_MAX_RATE = 10;
+    private static final String DEFAULT_PRINTER = PrinterType.FULL.getTypeName();
+    private static final String DEFAULT_REPLAY_SPEED = "1";
+    private static final String MAX_REPLAY_SPEED = "max";
+    private static final int DEFAULT_LOG_INTERVAL = 10;
+    private static final int DEFAULT_SHARDS = 1;
+    private static final String DEFAULT_SHARD_ASSIGNMENT = ShardAssignment.HASH.getAssignmentName();
     private static final String CLOSED_CONNECTOR = "Coinbase Connector closed...";
-    private static final StringBuilder INITIALIZING_CONNECTOR = new StringBuilder("Initializing Coinbase Connector, for market: ");
+    private static final int SHUTDOWN_TIMEOUT_SECONDS = 10;
+    private static final StringBuilder INITIALIZING_CONNECTOR = new StringBuilder("Initializing Coinbase Connector, for markets: ");
 
     private final CLI cli;
     private final Printer printer;
     private Vertx vertx;
-    private String verticleDeploymentId;
+    // set from an event loop once the verticles have started, and read by the shutdown hook
+    private volatile String verticleDeploymentId;
 
     public CoinbaseConnector(CLI cli, Printer printer) {
         this.cli = cli;
@@ -39,18 +74,182 @@ public class CoinbaseConnector {
             printUsageAndExit();
         }
 
-        String market = commandLine.getArgumentValue("market");
-        printer.printLine(INITIALIZING_CONNECTOR.append(market));
-        // do initial check on market to make sure it is properly formed
-        if (!MARKET_STRING_REGEX_PATTERN.matcher(args[0]).matches()) {
-            printer.printLine("The market provided must be in the '<Currency>-<Currency>' format, e.g. BTC-USD");
+        List<String> markets = commandLine.getArgumentValues(0);
+        printer.printLine(INITIALIZING_CONNECTOR.append(String.join(", ", markets)));
+        // do initial check on each market to make sure it is properly formed
+        for (String market : markets) {
+            if (!MARKET_STRING_REGEX_PATTERN.matcher(market).matches()) {
+                printer.printLine("The market provided must be in the '<Currency>-<Currency>' format, e.g. BTC-USD");
+                printUsageAndExit();
+            }
+        }
+        if (new HashSet<>(markets).size() != markets.size()) {
+            printer.printLine("Each market can only be provided once");
+            printUsageAndExit();
+        }
+
+        CoinbaseProEndpoints endpoints = null;
+        try {
+            endpoints = CoinbaseProEndpoints.fromUrls(commandLine.getOptionValue("rest-url"),
+                    commandLine.getOptionValue("feed-url"));
+        } catch (IllegalArgumentException e) {
+            printer.printLine(e.getMessage());
+            printUsageAndExit();
+        }
+
+        OrderBookEngine orderBookEngine = null;
+        try {
+            orderBookEngine = OrderBookEngine.fromEngineName(commandLine.getOptionValue("engine"));
+        } catch (IllegalArgumentException e) {
+            printer.printLine(e.getMessage());
+            printUsageAndExit();
+        }
+
+        int depth = 0;
+        try {
+            depth = Integer.parseInt(commandLine.getOptionValue("depth"));
+        } catch (NumberFormatException e) {
+            // handled below
+        }
+        if (depth < 1) {
+            printer.printLine("The depth provided must be a positive whole number, e.g. 10");
+            printUsageAndExit();
+        }
+
+        WaitStrategy waitStrategy = null;
+        try {
+            waitStrategy = WaitStrategy.fromStrategyName(commandLine.getOptionValue("wait-strategy"));
+        } catch (IllegalArgumentException e) {
+            printer.printLine(e.getMessage());
+            printUsageAndExit();
+        }
+
+        ConflationPolicy conflation = null;
+        try {
+            conflation = ConflationPolicy.fromPolicyName(commandLine.getOptionValue("conflation"));
+        } catch (IllegalArgumentException e) {
+            printer.printLine(e.getMessage());
+            printUsageAndExit();
+        }
+
+        int maxRate = 0;
+        try {
+            maxRate = Integer.parseInt(commandLine.getOptionValue("max-rate"));
+        } catch (NumberFormatException e) {
+            // handled below
+        }
+        if (maxRate < 1) {
+            printer.printLine("The max rate provided must be a positive whole number, e.g. 10");
+            printUsageAndExit();
+        }
+
+        PrinterType printerType = null;
+        try {
+            printerType = PrinterType.fromTypeName(commandLine.getOptionValue("printer"));
+        } catch (IllegalArgumentException e) {
+            printer.printLine(e.getMessage());
+            printUsageAndExit();
+        }
+
+        if (markets.size() > 1 && printerType == PrinterType.DIFF) {
+            printer.printLine("The diff printer can only draw one market, use the full printer for more than one");
+            printUsageAndExit();
+        }
+
+        String journal = commandLine.getOptionValue("journal");
+        Path journalDirectory = journal == null ? null : Paths.get(journal);
+
+        String replay = commandLine.getOptionValue("replay");
+        Path replayDirectory = replay == null ? null : Paths.get(replay);
+        if (replayDirectory != null && journalDirectory != null) {
+            printer.printLine("A journal can't be recorded while replaying one");
             printUsageAndExit();
         }
+        if (markets.size() > 1 && (journalDirectory != null || replayDirectory != null)) {
+            printer.printLine("A journal can only be recorded or replayed for one market");
+            printUsageAndExit();
+        }
+
+        String replaySpeedValue = commandLine.getOptionValue("replay-speed");
+        double replaySpeed = -1;
+        if (MAX_REPLAY_SPEED.equalsIgnoreCase(replaySpeedValue)) {
+            replaySpeed = JournalReplayer.AS_FAST_AS_POSSIBLE;
+        } else {
+            try {
+                replaySpeed = Double.parseDouble(replaySpeedValue);
+            } catch (NumberFormatException e) {
+                // handled below
+            }
+            if (!(replaySpeed > 0) || Double.isInfinite(replaySpeed)) {
+                printer.printLine("The replay speed provided must be a positive number, e.g. 10, or 'max'");
+                printUsageAndExit();
+            }
+        }
+
+        String latencyLog = commandLine.getOptionValue("latency-log");
+        Path latencyLogFile = latencyLog == null ? null : Paths.get(latencyLog);
+
+        String metricsLog = commandLine.getOptionValue("metrics-log");
+        Path metricsLogFile = metricsLog == null ? null : Paths.get(metricsLog);
+
+        int logInterval = 0;
+        try {
+            logInterval = Integer.parseInt(commandLine.getOptionValue("log-interval"));
+        } catch (NumberFormatException e) {
+            // handled below
+        }
+        if (logInterval < 1) {
+            printer.printLine("The log interval provided must be a positive whole number of seconds, e.g. 10");
+            printUsageAndExit();
+        }
+
+        int shardCount = 0;
+        try {
+            shardCount = Integer.parseInt(commandLine.getOptionValue("shards"));
+        } catch (NumberFormatException e) {
+            // handled below
+        }
+        if (shardCount < 1) {
+            printer.printLine("The number of shards provided must be a positive whole number, e.g. 4");
+            printUsageAndExit();
+        }
+
+        ShardAssignment shardAssignment = null;
+        try {
+            shardAssignment = ShardAssignment.fromAssignmentName(commandLine.getOptionValue("shard-by"));
+        } catch (IllegalArgumentException e) {
+            printer.printLine(e.getMessage());
+            printUsageAndExit();
+        }
+
+        String shardRates = commandLine.getOptionValue("shard-rates");
+        Map<String, Double> rates = Collections.emptyMap();
+        if (shardAssignment == ShardAssignment.RATE) {
+            if (shardRates == null) {
+                printer.printLine("Sharding by rate needs the '--metrics-log' of an earlier run given as '--shard-rates'");
+                printUsageAndExit();
+            }
+            try {
+                rates = MetricsLogger.readL2UpdateRates(Paths.get(shardRates));
+            } catch (UncheckedIOException e) {
+                printer.printLine(e.getMessage());
+                printUsageAndExit();
+            }
+        }
+
+        // a shard with no markets would only be an idle connection, so there are never more shards than markets
+        List<List<String>> shards = shardAssignment.assign(markets, Math.min(shardCount, markets.size()), rates)
+                .stream().filter(shard -> !shard.isEmpty()).collect(Collectors.toList());
+        if (shards.size() > 1) {
+            for (int i = 0; i < shards.size(); i++) {
+                printer.printLine(format("Shard %d: %s", i, String.join(", ", shards.get(i))));
+            }
+        }
 
         VertxOptions vertxOptions = new VertxOptions()
-                // only need one event loop thread, mainly used for the websocket messages and handler
-                .setEventLoopPoolSize(1)
-                // only need one worker thread, mainly used for the printing to console
+                // one event loop thread per shard, each used for the websocket messages and handler of its markets
+                .setEventLoopPoolSize(shards.size())
+                // only need one worker thread, the printer has a thread of its own
                 .setWorkerPoolSize(1)
                 .setInternalBlockingPoolSize(2)
                 // use epoll event loop group if available (has to be added explicitly to dependencies)
@@ -59,13 +258,34 @@ public class CoinbaseConnector {
         // set the uncaught exception handler so that we can shut the program down nicely in case of unrecoverable error
         vertx.exceptionHandler(getExceptionHandler());
 
-        verticleDeploymentId = vertx.deployVerticle(new CoinbaseConnectorVerticle(market)).result();
+        List<CoinbaseConnectorVerticle> verticles = new ArrayList<>(shards.size());
+        for (List<String> shard : shards) {
+            verticles.add(new CoinbaseConnectorVerticle(shard, endpoints, orderBookEngine, depth, waitStrategy,
+                    conflation, maxRate, printerType, journalDirectory, replayDirectory, replaySpeed, latencyLogFile,
+                    metricsLogFile, logInterval));
+        }
+        // each instance of the verticle is given the next event loop, so each shard gets one to itself, and opens a
+        // connection of its own from it. The deployment completes asynchronously, once it has the id undeploys all of
+        // the instances together
+        Iterator<CoinbaseConnectorVerticle> shardVerticles = verticles.iterator();
+        vertx.deployVerticle(shardVerticles::next, new DeploymentOptions().setInstances(verticles.size()))
+                .onSuccess(deploymentId -> verticleDeploymentId = deploymentId);
 
         Runtime.getRuntime().addShutdownHook(new Thread(() -> {
-            printer.printLine(CLOSED_CONNECTOR);
-            if (verticleDeploymentId != null) {
-                vertx.undeploy(verticleDeploymentId).result();
+            String deploymentId = verticleDeploymentId;
+            if (deploymentId != null) {
+                // wait for the verticles to stop, so the journal is closed and the final logs are written before the
+                // jvm exits
+                try {
+                    vertx.undeploy(deploymentId).toCompletionStage().toCompletableFuture()
+                            .get(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException | TimeoutException e) {
+                    printer.printLine(format("Failed to stop the Coinbase Connector cleanly: [%s]", e));
+                }
             }
+            printer.printLine(CLOSED_CONNECTOR);
         }));
     }
 
@@ -79,14 +299,111 @@ public class CoinbaseConnector {
     private static CLI getCli() {
         return CLI.create("Coinbase Connector")
                 .setSummary(
-                        "The Coinbase Connector will subscribe to the Coinbase Pro market provided in the command " +
-                                "line argument, and print the top 10 bids and asks available on the order book for " +
-                                "that market on an ongoing basis.")
+                        "The Coinbase Connector will subscribe to the Coinbase Pro markets provided in the command " +
+                                "line arguments, over a single WebSocket, and print the top bids and asks (10 of each by " +
+                                "default) available on the order book for each market on an ongoing basis.")
                 .addArgument(new Argument()
                         .setArgName("market")
                         .setIndex(0)
                         .setRequired(true)
-                        .setDescription("The market for which you want to receive order book updates, e.g. 'BTC-USD'"))
+                        .setMultiValued(true)
+                        .setDescription("The markets for which you want to receive order book updates, e.g. " +
+                                "'BTC-USD', or 'BTC-USD ETH-USD LTC-USD' for more than one"))
+                .addOption(new Option()
+                        .setLongName("rest-url")
+                        .setDefaultValue(CoinbaseProEndpoints.DEFAULT_REST_URL)
+                        .setDescription("The Coinbase Pro Rest API to get the details of the market from, e.g. " +
+                                "'http://localhost:8080' for the stand-in server"))
+                .addOption(new Option()
+                        .setLongName("feed-url")
+                        .setDefaultValue(CoinbaseProEndpoints.DEFAULT_FEED_URL)
+                        .setDescription("The Coinbase Pro WebSocket feed to subscribe to, e.g. " +
+                                "'ws://localhost:8080/' for the stand-in server"))
+                .addOption(new Option()
+                        .setLongName("engine")
+                        .setShortName("e")
+                        .setDefaultValue(DEFAULT_ENGINE)
+                        .setDescription("The data structure backing the order book, one of 'sorted-array' (default), " +
+                                "'tick-ladder' (full depth) or 'simple'"))
+                .addOption(new Option()
+                        .setLongName("depth")
+                        .setShortName("d")
+                        .setDefaultValue(String.valueOf(OrderBookAggregatorService.DEFAULT_DEPTH))
+                        .setDescription("The number of levels of each side of the order book to keep up to date and " +
+                                "print, e.g. 1 for top of book only"))
+                .addOption(new Option()
+                        .setLongName("wait-strategy")
+                        .setShortName("w")
+                        .setDefaultValue(DEFAULT_WAIT_STRATEGY)
+                        .setDescription("How the printer thread waits for order book updates, one of 'park' " +
+                                "(default), 'yield' or 'busy-spin' (lowest latency, but uses a whole core)"))
+                .addOption(new Option()
+                        .setLongName("conflation")
+                        .setShortName("c")
+                        .setDefaultValue(DEFAULT_CONFLATION)
+                        .setDescription("Which order book updates are printed, one of 'latest' (default, the latest " +
+                                "update whenever the printer is free), 'max-rate' (the latest update, at most " +
+                                "'--max-rate' times a second) or 'every-update'"))
+                .addOption(new Option()
+                        .setLongName("max-rate")
+                        .setShortName("r")
+                        .setDefaultValue(String.valueOf(DEFAULT_MAX_RATE))
+                        .setDescription("The most times a second the order book is printed with '--conflation " +
+                                "max-rate'"))
+                .addOption(new Option()
+                        .setLongName("printer")
+                        .setShortName("p")
+                        .setDefaultValue(DEFAULT_PRINTER)
+                        .setDescription("How the order book is drawn, one of 'full' (default, the whole order book " +
+                                "each time) or 'diff' (only the rows that changed, far fewer bytes for slow terminals " +
+                                "such as over SSH)"))
+                .addOption(new Option()
+                        .setLongName("journal")
+                        .setShortName("j")
+                        .setDescription("A directory to record every message received from the feed to, as it was " +
+                                "received, for replaying or looking into later (off by default)"))
+                .addOption(new Option()
+                        .setLongName("replay")
+                        .setDescription("A directory recorded with '--journal' to replay the messages of, through " +
+                                "the same order book and printer, rather than connecting to Coinbase Pro"))
+                .addOption(new Option()
+                        .setLongName("replay-speed")
+                        .setDefaultValue(DEFAULT_REPLAY_SPEED)
+                        .setDescription("How many times faster than they were received to replay the messages with " +
+                                "'--replay', e.g. 1 (default) for the original timing, 10 for ten times faster, or " +
+                                "'max' for as fast as they can be handled"))
+                .addOption(new Option()
+                        .setLongName("latency-log")
+                        .setShortName("l")
+                        .setDescription("A file to append the latencies of the order book updates to, from the " +
+                                "exchange to us, from us receiving them to the order book being updated, and from " +
+                                "the order book being updated to it being printed (off by default)"))
+                .addOption(new Option()
+                        .setLongName("metrics-log")
+                        .setDescription("A file to append the rates of the messages, changes and events handled to, " +
+                                "along with the backlog of the printer (off by default, they are always available " +
+                                "over JMX)"))
+                .addOption(new Option()
+                        .setLongName("log-interval")
+                        .setDefaultValue(String.valueOf(DEFAULT_LOG_INTERVAL))
+                        .setDescription("The number of seconds each line of the '--latency-log' and '--metrics-log' " +
+                                "covers, e.g. 10 (default)"))
+                .addOption(new Option()
+                        .setLongName("shards")
+                        .setDefaultValue(String.valueOf(DEFAULT_SHARDS))
+                        .setDescription("The number of shards to split the markets between, each with an event loop " +
+                                "thread and WebSocket connection of its own, e.g. 4 to handle the markets on four " +
+                                "cores, 1 (default) for every market over the one connection"))
+                .addOption(new Option()
+                        .setLongName("shard-by")
+                        .setDefaultValue(DEFAULT_SHARD_ASSIGNMENT)
+                        .setDescription("How the markets are split between the shards, one of 'hash' (default, by " +
+                                "the hash of the market, the same from one run to the next) or 'rate' (evenly by the " +
+                                "l2update rates in '--shard-rates')"))
+                .addOption(new Option()
+                        .setLongName("shard-rates")
+                        .setDescription("A file written with '--metrics-log' by an earlier run, for '--shard-by " +
+                                "rate', markets without a rate in it are taken to be as busy as the average"))
                 .addOption(new Option()
                         .setLongName("help").setShortName("h").setFlag(true).setHelp(true));
     }
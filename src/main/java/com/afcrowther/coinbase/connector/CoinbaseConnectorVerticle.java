@@ -1,46 +1,170 @@
 package com.afcrowther.coinbase.connector;
 
 import com.afcrowther.coinbase.connector.client.CoinbaseProClient;
+import com.afcrowther.coinbase.connector.client.CoinbaseProEndpoints;
 import com.afcrowther.coinbase.connector.domain.coinbase.Product;
 import com.afcrowther.coinbase.connector.exception.CoinbaseConnectionException;
 import com.afcrowther.coinbase.connector.handlers.CoinbaseWebSocketMessageHandler;
-import com.afcrowther.coinbase.connector.service.SimpleOrderBookAggregatorService;
-import com.afcrowther.coinbase.connector.printer.ConsolePrinter;
+import com.afcrowther.coinbase.connector.handlers.CoinbaseWebSocketMessageRouter;
+import com.afcrowther.coinbase.connector.journal.FrameJournal;
+import com.afcrowther.coinbase.connector.journal.JournalReader;
+import com.afcrowther.coinbase.connector.journal.JournalReplayer;
+import com.afcrowther.coinbase.connector.metrics.LatencyLogger;
+import com.afcrowther.coinbase.connector.metrics.MarketLatencies;
+import com.afcrowther.coinbase.connector.metrics.MarketMetrics;
+import com.afcrowther.coinbase.connector.metrics.MetricsLogger;
+import com.afcrowther.coinbase.connector.service.OrderBookAggregatorService;
+import com.afcrowther.coinbase.connector.service.OrderBookEngine;
 import com.afcrowther.coinbase.connector.printer.Printer;
+import com.afcrowther.coinbase.connector.printer.PrinterType;
+import com.afcrowther.coinbase.connector.printer.PrintingEventHandler;
+import com.afcrowther.coinbase.connector.publisher.BookEventProcessor;
+import com.afcrowther.coinbase.connector.publisher.BookEventProcessorGroup;
+import com.afcrowther.coinbase.connector.publisher.BookEventRingBuffer;
+import com.afcrowther.coinbase.connector.publisher.ConflatingEventHandler;
+import com.afcrowther.coinbase.connector.publisher.ConflationPolicy;
+import com.afcrowther.coinbase.connector.publisher.WaitStrategy;
 import io.vertx.core.AbstractVerticle;
+import io.vertx.core.CompositeFuture;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
 import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
 import io.vertx.core.http.HttpClient;
 import io.vertx.core.http.HttpClientOptions;
 import io.vertx.core.http.WebSocket;
 import io.vertx.core.net.OpenSSLEngineOptions;
 
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
 import static java.lang.String.format;
 
 /**
  * This Verticle contains the logic around connecting to Coinbase. It performs the following steps:
  * <ul>
- *     <li>Do a check to see whether the market exists</li>
- *     <li>If valid, check that the market is online and currently open for trading</li>
- *     <li>If online and open for trading, connect to the start the WebSocket connection</li>
+ *     <li>Do a check to see whether each market exists</li>
+ *     <li>If valid, check that each market is online and currently open for trading</li>
+ *     <li>If all are online and open for trading, connect to the start the WebSocket connection, subscribing to every
+ *     market over the one connection</li>
  * </ul>
+ *
+ * Each market has an order book, ring buffer and printer of its own, and when there is more than one market the
+ * messages of the connection are routed to the handler of each by a {@link CoinbaseWebSocketMessageRouter}. The
+ * printers of all of the markets are run from the one thread (see {@link BookEventProcessorGroup}).
+ *
+ * Or, when given a journal to replay, it skips all of the above and feeds the recorded messages through the same
+ * handler, order book and printer instead (see {@link JournalReplayer}), closing Vert.x once they have all been handled.
  */
 public class CoinbaseConnectorVerticle extends AbstractVerticle {
 
-    private final String market;
+    // enough slots to ride out a burst of updates while the printer is busy, each is only 2 * depth * 2 longs
+    private static final int RING_BUFFER_CAPACITY = 1024;
+
+    private final List<String> markets;
+    private final CoinbaseProEndpoints endpoints;
+    private final OrderBookEngine orderBookEngine;
+    private final int depth;
+    private final WaitStrategy waitStrategy;
+    private final ConflationPolicy printConflation;
+    private final int maxPrintRate;
+    private final PrinterType printerType;
+    private final Path journalDirectory;
+    private final Path replayDirectory;
+    private final double replaySpeed;
+    private final Path latencyLogFile;
+    private final Path metricsLogFile;
+    private final int logInterval;
 
-    private CoinbaseWebSocketMessageHandler messageHandler;
+    private Handler<Buffer> messageHandler;
+    private final List<BookEventProcessor> printerProcessors;
+    private BookEventProcessorGroup printerGroup;
+    private FrameJournal journal;
     private HttpClient httpClient;
     private CoinbaseProClient coinbaseProClient;
     private WebSocket webSocket;
+    private final List<MarketLatencies> latencies;
+    private final List<MarketMetrics> metrics;
+    private PrintStream latencyLog;
+    private LatencyLogger latencyLogger;
+    private PrintStream metricsLog;
+    private MetricsLogger metricsLogger;
+    private long logTimerId = -1;
 
-    public CoinbaseConnectorVerticle(String market) {
-        this.market = market;
+    /**
+     * @param markets         The markets to connect to, more than one can't be journaled or replayed
+     * @param endpoints       Where the Rest API and the WebSocket feed are, {@link CoinbaseProEndpoints#COINBASE_PRO}
+     *                        for the live exchange
+     * @param orderBookEngine The data structure backing the order book
+     * @param depth           The number of levels of each side of the order book to keep up to date and print
+     * @param waitStrategy    How the printer thread waits for order book updates
+     * @param printConflation Which order book updates are printed
+     * @param maxPrintRate    The most prints per second, for {@link ConflationPolicy#MAX_RATE}
+     * @param printerType      How the order book is drawn on the console
+     * @param journalDirectory The directory to record every frame received to (see {@link FrameJournal}), or null to
+     *                         not record them
+     * @param replayDirectory  The directory of a journal to replay rather than connecting to Coinbase Pro, or null to
+     *                         connect
+     * @param replaySpeed      How many times faster than they were received to replay the frames, or
+     *                         {@link JournalReplayer#AS_FAST_AS_POSSIBLE}
+     * @param latencyLogFile   The file to append the latencies of each stage of the l2updates to (see
+     *                         {@link LatencyLogger}), or null to not record them
+     * @param metricsLogFile   The file to append the rates of the counters and the gauges to (see
+     *                         {@link MetricsLogger}), or null to only expose them over JMX
+     * @param logInterval      The number of seconds between each write to the logs, each covering the time since the
+     *                         last
+     */
+    public CoinbaseConnectorVerticle(List<String> markets, CoinbaseProEndpoints endpoints, OrderBookEngine orderBookEngine,
+                                     int depth, WaitStrategy waitStrategy, ConflationPolicy printConflation, int maxPrintRate,
+                                     PrinterType printerType, Path journalDirectory, Path replayDirectory,
+                                     double replaySpeed, Path latencyLogFile, Path metricsLogFile,
+                                     int logInterval) {
+        this.markets = markets;
+        this.endpoints = endpoints;
+        this.orderBookEngine = orderBookEngine;
+        this.depth = depth;
+        this.waitStrategy = waitStrategy;
+        this.printConflation = printConflation;
+        this.maxPrintRate = maxPrintRate;
+        this.printerType = printerType;
+        this.journalDirectory = journalDirectory;
+        this.replayDirectory = replayDirectory;
+        this.replaySpeed = replaySpeed;
+        this.latencyLogFile = latencyLogFile;
+        this.metricsLogFile = metricsLogFile;
+        this.logInterval = logInterval;
+        this.printerProcessors = new ArrayList<>();
+        this.latencies = new ArrayList<>();
+        this.metrics = new ArrayList<>();
     }
 
     // only to be used for testing, live systems should use the vertx context provided in the class by default
     CoinbaseConnectorVerticle(String market, CoinbaseWebSocketMessageHandler messageHandler, Vertx vertx,
                               HttpClient httpClient, CoinbaseProClient client) {
-        this.market = market;
+        this.markets = Collections.singletonList(market);
+        this.endpoints = CoinbaseProEndpoints.COINBASE_PRO;
+        this.orderBookEngine = OrderBookEngine.SORTED_ARRAY;
+        this.depth = OrderBookAggregatorService.DEFAULT_DEPTH;
+        this.waitStrategy = WaitStrategy.PARK;
+        this.printConflation = ConflationPolicy.LATEST;
+        this.maxPrintRate = 0;
+        this.printerType = PrinterType.FULL;
+        this.journalDirectory = null;
+        this.replayDirectory = null;
+        this.replaySpeed = JournalReplayer.AS_FAST_AS_POSSIBLE;
+        this.latencyLogFile = null;
+        this.metricsLogFile = null;
+        this.logInterval = 0;
+        this.printerProcessors = new ArrayList<>();
+        this.latencies = new ArrayList<>();
+        this.metrics = new ArrayList<>();
         this.vertx = vertx;
         this.httpClient = httpClient;
         this.messageHandler = messageHandler;
@@ -49,8 +173,13 @@ public class CoinbaseConnectorVerticle extends AbstractVerticle {
 
     @Override
     public void start() {
+        if (replayDirectory != null) {
+            // on the context, so that any failure goes to the exception handler the same as a failure to connect
+            context.runOnContext(v -> replayJournal());
+            return;
+        }
         httpClient = vertx.createHttpClient(getHttpClientOptions());
-        coinbaseProClient = new CoinbaseProClient(httpClient);
+        coinbaseProClient = new CoinbaseProClient(httpClient, endpoints);
         connectToCoinbasePro();
     }
 
@@ -59,37 +188,68 @@ public class CoinbaseConnectorVerticle extends AbstractVerticle {
         if (webSocket != null && !webSocket.isClosed()) {
             webSocket.close();
         }
+        if (printerGroup != null) {
+            printerGroup.halt();
+        }
+        if (journal != null) {
+            journal.close();
+        }
+        if (logTimerId != -1) {
+            vertx.cancelTimer(logTimerId);
+            // whatever was recorded since the last interval
+            writeLogs();
+        }
+        if (latencyLog != null) {
+            latencyLog.close();
+        }
+        if (metricsLog != null) {
+            metricsLog.close();
+        }
+        for (MarketMetrics marketMetrics : metrics) {
+            marketMetrics.unregister();
+        }
         if (httpClient != null) {
             httpClient.close();
         }
     }
 
     protected void connectToCoinbasePro() {
-        coinbaseProClient.getMarketInformation(market)
+        // the details of every market are asked for at once
+        @SuppressWarnings("rawtypes")
+        List<Future> marketInfoFutures = markets.stream().map(coinbaseProClient::getMarketInformation)
+                .collect(Collectors.toList());
+        CompositeFuture.all(marketInfoFutures)
                 .onComplete(ar -> {
                     if (ar.succeeded()) {
-                        Product marketInfo = ar.result();
-                        if (marketInfo.getStatus().equals("offline")) {
-                            throw new CoinbaseConnectionException(format("Market [%s] is currently offline, please try again later...", market));
-                        } else if (marketInfo.isTradingDisabled()) {
-                            throw new CoinbaseConnectionException(format("Trading on market [%s] is disabled, please try again later...", market));
-                        } else {
-                            // continue onto the WebSocket connection phase
-                            connectToCoinbaseProWebSocket(marketInfo);
+                        List<Product> marketInfos = ar.result().list();
+                        for (int i = 0; i < markets.size(); i++) {
+                            String market = markets.get(i);
+                            Product marketInfo = marketInfos.get(i);
+                            if (marketInfo.getStatus().equals("offline")) {
+                                throw new CoinbaseConnectionException(format("Market [%s] is currently offline, please try again later...", market));
+                            } else if (marketInfo.isTradingDisabled()) {
+                                throw new CoinbaseConnectionException(format("Trading on market [%s] is disabled, please try again later...", market));
+                            }
                         }
+                        // continue onto the WebSocket connection phase
+                        connectToCoinbaseProWebSocket(marketInfos);
                     } else {
                         throw new CoinbaseConnectionException(ar.cause().getMessage());
                     }
                 });
     }
 
-    private void connectToCoinbaseProWebSocket(Product marketInfo) {
+    private void connectToCoinbaseProWebSocket(List<Product> marketInfos) {
         if (messageHandler == null) {
-            Printer printer = new ConsolePrinter(marketInfo);
-            messageHandler = new CoinbaseWebSocketMessageHandler(new SimpleOrderBookAggregatorService(market), printer, vertx);
+            if (journalDirectory != null) {
+                // a journal only holds the one market, more than one is turned away by the command line
+                journal = new FrameJournal(journalDirectory, FrameJournal.DEFAULT_SEGMENT_SIZE);
+                journal.writeProduct(marketInfos.get(0));
+            }
+            createMessageHandler(marketInfos);
         }
 
-        coinbaseProClient.subscribeToMarket(market, messageHandler)
+        coinbaseProClient.subscribeToMarkets(markets, messageHandler)
                 .onComplete(ar -> {
                     if (ar.succeeded()) {
                         webSocket = ar.result();
@@ -99,12 +259,123 @@ public class CoinbaseConnectorVerticle extends AbstractVerticle {
                 });
     }
 
+    private void replayJournal() {
+        JournalReader reader = new JournalReader(replayDirectory);
+        Product marketInfo = reader.readProduct();
+        String market = markets.get(0);
+        if (markets.size() != 1 || !market.equals(marketInfo.getId())) {
+            throw new CoinbaseConnectionException(format("The journal in [%s] is of market [%s], not [%s]",
+                    replayDirectory, marketInfo.getId(), String.join(", ", markets)));
+        }
+        Printer printer = createMessageHandler(Collections.singletonList(marketInfo));
+        JournalReplayer replayer = new JournalReplayer(reader, messageHandler, replaySpeed);
+        // the handler is only ever called from this one thread, the same as it is only called from the event loop live
+        Thread replayThread = new Thread(() -> {
+            try {
+                replayer.run();
+                long elapsedMillis = Math.max(1, replayer.getElapsedNanos() / 1_000_000);
+                printer.printLine(format("Replayed %d messages in %d ms (%d messages a second)",
+                        replayer.getReplayedFrames(), elapsedMillis,
+                        replayer.getReplayedFrames() * 1000 / elapsedMillis));
+            } catch (RuntimeException e) {
+                printer.printLine(format("Replay stopped after %d messages: [%s]", replayer.getReplayedFrames(),
+                        e.getMessage()));
+            }
+            vertx.close();
+        }, "journal-replay");
+        replayThread.start();
+    }
+
+    /**
+     * Sets up everything downstream of the WebSocket for each market: the order book, the ring buffer its changes are
+     * published to, the printer draining it, their metrics (registered over JMX), and the latencies of each, if they
+     * are being logged. The printers of every market share one thread. With more than one market the handlers of the
+     * markets are put behind a {@link CoinbaseWebSocketMessageRouter}.
+     *
+     * @return The printer of the first market
+     */
+    private Printer createMessageHandler(List<Product> marketInfos) {
+        List<CoinbaseWebSocketMessageHandler> handlers = new ArrayList<>(marketInfos.size());
+        Printer firstPrinter = null;
+        for (Product marketInfo : marketInfos) {
+            Printer printer = printerType.create(marketInfo, depth);
+            handlers.add(createMarketHandler(marketInfo, printer));
+            if (firstPrinter == null) {
+                firstPrinter = printer;
+            }
+        }
+        messageHandler = handlers.size() == 1 ? handlers.get(0) : new CoinbaseWebSocketMessageRouter(handlers);
+        // the printers get a thread of their own, draining the ring buffers, rather than a task per update, and share
+        // it so that only one thread writes to the console (and spins, with busy-spin) however many markets there are
+        printerGroup = new BookEventProcessorGroup(printerProcessors, waitStrategy);
+        Thread printerThread = new Thread(printerGroup, "order-book-printer-" + String.join(",", markets));
+        printerThread.setDaemon(true);
+        printerThread.start();
+        if (latencyLogFile != null) {
+            latencyLog = openLog(latencyLogFile);
+            latencyLogger = new LatencyLogger(latencies, latencyLog);
+        }
+        if (metricsLogFile != null) {
+            metricsLog = openLog(metricsLogFile);
+            metricsLogger = new MetricsLogger(metrics, metricsLog);
+        }
+        if (latencyLogger != null || metricsLogger != null) {
+            // written from a worker, so that the event loop never waits on the disk
+            logTimerId = vertx.setPeriodic(logInterval * 1000L,
+                    id -> vertx.executeBlocking(promise -> {
+                        writeLogs();
+                        promise.complete();
+                    }, false));
+        }
+        return firstPrinter;
+    }
+
+    private CoinbaseWebSocketMessageHandler createMarketHandler(Product marketInfo, Printer printer) {
+        String market = marketInfo.getId();
+        MarketMetrics marketMetrics = new MarketMetrics(market);
+        MarketLatencies marketLatencies = null;
+        if (latencyLogFile != null) {
+            marketLatencies = new MarketLatencies(market);
+            latencies.add(marketLatencies);
+        }
+        BookEventRingBuffer ringBuffer = new BookEventRingBuffer(RING_BUFFER_CAPACITY, depth * 2);
+        ConflatingEventHandler printHandler = new ConflatingEventHandler(new PrintingEventHandler(printer,
+                marketLatencies, marketMetrics), printConflation, maxPrintRate, depth * 2);
+        BookEventProcessor printerProcessor = new BookEventProcessor(ringBuffer, printHandler, waitStrategy);
+        printerProcessors.add(printerProcessor);
+        marketMetrics.setPrinterProcessor(printerProcessor);
+        marketMetrics.register();
+        metrics.add(marketMetrics);
+        return new CoinbaseWebSocketMessageHandler(orderBookEngine.create(market, marketInfo, depth), ringBuffer,
+                journal, marketLatencies, marketMetrics);
+    }
+
+    private PrintStream openLog(Path file) {
+        try {
+            return new PrintStream(new FileOutputStream(file.toFile(), true), false, "UTF-8");
+        } catch (IOException e) {
+            throw new UncheckedIOException(format("Failed to open the log [%s]", file), e);
+        }
+    }
+
+    private void writeLogs() {
+        if (latencyLogger != null) {
+            latencyLogger.log();
+        }
+        if (metricsLogger != null) {
+            metricsLogger.log();
+        }
+    }
+
     private HttpClientOptions getHttpClientOptions() {
-        return new HttpClientOptions()
-                // ssl by default
-                .setSsl(true)
-                // use tcnative boring-ssl, performance is much better than defaults
-                .setOpenSslEngineOptions(new OpenSSLEngineOptions())
+        HttpClientOptions options = new HttpClientOptions();
+        if (endpoints.isSsl()) {
+            // ssl by default, only a stand-in would be plain
+            options.setSsl(true)
+                    // use tcnative boring-ssl, performance is much better than defaults
+                    .setOpenSslEngineOptions(new OpenSSLEngineOptions());
+        }
+        return options
                 // basic tcp tuning
                 .setTcpNoDelay(true)
                 .setTcpFastOpen(true)
@@ -12,23 +12,34 @@ import io.vertx.core.http.HttpMethod;
 import io.vertx.core.http.WebSocket;
 import io.vertx.core.json.Json;
 
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
 import static java.lang.String.format;
 
 public class CoinbaseProClient {
 
-    private static final String COINBASE_PRO_WEBSOCKET_HOST = "ws-feed.pro.coinbase.com";
-    private static final String COINBASE_PRO_REST_HOST = "api.pro.coinbase.com";
     private static final String COINBASE_PRO_PRODUCTS_REQUEST_URI = "/products/%s";
-    private static final int COINBASE_PRO_PORT = 443;
     private static final String COINBASE_PRO_SUBSCRIPTION_REQUEST_STRING =
-            "{\"type\": \"subscribe\",\"product_ids\":[\"%s\"],\"channels\":[\"level2\"]}";
+            "{\"type\": \"subscribe\",\"product_ids\":[%s],\"channels\":[\"level2\"]}";
     private static final String USER_AGENT_HEADER = "User-Agent";
     private static final String USET_AGENT_VALUE = "Java-Vertx";
 
     private final HttpClient httpClient;
+    private final CoinbaseProEndpoints endpoints;
 
     public CoinbaseProClient(HttpClient httpClient) {
+        this(httpClient, CoinbaseProEndpoints.COINBASE_PRO);
+    }
+
+    /**
+     * @param httpClient The client to make the requests with, set up for TLS if the endpoints are
+     * @param endpoints  Where the Rest API and the WebSocket feed are
+     */
+    public CoinbaseProClient(HttpClient httpClient, CoinbaseProEndpoints endpoints) {
         this.httpClient = httpClient;
+        this.endpoints = endpoints;
     }
 
     /**
@@ -40,7 +51,8 @@ public class CoinbaseProClient {
     public Future<Product> getMarketInformation(String market) {
         String requestUriWithMarket = format(COINBASE_PRO_PRODUCTS_REQUEST_URI, market);
         Future<HttpClientRequest> requestFuture =
-                httpClient.request(HttpMethod.GET, COINBASE_PRO_PORT, COINBASE_PRO_REST_HOST, requestUriWithMarket);
+                httpClient.request(HttpMethod.GET, endpoints.getRestPort(), endpoints.getRestHost(),
+                        requestUriWithMarket);
         return requestFuture.flatMap(request -> {
             Future<Product> productFuture = request
                     .putHeader(USER_AGENT_HEADER, USET_AGENT_VALUE)
@@ -70,10 +82,24 @@ public class CoinbaseProClient {
      * @return The WebSocket that has been initialized
      */
     public Future<WebSocket> subscribeToMarket(String market, Handler<Buffer> messageHandler) {
-        return httpClient.webSocket(COINBASE_PRO_PORT, COINBASE_PRO_WEBSOCKET_HOST, "")
+        return subscribeToMarkets(Collections.singletonList(market), messageHandler);
+    }
+
+    /**
+     * Subscribes to all of the provided markets over the one WebSocket, and registers the handler provided to receive
+     * the incoming messages of every market (see {@link
+     * com.afcrowther.coinbase.connector.handlers.CoinbaseWebSocketMessageRouter}).
+     *
+     * @param markets        The markets to subscribe to, each expected in "BTC-USD" format.
+     * @param messageHandler The {@link Handler<Buffer> that will handle incoming messages}
+     * @return The WebSocket that has been initialized
+     */
+    public Future<WebSocket> subscribeToMarkets(List<String> markets, Handler<Buffer> messageHandler) {
+        String productIds = markets.stream().map(market -> '"' + market + '"').collect(Collectors.joining(","));
+        return httpClient.webSocket(endpoints.getFeedPort(), endpoints.getFeedHost(), endpoints.getFeedPath())
                 .map(webSocket -> {
                     webSocket.handler(messageHandler)
-                            .writeFinalTextFrame(format(COINBASE_PRO_SUBSCRIPTION_REQUEST_STRING, market));
+                            .writeFinalTextFrame(format(COINBASE_PRO_SUBSCRIPTION_REQUEST_STRING, productIds));
                     return webSocket;
                 });
     }
@@ -0,0 +1,123 @@
+package com.afcrowther.coinbase.connector.client;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.Locale;
+
+import static java.lang.String.format;
+
+/**
+ * Where the Rest API and the WebSocket feed are, so that the connector can be pointed at something other than the live
+ * exchange, such as the stand-in server (see {@link com.afcrowther.coinbase.connector.standin.CoinbaseProStandIn}).
+ *
+ * Both endpoints share the one {@link io.vertx.core.http.HttpClient}, so are either both TLS ("https" and "wss") or
+ * both plain ("http" and "ws").
+ */
+public final class CoinbaseProEndpoints {
+
+    public static final String DEFAULT_REST_URL = "https://api.pro.coinbase.com";
+    public static final String DEFAULT_FEED_URL = "wss://ws-feed.pro.coinbase.com";
+    /**
+     * The live Coinbase Pro endpoints.
+     */
+    public static final CoinbaseProEndpoints COINBASE_PRO = fromUrls(DEFAULT_REST_URL, DEFAULT_FEED_URL);
+
+    private static final int TLS_PORT = 443;
+    private static final int PLAIN_PORT = 80;
+
+    private final String restHost;
+    private final int restPort;
+    private final String feedHost;
+    private final int feedPort;
+    private final String feedPath;
+    private final boolean ssl;
+
+    private CoinbaseProEndpoints(String restHost, int restPort, String feedHost, int feedPort, String feedPath,
+                                 boolean ssl) {
+        this.restHost = restHost;
+        this.restPort = restPort;
+        this.feedHost = feedHost;
+        this.feedPort = feedPort;
+        this.feedPath = feedPath;
+        this.ssl = ssl;
+    }
+
+    /**
+     * @param restUrl The base of the Rest API, e.g. "https://api.pro.coinbase.com" or "http://localhost:8080"
+     * @param feedUrl The WebSocket feed, e.g. "wss://ws-feed.pro.coinbase.com" or "ws://localhost:8080/feed"
+     * @return The endpoints, with the default port of the scheme where no port is given
+     * @throws IllegalArgumentException If either URL can't be parsed, has an unexpected scheme, or one is TLS and the
+     *                                  other isn't
+     */
+    public static CoinbaseProEndpoints fromUrls(String restUrl, String feedUrl) {
+        URI rest = parse(restUrl);
+        URI feed = parse(feedUrl);
+        boolean restSsl = isSsl(rest, "https", "http");
+        boolean feedSsl = isSsl(feed, "wss", "ws");
+        if (restSsl != feedSsl) {
+            throw new IllegalArgumentException(format("The Rest API [%s] and the feed [%s] must either both use TLS " +
+                    "or both not", restUrl, feedUrl));
+        }
+        String feedPath = feed.getRawPath() == null ? "" : feed.getRawPath();
+        return new CoinbaseProEndpoints(rest.getHost(), port(rest, restSsl), feed.getHost(), port(feed, feedSsl),
+                feedPath, restSsl);
+    }
+
+    public String getRestHost() {
+        return restHost;
+    }
+
+    public int getRestPort() {
+        return restPort;
+    }
+
+    public String getFeedHost() {
+        return feedHost;
+    }
+
+    public int getFeedPort() {
+        return feedPort;
+    }
+
+    /**
+     * @return The path of the feed, "" for the live feed
+     */
+    public String getFeedPath() {
+        return feedPath;
+    }
+
+    public boolean isSsl() {
+        return ssl;
+    }
+
+    private static URI parse(String url) {
+        URI uri;
+        try {
+            uri = new URI(url);
+        } catch (URISyntaxException e) {
+            throw new IllegalArgumentException(format("Invalid URL [%s]", url), e);
+        }
+        if (uri.getScheme() == null || uri.getHost() == null) {
+            throw new IllegalArgumentException(format("Invalid URL [%s], expected e.g. 'https://host:port'", url));
+        }
+        return uri;
+    }
+
+    private static boolean isSsl(URI uri, String sslScheme, String plainScheme) {
+        String scheme = uri.getScheme().toLowerCase(Locale.ROOT);
+        if (scheme.equals(sslScheme)) {
+            return true;
+        } else if (scheme.equals(plainScheme)) {
+            return false;
+        }
+        throw new IllegalArgumentException(format("Unexpected scheme in [%s], expected '%s' or '%s'", uri, sslScheme,
+                plainScheme));
+    }
+
+    private static int port(URI uri, boolean ssl) {
+        if (uri.getPort() != -1) {
+            return uri.getPort();
+        }
+        return ssl ? TLS_PORT : PLAIN_PORT;
+    }
+}
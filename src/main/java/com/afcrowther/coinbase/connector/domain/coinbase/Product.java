@@ -1,5 +1,6 @@
 package com.afcrowther.coinbase.connector.domain.coinbase;
 
+import com.fasterxml.jackson.annotation.JsonGetter;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonSetter;
@@ -12,6 +13,9 @@ import static com.fasterxml.jackson.annotation.JsonInclude.Include.NON_ABSENT;
  * Models the "product" response from the Coinbase Pro Rest API. The attributes are basically the details of a
  * particular market, including it's current status (online or offline), details can be found here:
  * https://docs.pro.coinbase.com/#products
+ *
+ * It is written back out with the same names, so that a journal can keep the details of its market alongside the
+ * recorded messages in the same format the Rest API gave them to us in.
  */
 @JsonIgnoreProperties(ignoreUnknown = true)
 @JsonInclude(NON_ABSENT)
@@ -43,6 +47,7 @@ public class Product {
         this.id = id;
     }
 
+    @JsonGetter("display_name")
     public String getDisplayName() {
         return displayName;
     }
@@ -52,6 +57,7 @@ public class Product {
         this.displayName = displayName;
     }
 
+    @JsonGetter("base_currency")
     public String getBaseCurrency() {
         return baseCurrency;
     }
@@ -61,6 +67,7 @@ public class Product {
         this.baseCurrency = baseCurrency;
     }
 
+    @JsonGetter("quote_currency")
     public String getQuoteCurrency() {
         return quoteCurrency;
     }
@@ -70,6 +77,7 @@ public class Product {
         this.quoteCurrency = quoteCurrency;
     }
 
+    @JsonGetter("base_increment")
     public String getBaseIncrement() {
         return baseIncrement;
     }
@@ -79,6 +87,7 @@ public class Product {
         this.baseIncrement = baseIncrement;
     }
 
+    @JsonGetter("quote_increment")
     public String getQuoteIncrement() {
         return quoteIncrement;
     }
@@ -88,6 +97,7 @@ public class Product {
         this.quoteIncrement = quoteIncrement;
     }
 
+    @JsonGetter("base_min_size")
     public String getBaseMinSize() {
         return baseMinSize;
     }
@@ -97,6 +107,7 @@ public class Product {
         this.baseMinSize = baseMinSize;
     }
 
+    @JsonGetter("min_market_funds")
     public String getMinMarketFunds() {
         return minMarketFunds;
     }
@@ -106,6 +117,7 @@ public class Product {
         this.minMarketFunds = mixMarketFunds;
     }
 
+    @JsonGetter("max_market_funds")
     public String getMaxMarketFunds() {
         return maxMarketFunds;
     }
@@ -123,6 +135,7 @@ public class Product {
         this.status = status;
     }
 
+    @JsonGetter("status_message")
     public String getStatusMessage() {
         return statusMessage;
     }
@@ -132,6 +145,7 @@ public class Product {
         this.statusMessage = statusMessage;
     }
 
+    @JsonGetter("cancel_only")
     public boolean getCancelOnly() {
         return cancelOnly;
     }
@@ -141,6 +155,7 @@ public class Product {
         this.cancelOnly = cancelOnly;
     }
 
+    @JsonGetter("limit_only")
     public boolean isLimitOnly() {
         return limitOnly;
     }
@@ -150,6 +165,7 @@ public class Product {
         this.limitOnly = limitOnly;
     }
 
+    @JsonGetter("post_only")
     public boolean isPostOnly() {
         return postOnly;
     }
@@ -159,6 +175,7 @@ public class Product {
         this.postOnly = postOnly;
     }
 
+    @JsonGetter("trading_disabled")
     public boolean isTradingDisabled() {
         return tradingDisabled;
     }
@@ -1,14 +1,16 @@
 package com.afcrowther.coinbase.connector.handlers;
 
 import com.afcrowther.coinbase.connector.domain.coinbase.ErrorMessage;
-import com.afcrowther.coinbase.connector.domain.coinbase.OrderBookSnapshot;
 import com.afcrowther.coinbase.connector.exception.CoinbaseConnectionException;
-import com.afcrowther.coinbase.connector.printer.Printer;
+import com.afcrowther.coinbase.connector.jfr.FrameReceiveEvent;
+import com.afcrowther.coinbase.connector.jfr.PublishEvent;
+import com.afcrowther.coinbase.connector.journal.FrameJournal;
+import com.afcrowther.coinbase.connector.metrics.LatencyStage;
+import com.afcrowther.coinbase.connector.metrics.MarketLatencies;
+import com.afcrowther.coinbase.connector.metrics.MarketMetrics;
+import com.afcrowther.coinbase.connector.publisher.BookEventRingBuffer;
 import com.afcrowther.coinbase.connector.service.OrderBookAggregatorService;
-import io.vertx.core.Future;
 import io.vertx.core.Handler;
-import io.vertx.core.Promise;
-import io.vertx.core.Vertx;
 import io.vertx.core.buffer.Buffer;
 import io.vertx.core.json.Json;
 
@@ -28,58 +30,170 @@ public class CoinbaseWebSocketMessageHandler implements Handler<Buffer> {
     private static final byte N = 110;
     private static final byte R = 114;
     private static final byte S = 115;
+    private static final String SNAPSHOT = "snapshot";
+    private static final String L2UPDATE = "l2update";
 
     private final OrderBookAggregatorService orderBookAggregatorService;
-    private final Printer printer;
-    private final Vertx vertx;
-    private final Handler<Promise<Void>> printerHandler;
-    private volatile Future<Void> printerFuture;
-    // pre allocate the arrays we are using to move the current top 10 of the order book around
+    private final BookEventRingBuffer ringBuffer;
+    // records every frame as it was received, if journaling is turned on
+    private final FrameJournal journal;
+    // the latencies of each l2update are recorded here, if they are turned on
+    private final MarketLatencies latencies;
+    // counts the messages, changes and publishes, only ever written from here
+    private final MarketMetrics metrics;
+    // pre allocate the arrays we are using to move the current top levels of the order book around, these are only
+    // touched by the event loop
     private final AtomicLongArray bids;
     private final AtomicLongArray asks;
+    // the flight recorder events, reused for every frame rather than allocated for each, which is safe as they are
+    // only touched from the one thread, and costs nothing more than the isEnabled() check when nothing is recording
+    private final FrameReceiveEvent receiveEvent;
+    private final PublishEvent publishEvent;
 
-    public CoinbaseWebSocketMessageHandler(OrderBookAggregatorService orderBookAggregatorService, Printer printer, Vertx vertx) {
+    /**
+     * @param orderBookAggregatorService The order book to keep up to date
+     * @param ringBuffer                 Every change to the top of the order book is published here, for whichever
+     *                                   consumers (such as the printer) are running on other threads
+     */
+    public CoinbaseWebSocketMessageHandler(OrderBookAggregatorService orderBookAggregatorService,
+                                           BookEventRingBuffer ringBuffer) {
+        this(orderBookAggregatorService, ringBuffer, null);
+    }
+
+    /**
+     * @param orderBookAggregatorService The order book to keep up to date
+     * @param ringBuffer                 Every change to the top of the order book is published here, for whichever
+     *                                   consumers (such as the printer) are running on other threads
+     * @param journal                    Every frame is recorded here before it is handled, or null to not record them
+     */
+    public CoinbaseWebSocketMessageHandler(OrderBookAggregatorService orderBookAggregatorService,
+                                           BookEventRingBuffer ringBuffer, FrameJournal journal) {
+        this(orderBookAggregatorService, ringBuffer, journal, null, new MarketMetrics(orderBookAggregatorService.getMarket()));
+    }
+
+    /**
+     * @param orderBookAggregatorService The order book to keep up to date
+     * @param ringBuffer                 Every change to the top of the order book is published here, for whichever
+     *                                   consumers (such as the printer) are running on other threads
+     * @param journal                    Every frame is recorded here before it is handled, or null to not record them
+     * @param latencies                  The {@link LatencyStage#EXCHANGE_TO_RECEIVE} and
+     *                                   {@link LatencyStage#RECEIVE_TO_BOOK_UPDATED} latencies of each l2update are
+     *                                   recorded here, and the time the book was updated is published with each
+     *                                   change, or null to not record them
+     * @param metrics                    The counters of the messages handled
+     */
+    public CoinbaseWebSocketMessageHandler(OrderBookAggregatorService orderBookAggregatorService,
+                                           BookEventRingBuffer ringBuffer, FrameJournal journal,
+                                           MarketLatencies latencies, MarketMetrics metrics) {
         this.orderBookAggregatorService = orderBookAggregatorService;
-        this.printer = printer;
-        this.vertx = vertx;
-        this.printerHandler = printerHandler();
-        this.printerFuture = Future.succeededFuture();
-        // pre allocate the arrays we are going to use to move the prices and quantities we want around
-        this.bids = new AtomicLongArray(20);
-        this.asks = new AtomicLongArray(20);
+        this.ringBuffer = ringBuffer;
+        this.journal = journal;
+        this.latencies = latencies;
+        this.metrics = metrics;
+        // pre allocate the arrays we are going to use to move the prices and quantities we want around, a price and a
+        // quantity for each level of the depth we are outputting
+        int outputLength = orderBookAggregatorService.getDepth() * 2;
+        this.bids = new AtomicLongArray(outputLength);
+        this.asks = new AtomicLongArray(outputLength);
+        this.receiveEvent = new FrameReceiveEvent();
+        this.publishEvent = new PublishEvent();
+    }
+
+    /**
+     * @return The market of the order book this handler keeps up to date
+     */
+    public String getMarket() {
+        return orderBookAggregatorService.getMarket();
     }
 
     /**
      * This handler always operates on the same thread, in a sense it is single threaded in nature, therefore we do not
-     * have to worry about any cache contention or synchronization. However, on items we are sharing with the blocking
-     * handler calls (which are handled by another thread), we need to apply some synchronization. We will also apply
+     * have to worry about any cache contention or synchronization. However, on items we are sharing with the consumers
+     * of the ring buffer (which run on other threads), we need to apply some synchronization. We will also apply
      * single writer principle to the data that is shared, such that only one thread will be responsible for modifying
      * any piece of data to limit stalls in our cpu pipelines -
      * https://mechanical-sympathy.blogspot.com/2011/09/single-writer-principle.html
      *
+     * The only data shared with the other threads is the {@link BookEventRingBuffer}, which every change to the top of
+     * the book is published to without allocating or ever waiting on the consumers. Recording the frame in the
+     * {@link FrameJournal} doesn't allocate or wait on the disk either, nor does recording the latencies, which the
+     * other threads read without ever holding up this one (see {@link MarketLatencies}), or counting the messages
+     * (see {@link MarketMetrics}).
+     *
      * @param buffer The incoming WebSocket message as bytes wrapped in a Vertx {@link Buffer} object
      */
     @Override
     public void handle(Buffer buffer) {
+        long receivedTime = latencies == null ? 0 : System.nanoTime();
+        boolean recording = receiveEvent.isEnabled();
+        if (recording) {
+            receiveEvent.begin();
+        }
+        if (journal != null) {
+            // before anything else, so that the frame is recorded even if handling it fails
+            journal.append(buffer);
+        }
         // given the message structure '{"type":"[snapshot/l2update/error]' and the messages that we can expect
         // (https://docs.pro.coinbase.com/#channels), we can safely just match the first two letters of the message
         // type field to find out what type this message is
         byte first = buffer.getByte(9);
         byte second = buffer.getByte(10);
+        String type = null;
         if (first == E && second == R) {
+            metrics.errorMessages().increment();
             handleErrorMessage(buffer);
         } else if (first == S && second == N) {
+            type = SNAPSHOT;
+            metrics.snapshotMessages().increment();
             handleSnapshotMessage(buffer);
         } else if (first == L && second == TWO) {
-            handleOrderBookUpdateMessage(buffer);
+            type = L2UPDATE;
+            metrics.l2UpdateMessages().increment();
+            handleOrderBookUpdateMessage(buffer, receivedTime);
+        }
+        if (recording) {
+            receiveEvent.end();
+            receiveEvent.market = orderBookAggregatorService.getMarket();
+            receiveEvent.size = buffer.length();
+            receiveEvent.type = type;
+            receiveEvent.commit();
         }
     }
 
-    private void handleOrderBookUpdateMessage(Buffer buffer) {
-        boolean updated = orderBookAggregatorService.updateOrderBook(buffer, bids, asks, printerFuture);
+    private void handleOrderBookUpdateMessage(Buffer buffer, long receivedTime) {
+        boolean updated = orderBookAggregatorService.updateOrderBook(buffer, bids, asks);
+        metrics.levelsChanged().add(orderBookAggregatorService.getLastUpdateChanges());
         if (updated) {
-            printerFuture = vertx.executeBlocking(printerHandler);
+            metrics.depthUpdates().increment();
         }
+        if (latencies == null) {
+            if (updated) {
+                publish(0);
+            }
+            return;
+        }
+        long bookUpdatedTime = System.nanoTime();
+        long exchangeTime = orderBookAggregatorService.getLastUpdateTime();
+        if (exchangeTime != 0) {
+            latencies.recordExchangeToReceive(exchangeTime, receivedTime);
+        }
+        latencies.record(LatencyStage.RECEIVE_TO_BOOK_UPDATED, bookUpdatedTime - receivedTime);
+        if (updated) {
+            publish(bookUpdatedTime);
+        }
+    }
+
+    private void publish(long bookUpdatedTime) {
+        if (!publishEvent.isEnabled()) {
+            ringBuffer.publish(bids, asks, bookUpdatedTime);
+            return;
+        }
+        publishEvent.begin();
+        long sequence = ringBuffer.publish(bids, asks, bookUpdatedTime);
+        publishEvent.end();
+        publishEvent.market = orderBookAggregatorService.getMarket();
+        publishEvent.sequence = sequence;
+        publishEvent.commit();
     }
 
     // handle any error by throwing a runtime exception thus shutting the program, in future we could handle different
@@ -93,17 +207,9 @@ public class CoinbaseWebSocketMessageHandler implements Handler<Buffer> {
     }
 
     private void handleSnapshotMessage(Buffer buffer) {
-        // we don't mind allocating for this message as although it is big, it is a one off and will be collected fairly
-        // promptly and shouldn't ever reach further than eden space
-        OrderBookSnapshot snapshot = Json.decodeValue(buffer, OrderBookSnapshot.class);
-        orderBookAggregatorService.updateOrderBook(snapshot, bids, asks);
-        printerFuture = vertx.executeBlocking(printerHandler);
-    }
-
-    private Handler<Promise<Void>> printerHandler() {
-        return promise -> {
-            printer.printOrderBook(asks, bids);
-            promise.complete();
-        };
+        // the snapshot is parsed straight from the buffer, as decoding it would create Strings for every level of what
+        // can be a very large message right at the point the feed goes live
+        orderBookAggregatorService.updateOrderBookFromSnapshot(buffer, bids, asks);
+        publish(0);
     }
 }
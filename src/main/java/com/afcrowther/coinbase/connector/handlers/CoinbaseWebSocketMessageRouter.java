@@ -0,0 +1,67 @@
+package com.afcrowther.coinbase.connector.handlers;
+
+import io.vertx.core.Handler;
+import io.vertx.core.buffer.Buffer;
+
+import java.util.List;
+
+/**
+ * <p>
+ *     Routes the messages of a WebSocket subscribed to more than one market to the
+ *     {@link CoinbaseWebSocketMessageHandler} of the market each is for, so that one connection can feed the order books
+ *     of many markets.
+ * </p>
+ * <p>
+ *     The snapshot and l2update messages both start '{"type":"snapshot","product_id":"' (the two types are the same
+ *     length), so the product id is always found at the same index, and is looked up in a {@link ProductIdTrie} straight
+ *     from the bytes of the message, without allocating. Each handler then sees exactly the messages it would have on a
+ *     connection of its own.
+ * </p>
+ * <p>
+ *     Error messages aren't for any one market, they go to the handler of the first market, which counts them and shuts
+ *     the connector down the same as it would for a single market. Anything else (e.g. the subscriptions message) is
+ *     dropped, as the handlers would drop it anyway.
+ * </p>
+ */
+public class CoinbaseWebSocketMessageRouter implements Handler<Buffer> {
+
+    private static final byte E = 101;
+    private static final byte R = 114;
+    // the index of the product id in '{"type":"snapshot","product_id":"BTC-USD"' or the same for l2update
+    private static final int PRODUCT_ID_INDEX = 33;
+
+    private final CoinbaseWebSocketMessageHandler errorHandler;
+    private final ProductIdTrie<CoinbaseWebSocketMessageHandler> handlers;
+
+    /**
+     * @param handlers The handler of each market subscribed to, the first is also given the error messages
+     */
+    public CoinbaseWebSocketMessageRouter(List<CoinbaseWebSocketMessageHandler> handlers) {
+        if (handlers.isEmpty()) {
+            throw new IllegalArgumentException("There must be a handler for at least one market");
+        }
+        this.errorHandler = handlers.get(0);
+        this.handlers = new ProductIdTrie<>();
+        for (CoinbaseWebSocketMessageHandler handler : handlers) {
+            this.handlers.put(handler.getMarket(), handler);
+        }
+    }
+
+    @Override
+    public void handle(Buffer buffer) {
+        if (isError(buffer)) {
+            errorHandler.handle(buffer);
+            return;
+        }
+        // null for a message too short to have a product id, as well as for a market we aren't subscribed to
+        CoinbaseWebSocketMessageHandler handler = handlers.get(buffer, PRODUCT_ID_INDEX);
+        if (handler != null) {
+            handler.handle(buffer);
+        }
+    }
+
+    // see CoinbaseWebSocketMessageHandler, the first two letters of the type are enough to tell the messages apart
+    private static boolean isError(Buffer buffer) {
+        return buffer.length() > 10 && buffer.getByte(9) == E && buffer.getByte(10) == R;
+    }
+}
@@ -0,0 +1,95 @@
+package com.afcrowther.coinbase.connector.handlers;
+
+import io.vertx.core.buffer.Buffer;
+
+import java.util.Arrays;
+
+/**
+ * <p>
+ *     Maps the product ids of the markets we are subscribed to onto a value for each (e.g. the handler of the market),
+ *     looked up straight from the bytes of a message, a byte at a time, without decoding the id into a String.
+ * </p>
+ * <p>
+ *     Each node of the trie is a row of {@link #ALPHABET} child indices in one flat array, so a lookup is a walk
+ *     through a handful of array reads (as many as the product id is long) and allocates nothing. The trie is built up
+ *     front and only read from then on.
+ * </p>
+ */
+final class ProductIdTrie<T> {
+
+    // product ids are ASCII, e.g. "BTC-USD"
+    private static final int ALPHABET = 128;
+    private static final byte QUOTE = '"';
+    // the root is node 0, so no node has it as a child, and 0 can stand for no child
+    private static final int NO_CHILD = 0;
+
+    private int[] children;
+    private Object[] values;
+    private int nodes;
+
+    ProductIdTrie() {
+        this.children = new int[ALPHABET * 8];
+        this.values = new Object[8];
+        this.nodes = 1;
+    }
+
+    /**
+     * @param productId The product id, e.g. "BTC-USD"
+     * @param value     The value to look up for the product id
+     * @throws IllegalArgumentException If the product id is empty or isn't ASCII
+     */
+    void put(String productId, T value) {
+        if (productId.isEmpty()) {
+            throw new IllegalArgumentException("A product id can't be empty");
+        }
+        int node = 0;
+        for (int i = 0; i < productId.length(); i++) {
+            char c = productId.charAt(i);
+            if (c >= ALPHABET || c == QUOTE) {
+                throw new IllegalArgumentException("Not a valid product id: " + productId);
+            }
+            int child = children[node * ALPHABET + c];
+            if (child == NO_CHILD) {
+                child = addNode();
+                children[node * ALPHABET + c] = child;
+            }
+            node = child;
+        }
+        values[node] = value;
+    }
+
+    /**
+     * Looks up the product id that starts at the given index of the buffer and ends at the next double quote, e.g.
+     * the value of the "product_id" field of a message.
+     *
+     * @return The value of the product id, or null if it isn't one we have, or doesn't end before the buffer does
+     */
+    @SuppressWarnings("unchecked")
+    T get(Buffer buffer, int index) {
+        int length = buffer.length();
+        int node = 0;
+        while (index < length) {
+            byte b = buffer.getByte(index++);
+            if (b == QUOTE) {
+                return (T) values[node];
+            }
+            // bytes past 127 are negative, and can't be in a product id either
+            if (b < 0) {
+                return null;
+            }
+            node = children[node * ALPHABET + b];
+            if (node == NO_CHILD) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    private int addNode() {
+        if (nodes == values.length) {
+            children = Arrays.copyOf(children, children.length * 2);
+            values = Arrays.copyOf(values, values.length * 2);
+        }
+        return nodes++;
+    }
+}
@@ -0,0 +1,31 @@
+package com.afcrowther.coinbase.connector.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A frame handled by the {@link com.afcrowther.coinbase.connector.handlers.CoinbaseWebSocketMessageHandler}, covering
+ * the whole of the handling of the frame (the stages of which have events of their own).
+ */
+@Name("com.afcrowther.coinbase.connector.FrameReceive")
+@Label("Frame Receive")
+@Category({ "Coinbase Connector", "Pipeline" })
+@Description("A frame of the WebSocket feed handled, from it reaching the message handler to the handler returning")
+@StackTrace(false)
+public class FrameReceiveEvent extends Event {
+
+    @Label("Market")
+    public String market;
+
+    @Label("Message Size")
+    @DataAmount
+    public int size;
+
+    @Label("Message Type")
+    public String type;
+}
@@ -0,0 +1,37 @@
+package com.afcrowther.coinbase.connector.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * An l2update parsed and applied to the order book, by
+ * {@link com.afcrowther.coinbase.connector.service.OrderBookAggregatorService#updateOrderBook(
+ * io.vertx.core.buffer.Buffer, java.util.concurrent.atomic.AtomicLongArray, java.util.concurrent.atomic.AtomicLongArray)}.
+ * The levels are applied to the order book as they are parsed, so parsing and updating the book are the one stage.
+ */
+@Name("com.afcrowther.coinbase.connector.OrderBookUpdate")
+@Label("Order Book Update")
+@Category({ "Coinbase Connector", "Pipeline" })
+@Description("An l2update parsed and applied to the order book, the levels are applied as they are parsed")
+@StackTrace(false)
+public class OrderBookUpdateEvent extends Event {
+
+    @Label("Market")
+    public String market;
+
+    @Label("Message Size")
+    @DataAmount
+    public int size;
+
+    @Label("Levels Changed")
+    public int changes;
+
+    @Label("Top Of Book Changed")
+    @Description("Whether the change was to the levels of the order book that are tracked")
+    public boolean topOfBookChanged;
+}
@@ -0,0 +1,28 @@
+package com.afcrowther.coinbase.connector.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * The order book rendered and written to the console by a {@link com.afcrowther.coinbase.connector.printer.Printer},
+ * for telling a slow terminal apart from anything else that holds up the printer thread.
+ */
+@Name("com.afcrowther.coinbase.connector.Print")
+@Label("Print")
+@Category({ "Coinbase Connector", "Pipeline" })
+@Description("The order book rendered and written to the console")
+@StackTrace(false)
+public class PrintEvent extends Event {
+
+    @Label("Market")
+    public String market;
+
+    @Label("Bytes Written")
+    @DataAmount
+    public int bytes;
+}
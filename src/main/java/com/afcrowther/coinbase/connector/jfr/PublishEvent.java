@@ -0,0 +1,25 @@
+package com.afcrowther.coinbase.connector.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * The top of the order book published to the {@link com.afcrowther.coinbase.connector.publisher.BookEventRingBuffer}.
+ */
+@Name("com.afcrowther.coinbase.connector.Publish")
+@Label("Publish")
+@Category({ "Coinbase Connector", "Pipeline" })
+@Description("The top of the order book published to the ring buffer")
+@StackTrace(false)
+public class PublishEvent extends Event {
+
+    @Label("Market")
+    public String market;
+
+    @Label("Sequence")
+    public long sequence;
+}
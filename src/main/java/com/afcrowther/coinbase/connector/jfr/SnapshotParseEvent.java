@@ -0,0 +1,28 @@
+package com.afcrowther.coinbase.connector.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * The snapshot message parsed straight into the order book, by
+ * {@link com.afcrowther.coinbase.connector.service.OrderBookAggregatorService#updateOrderBookFromSnapshot}.
+ */
+@Name("com.afcrowther.coinbase.connector.SnapshotParse")
+@Label("Snapshot Parse")
+@Category({ "Coinbase Connector", "Pipeline" })
+@Description("The snapshot message parsed into the order book")
+@StackTrace(false)
+public class SnapshotParseEvent extends Event {
+
+    @Label("Market")
+    public String market;
+
+    @Label("Message Size")
+    @DataAmount
+    public int size;
+}
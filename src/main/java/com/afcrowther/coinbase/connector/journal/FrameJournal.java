@@ -0,0 +1,285 @@
+package com.afcrowther.coinbase.connector.journal;
+
+import com.afcrowther.coinbase.connector.domain.coinbase.Product;
+import io.netty.buffer.ByteBuf;
+import io.netty.util.internal.PlatformDependent;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.buffer.impl.BufferImpl;
+import io.vertx.core.json.Json;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+import static java.lang.String.format;
+
+/**
+ * <p>
+ *     Records every WebSocket frame we receive, as the raw bytes the feed sent along with the time it was received, to
+ *     an append only journal of memory mapped files (segments) in a directory, so that what the feed actually sent can
+ *     be looked at, or replayed, after the fact (see {@link JournalReader}).
+ * </p>
+ * <p>
+ *     Appending a frame is a copy of its bytes into the mapped segment, it doesn't allocate, and never waits on the
+ *     disk, the operating system writes the mapped pages out in its own time. Everything that could block is done by a
+ *     background thread of the journal: the next segment is created, mapped and each of its pages touched (so that the
+ *     event loop doesn't take the page faults) before it is needed, and each full segment is forced to disk and
+ *     unmapped once the journal has moved on from it (a mapping is otherwise only released when the buffer is garbage
+ *     collected, which may never happen, and a long recording would run out of mappings). If the next segment isn't
+ *     ready when the current one is full, frames are dropped (and counted, see {@link #getDroppedFrames()}) rather than
+ *     waiting for it.
+ * </p>
+ * <p>
+ *     Each segment starts with {@link #MAGIC} and {@link #VERSION}, followed by the records, each of which is the length
+ *     of the frame (an int), the {@link System#nanoTime()} and {@link System#currentTimeMillis()} it was received at
+ *     (longs), and then the bytes of the frame, all little endian. A length of 0 marks the end of the records of the
+ *     segment, the rest of it is left as the zeroes it was created with.
+ * </p>
+ * <p>
+ *     Only one thread (the event loop) may append to a journal.
+ * </p>
+ */
+public class FrameJournal implements AutoCloseable {
+
+    /**
+     * The first int of every segment, "CBJ1" in ASCII.
+     */
+    public static final int MAGIC = 0x43424A31;
+    public static final int VERSION = 1;
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+    // the magic number and the version
+    static final int SEGMENT_HEADER_LENGTH = 8;
+    // the length, the receive nano time and the receive epoch millis
+    static final int RECORD_HEADER_LENGTH = 20;
+    static final String SEGMENT_SUFFIX = ".journal";
+    // the details of the market the frames are from, so that the journal can be replayed without the Rest API
+    static final String PRODUCT_FILE = "product.json";
+
+    private static final int PAGE_SIZE = 4096;
+    // how long the background thread waits between checks that there is a segment ready for the journal to move on to
+    private static final long PREALLOCATOR_PARK_NANOS = 1_000_000;
+    // the background thread drains the full segments before it maps each next one, so no more than two can be waiting
+    private static final int FULL_SEGMENTS_CAPACITY = 4;
+
+    private final Path directory;
+    private final String segmentPrefix;
+    private final int segmentSize;
+    // handed from the background thread to the event loop, and back again once the event loop has filled it
+    private final AtomicReference<MappedByteBuffer> nextSegment;
+    private final ArrayBlockingQueue<MappedByteBuffer> fullSegments;
+    private final Thread preallocator;
+    private volatile boolean running;
+    private volatile IOException failure;
+    private volatile long retiredSegments;
+
+    // only touched by the appending thread
+    private MappedByteBuffer segment;
+    private int position;
+    private long rolledSegments;
+    private long appendedFrames;
+    private long droppedFrames;
+
+    /**
+     * Creates the directory if needed, and maps the first segment before returning, so that the journal is ready for
+     * frames straight away.
+     *
+     * @param directory   The directory to write the segments to, a run of the connector writes segments named
+     *                    "frames-[start time in epoch millis]-[index].journal"
+     * @param segmentSize The size of each segment in bytes, frames bigger than a segment can't be recorded
+     * @throws UncheckedIOException If the directory or the first segment can't be created
+     */
+    public FrameJournal(Path directory, int segmentSize) {
+        if (segmentSize <= SEGMENT_HEADER_LENGTH + RECORD_HEADER_LENGTH) {
+            throw new IllegalArgumentException(format("Segment size [%d] is too small", segmentSize));
+        }
+        this.directory = directory;
+        this.segmentPrefix = "frames-" + System.currentTimeMillis() + "-";
+        this.segmentSize = segmentSize;
+        this.nextSegment = new AtomicReference<>();
+        this.fullSegments = new ArrayBlockingQueue<>(FULL_SEGMENTS_CAPACITY);
+        try {
+            Files.createDirectories(directory);
+            this.segment = mapSegment(0);
+        } catch (IOException e) {
+            throw new UncheckedIOException(format("Failed to create the journal in [%s]", directory), e);
+        }
+        this.position = SEGMENT_HEADER_LENGTH;
+        this.running = true;
+        this.preallocator = new Thread(() -> preallocate(1), "frame-journal-preallocator");
+        this.preallocator.setDaemon(true);
+        this.preallocator.start();
+    }
+
+    /**
+     * Records the frame provided, with the time it is called at as the time it was received.
+     *
+     * @param frame The frame as it was received from the WebSocket
+     * @return Whether the frame was recorded, it is dropped if it is bigger than a segment, or if the current segment is
+     *         full and the next one isn't ready yet
+     */
+    public boolean append(Buffer frame) {
+        long receivedNanoTime = System.nanoTime();
+        long receivedEpochMillis = System.currentTimeMillis();
+        // Buffer#getByteBuf() allocates a duplicate on every call, the implementation gives us the ByteBuf it wraps
+        ByteBuf byteBuf = frame instanceof BufferImpl ? ((BufferImpl) frame).byteBuf() : frame.getByteBuf();
+        int length = byteBuf.writerIndex();
+        int recordLength = RECORD_HEADER_LENGTH + length;
+        // an empty frame would read back as the end of the segment
+        if (length == 0 || SEGMENT_HEADER_LENGTH + recordLength > segmentSize) {
+            droppedFrames++;
+            return false;
+        }
+        if (position + recordLength > segmentSize && !roll()) {
+            droppedFrames++;
+            return false;
+        }
+        segment.putLong(position + 4, receivedNanoTime);
+        segment.putLong(position + 12, receivedEpochMillis);
+        segment.limit(position + recordLength).position(position + RECORD_HEADER_LENGTH);
+        byteBuf.getBytes(0, segment);
+        segment.clear();
+        // the length goes in last, so that if we are killed part way through a frame the journal ends at the frame
+        // before it, rather than with a length and a partial frame
+        segment.putInt(position, length);
+        position += recordLength;
+        appendedFrames++;
+        return true;
+    }
+
+    /**
+     * @return The number of frames recorded
+     */
+    public long getAppendedFrames() {
+        return appendedFrames;
+    }
+
+    /**
+     * @return The number of frames that couldn't be recorded, see {@link #append(Buffer)}
+     */
+    public long getDroppedFrames() {
+        return droppedFrames;
+    }
+
+    /**
+     * @return The error that stopped the background thread from preparing segments, if there has been one, from then on
+     *         every frame that doesn't fit in the current segment is dropped
+     */
+    public IOException getFailure() {
+        return failure;
+    }
+
+    /**
+     * Keeps the details of the market alongside the frames, so that the journal can be replayed without asking the
+     * Coinbase Pro Rest API for them (see {@link JournalReader#readProduct()}). This blocks on the disk, so should only
+     * be called while setting up, before the frames start arriving.
+     *
+     * @param product The details of the market of the frames
+     * @throws UncheckedIOException If the details can't be written
+     */
+    public void writeProduct(Product product) {
+        Path path = directory.resolve(PRODUCT_FILE);
+        try {
+            Files.write(path, Json.encodeToBuffer(product).getBytes());
+        } catch (IOException e) {
+            throw new UncheckedIOException(format("Failed to write the market details to [%s]", path), e);
+        }
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    // only to be used for testing, the number of segments the journal has moved on from
+    long getRolledSegments() {
+        return rolledSegments;
+    }
+
+    // only to be used for testing, the number of full segments that have been forced to disk and unmapped
+    long getRetiredSegments() {
+        return retiredSegments;
+    }
+
+    /**
+     * Stops the background thread, forces any full segments it had yet to get to, and what has been recorded in the
+     * current segment, to disk. Nothing should be appended once the journal is closed.
+     */
+    @Override
+    public void close() {
+        running = false;
+        LockSupport.unpark(preallocator);
+        try {
+            preallocator.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        retireFullSegments();
+        segment.force();
+    }
+
+    // moves on to the next segment if it's ready, handing the full one to the background thread to be forced to disk
+    private boolean roll() {
+        MappedByteBuffer next = nextSegment.get();
+        // the queue can't fill while the background thread is keeping up, but if it does we wait for it as we would for
+        // the next segment, rather than lose a full segment that hasn't been forced
+        if (next == null || !fullSegments.offer(segment)) {
+            return false;
+        }
+        // only the background thread sets the next segment, and only when there isn't one
+        nextSegment.set(null);
+        segment = next;
+        position = SEGMENT_HEADER_LENGTH;
+        rolledSegments++;
+        LockSupport.unpark(preallocator);
+        return true;
+    }
+
+    // forces each full segment to disk, and then unmaps it, rather than leaving the mapping until it is collected
+    private void retireFullSegments() {
+        MappedByteBuffer full;
+        while ((full = fullSegments.poll()) != null) {
+            full.force();
+            PlatformDependent.freeDirectBuffer(full);
+            retiredSegments++;
+        }
+    }
+
+    private void preallocate(int index) {
+        while (running) {
+            try {
+                retireFullSegments();
+                if (failure == null && nextSegment.get() == null) {
+                    nextSegment.set(mapSegment(index++));
+                }
+            } catch (IOException e) {
+                failure = e;
+            }
+            LockSupport.parkNanos(PREALLOCATOR_PARK_NANOS);
+        }
+    }
+
+    private MappedByteBuffer mapSegment(int index) throws IOException {
+        Path path = directory.resolve(format("%s%05d%s", segmentPrefix, index, SEGMENT_SUFFIX));
+        MappedByteBuffer mapped;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            // the mapping stays valid once the channel is closed
+            mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        }
+        mapped.order(ByteOrder.LITTLE_ENDIAN);
+        // touch every page, so that the page faults are taken here rather than when the frames are written
+        for (int i = 0; i < segmentSize; i += PAGE_SIZE) {
+            mapped.put(i, (byte) 0);
+        }
+        mapped.putInt(0, MAGIC);
+        mapped.putInt(4, VERSION);
+        return mapped;
+    }
+}
@@ -0,0 +1,171 @@
+package com.afcrowther.coinbase.connector.journal;
+
+import com.afcrowther.coinbase.connector.domain.coinbase.Product;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.Json;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static com.afcrowther.coinbase.connector.journal.FrameJournal.MAGIC;
+import static com.afcrowther.coinbase.connector.journal.FrameJournal.PRODUCT_FILE;
+import static com.afcrowther.coinbase.connector.journal.FrameJournal.RECORD_HEADER_LENGTH;
+import static com.afcrowther.coinbase.connector.journal.FrameJournal.SEGMENT_HEADER_LENGTH;
+import static com.afcrowther.coinbase.connector.journal.FrameJournal.SEGMENT_SUFFIX;
+import static com.afcrowther.coinbase.connector.journal.FrameJournal.VERSION;
+import static java.lang.String.format;
+
+/**
+ * <p>
+ *     Reads back the frames recorded by a {@link FrameJournal}, in the order they were received, across every segment
+ *     in the directory (the segment names sort in the order they were written, including across runs).
+ * </p>
+ * <p>
+ *     Each run of the connector writes segments with a prefix of its own, and the nano times of one run can't be
+ *     compared with those of another (they come from a different JVM), so {@link #getRun()} tells which run the current
+ *     frame is from.
+ * </p>
+ * <p>
+ *     This is a cursor, {@link #next()} moves on to the next frame, and the getters give the details of the current
+ *     one. The frame itself is given as a view of the mapped segment, so nothing is copied or allocated for each
+ *     frame, and it is only valid until the next call to {@link #next()}.
+ * </p>
+ */
+public class JournalReader {
+
+    private final Path directory;
+    private final List<Path> segments;
+    private int nextSegment;
+    private String segmentPrefix;
+    private int run = -1;
+    private ByteBuffer segment;
+    private int position;
+    private int frameLength;
+    private long receivedNanoTime;
+    private long receivedEpochMillis;
+
+    /**
+     * @param directory The directory the journal was written to
+     * @throws UncheckedIOException If the directory can't be read
+     */
+    public JournalReader(Path directory) {
+        this.directory = directory;
+        try (Stream<Path> files = Files.list(directory)) {
+            this.segments = files
+                    .filter(path -> path.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                    .sorted()
+                    .collect(Collectors.toList());
+        } catch (IOException e) {
+            throw new UncheckedIOException(format("Failed to read the journal in [%s]", directory), e);
+        }
+    }
+
+    /**
+     * Moves on to the next frame.
+     *
+     * @return Whether there is a next frame, if not the end of the journal has been reached
+     * @throws UncheckedIOException  If a segment can't be read
+     * @throws IllegalStateException If a segment isn't a journal segment
+     */
+    public boolean next() {
+        if (segment != null) {
+            // undo the position and limit of the last frame given out
+            segment.clear();
+            position += RECORD_HEADER_LENGTH + frameLength;
+        }
+        while (segment == null || position + RECORD_HEADER_LENGTH > segment.capacity()
+                || segment.getInt(position) == 0) {
+            if (nextSegment == segments.size()) {
+                return false;
+            }
+            Path path = segments.get(nextSegment++);
+            segment = mapSegment(path);
+            position = SEGMENT_HEADER_LENGTH;
+            String name = path.getFileName().toString();
+            String prefix = name.substring(0, name.lastIndexOf('-') + 1);
+            if (!prefix.equals(segmentPrefix)) {
+                segmentPrefix = prefix;
+                run++;
+            }
+        }
+        frameLength = segment.getInt(position);
+        receivedNanoTime = segment.getLong(position + 4);
+        receivedEpochMillis = segment.getLong(position + 12);
+        return true;
+    }
+
+    /**
+     * @return The frame, positioned at its first byte and limited to its last, only valid until the next call to
+     *         {@link #next()}
+     */
+    public ByteBuffer getFrame() {
+        int start = position + RECORD_HEADER_LENGTH;
+        segment.limit(start + frameLength).position(start);
+        return segment;
+    }
+
+    /**
+     * @return The number of bytes in the frame
+     */
+    public int getFrameLength() {
+        return frameLength;
+    }
+
+    /**
+     * @return The {@link System#nanoTime()} the frame was received at
+     */
+    public long getReceivedNanoTime() {
+        return receivedNanoTime;
+    }
+
+    /**
+     * @return The {@link System#currentTimeMillis()} the frame was received at
+     */
+    public long getReceivedEpochMillis() {
+        return receivedEpochMillis;
+    }
+
+    /**
+     * @return Which run of the connector the frame was written by, counting from 0 for the first run in the journal,
+     *         only the nano times of frames from the same run can be compared
+     */
+    public int getRun() {
+        return run;
+    }
+
+    /**
+     * @return The details of the market the frames are from, as written by {@link FrameJournal#writeProduct(Product)}
+     * @throws UncheckedIOException If there are no details in the directory of the journal
+     */
+    public Product readProduct() {
+        Path path = directory.resolve(PRODUCT_FILE);
+        try {
+            return Json.decodeValue(Buffer.buffer(Files.readAllBytes(path)), Product.class);
+        } catch (IOException e) {
+            throw new UncheckedIOException(format("Failed to read the market details from [%s]", path), e);
+        }
+    }
+
+    private static ByteBuffer mapSegment(Path path) {
+        ByteBuffer mapped;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (IOException e) {
+            throw new UncheckedIOException(format("Failed to read the journal segment [%s]", path), e);
+        }
+        mapped.order(ByteOrder.LITTLE_ENDIAN);
+        if (mapped.capacity() < SEGMENT_HEADER_LENGTH || mapped.getInt(0) != MAGIC || mapped.getInt(4) != VERSION) {
+            throw new IllegalStateException(format("[%s] is not a version %d journal segment", path, VERSION));
+        }
+        return mapped;
+    }
+}
@@ -0,0 +1,127 @@
+package com.afcrowther.coinbase.connector.journal;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.vertx.core.Handler;
+import io.vertx.core.buffer.Buffer;
+
+import java.util.concurrent.locks.LockSupport;
+
+import static java.lang.String.format;
+
+/**
+ * <p>
+ *     Feeds the frames of a journal (see {@link FrameJournal}) back through a handler, in the order they were
+ *     received, either as fast as possible, or with the gaps between them as they were received (sped up or slowed
+ *     down by the speed provided). This lets us reproduce what happened on a live run, or test how the order books and
+ *     printers cope with far more messages than the live feed gives us, without a network connection.
+ * </p>
+ * <p>
+ *     Each frame is copied into the same Buffer, so replaying doesn't allocate once the Buffer has grown to the size of
+ *     the biggest frame, and the handler sees a Buffer backed by an array, the same as the frames the WebSocket gives
+ *     us. The Buffer is only valid until the handler returns.
+ * </p>
+ * <p>
+ *     A journal can hold more than one run of the connector. The nano times of each run come from a different JVM, so
+ *     when the run changes the timing carries on from the last frame of the previous run, skipping the time between
+ *     the runs when nothing was recorded.
+ * </p>
+ */
+public class JournalReplayer implements Runnable {
+
+    /**
+     * The speed to replay the frames as fast as they can be handled, rather than keeping the gaps between them.
+     */
+    public static final double AS_FAST_AS_POSSIBLE = 0;
+
+    // waits longer than this are parked, shorter ones are spun, as a park can overshoot by around this much
+    private static final long SPIN_NANOS = 100_000;
+    private static final int INITIAL_FRAME_SIZE = 4096;
+
+    private final JournalReader reader;
+    private final Handler<Buffer> handler;
+    private final double speed;
+    private final ByteBuf frameBytes;
+    private final Buffer frame;
+    private volatile long replayedFrames;
+    private volatile long elapsedNanos;
+
+    /**
+     * @param reader  The journal to replay
+     * @param handler The handler to give each frame to, on the thread that runs the replayer
+     * @param speed   How many times faster than they were received to replay the frames, e.g. 1 to keep the original
+     *                timing or 10 for ten times faster, or {@link #AS_FAST_AS_POSSIBLE}
+     */
+    public JournalReplayer(JournalReader reader, Handler<Buffer> handler, double speed) {
+        if (speed < 0 || Double.isNaN(speed) || Double.isInfinite(speed)) {
+            throw new IllegalArgumentException(format("Replay speed [%s] must be a positive number, or 0 for as " +
+                    "fast as possible", speed));
+        }
+        this.reader = reader;
+        this.handler = handler;
+        this.speed = speed;
+        this.frameBytes = Unpooled.buffer(INITIAL_FRAME_SIZE);
+        this.frame = Buffer.buffer(frameBytes);
+    }
+
+    /**
+     * Replays every frame of the journal, returning once the last one has been handled.
+     */
+    @Override
+    public void run() {
+        long start = System.nanoTime();
+        long firstReceived = 0;
+        // added to the nano times of the current run, to carry on the timeline of the runs before it
+        long runOffset = 0;
+        long lastReceived = 0;
+        int run = 0;
+        long frames = 0;
+        while (reader.next()) {
+            if (speed != AS_FAST_AS_POSSIBLE) {
+                long received = reader.getReceivedNanoTime();
+                if (frames == 0) {
+                    firstReceived = received;
+                    run = reader.getRun();
+                } else {
+                    if (reader.getRun() != run) {
+                        // the first frame of a new run follows straight on from the last frame of the previous one
+                        run = reader.getRun();
+                        runOffset = lastReceived - received;
+                    }
+                    waitUntil(start + (long) ((received + runOffset - firstReceived) / speed));
+                }
+                lastReceived = received + runOffset;
+            }
+            frameBytes.clear();
+            frameBytes.writeBytes(reader.getFrame());
+            handler.handle(frame);
+            replayedFrames = ++frames;
+        }
+        elapsedNanos = System.nanoTime() - start;
+    }
+
+    /**
+     * @return The number of frames handled so far
+     */
+    public long getReplayedFrames() {
+        return replayedFrames;
+    }
+
+    /**
+     * @return How long the replay took, once it has finished
+     */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    private static void waitUntil(long deadline) {
+        long remaining;
+        while ((remaining = deadline - System.nanoTime()) > 0) {
+            if (remaining > SPIN_NANOS) {
+                LockSupport.parkNanos(remaining - SPIN_NANOS);
+            } else {
+                Thread.onSpinWait();
+            }
+        }
+    }
+}
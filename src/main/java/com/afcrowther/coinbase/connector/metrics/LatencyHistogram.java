@@ -0,0 +1,141 @@
+package com.afcrowther.coinbase.connector.metrics;
+
+import java.util.Arrays;
+
+/**
+ * <p>
+ *     A histogram of latencies in nanoseconds, laid out the same way as an HdrHistogram: every value below 256 has a
+ *     bucket of its own, and past that each power of 2 is split into 128 linear buckets, so each value is recorded to
+ *     within 1% of itself, from a nanosecond up to centuries, in one fixed array of counts. Recording is an index
+ *     calculation and an increment, without allocating.
+ * </p>
+ * <p>
+ *     Not thread safe, see {@link LatencyRecorder} for recording on one thread and reading on another.
+ * </p>
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 8;
+    // the values below this each get a bucket of their own
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int HALF_SUB_BUCKET_COUNT = SUB_BUCKET_COUNT / 2;
+    // enough buckets for Long.MAX_VALUE
+    private static final int BUCKET_COUNT = indexOf(Long.MAX_VALUE) + 1;
+
+    private final long[] counts;
+    private long totalCount;
+    private long sum;
+    private long min;
+    private long max;
+
+    public LatencyHistogram() {
+        this.counts = new long[BUCKET_COUNT];
+        reset();
+    }
+
+    /**
+     * @param value The latency, in nanoseconds, anything below 0 (e.g. from clocks that disagree) is recorded as 0
+     */
+    public void record(long value) {
+        long nanos = Math.max(0, value);
+        counts[indexOf(nanos)]++;
+        totalCount++;
+        sum += nanos;
+        if (nanos < min) {
+            min = nanos;
+        }
+        if (nanos > max) {
+            max = nanos;
+        }
+    }
+
+    /**
+     * Adds every value recorded by the histogram given to this one.
+     */
+    public void add(LatencyHistogram other) {
+        if (other.totalCount == 0) {
+            return;
+        }
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] += other.counts[i];
+        }
+        totalCount += other.totalCount;
+        sum += other.sum;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    public void reset() {
+        if (totalCount != 0) {
+            Arrays.fill(counts, 0);
+        }
+        totalCount = 0;
+        sum = 0;
+        min = Long.MAX_VALUE;
+        max = 0;
+    }
+
+    public long getTotalCount() {
+        return totalCount;
+    }
+
+    /**
+     * @return The lowest value recorded, 0 if nothing has been recorded
+     */
+    public long getMin() {
+        return totalCount == 0 ? 0 : min;
+    }
+
+    /**
+     * @return The highest value recorded, 0 if nothing has been recorded
+     */
+    public long getMax() {
+        return max;
+    }
+
+    /**
+     * @return The mean of the values recorded, 0 if nothing has been recorded
+     */
+    public double getMean() {
+        return totalCount == 0 ? 0 : (double) sum / totalCount;
+    }
+
+    /**
+     * @param percentile The percentile, e.g. 99.9
+     * @return The value that the percentile of the values recorded are at or below, to within the precision of the
+     *         histogram, 0 if nothing has been recorded
+     */
+    public long getValueAtPercentile(double percentile) {
+        if (totalCount == 0) {
+            return 0;
+        }
+        long countAtPercentile = Math.max(1, (long) Math.ceil(Math.min(percentile, 100) / 100 * totalCount));
+        long count = 0;
+        for (int i = 0; i < counts.length; i++) {
+            count += counts[i];
+            if (count >= countAtPercentile) {
+                return Math.min(highestEquivalentValue(i), max);
+            }
+        }
+        return max;
+    }
+
+    static int indexOf(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        // keep the top bits of the value, the shift being which power of 2 the value is in
+        int shift = 63 - Long.numberOfLeadingZeros(value) - (SUB_BUCKET_BITS - 1);
+        return SUB_BUCKET_COUNT + (shift - 1) * HALF_SUB_BUCKET_COUNT + (int) (value >>> shift) - HALF_SUB_BUCKET_COUNT;
+    }
+
+    // the highest value that is recorded in the bucket given
+    static long highestEquivalentValue(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int shift = (index - SUB_BUCKET_COUNT) / HALF_SUB_BUCKET_COUNT + 1;
+        long subBucket = (index - SUB_BUCKET_COUNT) % HALF_SUB_BUCKET_COUNT + HALF_SUB_BUCKET_COUNT;
+        return (subBucket << shift) + (1L << shift) - 1;
+    }
+}
@@ -0,0 +1,60 @@
+package com.afcrowther.coinbase.connector.metrics;
+
+import java.io.PrintStream;
+import java.time.Instant;
+import java.util.List;
+import java.util.Locale;
+
+import static java.lang.String.format;
+
+/**
+ * Writes a line for each stage of each market with the latencies recorded since the last time it was called, e.g.
+ * <pre>
+ *     2021-04-28T15:27:12.001Z BTC-USD exchange-to-receive count=1412 mean=2310.4us p50=2199us p90=3015us p99=4783us p99.9=9871us max=10218us
+ * </pre>
+ * Each call starts a new interval of the latencies, it is meant to be called periodically off the hot path (allocating
+ * the lines is of no concern here).
+ */
+public class LatencyLogger {
+
+    private static final double[] PERCENTILES = { 50, 90, 99, 99.9 };
+    private static final String[] PERCENTILE_NAMES = { "p50", "p90", "p99", "p99.9" };
+    private static final long NANOS_PER_MICRO = 1_000;
+
+    private final List<MarketLatencies> latencies;
+    private final PrintStream out;
+    // reused for each interval read, the logger is only called from one thread at a time
+    private final LatencyHistogram histogram;
+
+    /**
+     * @param latencies The latencies of each market to log
+     * @param out       Where to write the lines to
+     */
+    public LatencyLogger(List<MarketLatencies> latencies, PrintStream out) {
+        this.latencies = latencies;
+        this.out = out;
+        this.histogram = new LatencyHistogram();
+    }
+
+    public synchronized void log() {
+        String time = Instant.now().toString();
+        for (MarketLatencies market : latencies) {
+            for (LatencyStage stage : LatencyStage.values()) {
+                market.getIntervalHistogram(stage, histogram);
+                StringBuilder line = new StringBuilder(time).append(' ').append(market.getMarket()).append(' ')
+                        .append(stage.getStageName())
+                        .append(" count=").append(histogram.getTotalCount())
+                        .append(format(Locale.ROOT, " mean=%.1fus", histogram.getMean() / NANOS_PER_MICRO));
+                for (int i = 0; i < PERCENTILES.length; i++) {
+                    line.append(' ').append(PERCENTILE_NAMES[i]).append('=')
+                            .append(histogram.getValueAtPercentile(PERCENTILES[i]) / NANOS_PER_MICRO).append("us");
+                }
+                line.append(" max=").append(histogram.getMax() / NANOS_PER_MICRO).append("us")
+                        .append(System.lineSeparator());
+                // the line and its separator in one write, as the shards can share the file (see MetricsLogger)
+                out.print(line);
+            }
+        }
+        out.flush();
+    }
+}
@@ -0,0 +1,87 @@
+package com.afcrowther.coinbase.connector.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>
+ *     Records latencies from one thread into a {@link LatencyHistogram}, while any other thread can take the values
+ *     recorded since it last did so, without the recording thread ever waiting or allocating, and without losing or
+ *     double counting a value at the boundary of an interval.
+ * </p>
+ * <p>
+ *     There are two histograms, the one being recorded to and the one that was recorded to up to the last interval.
+ *     The reader swaps them over, then waits for any recording that may still be on the old one to finish, which the
+ *     recording thread tells it by counting its way in and out of each recording in two epochs that are flipped by the
+ *     reader (the same as the WriterReaderPhaser of the HdrHistogram Recorder).
+ * </p>
+ */
+public class LatencyRecorder {
+
+    private final AtomicLong startEpoch;
+    // a recording that starts in an even epoch (0 upwards) ends in the even epoch, and in the odd epoch (MIN_VALUE
+    // upwards) if it starts in the odd epoch
+    private final AtomicLong evenEndEpoch;
+    private final AtomicLong oddEndEpoch;
+    private volatile LatencyHistogram active;
+    private LatencyHistogram inactive;
+
+    public LatencyRecorder() {
+        this.startEpoch = new AtomicLong();
+        this.evenEndEpoch = new AtomicLong();
+        this.oddEndEpoch = new AtomicLong(Long.MIN_VALUE);
+        this.active = new LatencyHistogram();
+        this.inactive = new LatencyHistogram();
+    }
+
+    /**
+     * Only to be called from the single recording thread.
+     *
+     * @param value The latency, in nanoseconds
+     */
+    public void record(long value) {
+        long epoch = startEpoch.getAndIncrement();
+        active.record(value);
+        if (epoch < 0) {
+            oddEndEpoch.getAndIncrement();
+        } else {
+            evenEndEpoch.getAndIncrement();
+        }
+    }
+
+    /**
+     * Copies the values recorded since the last call into the histogram given, and starts a new interval.
+     *
+     * @param target The histogram to copy the interval into, which is reset first
+     * @return The histogram given
+     */
+    public synchronized LatencyHistogram getIntervalHistogram(LatencyHistogram target) {
+        inactive.reset();
+        LatencyHistogram interval = active;
+        active = inactive;
+        inactive = interval;
+        flipEpochs();
+        target.reset();
+        target.add(interval);
+        return target;
+    }
+
+    /**
+     * @return A new histogram of the values recorded since the last call, see {@link #getIntervalHistogram(
+     *         LatencyHistogram)}
+     */
+    public LatencyHistogram getIntervalHistogram() {
+        return getIntervalHistogram(new LatencyHistogram());
+    }
+
+    // waits for any recording started before the flip, which may be on the histogram that was just swapped out
+    private void flipEpochs() {
+        boolean nextEpochIsEven = startEpoch.get() < 0;
+        long nextEpochStart = nextEpochIsEven ? 0 : Long.MIN_VALUE;
+        (nextEpochIsEven ? evenEndEpoch : oddEndEpoch).set(nextEpochStart);
+        long startedBeforeFlip = startEpoch.getAndSet(nextEpochStart);
+        AtomicLong endEpoch = nextEpochIsEven ? oddEndEpoch : evenEndEpoch;
+        while (endEpoch.get() != startedBeforeFlip) {
+            Thread.yield();
+        }
+    }
+}
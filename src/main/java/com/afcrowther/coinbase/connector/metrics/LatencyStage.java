@@ -0,0 +1,33 @@
+package com.afcrowther.coinbase.connector.metrics;
+
+/**
+ * The stages the latency of each l2update is split into, from the exchange to the console, to tell whether any lag is
+ * in the network, the parsing and order book, or the printing.
+ */
+public enum LatencyStage {
+
+    /**
+     * From the "time" the exchange gave the message to the frame reaching the message handler, which includes the
+     * difference between the exchange's clock and ours.
+     */
+    EXCHANGE_TO_RECEIVE("exchange-to-receive"),
+    /**
+     * From the frame reaching the message handler to the order book being updated.
+     */
+    RECEIVE_TO_BOOK_UPDATED("receive-to-book-updated"),
+    /**
+     * From the order book being updated to it being printed, including the time spent in the ring buffer and any time
+     * it was held back by the conflation of the printer.
+     */
+    BOOK_UPDATED_TO_PRINTED("book-updated-to-printed");
+
+    private final String stageName;
+
+    LatencyStage(String stageName) {
+        this.stageName = stageName;
+    }
+
+    public String getStageName() {
+        return stageName;
+    }
+}
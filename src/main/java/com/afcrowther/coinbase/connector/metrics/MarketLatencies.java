@@ -0,0 +1,74 @@
+package com.afcrowther.coinbase.connector.metrics;
+
+import java.time.Instant;
+
+/**
+ * <p>
+ *     The latencies of the l2updates of one market, a {@link LatencyRecorder} for each {@link LatencyStage}. The stages
+ *     within the connector are timed with {@link System#nanoTime()}, the exchange's "time" is compared to the wall clock
+ *     instead, through an offset from the nano time taken once, up front, so that timing the frame doesn't cost any
+ *     more than a nano time does.
+ * </p>
+ * <p>
+ *     Each stage is recorded from one thread (the first two from the thread of the message handler, the last from the
+ *     printer's), and can be read from any other, at any time, each read taking the values recorded since the last.
+ * </p>
+ */
+public class MarketLatencies {
+
+    private static final long NANOS_PER_SECOND = 1_000_000_000;
+    private static final long NANOS_PER_MICRO = 1_000;
+
+    private final String market;
+    private final LatencyRecorder[] recorders;
+    // System.nanoTime() + this is the nanoseconds since the epoch
+    private final long epochNanosOffset;
+
+    public MarketLatencies(String market) {
+        this.market = market;
+        this.recorders = new LatencyRecorder[LatencyStage.values().length];
+        for (int i = 0; i < recorders.length; i++) {
+            recorders[i] = new LatencyRecorder();
+        }
+        // Instant.now() has the microseconds of the wall clock, System.currentTimeMillis() only the milliseconds
+        Instant now = Instant.now();
+        this.epochNanosOffset = now.getEpochSecond() * NANOS_PER_SECOND + now.getNano() - System.nanoTime();
+    }
+
+    public String getMarket() {
+        return market;
+    }
+
+    /**
+     * @param stage   The stage
+     * @param latency The time taken, in nanoseconds
+     */
+    public void record(LatencyStage stage, long latency) {
+        recorders[stage.ordinal()].record(latency);
+    }
+
+    /**
+     * @param exchangeTime The "time" the exchange gave the message, in microseconds since the epoch
+     * @param receivedTime The {@link System#nanoTime()} the frame was received
+     */
+    public void recordExchangeToReceive(long exchangeTime, long receivedTime) {
+        record(LatencyStage.EXCHANGE_TO_RECEIVE, receivedTime + epochNanosOffset - exchangeTime * NANOS_PER_MICRO);
+    }
+
+    /**
+     * Copies the latencies of the stage recorded since the last call for the stage into the histogram given, and
+     * starts a new interval.
+     *
+     * @return The histogram given
+     */
+    public LatencyHistogram getIntervalHistogram(LatencyStage stage, LatencyHistogram target) {
+        return recorders[stage.ordinal()].getIntervalHistogram(target);
+    }
+
+    /**
+     * @return A new histogram of the latencies of the stage recorded since the last call for the stage
+     */
+    public LatencyHistogram getIntervalHistogram(LatencyStage stage) {
+        return recorders[stage.ordinal()].getIntervalHistogram();
+    }
+}
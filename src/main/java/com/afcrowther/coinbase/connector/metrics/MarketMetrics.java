@@ -0,0 +1,169 @@
+package com.afcrowther.coinbase.connector.metrics;
+
+import com.afcrowther.coinbase.connector.publisher.BookEventProcessor;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+/**
+ * <p>
+ *     The counters and gauges of one market. Each counter is a {@link PaddedCounter} with a single writer, the counters
+ *     of the messages and changes are only counted by the message handler, and the printed events by the printer
+ *     thread, so counting never contends with anything, even with a JMX client reading them all the while. The events
+ *     published are the snapshots plus the depth updates, so they are worked out from those rather than counted.
+ * </p>
+ * <p>
+ *     The gauges of the printer are read from its {@link BookEventProcessor} as they are asked for, nothing is counted
+ *     for them on the hot path.
+ * </p>
+ */
+public class MarketMetrics implements MarketMetricsMBean {
+
+    private static final String DOMAIN = "com.afcrowther.coinbase.connector";
+
+    private final String market;
+    private final PaddedCounter snapshotMessages;
+    private final PaddedCounter l2UpdateMessages;
+    private final PaddedCounter errorMessages;
+    private final PaddedCounter levelsChanged;
+    private final PaddedCounter depthUpdates;
+    private final PaddedCounter printedEvents;
+    private volatile BookEventProcessor printerProcessor;
+    private ObjectName objectName;
+
+    public MarketMetrics(String market) {
+        this.market = market;
+        this.snapshotMessages = new PaddedCounter();
+        this.l2UpdateMessages = new PaddedCounter();
+        this.errorMessages = new PaddedCounter();
+        this.levelsChanged = new PaddedCounter();
+        this.depthUpdates = new PaddedCounter();
+        this.printedEvents = new PaddedCounter();
+    }
+
+    /**
+     * @param printerProcessor The processor the printer is run by, for the gauges of the printer
+     */
+    public void setPrinterProcessor(BookEventProcessor printerProcessor) {
+        this.printerProcessor = printerProcessor;
+    }
+
+    /**
+     * Registers these metrics with the platform MBean server.
+     */
+    public void register() {
+        try {
+            objectName = ObjectName.getInstance(DOMAIN + ":type=MarketMetrics,market=" + market);
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+        } catch (JMException e) {
+            throw new IllegalStateException("Failed to register the metrics of market " + market, e);
+        }
+    }
+
+    /**
+     * Unregisters these metrics from the platform MBean server, if they were registered.
+     */
+    public void unregister() {
+        if (objectName == null) {
+            return;
+        }
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            if (server.isRegistered(objectName)) {
+                server.unregisterMBean(objectName);
+            }
+        } catch (JMException e) {
+            throw new IllegalStateException("Failed to unregister the metrics of market " + market, e);
+        }
+        objectName = null;
+    }
+
+    public PaddedCounter snapshotMessages() {
+        return snapshotMessages;
+    }
+
+    public PaddedCounter l2UpdateMessages() {
+        return l2UpdateMessages;
+    }
+
+    public PaddedCounter errorMessages() {
+        return errorMessages;
+    }
+
+    public PaddedCounter levelsChanged() {
+        return levelsChanged;
+    }
+
+    public PaddedCounter depthUpdates() {
+        return depthUpdates;
+    }
+
+    public PaddedCounter printedEvents() {
+        return printedEvents;
+    }
+
+    @Override
+    public String getMarket() {
+        return market;
+    }
+
+    @Override
+    public long getSnapshotMessages() {
+        return snapshotMessages.get();
+    }
+
+    @Override
+    public long getL2UpdateMessages() {
+        return l2UpdateMessages.get();
+    }
+
+    @Override
+    public long getErrorMessages() {
+        return errorMessages.get();
+    }
+
+    @Override
+    public long getLevelsChanged() {
+        return levelsChanged.get();
+    }
+
+    @Override
+    public long getDepthUpdates() {
+        return depthUpdates.get();
+    }
+
+    @Override
+    public long getPublishedEvents() {
+        // every snapshot and every depth update is published, so there is no need to count them again
+        return snapshotMessages.get() + depthUpdates.get();
+    }
+
+    @Override
+    public long getPrintedEvents() {
+        return printedEvents.get();
+    }
+
+    @Override
+    public long getSkippedEvents() {
+        BookEventProcessor processor = printerProcessor;
+        return processor == null ? 0 : processor.getSkippedEvents();
+    }
+
+    @Override
+    public long getConflatedEvents() {
+        // whatever was published and isn't accounted for otherwise, the printed events are read first so that events
+        // printed while we read the rest are counted as conflated rather than going negative
+        long printed = getPrintedEvents();
+        long backlog = getPrinterBacklog();
+        long skipped = getSkippedEvents();
+        return Math.max(0, getPublishedEvents() - printed - backlog - skipped);
+    }
+
+    @Override
+    public long getPrinterBacklog() {
+        BookEventProcessor processor = printerProcessor;
+        return processor == null ? 0 : processor.getBacklog();
+    }
+}
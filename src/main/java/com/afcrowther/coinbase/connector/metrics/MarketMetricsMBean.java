@@ -0,0 +1,60 @@
+package com.afcrowther.coinbase.connector.metrics;
+
+/**
+ * The counters and gauges of one market, as seen over JMX (e.g. with JConsole or VisualVM, which plot the rate of each
+ * counter), registered as "com.afcrowther.coinbase.connector:type=MarketMetrics,market=BTC-USD".
+ */
+public interface MarketMetricsMBean {
+
+    String getMarket();
+
+    /**
+     * @return The number of snapshot messages received
+     */
+    long getSnapshotMessages();
+
+    /**
+     * @return The number of l2update messages received
+     */
+    long getL2UpdateMessages();
+
+    /**
+     * @return The number of error messages received
+     */
+    long getErrorMessages();
+
+    /**
+     * @return The number of changes (levels set or removed) the l2updates carried
+     */
+    long getLevelsChanged();
+
+    /**
+     * @return The number of l2updates that changed the levels of the order book we track
+     */
+    long getDepthUpdates();
+
+    /**
+     * @return The number of order book events published to the printer
+     */
+    long getPublishedEvents();
+
+    /**
+     * @return The number of order book events printed
+     */
+    long getPrintedEvents();
+
+    /**
+     * @return The number of events overwritten in the ring buffer before the printer got to them
+     */
+    long getSkippedEvents();
+
+    /**
+     * @return The number of events the printer was given but passed over for a later one, by its conflation
+     */
+    long getConflatedEvents();
+
+    /**
+     * @return The number of events published that the printer has yet to get to
+     */
+    long getPrinterBacklog();
+}
@@ -0,0 +1,115 @@
+package com.afcrowther.coinbase.connector.metrics;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static java.lang.String.format;
+
+/**
+ * Writes a line for each market with the rate of each of its counters since the last time it was called, and the
+ * current value of its gauges, e.g.
+ * <pre>
+ *     2021-04-28T15:27:12.001Z BTC-USD snapshot=0.0/s l2update=4775.2/s error=0.0/s levels-changed=5012.8/s depth-updates=4100.3/s published=4100.3/s printed=323.0/s skipped=0 conflated=37770 backlog=0
+ * </pre>
+ * It is meant to be called periodically off the hot path (allocating the lines is of no concern here). Each line is
+ * written with a single write, so the loggers of more than one shard can append to the same file without their lines
+ * running into each other.
+ */
+public class MetricsLogger {
+
+    // the market and the l2update rate of a line
+    private static final Pattern L2UPDATE_RATE = Pattern.compile("^\\S+ (\\S+) .*\\bl2update=([0-9.]+)/s");
+
+    private static final String[] RATE_NAMES = { "snapshot", "l2update", "error", "levels-changed", "depth-updates",
+            "published", "printed" };
+
+    private final List<MarketMetrics> metrics;
+    private final PrintStream out;
+    private final LongSupplier nanoClock;
+    // the counters of each market as of the last line, in the order of the rate names
+    private final long[][] lastCounts;
+    private long lastLogged;
+
+    /**
+     * @param metrics The metrics of each market to log
+     * @param out     Where to write the lines to
+     */
+    public MetricsLogger(List<MarketMetrics> metrics, PrintStream out) {
+        this(metrics, out, System::nanoTime);
+    }
+
+    // only to be used for testing, so that time can be controlled
+    MetricsLogger(List<MarketMetrics> metrics, PrintStream out, LongSupplier nanoClock) {
+        this.metrics = metrics;
+        this.out = out;
+        this.nanoClock = nanoClock;
+        this.lastCounts = new long[metrics.size()][RATE_NAMES.length];
+        this.lastLogged = nanoClock.getAsLong();
+    }
+
+    public synchronized void log() {
+        String time = Instant.now().toString();
+        long now = nanoClock.getAsLong();
+        double elapsedSeconds = Math.max(1, now - lastLogged) / (double) TimeUnit.SECONDS.toNanos(1);
+        lastLogged = now;
+        for (int i = 0; i < metrics.size(); i++) {
+            MarketMetrics market = metrics.get(i);
+            long[] counts = { market.getSnapshotMessages(), market.getL2UpdateMessages(), market.getErrorMessages(),
+                    market.getLevelsChanged(), market.getDepthUpdates(), market.getPublishedEvents(),
+                    market.getPrintedEvents() };
+            StringBuilder line = new StringBuilder(time).append(' ').append(market.getMarket());
+            for (int j = 0; j < counts.length; j++) {
+                line.append(' ').append(RATE_NAMES[j]).append('=')
+                        .append(format(Locale.ROOT, "%.1f/s", (counts[j] - lastCounts[i][j]) / elapsedSeconds));
+                lastCounts[i][j] = counts[j];
+            }
+            line.append(" skipped=").append(market.getSkippedEvents())
+                    .append(" conflated=").append(market.getConflatedEvents())
+                    .append(" backlog=").append(market.getPrinterBacklog())
+                    .append(System.lineSeparator());
+            out.print(line);
+        }
+        out.flush();
+    }
+
+    /**
+     * Reads back the l2update rates of a file written to by a metrics logger, e.g. by an earlier run, for splitting
+     * the markets between the shards by how busy each is (see
+     * {@link com.afcrowther.coinbase.connector.shard.ShardAssignment#RATE}).
+     *
+     * @param file The file the lines were written to
+     * @return The average l2update rate of each market over all of its lines
+     */
+    public static Map<String, Double> readL2UpdateRates(Path file) {
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException(format("Failed to read the metrics log [%s]", file), e);
+        }
+        Map<String, double[]> sumsAndCounts = new HashMap<>();
+        for (String line : lines) {
+            Matcher matcher = L2UPDATE_RATE.matcher(line);
+            if (matcher.find()) {
+                double[] sumAndCount = sumsAndCounts.computeIfAbsent(matcher.group(1), market -> new double[2]);
+                sumAndCount[0] += Double.parseDouble(matcher.group(2));
+                sumAndCount[1]++;
+            }
+        }
+        Map<String, Double> rates = new HashMap<>();
+        sumsAndCounts.forEach((market, sumAndCount) -> rates.put(market, sumAndCount[0] / sumAndCount[1]));
+        return rates;
+    }
+}
@@ -0,0 +1,56 @@
+package com.afcrowther.coinbase.connector.metrics;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * <p>
+ *     A counter written by a single thread and read by any other, padded so that it sits on a cache line of its own
+ *     (the padding is split across the class hierarchy, as the JVM keeps the fields of a superclass ahead of those of
+ *     its subclasses). That way the counters of the hot path never false share with each other or with whatever else
+ *     was allocated next to them, and the readers only ever pull in the line of the counter they are reading.
+ * </p>
+ * <p>
+ *     Counting is a plain read and an ordered write, with no locked instruction, as there is only the one writer.
+ * </p>
+ */
+public class PaddedCounter extends PaddedCounterValue {
+
+    private static final VarHandle VALUE;
+
+    static {
+        try {
+            VALUE = MethodHandles.lookup().findVarHandle(PaddedCounterValue.class, "value", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    protected long p9, p10, p11, p12, p13, p14, p15;
+
+    /**
+     * Only to be called from the single writing thread.
+     */
+    public void increment() {
+        add(1);
+    }
+
+    /**
+     * Only to be called from the single writing thread.
+     */
+    public void add(long delta) {
+        VALUE.setRelease(this, (long) VALUE.get(this) + delta);
+    }
+
+    public long get() {
+        return (long) VALUE.getAcquire(this);
+    }
+}
+
+abstract class PaddedCounterLhsPadding {
+    protected long p1, p2, p3, p4, p5, p6, p7;
+}
+
+abstract class PaddedCounterValue extends PaddedCounterLhsPadding {
+    protected long value;
+}
@@ -1,36 +1,104 @@
 package com.afcrowther.coinbase.connector.printer;
 
 import com.afcrowther.coinbase.connector.domain.coinbase.Product;
+import com.afcrowther.coinbase.connector.jfr.PrintEvent;
+import com.afcrowther.coinbase.connector.service.Decimal64;
 import com.afcrowther.coinbase.connector.service.LongUtils;
+import com.afcrowther.coinbase.connector.service.OrderBookAggregatorService;
 
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
 import java.util.concurrent.atomic.AtomicLongArray;
 
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+
+/**
+ * <p>
+ *     Prints the order book to the console. Each frame is rendered straight into a byte array that is allocated once,
+ *     up front, and then written to stdout with a single channel write, so printing a frame does not allocate, and
+ *     there is no encoding of chars or locking of {@link System#out} along the way.
+ * </p>
+ * <p>
+ *     Each instance has its own frame, so more than one printer can be used at once, but a single instance should not
+ *     be called from more than one thread at a time.
+ * </p>
+ */
 public class ConsolePrinter implements Printer {
 
-    private static final char TAB = '\t';
-    private static final char NEW_LINE = '\n';
-    private static final String TITLE_LINE = "Price \t\t\t Quantity";
-    private static final String SPREAD = "Spread: ";
-    // rudimentary attempt at making the
-    private static final StringBuilder HEADER =
-            new StringBuilder("\n\n\n\n\n\n\n\n\n\n\n\n\n\n\n\n\n\n\n\n\n\n\n\n\n\n\n\n\n" + TITLE_LINE + NEW_LINE);
-    private static final int HEADER_LENGTH = HEADER.length();
-    private static final String ANSI_RED = "\u001B[31m";
-    private static final String ANSI_GREEN = "\u001B[32m";
-    private static final String ANSI_RESET = "\u001B[0m";
+    private static final byte TAB = '\t';
+    private static final byte NEW_LINE = '\n';
+    private static final byte[] TITLE_LINE = "Price \t\t\t Quantity".getBytes(ISO_8859_1);
+    private static final byte[] SPREAD = "Spread: ".getBytes(ISO_8859_1);
+    private static final byte[] NOT_AVAILABLE = "N/A".getBytes(ISO_8859_1);
+    // the lines we print on top of the order book levels themselves (title, ask/bid separators, spread)
+    private static final int NON_LEVEL_LINES = 9;
+    private static final byte[] ANSI_RED = "\u001B[31m".getBytes(ISO_8859_1);
+    private static final byte[] ANSI_GREEN = "\u001B[32m".getBytes(ISO_8859_1);
+    private static final byte[] ANSI_RESET = "\u001B[0m".getBytes(ISO_8859_1);
+    // a long has at most 19 digits, plus the decimal point, for both the price and quantity, plus the tabs and new line
+    private static final int MAX_LEVEL_LINE_LENGTH = 2 * 20 + 3;
+    // the colour codes, separators and the spread line
+    private static final int MAX_NON_LEVEL_LENGTH = 64;
 
+    private final String market;
     private final int priceDecimals;
     private final int quantityDecimals;
+    private final WritableByteChannel out;
+    // the flight recorder event, reused for every print as the printer is only called from the one thread
+    private final PrintEvent printEvent;
+    // rudimentary attempt at making the order book appear in the same place on the console, push the previous order book
+    // off the screen with enough new lines to cover every level we print, these lines and the title are rendered once
+    // at the start of the frame, and each order book is rendered after them
+    private final byte[] frame;
+    private final ByteBuffer frameBuffer;
+    private final int headerLength;
 
     public ConsolePrinter() {
-        this.priceDecimals = 0;
-        this.quantityDecimals = 0;
+        this(null, 0, 0, OrderBookAggregatorService.DEFAULT_DEPTH, stdout());
     }
 
     public ConsolePrinter(Product marketInfo) {
+        this(marketInfo, OrderBookAggregatorService.DEFAULT_DEPTH);
+    }
+
+    /**
+     * @param marketInfo The market details, used to find the number of decimal places of the prices and quantities
+     * @param depth      The number of levels of each side of the order book that will be printed
+     */
+    public ConsolePrinter(Product marketInfo, int depth) {
+        this(marketInfo, depth, stdout());
+    }
+
+    // only to be used for testing, so that the output can be captured
+    ConsolePrinter(Product marketInfo, int depth, WritableByteChannel out) {
         // get the number of decimal places for price and quantity
-        this.priceDecimals = getNumberOfDecimalPlaces(marketInfo.getQuoteIncrement());
-        this.quantityDecimals = getNumberOfDecimalPlaces(marketInfo.getBaseIncrement());
+        this(marketInfo.getId(), getNumberOfDecimalPlaces(marketInfo.getQuoteIncrement()),
+                getNumberOfDecimalPlaces(marketInfo.getBaseIncrement()), depth, out);
+    }
+
+    private ConsolePrinter(String market, int priceDecimals, int quantityDecimals, int depth,
+                           WritableByteChannel out) {
+        this.market = market;
+        this.priceDecimals = priceDecimals;
+        this.quantityDecimals = quantityDecimals;
+        this.out = out;
+        this.printEvent = new PrintEvent();
+        // the market is named above the title when it is known, as more than one market can be printed to the console
+        byte[] marketLine = market == null ? new byte[0] : (market + (char) NEW_LINE).getBytes(ISO_8859_1);
+        int newLines = depth * 2 + NON_LEVEL_LINES + (market == null ? 0 : 1);
+        this.headerLength = newLines + marketLine.length + TITLE_LINE.length + 1;
+        this.frame = new byte[headerLength + depth * 2 * MAX_LEVEL_LINE_LENGTH + MAX_NON_LEVEL_LENGTH];
+        this.frameBuffer = ByteBuffer.wrap(frame);
+        for (int i = 0; i < newLines; i++) {
+            frame[i] = NEW_LINE;
+        }
+        System.arraycopy(marketLine, 0, frame, newLines, marketLine.length);
+        System.arraycopy(TITLE_LINE, 0, frame, newLines + marketLine.length, TITLE_LINE.length);
+        frame[headerLength - 1] = NEW_LINE;
     }
 
     @Override
@@ -39,92 +107,110 @@ public class ConsolePrinter implements Printer {
     }
 
     /**
-     * This is an attempt at printing the current state of the order book (top 10 bid and ask levels) to the console.
+     * This is an attempt at printing the current state of the order book (top bid and ask levels) to the console.
      *
      * We need the priceDecimals and quantityDecimals arguments so that we can convert properly back from longs to the
      * String representation of the price and quantities, including the decimal places.
-     *
-     * This should not be called from more than one thread as it uses a shared StringBuilder object which is not safe
-     * for concurrent modification.
      */
     @Override
     public void printOrderBook(AtomicLongArray asks, AtomicLongArray bids) {
-        printLine(buildOrderBookStringRepresentation(asks, bids));
-        clean();
-    }
-
-    protected void clean() {
-        HEADER.delete(HEADER_LENGTH, HEADER.length());
+        boolean recording = printEvent.isEnabled();
+        if (recording) {
+            printEvent.begin();
+        }
+        int length = render(asks, bids);
+        frameBuffer.clear().limit(length);
+        try {
+            while (frameBuffer.hasRemaining()) {
+                out.write(frameBuffer);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to print the order book", e);
+        }
+        if (recording) {
+            printEvent.end();
+            printEvent.market = market;
+            printEvent.bytes = length;
+            printEvent.commit();
+        }
     }
 
-    protected StringBuilder buildOrderBookStringRepresentation(AtomicLongArray asks, AtomicLongArray bids) {
+    /**
+     * Renders the order book into the frame, after the header.
+     *
+     * @return The length of the frame, including the header
+     */
+    protected int render(AtomicLongArray asks, AtomicLongArray bids) {
         long lowAsk = -1;
         long highBid = -1;
-        HEADER.append(ANSI_RED);
-        HEADER.append(NEW_LINE);
+        int index = put(ANSI_RED, headerLength);
+        frame[index++] = NEW_LINE;
         for (int i = 0; i < asks.length(); i += 2) {
-            if (asks.get(i) != -1) {
-                LongUtils.appendLongToStringBuilder(asks.get(i), HEADER, priceDecimals);
-                HEADER.append(TAB);
-                HEADER.append(TAB);
-                LongUtils.appendLongToStringBuilder(asks.get(i + 1), HEADER, quantityDecimals);
-                HEADER.append(NEW_LINE);
-                lowAsk = asks.get(i);
+            long price = asks.get(i);
+            if (price != -1) {
+                index = putLevel(price, asks.get(i + 1), index);
+                lowAsk = price;
             }
         }
-        HEADER.append(ANSI_RESET);
-        HEADER.append(ANSI_GREEN);
-        HEADER.append(NEW_LINE);
+        index = put(ANSI_RESET, index);
+        index = put(ANSI_GREEN, index);
+        frame[index++] = NEW_LINE;
         for (int i = 0; i < bids.length(); i += 2) {
-            if (bids.get(i) != -1) {
-                LongUtils.appendLongToStringBuilder(bids.get(i), HEADER, priceDecimals);
-                HEADER.append(TAB);
-                HEADER.append(TAB);
-                LongUtils.appendLongToStringBuilder(bids.get(i + 1), HEADER, quantityDecimals);
-                HEADER.append(NEW_LINE);
+            long price = bids.get(i);
+            if (price != -1) {
+                index = putLevel(price, bids.get(i + 1), index);
                 if (highBid == -1) {
-                    highBid = bids.get(i);
+                    highBid = price;
                 }
             }
         }
-        HEADER.append(ANSI_RESET);
-        HEADER.append(NEW_LINE);
-        HEADER.append(NEW_LINE);
-        HEADER.append(SPREAD);
+        index = put(ANSI_RESET, index);
+        frame[index++] = NEW_LINE;
+        frame[index++] = NEW_LINE;
+        index = put(SPREAD, index);
         if (highBid != -1 && lowAsk != -1) {
-            LongUtils.appendLongToStringBuilder(lowAsk - highBid, HEADER, priceDecimals);
+            index = LongUtils.putLong(lowAsk - highBid, frame, index, priceDecimals);
         } else {
-            HEADER.append("N/A");
+            index = put(NOT_AVAILABLE, index);
         }
-        HEADER.append(NEW_LINE);
-        return HEADER;
+        frame[index++] = NEW_LINE;
+        return index;
     }
 
     /**
-     * The following is the kind of expected format of the base and quote increments:
-     * "base_increment": "0.00000001",
-     * "quote_increment": "0.01000000"
-     *
-     * We have to return 8 for the first and 2 for the second in these cases.
+     * @return The frame the order book is rendered into, see {@link #render(AtomicLongArray, AtomicLongArray)}
+     */
+    protected byte[] getFrame() {
+        return frame;
+    }
+
+    private int putLevel(long price, long quantity, int index) {
+        index = LongUtils.putLong(price, frame, index, priceDecimals);
+        frame[index++] = TAB;
+        frame[index++] = TAB;
+        index = LongUtils.putLong(quantity, frame, index, quantityDecimals);
+        frame[index++] = NEW_LINE;
+        return index;
+    }
+
+    private int put(byte[] bytes, int index) {
+        System.arraycopy(bytes, 0, frame, index, bytes.length);
+        return index + bytes.length;
+    }
+
+    static WritableByteChannel stdout() {
+        // the channel of the stdout file descriptor, writes go straight to the descriptor without any buffering
+        return new FileOutputStream(FileDescriptor.out).getChannel();
+    }
+
+    /**
+     * The order books normalize prices and quantities to the scale of the quote and base increments, so the number of
+     * decimal places we print is that scale, see {@link Decimal64#scaleOf(String)}.
      *
-     * @param numberString
-     * @return
+     * @param numberString The increment of the market, e.g. "0.01000000"
+     * @return The number of decimal places, 2 in this example
      */
-    protected int getNumberOfDecimalPlaces(String numberString) {
-        int decimalIdx = numberString.indexOf('.');
-        if (decimalIdx != -1) {
-            int fromTheEnd = numberString.length() - 1 - decimalIdx;
-            char[] chars = numberString.toCharArray();
-            int trailingZeroes = 0;
-            for (int i = chars.length - 1; i > 0; i--) {
-                if (chars[i] == '0') {
-                    trailingZeroes++;
-                } else {
-                    break;
-                }
-            }
-            return fromTheEnd - trailingZeroes;
-        }
-        return 0;
+    protected static int getNumberOfDecimalPlaces(String numberString) {
+        return Decimal64.scaleOf(numberString);
     }
 }
@@ -0,0 +1,246 @@
+package com.afcrowther.coinbase.connector.printer;
+
+import com.afcrowther.coinbase.connector.domain.coinbase.Product;
+import com.afcrowther.coinbase.connector.jfr.PrintEvent;
+import com.afcrowther.coinbase.connector.service.Decimal64;
+import com.afcrowther.coinbase.connector.service.LongUtils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+
+/**
+ * <p>
+ *     Prints the order book to the console, like {@link ConsolePrinter}, but rather than pushing the previous order book
+ *     off the screen and printing every level again each time, the order book is drawn once and from then on only the
+ *     rows that have changed since the last print are rewritten, by moving the cursor to them with ANSI escape codes.
+ *     Most updates only change one or two levels, so this writes a small fraction of the bytes of a full print, which
+ *     matters when the terminal is the bottleneck (e.g. over SSH or in tmux).
+ * </p>
+ * <p>
+ *     Every level has a fixed row on the screen, the asks are kept against the bottom of their rows and the bids against
+ *     the top of theirs, so that the best ask and bid always sit either side of the gap between them. The cursor is left
+ *     on the row below the order book after each print.
+ * </p>
+ * <p>
+ *     Like {@link ConsolePrinter} an instance should not be called from more than one thread at a time, and anything
+ *     else printed to the same terminal will be drawn over.
+ * </p>
+ */
+public class DiffConsolePrinter implements Printer {
+
+    private static final byte TAB = '\t';
+    private static final byte ESCAPE = 0x1B;
+    private static final byte[] CLEAR_SCREEN = "\u001B[H\u001B[2J".getBytes(ISO_8859_1);
+    private static final byte[] ERASE_LINE = "\u001B[2K".getBytes(ISO_8859_1);
+    private static final byte[] MOVE_TO_ROW_END = ";1H".getBytes(ISO_8859_1);
+    private static final byte[] TITLE_LINE = "Price \t\t\t Quantity".getBytes(ISO_8859_1);
+    private static final byte[] SPREAD = "Spread: ".getBytes(ISO_8859_1);
+    private static final byte[] NOT_AVAILABLE = "N/A".getBytes(ISO_8859_1);
+    private static final byte[] ANSI_RED = "\u001B[31m".getBytes(ISO_8859_1);
+    private static final byte[] ANSI_GREEN = "\u001B[32m".getBytes(ISO_8859_1);
+    private static final byte[] ANSI_RESET = "\u001B[0m".getBytes(ISO_8859_1);
+    // the rows are counted from 1, the title is on the first row and the asks start on the row after it
+    private static final int FIRST_ASK_ROW = 2;
+    // moving the cursor (at most 10 digits for the row), erasing the line, the colour codes, and a long of at most 19
+    // digits plus the decimal point for both the price and quantity, plus the tabs
+    private static final int MAX_ROW_LENGTH = 15 + 4 + 5 + 2 * 20 + 2 + 4;
+    // clearing the screen and the title
+    private static final int MAX_HEADER_LENGTH = 32;
+    // an empty level, or a level or spread not yet drawn, can never match a level or spread to draw
+    private static final long NOT_SHOWN = Long.MIN_VALUE;
+    private static final long NO_SPREAD = Long.MAX_VALUE;
+
+    private final String market;
+    private final int priceDecimals;
+    private final int quantityDecimals;
+    private final int depth;
+    private final WritableByteChannel out;
+    // the levels on each row as they are now on the screen, the asks' rows first and then the bids'
+    private final long[] shownPrices;
+    private final long[] shownQuantities;
+    // the levels on each row as they should be after this print, only kept as fields so they are allocated once
+    private final long[] prices;
+    private final long[] quantities;
+    private final byte[] frame;
+    private final ByteBuffer frameBuffer;
+    // the flight recorder event, reused for every print as the printer is only called from the one thread
+    private final PrintEvent printEvent;
+    private long shownSpread;
+    private boolean drawn;
+
+    /**
+     * @param marketInfo The market details, used to find the number of decimal places of the prices and quantities
+     * @param depth      The number of levels of each side of the order book that will be printed
+     */
+    public DiffConsolePrinter(Product marketInfo, int depth) {
+        this(marketInfo, depth, ConsolePrinter.stdout());
+    }
+
+    // only to be used for testing, so that the output can be captured
+    DiffConsolePrinter(Product marketInfo, int depth, WritableByteChannel out) {
+        this.market = marketInfo.getId();
+        this.priceDecimals = Decimal64.scaleOf(marketInfo.getQuoteIncrement());
+        this.quantityDecimals = Decimal64.scaleOf(marketInfo.getBaseIncrement());
+        this.depth = depth;
+        this.out = out;
+        this.shownPrices = new long[depth * 2];
+        this.shownQuantities = new long[depth * 2];
+        this.prices = new long[depth * 2];
+        this.quantities = new long[depth * 2];
+        // every level, the spread, and moving the cursor below the order book
+        this.frame = new byte[MAX_HEADER_LENGTH + (depth * 2 + 2) * MAX_ROW_LENGTH];
+        this.frameBuffer = ByteBuffer.wrap(frame);
+        this.printEvent = new PrintEvent();
+    }
+
+    @Override
+    public void printLine(String line) {
+        System.out.println(line);
+    }
+
+    @Override
+    public void printOrderBook(AtomicLongArray asks, AtomicLongArray bids) {
+        boolean recording = printEvent.isEnabled();
+        if (recording) {
+            printEvent.begin();
+        }
+        int length = render(asks, bids);
+        if (length != 0) {
+            frameBuffer.clear().limit(length);
+            try {
+                while (frameBuffer.hasRemaining()) {
+                    out.write(frameBuffer);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to print the order book", e);
+            }
+        }
+        // a print that changed nothing on the screen is still recorded, with nothing written
+        if (recording) {
+            printEvent.end();
+            printEvent.market = market;
+            printEvent.bytes = length;
+            printEvent.commit();
+        }
+    }
+
+    /**
+     * Renders the changes to the screen since the last call into the frame, the first call draws the whole order book.
+     *
+     * @return The length of the frame, 0 if nothing has changed
+     */
+    protected int render(AtomicLongArray asks, AtomicLongArray bids) {
+        int index = 0;
+        if (!drawn) {
+            index = put(CLEAR_SCREEN, index);
+            index = put(TITLE_LINE, index);
+            Arrays.fill(shownPrices, NOT_SHOWN);
+            Arrays.fill(shownQuantities, NOT_SHOWN);
+            shownSpread = NOT_SHOWN;
+            drawn = true;
+        }
+
+        // asks are best last, fill their rows from the bottom up so that the best ask is always on the last of them
+        int row = depth;
+        for (int i = asks.length() - 2; i >= 0 && row > 0; i -= 2) {
+            long price = asks.get(i);
+            if (price != -1) {
+                row--;
+                prices[row] = price;
+                quantities[row] = asks.get(i + 1);
+            }
+        }
+        while (row > 0) {
+            row--;
+            prices[row] = -1;
+            quantities[row] = -1;
+        }
+        // bids are best first, fill their rows from the top down
+        row = depth;
+        for (int i = 0; i < bids.length() && row < depth * 2; i += 2) {
+            long price = bids.get(i);
+            if (price != -1) {
+                prices[row] = price;
+                quantities[row] = bids.get(i + 1);
+                row++;
+            }
+        }
+        for (; row < depth * 2; row++) {
+            prices[row] = -1;
+            quantities[row] = -1;
+        }
+
+        for (row = 0; row < depth * 2; row++) {
+            if (prices[row] != shownPrices[row] || quantities[row] != shownQuantities[row]) {
+                index = putLevel(row, index);
+                shownPrices[row] = prices[row];
+                shownQuantities[row] = quantities[row];
+            }
+        }
+
+        long lowAsk = prices[depth - 1];
+        long highBid = prices[depth];
+        long spread = lowAsk != -1 && highBid != -1 ? lowAsk - highBid : NO_SPREAD;
+        if (spread != shownSpread) {
+            index = moveTo(spreadRow(), index);
+            index = put(ERASE_LINE, index);
+            index = put(SPREAD, index);
+            if (spread != NO_SPREAD) {
+                index = LongUtils.putLong(spread, frame, index, priceDecimals);
+            } else {
+                index = put(NOT_AVAILABLE, index);
+            }
+            shownSpread = spread;
+        }
+
+        if (index > 0) {
+            index = moveTo(spreadRow() + 1, index);
+        }
+        return index;
+    }
+
+    /**
+     * @return The frame the changes are rendered into, see {@link #render(AtomicLongArray, AtomicLongArray)}
+     */
+    protected byte[] getFrame() {
+        return frame;
+    }
+
+    private int putLevel(int row, int index) {
+        // the bids' rows start after the gap below the asks
+        index = moveTo(FIRST_ASK_ROW + row + (row < depth ? 0 : 1), index);
+        index = put(ERASE_LINE, index);
+        if (prices[row] != -1) {
+            index = put(row < depth ? ANSI_RED : ANSI_GREEN, index);
+            index = LongUtils.putLong(prices[row], frame, index, priceDecimals);
+            frame[index++] = TAB;
+            frame[index++] = TAB;
+            index = LongUtils.putLong(quantities[row], frame, index, quantityDecimals);
+            index = put(ANSI_RESET, index);
+        }
+        return index;
+    }
+
+    private int spreadRow() {
+        // the asks, the gap, the bids and another gap
+        return FIRST_ASK_ROW + depth * 2 + 2;
+    }
+
+    private int moveTo(int row, int index) {
+        frame[index++] = ESCAPE;
+        frame[index++] = '[';
+        index = LongUtils.putLong(row, frame, index, 0);
+        return put(MOVE_TO_ROW_END, index);
+    }
+
+    private int put(byte[] bytes, int index) {
+        System.arraycopy(bytes, 0, frame, index, bytes.length);
+        return index + bytes.length;
+    }
+}
@@ -0,0 +1,65 @@
+package com.afcrowther.coinbase.connector.printer;
+
+import com.afcrowther.coinbase.connector.domain.coinbase.Product;
+
+import java.util.Locale;
+
+import static java.lang.String.format;
+
+/**
+ * The available {@link Printer} implementations for the order book, so that how it is drawn on the console can be
+ * picked at startup (e.g. "--printer diff").
+ */
+public enum PrinterType {
+
+    /**
+     * Prints the whole order book each time, see {@link ConsolePrinter}.
+     */
+    FULL("full") {
+        @Override
+        public Printer create(Product marketInfo, int depth) {
+            return new ConsolePrinter(marketInfo, depth);
+        }
+    },
+    /**
+     * Only rewrites the rows that have changed since the last print, see {@link DiffConsolePrinter}.
+     */
+    DIFF("diff") {
+        @Override
+        public Printer create(Product marketInfo, int depth) {
+            return new DiffConsolePrinter(marketInfo, depth);
+        }
+    };
+
+    private final String typeName;
+
+    PrinterType(String typeName) {
+        this.typeName = typeName;
+    }
+
+    /**
+     * @param marketInfo The details of the market, as given by the Coinbase Pro REST API
+     * @param depth      The number of levels of each side of the order book that will be printed
+     * @return A new printer for the order book of the market
+     */
+    public abstract Printer create(Product marketInfo, int depth);
+
+    public String getTypeName() {
+        return typeName;
+    }
+
+    /**
+     * @param typeName The name of the printer as given on the command line, e.g. "diff"
+     * @return The matching printer type
+     * @throws IllegalArgumentException If there is no printer type with that name
+     */
+    public static PrinterType fromTypeName(String typeName) {
+        String normalized = typeName.toLowerCase(Locale.ROOT);
+        for (PrinterType type : values()) {
+            if (type.typeName.equals(normalized)) {
+                return type;
+            }
+        }
+        throw new IllegalArgumentException(format("Unknown printer [%s]", typeName));
+    }
+}
@@ -0,0 +1,49 @@
+package com.afcrowther.coinbase.connector.printer;
+
+import com.afcrowther.coinbase.connector.metrics.LatencyStage;
+import com.afcrowther.coinbase.connector.metrics.MarketLatencies;
+import com.afcrowther.coinbase.connector.metrics.MarketMetrics;
+import com.afcrowther.coinbase.connector.publisher.BookEvent;
+import com.afcrowther.coinbase.connector.publisher.BookEventHandler;
+
+/**
+ * Prints the order book for each event it is given, which events those are is decided by the
+ * {@link com.afcrowther.coinbase.connector.publisher.ConflatingEventHandler} in front of it, as printing every event
+ * would only ever make the printer fall further behind the feed.
+ */
+public class PrintingEventHandler implements BookEventHandler {
+
+    private final Printer printer;
+    // the time from the order book being updated to it being printed is recorded here, if the latencies are on
+    private final MarketLatencies latencies;
+    // counts the events printed, only ever written from here, or null to not count them
+    private final MarketMetrics metrics;
+
+    public PrintingEventHandler(Printer printer) {
+        this(printer, null, null);
+    }
+
+    /**
+     * @param printer   The printer of the order book
+     * @param latencies Where to record the {@link LatencyStage#BOOK_UPDATED_TO_PRINTED} latency of each event printed,
+     *                  or null to not record it
+     * @param metrics   Where to count the events printed, or null to not count them
+     */
+    public PrintingEventHandler(Printer printer, MarketLatencies latencies, MarketMetrics metrics) {
+        this.printer = printer;
+        this.latencies = latencies;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void onEvent(BookEvent event, long sequence, boolean endOfBatch) {
+        printer.printOrderBook(event.getAsks(), event.getBids());
+        if (metrics != null) {
+            metrics.printedEvents().increment();
+        }
+        // only the events of l2updates carry the time, not those of the snapshot
+        if (latencies != null && event.getBookUpdatedTime() != 0) {
+            latencies.record(LatencyStage.BOOK_UPDATED_TO_PRINTED, System.nanoTime() - event.getBookUpdatedTime());
+        }
+    }
+}
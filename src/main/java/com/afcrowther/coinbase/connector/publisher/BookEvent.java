@@ -0,0 +1,114 @@
+package com.afcrowther.coinbase.connector.publisher;
+
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * <p>
+ *     A fixed size slot of the {@link BookEventRingBuffer}, holding the top levels of the order book after an update,
+ *     in the same layout as the order book output arrays. Slots are allocated once, up front, and then overwritten by
+ *     the producer as it goes round the ring.
+ * </p>
+ * <p>
+ *     Each slot is guarded by its own sequence, the sequence of the event it holds, or {@link #WRITING} while the
+ *     producer is overwriting it (a sequence lock per slot). A consumer copies an event out of the slot and then
+ *     checks the sequence hasn't moved, if it has the producer has lapped the consumer and the copy may be torn (see
+ *     {@link BookEventRingBuffer#read(long, BookEvent)}).
+ * </p>
+ */
+public class BookEvent {
+
+    static final long WRITING = -1;
+
+    private final AtomicLong sequence;
+    private final AtomicLongArray bids;
+    private final AtomicLongArray asks;
+    // the System.nanoTime() the order book was updated, only set when the latencies are being recorded
+    private final AtomicLong bookUpdatedTime;
+
+    public BookEvent(int outputLength) {
+        this.sequence = new AtomicLong(WRITING);
+        this.bids = new AtomicLongArray(outputLength);
+        this.asks = new AtomicLongArray(outputLength);
+        this.bookUpdatedTime = new AtomicLong();
+    }
+
+    /**
+     * @return The top bids, best first, every even index holds a price and every odd index its quantity
+     */
+    public AtomicLongArray getBids() {
+        return bids;
+    }
+
+    /**
+     * @return The top asks, best last, every even index holds a price and every odd index its quantity
+     */
+    public AtomicLongArray getAsks() {
+        return asks;
+    }
+
+    /**
+     * @return The {@link System#nanoTime()} the order book was updated, or 0 if it wasn't given by the producer
+     */
+    public long getBookUpdatedTime() {
+        return bookUpdatedTime.getPlain();
+    }
+
+    /**
+     * @return The sequence of the event held, or {@link #WRITING}
+     */
+    public long getSequence() {
+        return sequence.getAcquire();
+    }
+
+    /**
+     * Only to be called by the single producer.
+     */
+    void write(long newSequence, AtomicLongArray bidsIn, AtomicLongArray asksIn, long bookUpdatedTimeIn) {
+        sequence.setOpaque(WRITING);
+        // the levels must not be written before the consumers can see that the slot is being written
+        VarHandle.storeStoreFence();
+        copy(bidsIn, bids);
+        copy(asksIn, asks);
+        bookUpdatedTime.setPlain(bookUpdatedTimeIn);
+        sequence.setRelease(newSequence);
+    }
+
+    /**
+     * Copies the event held into the event provided.
+     *
+     * @return Whether the copy is of the expected sequence, and not torn by the producer overwriting the slot
+     */
+    boolean copyTo(long expectedSequence, BookEvent out) {
+        if (sequence.getAcquire() != expectedSequence) {
+            return false;
+        }
+        copy(bids, out.bids);
+        copy(asks, out.asks);
+        out.bookUpdatedTime.setPlain(bookUpdatedTime.getPlain());
+        // the levels must be read before we check that the sequence hasn't moved
+        VarHandle.loadLoadFence();
+        if (sequence.getOpaque() != expectedSequence) {
+            return false;
+        }
+        out.sequence.setPlain(expectedSequence);
+        return true;
+    }
+
+    /**
+     * Copies this event into the event provided, only for events that are not shared with the producer.
+     */
+    void copyTo(BookEvent out) {
+        copy(bids, out.bids);
+        copy(asks, out.asks);
+        out.bookUpdatedTime.setPlain(bookUpdatedTime.getPlain());
+        out.sequence.setPlain(sequence.getPlain());
+    }
+
+    private static void copy(AtomicLongArray from, AtomicLongArray to) {
+        for (int i = 0; i < from.length(); i++) {
+            to.setPlain(i, from.getPlain(i));
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.afcrowther.coinbase.connector.publisher;
+
+/**
+ * A consumer of the events published to a {@link BookEventRingBuffer}, called from the thread of its
+ * {@link BookEventProcessor}.
+ */
+public interface BookEventHandler {
+
+    /**
+     * @param event      A copy of the event, only valid until this method returns
+     * @param sequence   The sequence of the event
+     * @param endOfBatch Whether this is the latest event that was available when the batch was drained, a handler that
+     *                   only cares about the latest state of the book can skip any other event
+     */
+    void onEvent(BookEvent event, long sequence, boolean endOfBatch);
+
+    /**
+     * Called each time the processor finds no new events, before it waits, so that handlers can do any time based work
+     * (such as passing on an event that was held back) from the processor thread.
+     */
+    default void onIdle() {
+    }
+
+    /**
+     * @return Whether the handler only wants the latest event of each batch, in which case the processor only copies
+     *         that one and passes over the rest, so a backlog costs the same to catch up on however big it is
+     */
+    default boolean latestOnly() {
+        return false;
+    }
+}
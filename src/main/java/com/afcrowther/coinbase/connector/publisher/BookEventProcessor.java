@@ -0,0 +1,145 @@
+package com.afcrowther.coinbase.connector.publisher;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * <p>
+ *     Runs a single {@link BookEventHandler} on its own thread, draining whatever events have been published to the
+ *     {@link BookEventRingBuffer} since it last looked in one batch, and waiting with its {@link WaitStrategy} when
+ *     there is nothing new.
+ * </p>
+ * <p>
+ *     If the producer laps the processor (a slow handler, or a big burst of updates) the events that have been
+ *     overwritten are skipped and the processor carries on from the oldest event still held, so the handler always
+ *     catches back up to the latest state of the book. The number of events skipped is kept in
+ *     {@link #getSkippedEvents()}.
+ * </p>
+ * <p>
+ *     A handler that only wants the latest event of each batch (see {@link BookEventHandler#latestOnly()}) is only
+ *     given that one, without the rest of the batch being copied out of the ring buffer, so however far behind it falls
+ *     it catches up with a single copy. The events passed over are conflated, not skipped.
+ * </p>
+ * <p>
+ *     Rather than running on a thread of its own, a processor can also be polled along with others from a single
+ *     thread, see {@link BookEventProcessorGroup}.
+ * </p>
+ */
+public class BookEventProcessor implements Runnable {
+
+    private final BookEventRingBuffer ringBuffer;
+    private final BookEventHandler handler;
+    private final WaitStrategy waitStrategy;
+    private final boolean latestOnly;
+    // the copy of the current event handed to the handler, only touched by the processor thread
+    private final BookEvent event;
+    private volatile boolean running;
+    private volatile Thread thread;
+    private volatile long skippedEvents;
+    private long nextSequence;
+    // the next sequence, published once a batch for the readers of the backlog
+    private final AtomicLong publishedNextSequence;
+
+    public BookEventProcessor(BookEventRingBuffer ringBuffer, BookEventHandler handler, WaitStrategy waitStrategy) {
+        this.ringBuffer = ringBuffer;
+        this.handler = handler;
+        this.waitStrategy = waitStrategy;
+        this.latestOnly = handler.latestOnly();
+        this.event = new BookEvent(ringBuffer.getOutputLength());
+        this.publishedNextSequence = new AtomicLong();
+        this.running = true;
+    }
+
+    @Override
+    public void run() {
+        thread = Thread.currentThread();
+        int idleCount = 0;
+        while (running) {
+            if (poll()) {
+                idleCount = 0;
+            } else {
+                waitStrategy.idle(idleCount++);
+            }
+        }
+    }
+
+    /**
+     * Hands every event published since the last poll to the handler, or lets the handler know there were none. This
+     * must only ever be called from the one thread, and not while the processor is being run.
+     *
+     * @return Whether there were any new events
+     */
+    boolean poll() {
+        long available = ringBuffer.getCursor();
+        if (available < nextSequence) {
+            handler.onIdle();
+            return false;
+        }
+        if (latestOnly) {
+            drainLatest(available);
+        } else {
+            drain(available);
+        }
+        return true;
+    }
+
+    /**
+     * Hands every event up to the sequence provided to the handler.
+     */
+    private void drain(long available) {
+        long oldest = available - ringBuffer.getCapacity() + 1;
+        if (nextSequence < oldest) {
+            skippedEvents += oldest - nextSequence;
+            nextSequence = oldest;
+        }
+        while (nextSequence <= available) {
+            if (!ringBuffer.read(nextSequence, event)) {
+                // lapped while draining, the next pass will skip ahead past anything else that has been overwritten
+                skippedEvents++;
+                nextSequence++;
+                break;
+            }
+            handler.onEvent(event, nextSequence, nextSequence == available);
+            nextSequence++;
+        }
+        publishedNextSequence.setRelease(nextSequence);
+    }
+
+    /**
+     * Hands only the latest event to the handler, passing over everything before it.
+     */
+    private void drainLatest(long available) {
+        while (!ringBuffer.read(available, event)) {
+            // lapped while copying, so every slot before it has been overwritten as well, go again from the new latest
+            available = ringBuffer.getCursor();
+        }
+        handler.onEvent(event, available, true);
+        nextSequence = available + 1;
+        publishedNextSequence.setRelease(nextSequence);
+    }
+
+    /**
+     * Stops the processor once the current batch has been handled.
+     */
+    public void halt() {
+        running = false;
+        Thread processorThread = thread;
+        if (processorThread != null) {
+            LockSupport.unpark(processorThread);
+        }
+    }
+
+    /**
+     * @return The number of events published that the handler has yet to be given (or skip), as of the last batch
+     */
+    public long getBacklog() {
+        return Math.max(0, ringBuffer.getCursor() + 1 - publishedNextSequence.getAcquire());
+    }
+
+    /**
+     * @return The number of events that were overwritten before the handler could be given them
+     */
+    public long getSkippedEvents() {
+        return skippedEvents;
+    }
+}
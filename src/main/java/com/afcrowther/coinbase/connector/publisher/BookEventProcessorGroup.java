@@ -0,0 +1,58 @@
+package com.afcrowther.coinbase.connector.publisher;
+
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * <p>
+ *     Runs several {@link BookEventProcessor}s on one thread, polling each in turn and only waiting with its
+ *     {@link WaitStrategy} once none of them have any new events. With more than one market this keeps the printing
+ *     to a single thread, so the frames of the markets are written to the console one after the other, and there is
+ *     only one thread to spin however many markets there are.
+ * </p>
+ * <p>
+ *     Each processor keeps its own sequence, skipped events and backlog, so the gauges of each market are the same as
+ *     when it has a thread to itself.
+ * </p>
+ */
+public class BookEventProcessorGroup implements Runnable {
+
+    private final BookEventProcessor[] processors;
+    private final WaitStrategy waitStrategy;
+    private volatile boolean running;
+    private volatile Thread thread;
+
+    public BookEventProcessorGroup(List<BookEventProcessor> processors, WaitStrategy waitStrategy) {
+        this.processors = processors.toArray(new BookEventProcessor[0]);
+        this.waitStrategy = waitStrategy;
+        this.running = true;
+    }
+
+    @Override
+    public void run() {
+        thread = Thread.currentThread();
+        int idleCount = 0;
+        while (running) {
+            boolean polled = false;
+            for (BookEventProcessor processor : processors) {
+                polled |= processor.poll();
+            }
+            if (polled) {
+                idleCount = 0;
+            } else {
+                waitStrategy.idle(idleCount++);
+            }
+        }
+    }
+
+    /**
+     * Stops the processors once the current batch of each has been handled.
+     */
+    public void halt() {
+        running = false;
+        Thread groupThread = thread;
+        if (groupThread != null) {
+            LockSupport.unpark(groupThread);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.afcrowther.coinbase.connector.publisher;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * <p>
+ *     A single producer, multiple consumer ring buffer of preallocated {@link BookEvent} slots, used to hand each
+ *     change to the top of the order book off the event loop, in the style of the LMAX Disruptor -
+ *     https://lmax-exchange.github.io/disruptor/
+ * </p>
+ * <p>
+ *     Unlike the Disruptor the producer is never held back by slow consumers, the event loop must not block, so it
+ *     simply keeps overwriting the oldest slot. Each slot carries the sequence of the event it holds, so a consumer
+ *     that falls a whole lap behind can tell that the event it wanted has gone, and skips ahead to the oldest event
+ *     still held (see {@link BookEventProcessor}). Publishing copies the levels into the next slot and moves the
+ *     cursor, so it never allocates.
+ * </p>
+ */
+public class BookEventRingBuffer {
+
+    private final BookEvent[] slots;
+    private final int mask;
+    // the sequence of the latest event published, -1 before the first
+    private final AtomicLong cursor;
+
+    /**
+     * @param capacity     The number of slots, must be a power of 2
+     * @param outputLength The length of the bids and asks arrays being published, a price and a quantity per level
+     */
+    public BookEventRingBuffer(int capacity, int outputLength) {
+        if (capacity < 1 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Ring buffer capacity must be a power of 2");
+        }
+        this.slots = new BookEvent[capacity];
+        for (int i = 0; i < capacity; i++) {
+            slots[i] = new BookEvent(outputLength);
+        }
+        this.mask = capacity - 1;
+        this.cursor = new AtomicLong(-1);
+    }
+
+    /**
+     * Publishes a copy of the levels provided, only to be called from the single producing thread.
+     *
+     * @param bids The top bids, in the layout produced by the order book
+     * @param asks The top asks, in the layout produced by the order book
+     * @return The sequence of the event published
+     */
+    public long publish(AtomicLongArray bids, AtomicLongArray asks) {
+        return publish(bids, asks, 0);
+    }
+
+    /**
+     * Publishes a copy of the levels provided, along with the time the order book was updated, for measuring how long
+     * the consumers take to get to it. Only to be called from the single producing thread.
+     *
+     * @param bids            The top bids, in the layout produced by the order book
+     * @param asks            The top asks, in the layout produced by the order book
+     * @param bookUpdatedTime The {@link System#nanoTime()} the order book was updated
+     * @return The sequence of the event published
+     */
+    public long publish(AtomicLongArray bids, AtomicLongArray asks, long bookUpdatedTime) {
+        long next = cursor.getPlain() + 1;
+        slots[(int) next & mask].write(next, bids, asks, bookUpdatedTime);
+        cursor.setRelease(next);
+        return next;
+    }
+
+    /**
+     * Copies the event with the sequence provided into the event provided.
+     *
+     * @param sequence The sequence of the event, which must already be published
+     * @param out      The event to copy into
+     * @return Whether the event was copied, false if it has already been overwritten by a newer event
+     */
+    public boolean read(long sequence, BookEvent out) {
+        return slots[(int) sequence & mask].copyTo(sequence, out);
+    }
+
+    /**
+     * @return The sequence of the latest event published, -1 if nothing has been published yet
+     */
+    public long getCursor() {
+        return cursor.getAcquire();
+    }
+
+    public int getCapacity() {
+        return slots.length;
+    }
+
+    /**
+     * @return The length of the bids and asks arrays of each event
+     */
+    public int getOutputLength() {
+        return slots[0].getBids().length();
+    }
+}
@@ -0,0 +1,104 @@
+package com.afcrowther.coinbase.connector.publisher;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * <p>
+ *     Sits between the {@link BookEventProcessor} and a consumer, and only passes on the events allowed by its
+ *     {@link ConflationPolicy}.
+ * </p>
+ * <p>
+ *     For {@link ConflationPolicy#MAX_RATE} the latest event is kept in a pending copy while the interval is running,
+ *     and is passed on by whichever comes first once the interval is up, the next event or the next time the processor
+ *     finds the ring buffer empty ({@link #onIdle()}), so it is driven entirely by the consumer's own thread. Only the
+ *     last event of each batch is copied, as any other event of the batch is already out of date.
+ * </p>
+ * <p>
+ *     For both {@link ConflationPolicy#LATEST} and {@link ConflationPolicy#MAX_RATE} the processor is told that only
+ *     the latest event is wanted (see {@link #latestOnly()}), so it doesn't copy the rest of the batch out of the ring
+ *     buffer either.
+ * </p>
+ */
+public class ConflatingEventHandler implements BookEventHandler {
+
+    private final BookEventHandler delegate;
+    private final ConflationPolicy policy;
+    private final long intervalNanos;
+    private final LongSupplier nanoClock;
+    // the latest event held back by the max rate policy
+    private final BookEvent pending;
+    private long pendingSequence;
+    private boolean hasPending;
+    private long lastDelivered;
+
+    /**
+     * @param delegate     The consumer
+     * @param policy       Which events the consumer is given
+     * @param maxRate      For {@link ConflationPolicy#MAX_RATE}, the most events per second the consumer is given
+     * @param outputLength The length of the bids and asks arrays of each event
+     */
+    public ConflatingEventHandler(BookEventHandler delegate, ConflationPolicy policy, int maxRate,
+                                  int outputLength) {
+        this(delegate, policy, maxRate, outputLength, System::nanoTime);
+    }
+
+    // only to be used for testing, so that time can be controlled
+    ConflatingEventHandler(BookEventHandler delegate, ConflationPolicy policy, int maxRate, int outputLength,
+                           LongSupplier nanoClock) {
+        if (policy == ConflationPolicy.MAX_RATE && maxRate < 1) {
+            throw new IllegalArgumentException("Max rate must be at least 1 per second");
+        }
+        this.delegate = delegate;
+        this.policy = policy;
+        this.intervalNanos = policy == ConflationPolicy.MAX_RATE ? TimeUnit.SECONDS.toNanos(1) / maxRate : 0;
+        this.nanoClock = nanoClock;
+        this.pending = new BookEvent(outputLength);
+        // allow the first event straight through
+        this.lastDelivered = nanoClock.getAsLong() - intervalNanos;
+    }
+
+    @Override
+    public void onEvent(BookEvent event, long sequence, boolean endOfBatch) {
+        switch (policy) {
+            case EVERY_UPDATE:
+                delegate.onEvent(event, sequence, endOfBatch);
+                break;
+            case LATEST:
+                if (endOfBatch) {
+                    delegate.onEvent(event, sequence, true);
+                }
+                break;
+            case MAX_RATE:
+                if (endOfBatch) {
+                    event.copyTo(pending);
+                    pendingSequence = sequence;
+                    hasPending = true;
+                    deliverIfDue();
+                }
+                break;
+        }
+    }
+
+    @Override
+    public boolean latestOnly() {
+        return policy != ConflationPolicy.EVERY_UPDATE;
+    }
+
+    @Override
+    public void onIdle() {
+        if (hasPending) {
+            deliverIfDue();
+        }
+        delegate.onIdle();
+    }
+
+    private void deliverIfDue() {
+        long now = nanoClock.getAsLong();
+        if (now - lastDelivered >= intervalNanos) {
+            lastDelivered = now;
+            hasPending = false;
+            delegate.onEvent(pending, pendingSequence, true);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.afcrowther.coinbase.connector.publisher;
+
+import java.util.Locale;
+
+import static java.lang.String.format;
+
+/**
+ * How many of the events published to the {@link BookEventRingBuffer} a consumer is given, see
+ * {@link ConflatingEventHandler}. This lets each consumer pick what it can keep up with, without the slower consumers
+ * (such as the terminal) holding back the rate the feed is taken in at.
+ */
+public enum ConflationPolicy {
+
+    /**
+     * Every event that the consumer hasn't been lapped on.
+     */
+    EVERY_UPDATE("every-update"),
+    /**
+     * Only the latest event of each batch drained from the ring buffer, so the consumer is only ever given the latest
+     * state of the book, as often as it can keep up with.
+     */
+    LATEST("latest"),
+    /**
+     * The latest event, at most once per interval. An event held back is still given to the consumer once the
+     * interval is up, even if no newer event arrives, so the latest state of the book is never lost.
+     */
+    MAX_RATE("max-rate");
+
+    private final String policyName;
+
+    ConflationPolicy(String policyName) {
+        this.policyName = policyName;
+    }
+
+    public String getPolicyName() {
+        return policyName;
+    }
+
+    /**
+     * @param policyName The name of the policy as given on the command line, e.g. "max-rate"
+     * @return The matching policy
+     * @throws IllegalArgumentException If there is no policy with that name
+     */
+    public static ConflationPolicy fromPolicyName(String policyName) {
+        String normalized = policyName.toLowerCase(Locale.ROOT);
+        for (ConflationPolicy policy : values()) {
+            if (policy.policyName.equals(normalized)) {
+                return policy;
+            }
+        }
+        throw new IllegalArgumentException(format("Unknown conflation policy [%s]", policyName));
+    }
+}
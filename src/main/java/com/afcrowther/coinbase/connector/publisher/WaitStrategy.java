@@ -0,0 +1,87 @@
+package com.afcrowther.coinbase.connector.publisher;
+
+import java.util.Locale;
+import java.util.concurrent.locks.LockSupport;
+
+import static java.lang.String.format;
+
+/**
+ * How a {@link BookEventProcessor} waits for new events when it has caught up with the producer. The producer never
+ * signals the consumers, so every strategy polls, trading latency against the CPU burnt while the book is quiet.
+ */
+public enum WaitStrategy {
+
+    /**
+     * Spin on the cursor, the lowest latency, but uses a whole core.
+     */
+    BUSY_SPIN("busy-spin") {
+        @Override
+        void idle(int idleCount) {
+            Thread.onSpinWait();
+        }
+    },
+    /**
+     * Spin for a short while, then give up the core to other threads on each poll.
+     */
+    YIELD("yield") {
+        @Override
+        void idle(int idleCount) {
+            if (idleCount < SPIN_TRIES) {
+                Thread.onSpinWait();
+            } else {
+                Thread.yield();
+            }
+        }
+    },
+    /**
+     * Spin, then yield, then sleep for a short while between each poll, nearly free while the book is quiet.
+     */
+    PARK("park") {
+        @Override
+        void idle(int idleCount) {
+            if (idleCount < SPIN_TRIES) {
+                Thread.onSpinWait();
+            } else if (idleCount < SPIN_TRIES + YIELD_TRIES) {
+                Thread.yield();
+            } else {
+                LockSupport.parkNanos(PARK_NANOS);
+            }
+        }
+    };
+
+    private static final int SPIN_TRIES = 100;
+    private static final int YIELD_TRIES = 100;
+    private static final long PARK_NANOS = 100_000;
+
+    private final String strategyName;
+
+    WaitStrategy(String strategyName) {
+        this.strategyName = strategyName;
+    }
+
+    /**
+     * Called each time the consumer finds no new events.
+     *
+     * @param idleCount The number of times in a row there have been no new events
+     */
+    abstract void idle(int idleCount);
+
+    public String getStrategyName() {
+        return strategyName;
+    }
+
+    /**
+     * @param strategyName The name of the strategy as given on the command line, e.g. "busy-spin"
+     * @return The matching strategy
+     * @throws IllegalArgumentException If there is no strategy with that name
+     */
+    public static WaitStrategy fromStrategyName(String strategyName) {
+        String normalized = strategyName.toLowerCase(Locale.ROOT);
+        for (WaitStrategy strategy : values()) {
+            if (strategy.strategyName.equals(normalized)) {
+                return strategy;
+            }
+        }
+        throw new IllegalArgumentException(format("Unknown wait strategy [%s]", strategyName));
+    }
+}
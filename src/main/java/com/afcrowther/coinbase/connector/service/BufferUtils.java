@@ -2,15 +2,33 @@ package com.afcrowther.coinbase.connector.service;
 
 import io.vertx.core.buffer.Buffer;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
 import static com.afcrowther.coinbase.connector.service.UtilsConstants.LATIN_1_TO_NUMBERS;
+import static com.afcrowther.coinbase.connector.service.UtilsConstants.POWERS_OF_TEN;
 import static com.afcrowther.coinbase.connector.service.UtilsConstants.QUOTATION_MARKS;
 
 /**
  * Provides some of the helper methods we need to work with {@link Buffer} objects, such as efficient parsing and
  * conversions.
+ *
+ * Each method also has a version that works on a plain {@code byte[]}, these are the ones used on the hot path, along
+ * with a {@link BufferView} to get at the bytes of the buffer, as they avoid the per byte bounds and reference count
+ * checks of {@link Buffer#getByte(int)}.
  */
 public class BufferUtils {
 
+    // reads 8 bytes of an array as a long, with the first byte as the lowest byte of the long
+    private static final VarHandle LONG_VIEW = MethodHandles.byteArrayViewVarHandle(long[].class,
+            ByteOrder.LITTLE_ENDIAN);
+    private static final long ZEROES = 0x3030303030303030L;
+    private static final long LOW_SEVEN_BITS = 0x7F7F7F7F7F7F7F7FL;
+    // 0x76 + 10 = 0x80, so adding this to a byte of 10 or more sets its top bit
+    private static final long DIGIT_OVERFLOW = 0x7676767676767676L;
+    private static final long TOP_BITS = 0x8080808080808080L;
+
     private BufferUtils() {}
 
     /**
@@ -38,6 +56,30 @@ public class BufferUtils {
         return currentIndex + 1;
     }
 
+    /**
+     * The same as {@link #parseOrderBookLevel(Buffer, int, long[])}, but reading from a plain array (see
+     * {@link BufferView}), and normalizing the price and quantity to the scales provided (see {@link Decimal64}). A
+     * quantity with more digits than its scale is rounded up, so that it is never taken to be 0.
+     *
+     * @param bytes              The array containing the level
+     * @param startIndex         The index of the first quotation mark of the first number (the price)
+     * @param priceQuantityArray The array we will use to return the parsed level
+     * @param priceScale         The number of decimal places of the parsed price, or {@link Decimal64#UNSCALED}
+     * @param quantityScale      The number of decimal places of the parsed quantity, or {@link Decimal64#UNSCALED}
+     * @return The index that the level finished at (the closing square bracket of the level)
+     */
+    public static int parseOrderBookLevel(byte[] bytes, int startIndex, long[] priceQuantityArray, int priceScale,
+                                          int quantityScale) {
+        // skip the open quotation mark
+        int currentIndex = startIndex + 1;
+        // parse the price
+        currentIndex = parseNumber(bytes, currentIndex, priceQuantityArray, 0, priceScale, false);
+        // skip the closing quotation mark, comma, and, opening quotation mark
+        currentIndex += 3;
+        currentIndex = parseNumber(bytes, currentIndex, priceQuantityArray, 1, quantityScale, true);
+        return currentIndex + 1;
+    }
+
     /**
      * Takes a buffer and indexes between which the buffer contains only numbers and a decimal place (which will be in
      * byte representation) and converts that into a long. The decimal place will be treated as if it wasn't there, so
@@ -60,6 +102,24 @@ public class BufferUtils {
         return result;
     }
 
+    /**
+     * The same as {@link #convertBufferToLong(Buffer, int, int)}, but reading from a plain array.
+     *
+     * @param bytes The array containing the string to be converted into a long
+     * @return The converted long value
+     */
+    static long convertBytesToLong(byte[] bytes, int startIndex, int endIndex) {
+        long result = 0;
+        for (int i = startIndex; i < endIndex; i++) {
+            byte next = LATIN_1_TO_NUMBERS[bytes[i] & 0xFF];
+            if (next != -1) {
+                result *= 10;
+                result += next;
+            }
+        }
+        return result;
+    }
+
     /**
      * Parses a number given the appropriate starting index, and subsequently returns the index that the number finished
      * at (the closing quotation mark). The result will be passed back using the array and index specified in the
@@ -82,4 +142,94 @@ public class BufferUtils {
         }
         return currentIndex++;
     }
+
+    /**
+     * <p>
+     *     The same as {@link #parseNumber(Buffer, int, long[], int)}, but reading from a plain array, and 8 bytes at a
+     *     time rather than 1 (SWAR, SIMD within a register).
+     * </p>
+     * <p>
+     *     Each 8 bytes are loaded as a long, with '0' subtracted from every byte, so the digits become the values 0-9.
+     *     Adding 0x76 to each byte then sets the top bit of any byte that wasn't a digit (the decimal point or the
+     *     closing quotation mark), so the first of these is found with {@link Long#numberOfTrailingZeros(long)}. The
+     *     digits before it are shifted to the top of the long and combined into a single number with 3 multiplies. As
+     *     with the scalar version the decimal point is skipped, so the result is the same fixed point long.
+     * </p>
+     * <p>
+     *     When there are fewer than 8 bytes left in the array we fall back to parsing one byte at a time.
+     * </p>
+     * <p>
+     *     The position of the decimal point is noted as we go, so that the result can be moved to the scale provided
+     *     once the closing quotation mark is found (see {@link Decimal64#rescale(long, int, int)}).
+     * </p>
+     *
+     * Returns the index of the character of the closing quotation mark surrounding the number
+     */
+    static int parseNumber(byte[] bytes, int startIndex, long[] output, int outputIndex, int scale) {
+        return parseNumber(bytes, startIndex, output, outputIndex, scale, false);
+    }
+
+    /**
+     * The same as {@link #parseNumber(byte[], int, long[], int, int)}, but when roundUp is true any non-zero digits
+     * beyond the scale round the number up rather than being truncated (see
+     * {@link Decimal64#rescaleUp(long, int, int)}), as they should for quantities.
+     */
+    static int parseNumber(byte[] bytes, int startIndex, long[] output, int outputIndex, int scale,
+                           boolean roundUp) {
+        long result = 0;
+        int decimalIndex = -1;
+        int currentIndex = startIndex;
+        int lastWordIndex = bytes.length - Long.BYTES;
+        while (currentIndex <= lastWordIndex) {
+            long digits = (long) LONG_VIEW.get(bytes, currentIndex) ^ ZEROES;
+            long notDigits = (((digits & LOW_SEVEN_BITS) + DIGIT_OVERFLOW) | digits) & TOP_BITS;
+            if (notDigits == 0) {
+                result = result * POWERS_OF_TEN[8] + parseEightDigits(digits);
+                currentIndex += Long.BYTES;
+                continue;
+            }
+            int digitCount = Long.numberOfTrailingZeros(notDigits) >>> 3;
+            if (digitCount != 0) {
+                // move the digits to the top, the bytes shifted in are zeroes, so act as leading zeroes
+                result = result * POWERS_OF_TEN[digitCount]
+                        + parseEightDigits(digits << ((Long.BYTES - digitCount) << 3));
+                currentIndex += digitCount;
+            }
+            if (bytes[currentIndex] == QUOTATION_MARKS) {
+                output[outputIndex] = rescale(result, decimalIndex, currentIndex, scale, roundUp);
+                return currentIndex;
+            }
+            // skip the decimal point
+            decimalIndex = currentIndex++;
+        }
+        // not enough room left in the array to load a whole word
+        while (bytes[currentIndex] != QUOTATION_MARKS) {
+            byte next = LATIN_1_TO_NUMBERS[bytes[currentIndex] & 0xFF];
+            if (next != -1) {
+                result = result * 10 + next;
+            } else {
+                decimalIndex = currentIndex;
+            }
+            currentIndex++;
+        }
+        output[outputIndex] = rescale(result, decimalIndex, currentIndex, scale, roundUp);
+        return currentIndex;
+    }
+
+    private static long rescale(long digits, int decimalIndex, int endIndex, int scale, boolean roundUp) {
+        int fractionDigits = decimalIndex == -1 ? 0 : endIndex - decimalIndex - 1;
+        return roundUp ? Decimal64.rescaleUp(digits, fractionDigits, scale)
+                : Decimal64.rescale(digits, fractionDigits, scale);
+    }
+
+    /**
+     * Combines 8 bytes, each holding the value of a digit with the first digit in the lowest byte, into the number
+     * they represent. Each step combines neighbouring pairs, first of digits, then of 2 digit numbers, then of 4 digit
+     * numbers.
+     */
+    private static long parseEightDigits(long digits) {
+        digits = (digits * (1 + (10 << 8))) >>> 8;
+        digits = ((digits & 0x00FF00FF00FF00FFL) * (1 + (100L << 16))) >>> 16;
+        return ((digits & 0x0000FFFF0000FFFFL) * (1 + (10_000L << 32))) >>> 32;
+    }
 }
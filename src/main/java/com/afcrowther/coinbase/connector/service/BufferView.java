@@ -0,0 +1,82 @@
+package com.afcrowther.coinbase.connector.service;
+
+import io.netty.buffer.ByteBuf;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.buffer.impl.BufferImpl;
+
+/**
+ * <p>
+ *     A reusable view of the bytes of a Vert.x {@link Buffer} as a plain {@code byte[]}, so that we can parse a message
+ *     with plain array reads rather than calling {@link Buffer#getByte(int)} for every character (each of which goes
+ *     through the Vert.x bounds check, and then Netty's bounds and reference count checks).
+ * </p>
+ * <p>
+ *     The underlying Netty {@link ByteBuf} is looked up once per message, if it is backed by an array (which is the
+ *     case for the WebSocket frames Vert.x hands us) we use that array directly, otherwise the bytes are copied in one
+ *     bulk operation into a scratch array that we keep hold of, so no allocation happens once the scratch array is
+ *     big enough for the largest message we see.
+ * </p>
+ * <p>
+ *     Index {@code i} of the buffer is found at index {@code getOffset() + i} of {@link #getArray()}. The view is only
+ *     valid until the next call to {@link #wrap(Buffer)}, and as with the order book classes, it is not thread safe.
+ * </p>
+ */
+public class BufferView {
+
+    private static final int INITIAL_SCRATCH_SIZE = 4096;
+
+    private byte[] scratch;
+    private byte[] array;
+    private int offset;
+    private int length;
+
+    public BufferView() {
+        this.scratch = new byte[INITIAL_SCRATCH_SIZE];
+    }
+
+    /**
+     * Points this view at the bytes of the buffer provided.
+     *
+     * @param buffer The buffer to view
+     * @return This view
+     */
+    public BufferView wrap(Buffer buffer) {
+        // Buffer#getByteBuf() allocates a duplicate on every call, the implementation gives us the ByteBuf it wraps
+        ByteBuf byteBuf = buffer instanceof BufferImpl ? ((BufferImpl) buffer).byteBuf() : buffer.getByteBuf();
+        // Vert.x buffer indexes are the same as the indexes of the ByteBuf it wraps
+        length = byteBuf.writerIndex();
+        if (byteBuf.hasArray()) {
+            array = byteBuf.array();
+            offset = byteBuf.arrayOffset();
+        } else {
+            if (scratch.length < length) {
+                scratch = new byte[Math.max(length, scratch.length << 1)];
+            }
+            byteBuf.getBytes(0, scratch, 0, length);
+            array = scratch;
+            offset = 0;
+        }
+        return this;
+    }
+
+    /**
+     * @return The array holding the bytes of the buffer, which may be bigger than the buffer itself
+     */
+    public byte[] getArray() {
+        return array;
+    }
+
+    /**
+     * @return The index in {@link #getArray()} of the first byte of the buffer
+     */
+    public int getOffset() {
+        return offset;
+    }
+
+    /**
+     * @return The number of bytes in the buffer
+     */
+    public int getLength() {
+        return length;
+    }
+}
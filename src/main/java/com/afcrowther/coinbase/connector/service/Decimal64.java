@@ -0,0 +1,162 @@
+package com.afcrowther.coinbase.connector.service;
+
+import static com.afcrowther.coinbase.connector.service.UtilsConstants.DECIMAL_POINT;
+import static com.afcrowther.coinbase.connector.service.UtilsConstants.LATIN_1_TO_NUMBERS;
+import static com.afcrowther.coinbase.connector.service.UtilsConstants.POWERS_OF_TEN;
+import static java.lang.String.format;
+
+/**
+ * <p>
+ *     Helpers for working with fixed point decimals held in a primitive long, where the scale (the number of decimal
+ *     places) is known up front rather than stored alongside the value. For example with a scale of 2 the long 340358
+ *     is the decimal 3403.58.
+ * </p>
+ * <p>
+ *     The scale of the prices and quantities of a market comes from the quote and base increments of the market (see
+ *     {@link #scaleOf(String)}), and the parsers normalize every number to that scale as they parse it, so "0.1" and
+ *     "0.10000000" give the same long. Digits beyond the scale will not happen for numbers that are a multiple of the
+ *     increment, but if there are any they are truncated, apart from quantities (see {@link #parseQuantity}), which are
+ *     rounded up so that a quantity finer than the increment is never taken to be 0, which would remove the level.
+ * </p>
+ * <p>
+ *     A scale of {@link #UNSCALED} keeps the old behaviour of simply dropping the decimal point, this is what the
+ *     order books use when they are created without knowing the details of the market.
+ * </p>
+ */
+public final class Decimal64 {
+
+    /**
+     * Leave the parsed digits as they are, with the decimal point dropped.
+     */
+    public static final int UNSCALED = -1;
+    /**
+     * The largest scale we support, 10^18 is the largest power of ten that fits in a long.
+     */
+    public static final int MAX_SCALE = 18;
+
+    private Decimal64() {}
+
+    /**
+     * The following is the kind of expected format of the base and quote increments:
+     * "base_increment": "0.00000001",
+     * "quote_increment": "0.01000000"
+     *
+     * The scale is the number of decimal places once the trailing zeroes are removed, 8 for the first and 2 for the
+     * second in these cases.
+     *
+     * @param increment The increment of the market
+     * @return The number of decimal places needed to represent any multiple of the increment
+     */
+    public static int scaleOf(String increment) {
+        int decimalIdx = increment.indexOf(DECIMAL_POINT);
+        if (decimalIdx == -1) {
+            return 0;
+        }
+        int end = increment.length();
+        while (end > decimalIdx + 1 && increment.charAt(end - 1) == '0') {
+            end--;
+        }
+        int scale = end - decimalIdx - 1;
+        if (scale > MAX_SCALE) {
+            throw new IllegalArgumentException(format("Increment [%s] has more than %d decimal places", increment,
+                    MAX_SCALE));
+        }
+        return scale;
+    }
+
+    /**
+     * Parses a decimal String to a fixed point long with the scale provided. Like
+     * {@link LongUtils#convertStringToLong(String)} any other character than a number or the decimal point is ignored,
+     * so only call this with a properly formed numerical String.
+     *
+     * @param value The number string which we want to convert
+     * @param scale The number of decimal places of the result, or {@link #UNSCALED}
+     * @return The fixed point long
+     */
+    public static long parse(String value, int scale) {
+        long result = 0;
+        int decimalIdx = -1;
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c == DECIMAL_POINT) {
+                decimalIdx = i;
+            } else if (c < LATIN_1_TO_NUMBERS.length && LATIN_1_TO_NUMBERS[c] != -1) {
+                result = result * 10 + LATIN_1_TO_NUMBERS[c];
+            }
+        }
+        return rescale(result, decimalIdx == -1 ? 0 : length - decimalIdx - 1, scale);
+    }
+
+    /**
+     * The same as {@link #parse(String, int)}, but any non-zero digits beyond the scale round the result up rather than
+     * being truncated, see {@link #rescaleUp(long, int, int)}.
+     *
+     * @param value The quantity string which we want to convert
+     * @param scale The number of decimal places of the result, or {@link #UNSCALED}
+     * @return The fixed point long
+     */
+    public static long parseQuantity(String value, int scale) {
+        long result = 0;
+        int decimalIdx = -1;
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c == DECIMAL_POINT) {
+                decimalIdx = i;
+            } else if (c < LATIN_1_TO_NUMBERS.length && LATIN_1_TO_NUMBERS[c] != -1) {
+                result = result * 10 + LATIN_1_TO_NUMBERS[c];
+            }
+        }
+        return rescaleUp(result, decimalIdx == -1 ? 0 : length - decimalIdx - 1, scale);
+    }
+
+    /**
+     * Moves the digits of a number parsed with its decimal point dropped to the scale provided.
+     *
+     * @param digits         The digits of the number, with the decimal point dropped
+     * @param fractionDigits The number of digits that were after the decimal point
+     * @param scale          The scale we want the result in, or {@link #UNSCALED} to return the digits untouched
+     * @return The fixed point long
+     */
+    public static long rescale(long digits, int fractionDigits, int scale) {
+        if (scale == UNSCALED || scale == fractionDigits) {
+            return digits;
+        } else if (scale > fractionDigits) {
+            return digits * POWERS_OF_TEN[scale - fractionDigits];
+        } else if (fractionDigits - scale > MAX_SCALE) {
+            return 0;
+        }
+        return digits / POWERS_OF_TEN[fractionDigits - scale];
+    }
+
+    /**
+     * The same as {@link #rescale(long, int, int)}, but if any of the digits dropped are non-zero the result is rounded
+     * up (away from zero). This is for quantities, where a 0 means the level has been removed, so a quantity finer than
+     * the increment is kept as the smallest quantity that can be held rather than being lost.
+     *
+     * @param digits         The digits of the number, with the decimal point dropped
+     * @param fractionDigits The number of digits that were after the decimal point
+     * @param scale          The scale we want the result in, or {@link #UNSCALED} to return the digits untouched
+     * @return The fixed point long
+     */
+    public static long rescaleUp(long digits, int fractionDigits, int scale) {
+        if (scale == UNSCALED || scale >= fractionDigits) {
+            return rescale(digits, fractionDigits, scale);
+        } else if (fractionDigits - scale > MAX_SCALE) {
+            return digits == 0 ? 0 : 1;
+        }
+        long divisor = POWERS_OF_TEN[fractionDigits - scale];
+        long result = digits / divisor;
+        return result * divisor == digits ? result : result + 1;
+    }
+
+    /**
+     * @param increment The increment of the market
+     * @return The increment as a fixed point long in its own scale (see {@link #scaleOf(String)}), e.g. 5 for
+     *         "0.00500000"
+     */
+    public static long unitsOf(String increment) {
+        return parse(increment, scaleOf(increment));
+    }
+}
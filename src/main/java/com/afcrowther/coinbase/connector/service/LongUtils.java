@@ -1,14 +1,27 @@
 package com.afcrowther.coinbase.connector.service;
 
+import java.nio.ByteBuffer;
+
 import static com.afcrowther.coinbase.connector.service.UtilsConstants.*;
 
 public class LongUtils {
 
     private LongUtils() {}
 
+    // the Latin 1 characters of every number from 00 to 99, the two characters of the number i start at index i * 2, so
+    // the formatters write two digits for every divide rather than one
+    private static final byte[] DIGIT_PAIRS = new byte[200];
+
+    static {
+        for (int i = 0; i < 100; i++) {
+            DIGIT_PAIRS[i * 2] = (byte) (ZERO + i / 10);
+            DIGIT_PAIRS[i * 2 + 1] = (byte) (ZERO + i % 10);
+        }
+    }
+
     /**
      * Convert a long into its String representation, using the StringBuilder provided as the medium for returning
-     * the converted value (avoiding any new allocations).
+     * the converted value (avoiding any new allocations as long as the StringBuilder has the capacity).
      *
      * This method only works on positive long values, anything negative will do nothing to the StringBuilder.
      *
@@ -20,35 +33,143 @@ public class LongUtils {
         if (value < 0) {
             return;
         }
-        int numberOfDigits = Math.max(getNumberOfDigits(value), numDecimalPoints + 1);
-        // add dummy values for each digit
-        for (int i = 0; i < numberOfDigits; i++) {
-            sb.append(EMPTY);
+        int start = sb.length();
+        int end = start + getFormattedLength(value, numDecimalPoints);
+        sb.setLength(end);
+        if (numDecimalPoints == 0) {
+            putDigits(value, sb, end, end - start);
+            return;
         }
-        // add dummy value for the decimal (if required)
-        if (numDecimalPoints != 0) {
-            sb.append(EMPTY);
-            numberOfDigits++;
+        // the fraction is written first, padded with leading zeroes, and then the integer part in front of the point
+        long integerPart = integerPart(value, numDecimalPoints);
+        int indexOfDecimal = end - numDecimalPoints - 1;
+        putDigits(value - integerPart * powerOfTen(numDecimalPoints), sb, end, numDecimalPoints);
+        sb.setCharAt(indexOfDecimal, DECIMAL_POINT);
+        putDigits(integerPart, sb, indexOfDecimal, indexOfDecimal - start);
+    }
+
+    /**
+     * The same as {@link #appendLongToStringBuilder(long, StringBuilder, int)}, but writing the Latin 1 characters
+     * straight into a byte array, so that the result can be written out without any encoding or copying.
+     *
+     * This method only works on positive long values, anything negative will leave the array untouched.
+     *
+     * @param value            The value that we want converted to it's Latin 1 representation.
+     * @param dst              The array to write to, which must have room for the digits and the decimal point
+     * @param index            The index of the array to start writing at
+     * @param numDecimalPoints The number of decimal places of the final string
+     * @return The index after the last character written
+     */
+    public static int putLong(long value, byte[] dst, int index, int numDecimalPoints) {
+        if (value < 0) {
+            return index;
         }
-        // append the numbers in a backwards order, adding the decimal where required
-        int index = sb.length() - 1;
-        int indexOfDecimal = index - numDecimalPoints;
-        while (value != 0) {
-            char next = (char) (ZERO + value % 10);
-            value = value / 10;
-            sb.setCharAt(index--, next);
-            if (index == indexOfDecimal) {
-                sb.setCharAt(index--, DECIMAL_POINT);
-            }
+        int end = index + getFormattedLength(value, numDecimalPoints);
+        if (numDecimalPoints == 0) {
+            putDigits(value, dst, end, end - index);
+            return end;
         }
-        // allow for situations with leading zeroes in the output, e.g. 0.000421, the value will be set to 0 so we
-        // now need to copy an missing zeros (and decimal places)
-        while (index > indexOfDecimal - 2) {
-            if (index == indexOfDecimal) {
-                sb.setCharAt(index--, DECIMAL_POINT);
-            } else {
-                sb.setCharAt(index--, ZERO);
-            }
+        long integerPart = integerPart(value, numDecimalPoints);
+        int indexOfDecimal = end - numDecimalPoints - 1;
+        putDigits(value - integerPart * powerOfTen(numDecimalPoints), dst, end, numDecimalPoints);
+        dst[indexOfDecimal] = (byte) DECIMAL_POINT;
+        putDigits(integerPart, dst, indexOfDecimal, indexOfDecimal - index);
+        return end;
+    }
+
+    /**
+     * The same as {@link #putLong(long, byte[], int, int)}, but writing at the position of the ByteBuffer provided,
+     * which is moved on past the characters written. Buffers backed by an array are written through the array, direct
+     * buffers are written one byte at a time.
+     *
+     * This method only works on positive long values, anything negative will leave the buffer untouched.
+     *
+     * @param value            The value that we want converted to it's Latin 1 representation.
+     * @param dst              The buffer to write to, which must have room for the digits and the decimal point
+     * @param numDecimalPoints The number of decimal places of the final string
+     */
+    public static void putLong(long value, ByteBuffer dst, int numDecimalPoints) {
+        if (value < 0) {
+            return;
+        }
+        int start = dst.position();
+        if (dst.hasArray()) {
+            int offset = dst.arrayOffset();
+            dst.position(putLong(value, dst.array(), offset + start, numDecimalPoints) - offset);
+            return;
+        }
+        int end = start + getFormattedLength(value, numDecimalPoints);
+        if (numDecimalPoints == 0) {
+            putDigits(value, dst, end, end - start);
+        } else {
+            long integerPart = integerPart(value, numDecimalPoints);
+            int indexOfDecimal = end - numDecimalPoints - 1;
+            putDigits(value - integerPart * powerOfTen(numDecimalPoints), dst, end, numDecimalPoints);
+            dst.put(indexOfDecimal, (byte) DECIMAL_POINT);
+            putDigits(integerPart, dst, indexOfDecimal, indexOfDecimal - start);
+        }
+        dst.position(end);
+    }
+
+    /**
+     * @return The number of characters the formatters write for the (positive) value, with at least one digit in front
+     *         of the decimal point
+     */
+    static int getFormattedLength(long value, int numDecimalPoints) {
+        int numberOfDigits = Math.max(getNumberOfDigitsBranchFree(value), numDecimalPoints + 1);
+        return numDecimalPoints != 0 ? numberOfDigits + 1 : numberOfDigits;
+    }
+
+    private static long integerPart(long value, int numDecimalPoints) {
+        return numDecimalPoints < POWERS_OF_TEN.length ? value / POWERS_OF_TEN[numDecimalPoints] : 0;
+    }
+
+    private static long powerOfTen(int exponent) {
+        // only used with the integer part, which is 0 whenever the power of ten wouldn't fit in a long
+        return exponent < POWERS_OF_TEN.length ? POWERS_OF_TEN[exponent] : 0;
+    }
+
+    // writes exactly count digits of the value backwards from end, padding with leading zeroes, the value must not have
+    // more than count digits
+    private static void putDigits(long value, byte[] dst, int end, int count) {
+        int position = end;
+        for (; count >= 2; count -= 2) {
+            long next = value / 100;
+            int pair = (int) (value - next * 100) << 1;
+            value = next;
+            dst[--position] = DIGIT_PAIRS[pair + 1];
+            dst[--position] = DIGIT_PAIRS[pair];
+        }
+        if (count == 1) {
+            dst[--position] = (byte) (ZERO + value);
+        }
+    }
+
+    private static void putDigits(long value, StringBuilder dst, int end, int count) {
+        int position = end;
+        for (; count >= 2; count -= 2) {
+            long next = value / 100;
+            int pair = (int) (value - next * 100) << 1;
+            value = next;
+            dst.setCharAt(--position, (char) DIGIT_PAIRS[pair + 1]);
+            dst.setCharAt(--position, (char) DIGIT_PAIRS[pair]);
+        }
+        if (count == 1) {
+            dst.setCharAt(--position, (char) (ZERO + value));
+        }
+    }
+
+    private static void putDigits(long value, ByteBuffer dst, int end, int count) {
+        int position = end;
+        for (; count >= 2; count -= 2) {
+            long next = value / 100;
+            int pair = (int) (value - next * 100) << 1;
+            value = next;
+            dst.put(--position, DIGIT_PAIRS[pair + 1]);
+            dst.put(--position, DIGIT_PAIRS[pair]);
+        }
+        if (count == 1) {
+            dst.put(--position, (byte) (ZERO + value));
         }
     }
 
@@ -80,129 +201,25 @@ public class LongUtils {
         return result;
     }
 
-    // todo:: JMH these
     /**
      * <p>
-     *     This method will return a value of 1 for the input number 0.
+     *     Returns the number of digits of a positive number (1 for 0) without any branches. The number of bits needed
+     *     for the value times log10(2), which is 1233 / 4096 to within the precision we need, is either the number of
+     *     digits or one too many, which one is found by comparing against the power of ten at that number of digits
+     *     (the sign bit of the difference, rather than a branch).
      * </p>
      * <p>
-     *     Internally this method uses cached values and comparisons to figure out the result with the observation that
-     *     any long value can have at most 19 digits. So warning to anyone reading this code, it is messy! However,
-     *     it is also faster that using actual math and it has the benefit of no floating point conversions.
-     *     </br>
-     *     Alternatives to this method would be to use the {@link Math#log10(double)} method, or, to use the formula:
-     *     "{@code log a (b) = log2 (b) / log2 (a)}" which may perform better (we could also cache the result of
-     *     log 2(10)).
+     *     The ways of counting the digits this replaced are kept as baselines in DigitCountBenchmark (run with the
+     *     "benchmark" profile).
      * </p>
      *
-     * @param value The number to get the number of digits of
+     * @param value The number to get the number of digits of, which must not be negative
      * @return The number of digits in the provided number
      */
-    static int getNumberOfDigits(long value) {
-        if (value > 0) {
-            value = -value;
-        }
-
-        return value <= -1000000000000000000l ? 19 :
-               value <= -100000000000000000l ? 18 :
-               value <= -10000000000000000l ? 17 :
-               value <= -1000000000000000l ? 16 :
-               value <= -100000000000000l ? 15 :
-               value <= -10000000000000l ? 14 :
-               value <= -1000000000000l ? 13 :
-               value <= -100000000000l ? 12 :
-               value <= -10000000000l ? 11 :
-               value <= -1000000000l ? 10 :
-               value <= -100000000l ? 9 :
-               value <= -10000000l ? 8 :
-               value <= -1000000l ? 7 :
-               value <= -100000l ? 6 :
-               value <= -10000l ? 5 :
-               value <= -1000l ? 4 :
-               value <= -100l ? 3 :
-               value <= -10l ? 2 : 1;
-    }
-
-    private static final long[] LOW_LONG_WITH_I_DIGITS = new long[] { 10l, 100l, 1000l, 10000l, 100000l, 1000000l,
-            10000000l, 100000000l, 1000000000l, 10000000000l, 100000000000l, 1000000000000l, 10000000000000l,
-            100000000000000l, 1000000000000000l, 10000000000000000l, 100000000000000000l, 1000000000000000000l };
-
-    /**
-     * <p>
-     *     This method returns the number of digits in a number. This is done using a modified binary search whereby we
-     *     can compare the number of value of the long until we find the point at which the number provided is bigger
-     *     than {@code 1 * 10^n} where n is the number of digits but smaller than {@code 1 * 10^(n+1)}.
-     * </p>
-     * <br/>
-     * <p>
-     *     We can reduce the number of comparisons we make over linear search by doing a binary search. The Java std
-     *     library makes the note that a linear scan is preferred because the distribution of numbers tested leans
-     *     heavily towards zero, however in our case that is not true, as we are not expecting this method to be called
-     *     with any 0 values (this method is called to construct the console printing output, we don't print levels with
-     *     0 quantity or price, and in fact we will tend towards larger amount of digits as the numbers passed to this
-     *     method will often be numbers with large amounts of decimal places but with the actual decimal place character
-     *     removed, see - {@link Long#stringSize(long)}. However, unlike normal binary search, we will always perform
-     *     ceil(log(n)) comparisons (n being the size of the search space, 18 in this case) as we aren't ever guessing rather
-     *     we are dividing the search space until we arrive at a point that is within one place of the result, we can
-     *     then use a comparison to the mid + 1 or mid - 1 index (depending on if we have searched up or down
-     *     previously)
-     * </p>
-     * <br/>
-     */
-    static int getNumberOfDigitsBinarySearch(long value) {
-        if (value < 0) {
-            value = -value;
-        }
-        if (value == 0) {
-            return 1;
-        }
-
-        int low = 0, high = 18;
-        while (low <= high) {
-            // safe from overflow so can use this method to calculate mid point
-            int mid = (low + high) >>> 1;
-            long midValue = LOW_LONG_WITH_I_DIGITS[mid];
-
-            // check if we've finished
-            if (mid == low || mid == high) {
-                if (value < midValue) {
-                    return mid + 1;
-                } else if (value > LOW_LONG_WITH_I_DIGITS[mid + 1] ) {
-                    return mid + 3;
-                } else {
-                    return mid + 2;
-                }
-            }
-
-            if (value < midValue) {
-                high = mid - 1;
-            } else if (value > midValue) {
-                low = mid + 1;
-            } else {
-                // just in case we get an exact match (i.e. the number is 10000)
-                return mid + 2;
-            }
-        }
-        // will never reach this
-        return -1;
-    }
-
-    /**
-     * A slight modification of the {@link Long#stringSize(long)} method.
-     *
-     * @param value
-     * @return
-     */
-    static int getNumberOfDigitsJavaStdLib(long value) {
-        if (value >= 0) {
-            value = -value;
-        }
-        long p = -10;
-        for (int i = 1; i < 19; i++) {
-            if (value > p)
-                return i;
-            p = 10 * p;
-        }
-        return 19;
+    static int getNumberOfDigitsBranchFree(long value) {
+        // or-ing in the lowest bit makes 0 count as 1 digit, and can't move any other value past a power of ten
+        long v = value | 1;
+        int guess = ((64 - Long.numberOfLeadingZeros(v)) * 1233) >>> 12;
+        return guess + 1 - (int) ((v - POWERS_OF_TEN[guess]) >>> 63);
     }
 }
@@ -2,14 +2,14 @@ package com.afcrowther.coinbase.connector.service;
 
 import com.afcrowther.coinbase.connector.domain.Side;
 import com.afcrowther.coinbase.connector.domain.coinbase.OrderBookSnapshot;
-import io.vertx.core.Future;
+import com.afcrowther.coinbase.connector.jfr.OrderBookUpdateEvent;
+import com.afcrowther.coinbase.connector.jfr.SnapshotParseEvent;
 import io.vertx.core.buffer.Buffer;
 
 import java.util.concurrent.atomic.AtomicLongArray;
 
 import static com.afcrowther.coinbase.connector.domain.Side.ASK;
 import static com.afcrowther.coinbase.connector.domain.Side.BID;
-import static com.afcrowther.coinbase.connector.service.LongUtils.convertStringToLong;
 
 /**
  * This class and all of it's subclasses are not thread safe, if you try using an instantiation of this object amongst
@@ -21,22 +21,76 @@ import static com.afcrowther.coinbase.connector.service.LongUtils.convertStringT
 public abstract class OrderBookAggregatorService {
 
     // represent characters we need as Latin 1 bytes
+    private static final byte A = 97;
     private static final byte B = 98;
+    private static final byte T = 116;
+    private static final byte QUOTATION_MARKS = 34;
     private static final byte OPEN_SQUARE_BRACKET = 91;
     private static final byte CLOSE_SQUARE_BRACKET = 93;
+    // the length of '{"type":"snapshot","product_id":"'
+    private static final int SNAPSHOT_PRODUCT_ID_INDEX = 33;
+    // the length of ',"time":"', which follows the changes of an l2update
+    private static final int TIME_VALUE_OFFSET = 9;
+    // the length of the shortest timestamp, with no fraction, "2019-08-14T20:42:27Z"
+    private static final int MIN_TIMESTAMP_LENGTH = 20;
 
+    public static final int DEFAULT_DEPTH = 10;
+
+    // the number of levels of each side of the order book that are copied to the output arrays
+    protected final int depth;
     protected final int maxSize;
     // used to pass around the current price/quantity pair being worked on at any time
     protected final long[] priceQuantityArray;
     protected final String market;
+    // the number of decimal places the prices and quantities are normalized to, see Decimal64
+    protected final int priceScale;
+    protected final int quantityScale;
+    // gives us the bytes of each message as a plain array, see BufferView
+    private final BufferView bufferView;
+    // the exchange's "time" of the last l2update, in microseconds since the epoch
+    private long lastUpdateTime;
+    // the number of changes of the last l2update
+    private int lastUpdateChanges;
+    // the flight recorder events, reused rather than allocated for each message (see CoinbaseWebSocketMessageHandler)
+    private final OrderBookUpdateEvent updateEvent;
+    private final SnapshotParseEvent snapshotEvent;
 
     public OrderBookAggregatorService(String market) {
-        // to allow for big market movements where levels that we want may be removed, we allocate 20 instead of 10
-        // spaces on each side of the order book
-        this.maxSize = 20;
+        this(market, DEFAULT_DEPTH);
+    }
+
+    /**
+     * @param market The market of the order book
+     * @param depth  The number of levels of each side of the order book that we copy to the output arrays, the output
+     *               arrays are expected to be twice this length (a price and a quantity for each level)
+     */
+    public OrderBookAggregatorService(String market, int depth) {
+        this(market, depth, Decimal64.UNSCALED, Decimal64.UNSCALED);
+    }
+
+    /**
+     * @param market        The market of the order book
+     * @param depth         The number of levels of each side of the order book that we copy to the output arrays
+     * @param priceScale    The number of decimal places prices are normalized to (see {@link Decimal64#scaleOf}), or
+     *                      {@link Decimal64#UNSCALED} to keep the digits as they are given by the feed
+     * @param quantityScale The number of decimal places quantities are normalized to, or {@link Decimal64#UNSCALED}
+     */
+    public OrderBookAggregatorService(String market, int depth, int priceScale, int quantityScale) {
+        if (depth < 1) {
+            throw new IllegalArgumentException("Order book depth must be at least 1");
+        }
+        this.depth = depth;
+        // to allow for big market movements where levels that we want may be removed, we keep track of twice as many
+        // levels as we output on each side of the order book
+        this.maxSize = depth * 2;
         // pre allocate an array to pass order book levels around
         this.priceQuantityArray = new long[2];
         this.market = market;
+        this.priceScale = priceScale;
+        this.quantityScale = quantityScale;
+        this.bufferView = new BufferView();
+        this.updateEvent = new OrderBookUpdateEvent();
+        this.snapshotEvent = new SnapshotParseEvent();
     }
 
     /**
@@ -57,33 +111,180 @@ public abstract class OrderBookAggregatorService {
      */
     protected abstract void copyToOutputArray(AtomicLongArray out, Side side);
 
+    /**
+     * The number of levels to load from each side of an order book snapshot. By default we only load the levels that
+     * we are tracking, implementations that keep the full depth of the book should override this.
+     *
+     * @return The maximum number of levels to load from each side of a snapshot
+     */
+    protected int getSnapshotLevelLimit() {
+        return maxSize;
+    }
+
+    /**
+     * @return The "time" the exchange gave the last l2update handled by {@link #updateOrderBook(Buffer,
+     *         AtomicLongArray, AtomicLongArray)}, in microseconds since the epoch, or 0 if it didn't have one
+     */
+    public long getLastUpdateTime() {
+        return lastUpdateTime;
+    }
+
+    /**
+     * @return The number of changes (levels set or removed) the last l2update handled by {@link #updateOrderBook(
+     *         Buffer, AtomicLongArray, AtomicLongArray)} carried
+     */
+    public int getLastUpdateChanges() {
+        return lastUpdateChanges;
+    }
+
+    public String getMarket() {
+        return market;
+    }
+
+    /**
+     * @return The number of levels of each side of the order book that are copied to the output arrays
+     */
+    public int getDepth() {
+        return depth;
+    }
+
     /**
      * Updates the order book with the provided order book snapshot, this is only expected to happen once (at the start
-     * of the websocket feed). The bidsOut and asksOut arrays will be filled with the top 10 levels before returning.
+     * of the websocket feed). The bidsOut and asksOut arrays will be filled with the top "depth" levels before
+     * returning.
      *
      * @param snapshot The order book snapshot
-     * @param bidsOut  The output array for the top 10 bids
-     * @param asksOut  The output array for the top 10 asks
+     * @param bidsOut  The output array for the top bids
+     * @param asksOut  The output array for the top asks
      */
     public void updateOrderBook(OrderBookSnapshot snapshot, AtomicLongArray bidsOut, AtomicLongArray asksOut) {
+        int levelLimit = getSnapshotLevelLimit();
         String[][] asks = snapshot.getAsks();
-        for (int i = 0; i < maxSize && i < asks.length; i++) {
+        for (int i = 0; i < levelLimit && i < asks.length; i++) {
             String[] level = asks[i];
-            priceQuantityArray[0] = convertStringToLong(level[0]);
-            priceQuantityArray[1] = convertStringToLong(level[1]);
+            priceQuantityArray[0] = Decimal64.parse(level[0], priceScale);
+            priceQuantityArray[1] = Decimal64.parseQuantity(level[1], quantityScale);
             updateOrderBookLevel(ASK);
         }
         String[][] bids = snapshot.getBids();
-        for (int i = 0; i < maxSize && i < bids.length; i++) {
+        for (int i = 0; i < levelLimit && i < bids.length; i++) {
             String[] level = bids[i];
-            priceQuantityArray[0] = convertStringToLong(level[0]);
-            priceQuantityArray[1] = convertStringToLong(level[1]);
+            priceQuantityArray[0] = Decimal64.parse(level[0], priceScale);
+            priceQuantityArray[1] = Decimal64.parseQuantity(level[1], quantityScale);
             updateOrderBookLevel(BID);
         }
         copyToOutputArray(asksOut, ASK);
         copyToOutputArray(bidsOut, BID);
     }
 
+    /**
+     * <p>
+     *     Updates the order book with the snapshot message, parsing the levels straight from the buffer rather than
+     *     decoding the whole message (which for BTC-USD is ~800KB, and would create a String for every price and
+     *     quantity). The pattern of the snapshot message is as follows: {@code
+     *     {"type":"snapshot","product_id":"BTC-USD","asks":[["10102.55","0.57753524"],...],"bids":[["10101.10","0.45054140"],...]}
+     *     }
+     * </p>
+     * <p>
+     *     We skip past the product id, then look for the "asks" and "bids" keys (in whichever order they come), and feed
+     *     each level to the order book as we parse it. Once {@link #getSnapshotLevelLimit()} levels have been loaded
+     *     for a side, the rest of that side is skipped over without being parsed, so depth limited implementations
+     *     only do the work for the levels they keep, while full depth implementations bulk load every level. The
+     *     bidsOut and asksOut arrays will be filled with the top "depth" levels before returning.
+     * </p>
+     *
+     * @param buffer  The buffer containing the snapshot message
+     * @param bidsOut The output array for the top bids
+     * @param asksOut The output array for the top asks
+     */
+    public void updateOrderBookFromSnapshot(Buffer buffer, AtomicLongArray bidsOut, AtomicLongArray asksOut) {
+        boolean recording = snapshotEvent.isEnabled();
+        if (recording) {
+            snapshotEvent.begin();
+        }
+        int levelLimit = getSnapshotLevelLimit();
+        bufferView.wrap(buffer);
+        byte[] bytes = bufferView.getArray();
+        int offset = bufferView.getOffset();
+        // indexes from here on are into the array rather than the buffer
+        int end = offset + bufferView.getLength();
+        int sidesFound = 0;
+        // skip the product id and its closing quotation mark
+        int currentIndex = offset + SNAPSHOT_PRODUCT_ID_INDEX + market.length() + 1;
+        while (sidesFound < 2 && currentIndex < end) {
+            if (bytes[currentIndex] == QUOTATION_MARKS
+                    && currentIndex + 7 < end
+                    && bytes[currentIndex + 5] == QUOTATION_MARKS
+                    && bytes[currentIndex + 7] == OPEN_SQUARE_BRACKET) {
+                // a four letter key with an array value, '"asks":[' or '"bids":['
+                byte key = bytes[currentIndex + 1];
+                if (key == A) {
+                    currentIndex = parseSnapshotSide(bytes, currentIndex + 8, ASK, levelLimit);
+                    sidesFound++;
+                } else if (key == B) {
+                    currentIndex = parseSnapshotSide(bytes, currentIndex + 8, BID, levelLimit);
+                    sidesFound++;
+                }
+            }
+            currentIndex++;
+        }
+        copyToOutputArray(asksOut, ASK);
+        copyToOutputArray(bidsOut, BID);
+        if (recording) {
+            snapshotEvent.end();
+            snapshotEvent.market = market;
+            snapshotEvent.size = buffer.length();
+            snapshotEvent.commit();
+        }
+    }
+
+    /**
+     * Parses the levels of one side of the snapshot, starting from the first character inside the array of levels.
+     *
+     * @return The index of the closing square bracket of the array of levels
+     */
+    private int parseSnapshotSide(byte[] bytes, int startIndex, Side side, int levelLimit) {
+        int levels = 0;
+        int currentIndex = startIndex;
+        while (true) {
+            byte next = bytes[currentIndex];
+            if (next == CLOSE_SQUARE_BRACKET) {
+                return currentIndex;
+            } else if (next == OPEN_SQUARE_BRACKET) {
+                if (levels == levelLimit) {
+                    return skipToEndOfArray(bytes, currentIndex);
+                }
+                // the level starts with the opening quotation mark of the price
+                currentIndex = BufferUtils.parseOrderBookLevel(bytes, currentIndex + 1, priceQuantityArray, priceScale,
+                        quantityScale);
+                updateOrderBookLevel(side);
+                levels++;
+            }
+            // ignore anything else (such as commas)
+            currentIndex++;
+        }
+    }
+
+    /**
+     * Finds the end of the array of levels, without parsing the levels, starting from the opening square bracket of a
+     * level. Levels only hold numbers in quotation marks so we only need to keep track of the square brackets.
+     *
+     * @return The index of the closing square bracket of the array of levels
+     */
+    private static int skipToEndOfArray(byte[] bytes, int startIndex) {
+        int nesting = 0;
+        int currentIndex = startIndex;
+        while (true) {
+            byte next = bytes[currentIndex];
+            if (next == OPEN_SQUARE_BRACKET) {
+                nesting++;
+            } else if (next == CLOSE_SQUARE_BRACKET && nesting-- == 0) {
+                return currentIndex;
+            }
+            currentIndex++;
+        }
+    }
+
     /**
      * <p>
      *     As we know the pattern of the requests coming in we can make some optimizations. The patten of each l2update
@@ -93,8 +294,9 @@ public abstract class OrderBookAggregatorService {
      * </p>
      * <p>
      *     Using this, we can firstly skip to the point at which we expect to see changes, and then parse each level
-     *     one by one without allocating. We will then pass a copy of the top 10 of each side of the order book back
-     *     to the caller.
+     *     one by one without allocating, reading the bytes straight from the array backing the buffer (see
+     *     {@link BufferView}). The "time" after the changes is parsed the same way (see {@link #getLastUpdateTime()}).
+     *     We will then pass a copy of the top "depth" levels of each side of the order book back to the caller.
      * </p>
      * <p>
      *     The output arrays will only be copied to if there is a change to the section of the order book (aka within
@@ -106,48 +308,71 @@ public abstract class OrderBookAggregatorService {
      *                          every odd index will hold it's associated quantity
      * @param asksOut           The bid quantities array to copy back to the caller, every even index will hold a price
      *                          and every odd index will hold it's associated quantity
-     * @param outputFree        A future that dictates whether or not the previous output operation (in this case
-     *                          printing is complete, we shouldn't touch the output array(s) unless it is ready.
      * @return Whether or not any changes have been made to the output arrays
      */
-    public boolean updateOrderBook(Buffer buffer, AtomicLongArray bidsOut, AtomicLongArray asksOut,
-                                   Future<Void> outputFree) {
+    public boolean updateOrderBook(Buffer buffer, AtomicLongArray bidsOut, AtomicLongArray asksOut) {
+        boolean recording = updateEvent.isEnabled();
+        if (recording) {
+            updateEvent.begin();
+        }
         boolean finished = false;
         boolean asksChangeMade = false;
         boolean bidsChangeMade = false;
+        int changes = 0;
+        bufferView.wrap(buffer);
+        byte[] bytes = bufferView.getArray();
         // start at the first open square bracket of the first element of the changes array
-        int currentIndex = 46 + market.length();
+        int currentIndex = bufferView.getOffset() + 46 + market.length();
         while (!finished) {
-            byte next = buffer.getByte(currentIndex);
+            byte next = bytes[currentIndex];
             if (next == CLOSE_SQUARE_BRACKET) {
                 finished = true;
             } else if (next == OPEN_SQUARE_BRACKET) {
+                changes++;
                 // used to see if we have a buy or sell
                 currentIndex += 2;
-                boolean isBid = buffer.getByte(currentIndex) == B;
+                boolean isBid = bytes[currentIndex] == B;
                 if (isBid) {
                     currentIndex += 5;
-                    currentIndex = BufferUtils.parseOrderBookLevel(buffer, currentIndex, priceQuantityArray);
+                    currentIndex = BufferUtils.parseOrderBookLevel(bytes, currentIndex, priceQuantityArray, priceScale,
+                            quantityScale);
                     bidsChangeMade = updateOrderBookLevel(BID) || bidsChangeMade;
                 } else {
                     currentIndex += 6;
-                    currentIndex = BufferUtils.parseOrderBookLevel(buffer, currentIndex, priceQuantityArray);
+                    currentIndex = BufferUtils.parseOrderBookLevel(bytes, currentIndex, priceQuantityArray, priceScale,
+                            quantityScale);
                     asksChangeMade = updateOrderBookLevel(ASK) || asksChangeMade;
                 }
             }
             // ignore anything else (such as commas)
             currentIndex++;
         }
-        if (outputFree.isComplete()) {
-            // we can skip copying one of the arrays if there have been no changes to it
-            if (asksChangeMade) {
-                copyToOutputArray(asksOut, ASK);
-            }
-            if (bidsChangeMade) {
-                copyToOutputArray(bidsOut, BID);
-            }
+        lastUpdateChanges = changes;
+        // we are now on the comma after the changes, the time follows it
+        int timeIndex = currentIndex + TIME_VALUE_OFFSET;
+        if (timeIndex + MIN_TIMESTAMP_LENGTH <= bufferView.getOffset() + bufferView.getLength()
+                && bytes[currentIndex + 2] == T) {
+            lastUpdateTime = TimeUtils.parseIsoTimestamp(bytes, timeIndex);
+        } else {
+            lastUpdateTime = 0;
+        }
+        // we can skip copying one of the arrays if there have been no changes to it
+        if (asksChangeMade) {
+            copyToOutputArray(asksOut, ASK);
+        }
+        if (bidsChangeMade) {
+            copyToOutputArray(bidsOut, BID);
         }
 
-        return asksChangeMade || bidsChangeMade;
+        boolean changeMade = asksChangeMade || bidsChangeMade;
+        if (recording) {
+            updateEvent.end();
+            updateEvent.market = market;
+            updateEvent.size = buffer.length();
+            updateEvent.changes = changes;
+            updateEvent.topOfBookChanged = changeMade;
+            updateEvent.commit();
+        }
+        return changeMade;
     }
 }
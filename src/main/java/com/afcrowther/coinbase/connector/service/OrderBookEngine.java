@@ -0,0 +1,78 @@
+package com.afcrowther.coinbase.connector.service;
+
+import com.afcrowther.coinbase.connector.domain.coinbase.Product;
+
+import java.util.Locale;
+
+import static java.lang.String.format;
+
+/**
+ * The available {@link OrderBookAggregatorService} implementations, so that the backing data structure can be picked
+ * at startup (e.g. "--engine sorted-array").
+ */
+public enum OrderBookEngine {
+
+    SIMPLE("simple") {
+        @Override
+        public OrderBookAggregatorService create(String market, Product marketInfo, int depth) {
+            return new SimpleOrderBookAggregatorService(market, depth, priceScaleOf(marketInfo),
+                    quantityScaleOf(marketInfo));
+        }
+    },
+    SORTED_ARRAY("sorted-array") {
+        @Override
+        public OrderBookAggregatorService create(String market, Product marketInfo, int depth) {
+            return new SortedArrayOrderBookAggregatorService(market, depth, priceScaleOf(marketInfo),
+                    quantityScaleOf(marketInfo));
+        }
+    },
+    TICK_LADDER("tick-ladder") {
+        @Override
+        public OrderBookAggregatorService create(String market, Product marketInfo, int depth) {
+            // the tick size is the increment itself in the price scale, so a price maps to its tick with one divide
+            return new TickLadderOrderBookAggregatorService(market, Decimal64.unitsOf(marketInfo.getQuoteIncrement()),
+                    depth, priceScaleOf(marketInfo), quantityScaleOf(marketInfo));
+        }
+    };
+
+    private final String engineName;
+
+    OrderBookEngine(String engineName) {
+        this.engineName = engineName;
+    }
+
+    /**
+     * @param market     The market of the order book
+     * @param marketInfo The details of the market, as given by the Coinbase Pro REST API
+     * @param depth      The number of levels of each side of the order book to output
+     * @return A new order book for the market
+     */
+    public abstract OrderBookAggregatorService create(String market, Product marketInfo, int depth);
+
+    private static int priceScaleOf(Product marketInfo) {
+        return Decimal64.scaleOf(marketInfo.getQuoteIncrement());
+    }
+
+    private static int quantityScaleOf(Product marketInfo) {
+        return Decimal64.scaleOf(marketInfo.getBaseIncrement());
+    }
+
+    public String getEngineName() {
+        return engineName;
+    }
+
+    /**
+     * @param engineName The name of the engine as given on the command line, e.g. "sorted-array"
+     * @return The matching engine
+     * @throws IllegalArgumentException If there is no engine with that name
+     */
+    public static OrderBookEngine fromEngineName(String engineName) {
+        String normalized = engineName.toLowerCase(Locale.ROOT);
+        for (OrderBookEngine engine : values()) {
+            if (engine.engineName.equals(normalized)) {
+                return engine;
+            }
+        }
+        throw new IllegalArgumentException(format("Unknown order book engine [%s]", engineName));
+    }
+}
@@ -0,0 +1,373 @@
+package com.afcrowther.coinbase.connector.service;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * <p>
+ *     One side of a full depth order book. Prices are converted to a tick index (price / tick size) and the quantity
+ *     for each tick within a window around the best price is held directly in a {@code long[]}, so an update is a
+ *     single divide plus an array write, and finding the next best price after the best level is removed is a short
+ *     forward scan over (mostly) adjacent memory.
+ * </p>
+ * <p>
+ *     To keep the maths the same for both sides we work with "keys" where a lower key is always a better price, for
+ *     asks the key is the tick index and for bids it is the negated tick index. Slot 0 of the ladder holds the key
+ *     "base", and the ladder covers the keys [base, base + capacity). Levels deeper than the ladder are kept in a sorted
+ *     overflow (nearest to the ladder first), so no levels are ever thrown away. When the market moves the window is
+ *     recentered around the best price, moving levels between the ladder and the overflow, and if the levels we are
+ *     copying out do not fit in the ladder then it grows (up to a maximum capacity).
+ * </p>
+ * <p>
+ *     Allocation only happens when the ladder or the overflow needs to grow, which settles down very quickly once the
+ *     initial snapshot has been loaded. As with the rest of the order book classes, this is not thread safe.
+ * </p>
+ * <p>
+ *     A price that is not a multiple of the tick size (an old order from before the quote increment changed, say) is
+ *     rounded to the next worse tick and counted, so the level stays on the right side of the book rather than failing
+ *     the whole update. Two such prices that round to the same tick share a level.
+ * </p>
+ */
+class PriceLadder {
+
+    private static final int INITIAL_OVERFLOW_CAPACITY = 1024;
+
+    private final long tickSize;
+    // bids are stored with negated keys, so that for both sides a lower key is a better price
+    private final boolean descending;
+    private final int maxCapacity;
+    // the number of levels from the best price that we consider to be tracked (i.e. would affect the output)
+    private final int trackedLevels;
+
+    private long[] quantities;
+    private int capacity;
+    private long base;
+    // -1 when there are no levels in the ladder
+    private int bestSlot;
+    private int ladderLevels;
+    // the key of the last tracked level, or Long.MAX_VALUE while there are fewer levels than we track. Keys don't change
+    // when the window moves, so this only needs finding again when a level at or inside it is added or removed
+    private long boundaryKey;
+
+    // keys beyond the end of the ladder, sorted ascending, so the nearest level to the ladder is at index 0
+    private long[] overflowKeys;
+    private long[] overflowQuantities;
+    private int overflowSize;
+
+    private long offTickPrices;
+
+    PriceLadder(long tickSize, boolean descending, int initialCapacity, int maxCapacity, int trackedLevels) {
+        this.tickSize = tickSize;
+        this.descending = descending;
+        this.maxCapacity = Math.max(initialCapacity, maxCapacity);
+        this.trackedLevels = trackedLevels;
+        this.quantities = new long[initialCapacity];
+        this.capacity = initialCapacity;
+        this.bestSlot = -1;
+        this.boundaryKey = Long.MAX_VALUE;
+        this.overflowKeys = new long[INITIAL_OVERFLOW_CAPACITY];
+        this.overflowQuantities = new long[INITIAL_OVERFLOW_CAPACITY];
+    }
+
+    /**
+     * Applies a level update, a quantity of 0 removes the level.
+     *
+     * @param price    The price of the level
+     * @param quantity The new quantity at that price
+     * @return Whether or not the update was within the tracked levels from the best price
+     */
+    boolean update(long price, long quantity) {
+        long key = toKey(price);
+        if (bestSlot == -1 && overflowSize == 0) {
+            if (quantity == 0) {
+                return false;
+            }
+            // first level, leave some space in front of it for the market to move into
+            base = key - headroom();
+        } else if (key < base) {
+            if (quantity == 0) {
+                // better than anything we have, so this level can't exist
+                return false;
+            }
+            recenter(key - headroom());
+        }
+
+        boolean levelAddedOrRemoved;
+        if (key >= base + capacity) {
+            levelAddedOrRemoved = updateOverflow(key, quantity);
+        } else {
+            levelAddedOrRemoved = updateLadder((int) (key - base), quantity);
+        }
+
+        // compared against the boundary from before the update, so a removed level at the boundary is still tracked
+        boolean tracked = key <= boundaryKey && (quantity != 0 || levelAddedOrRemoved);
+        if (tracked && levelAddedOrRemoved) {
+            // a level inside the boundary has come or gone, so the boundary has moved by one level
+            findBoundary();
+        }
+
+        if (bestSlot == -1 && overflowSize > 0) {
+            // the ladder has emptied, bring the window back to where the levels are
+            recenter(overflowKeys[0] - headroom());
+        } else if (bestSlot > capacity >> 1) {
+            // the best price has drifted deep into the ladder, move the window along with it
+            recenter(base + bestSlot - headroom());
+        }
+        return tracked;
+    }
+
+    /**
+     * Copies the best levels to the output array, every even index will hold a price and every odd index will hold it's
+     * associated quantity, any space left over is filled with -1 to denote an empty level.
+     *
+     * @param out      The output array
+     * @param bestLast If true the best level is held in the last two indexes of the array, otherwise the first two
+     */
+    void copyTo(AtomicLongArray out, boolean bestLast) {
+        int levelsWanted = out.length() >> 1;
+        if (ladderLevels < levelsWanted && overflowSize > 0 && capacity < maxCapacity) {
+            // the levels that we output should live in the ladder, where they are cheap to find
+            grow();
+        }
+        int level = 0;
+        if (bestSlot != -1) {
+            // stop as soon as we have seen every level in the ladder, so a sparse ladder isn't scanned to the end
+            int levelsInLadder = Math.min(levelsWanted, ladderLevels);
+            for (int slot = bestSlot; level < levelsInLadder; slot++) {
+                long quantity = quantities[slot];
+                if (quantity != 0) {
+                    writeLevel(out, bestLast, level++, toPrice(base + slot), quantity);
+                }
+            }
+        }
+        for (int i = 0; i < overflowSize && level < levelsWanted; i++) {
+            writeLevel(out, bestLast, level++, toPrice(overflowKeys[i]), overflowQuantities[i]);
+        }
+        while (level < levelsWanted) {
+            writeLevel(out, bestLast, level++, -1, -1);
+        }
+    }
+
+    int size() {
+        return ladderLevels + overflowSize;
+    }
+
+    int capacity() {
+        return capacity;
+    }
+
+    /**
+     * @return The number of updates whose price was not a multiple of the tick size, and so was rounded to a worse tick
+     */
+    long offTickPrices() {
+        return offTickPrices;
+    }
+
+    /**
+     * @return Whether or not a level was added or removed
+     */
+    private boolean updateLadder(int slot, long quantity) {
+        long previous = quantities[slot];
+        if (quantity == 0) {
+            if (previous != 0) {
+                quantities[slot] = 0;
+                ladderLevels--;
+                if (slot == bestSlot) {
+                    bestSlot = nextLevelFrom(slot + 1);
+                }
+                return true;
+            }
+            return false;
+        }
+        quantities[slot] = quantity;
+        if (previous == 0) {
+            ladderLevels++;
+            if (bestSlot == -1 || slot < bestSlot) {
+                bestSlot = slot;
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return Whether or not a level was added or removed
+     */
+    private boolean updateOverflow(long key, long quantity) {
+        int index = Arrays.binarySearch(overflowKeys, 0, overflowSize, key);
+        if (quantity == 0) {
+            if (index >= 0) {
+                int toMove = overflowSize - index - 1;
+                System.arraycopy(overflowKeys, index + 1, overflowKeys, index, toMove);
+                System.arraycopy(overflowQuantities, index + 1, overflowQuantities, index, toMove);
+                overflowSize--;
+                return true;
+            }
+            return false;
+        } else if (index >= 0) {
+            overflowQuantities[index] = quantity;
+            return false;
+        } else {
+            int insertionPoint = -(index + 1);
+            ensureOverflowCapacity(overflowSize + 1);
+            int toMove = overflowSize - insertionPoint;
+            System.arraycopy(overflowKeys, insertionPoint, overflowKeys, insertionPoint + 1, toMove);
+            System.arraycopy(overflowQuantities, insertionPoint, overflowQuantities, insertionPoint + 1, toMove);
+            overflowKeys[insertionPoint] = key;
+            overflowQuantities[insertionPoint] = quantity;
+            overflowSize++;
+            return true;
+        }
+    }
+
+    /**
+     * Moves the window so that slot 0 holds the new base key. Any levels that fall off the deep end of the ladder are
+     * moved into the overflow, and any overflow levels that now fit into the ladder are moved into it. This must never
+     * be called with a base that would push a level off the front (better end) of the ladder.
+     */
+    private void recenter(long newBase) {
+        long shift = newBase - base;
+        if (shift < 0) {
+            // moving towards better prices, the deepest levels may no longer fit
+            int moveBy = (int) Math.min(-shift, capacity);
+            int firstSlotOut = capacity - moveBy;
+            pushToOverflow(firstSlotOut);
+            System.arraycopy(quantities, 0, quantities, moveBy, firstSlotOut);
+            Arrays.fill(quantities, 0, moveBy, 0);
+            base = newBase;
+            bestSlot = bestSlot != -1 && bestSlot < firstSlotOut ? bestSlot + moveBy : -1;
+        } else if (shift > 0) {
+            // moving towards worse prices, the front of the ladder is empty so just slide everything forward
+            int moveBy = (int) Math.min(shift, capacity);
+            System.arraycopy(quantities, moveBy, quantities, 0, capacity - moveBy);
+            Arrays.fill(quantities, capacity - moveBy, capacity, 0);
+            base = newBase;
+            pullFromOverflow();
+            bestSlot = nextLevelFrom(0);
+        }
+    }
+
+    /**
+     * Doubles the size of the ladder (up to the max capacity) and moves any overflow levels that fit into it.
+     */
+    private void grow() {
+        int newCapacity = (int) Math.min((long) capacity << 1, maxCapacity);
+        quantities = Arrays.copyOf(quantities, newCapacity);
+        capacity = newCapacity;
+        pullFromOverflow();
+        if (bestSlot == -1) {
+            bestSlot = nextLevelFrom(0);
+        }
+    }
+
+    /**
+     * Moves every level in the slots from firstSlot onwards to the front of the overflow (they are all nearer than
+     * anything already in the overflow).
+     */
+    private void pushToOverflow(int firstSlot) {
+        int count = 0;
+        for (int slot = firstSlot; slot < capacity; slot++) {
+            if (quantities[slot] != 0) {
+                count++;
+            }
+        }
+        if (count == 0) {
+            return;
+        }
+        ensureOverflowCapacity(overflowSize + count);
+        System.arraycopy(overflowKeys, 0, overflowKeys, count, overflowSize);
+        System.arraycopy(overflowQuantities, 0, overflowQuantities, count, overflowSize);
+        int index = 0;
+        for (int slot = firstSlot; slot < capacity; slot++) {
+            long quantity = quantities[slot];
+            if (quantity != 0) {
+                overflowKeys[index] = base + slot;
+                overflowQuantities[index++] = quantity;
+            }
+        }
+        overflowSize += count;
+        ladderLevels -= count;
+    }
+
+    /**
+     * Moves every overflow level that fits within the ladder into it.
+     */
+    private void pullFromOverflow() {
+        long end = base + capacity;
+        int count = 0;
+        while (count < overflowSize && overflowKeys[count] < end) {
+            quantities[(int) (overflowKeys[count] - base)] = overflowQuantities[count];
+            count++;
+        }
+        if (count == 0) {
+            return;
+        }
+        int remaining = overflowSize - count;
+        System.arraycopy(overflowKeys, count, overflowKeys, 0, remaining);
+        System.arraycopy(overflowQuantities, count, overflowQuantities, 0, remaining);
+        overflowSize = remaining;
+        ladderLevels += count;
+    }
+
+    private void ensureOverflowCapacity(int required) {
+        if (required > overflowKeys.length) {
+            int newLength = Math.max(required, overflowKeys.length << 1);
+            overflowKeys = Arrays.copyOf(overflowKeys, newLength);
+            overflowQuantities = Arrays.copyOf(overflowQuantities, newLength);
+        }
+    }
+
+    /**
+     * Finds the key of the last tracked level, walking the ladder from the best price and then the overflow.
+     */
+    private void findBoundary() {
+        int rank = 0;
+        if (bestSlot != -1) {
+            for (int slot = bestSlot; rank < ladderLevels; slot++) {
+                if (quantities[slot] != 0 && ++rank == trackedLevels) {
+                    boundaryKey = base + slot;
+                    return;
+                }
+            }
+        }
+        int index = trackedLevels - rank - 1;
+        boundaryKey = index < overflowSize ? overflowKeys[index] : Long.MAX_VALUE;
+    }
+
+    private int nextLevelFrom(int slot) {
+        if (ladderLevels == 0) {
+            return -1;
+        }
+        for (int i = slot; i < capacity; i++) {
+            if (quantities[i] != 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int headroom() {
+        return capacity >> 2;
+    }
+
+    private long toKey(long price) {
+        // a worse price is always a higher key, so rounding the key up rounds an off tick price to the worse tick
+        long signedPrice = descending ? -price : price;
+        long key = -Math.floorDiv(-signedPrice, tickSize);
+        if (key * tickSize != signedPrice) {
+            offTickPrices++;
+        }
+        return key;
+    }
+
+    private long toPrice(long key) {
+        return (descending ? -key : key) * tickSize;
+    }
+
+    private static void writeLevel(AtomicLongArray out, boolean bestLast, int level, long price, long quantity) {
+        int idx = bestLast ? out.length() - 2 - (level << 1) : level << 1;
+        // use lazySet to take advantage of cpu store buffers
+        out.lazySet(idx, price);
+        out.lazySet(idx + 1, quantity);
+    }
+}
@@ -16,8 +16,15 @@ public class SimpleOrderBookAggregatorService extends OrderBookAggregatorService
     private final TreeMap<Long, Long> bids;
 
     public SimpleOrderBookAggregatorService(String market) {
-        super(market);
-        // to allow for big market movements where levels that we want may be removed, we allocate 20 instead of 10 spaces
+        this(market, DEFAULT_DEPTH);
+    }
+
+    public SimpleOrderBookAggregatorService(String market, int depth) {
+        this(market, depth, Decimal64.UNSCALED, Decimal64.UNSCALED);
+    }
+
+    public SimpleOrderBookAggregatorService(String market, int depth, int priceScale, int quantityScale) {
+        super(market, depth, priceScale, quantityScale);
         this.asks = new TreeMap<>();
         this.bids = new TreeMap<>(Comparator.reverseOrder());
     }
@@ -72,25 +79,26 @@ public class SimpleOrderBookAggregatorService extends OrderBookAggregatorService
     }
 
     private void copyBids(AtomicLongArray out) {
+        int length = out.length();
         int idx = 0;
         for (Map.Entry<Long, Long> level : bids.entrySet()) {
             // use lazySet to take advantage of cpu store buffers
             out.lazySet(idx++, level.getKey());
             out.lazySet(idx++, level.getValue());
-            if (idx == 20) {
+            if (idx == length) {
                 break;
             }
         }
-        // fill the rest with empty levels, for example, in the case that we had 10 levels before and now we have 9, we
+        // fill the rest with empty levels, for example, in the case that we had "depth" levels before and now we have one less, we
         // won't have got rid of the 10th yet at this point, so we need to handle these cases, -1 will denote an empty
         // level at the end of the array
-        while (idx < 20) {
+        while (idx < length) {
             out.lazySet(idx++, -1);
         }
     }
 
     private void copyAsks(AtomicLongArray out) {
-        int idx = 19;
+        int idx = out.length() - 1;
         for (Map.Entry<Long, Long> level : asks.entrySet()) {
             // use lazySet to take advantage of cpu store buffers
             out.lazySet(idx - 1, level.getKey());
@@ -100,7 +108,7 @@ public class SimpleOrderBookAggregatorService extends OrderBookAggregatorService
                 break;
             }
         }
-        // fill the rest with empty levels, for example, in the case that we had 10 levels before and now we have 9, we
+        // fill the rest with empty levels, for example, in the case that we had "depth" levels before and now we have one less, we
         // won't have got rid of the 10th yet at this point, so we need to handle these cases, -1 will denote an empty
         // level at the end of the array
         while (idx > -1) {
@@ -0,0 +1,57 @@
+package com.afcrowther.coinbase.connector.service;
+
+import com.afcrowther.coinbase.connector.domain.Side;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static com.afcrowther.coinbase.connector.domain.Side.BID;
+
+/**
+ * Keeps each side of the order book in parallel primitive price/quantity arrays which are kept sorted by price, with
+ * the best level first. Unlike {@link SimpleOrderBookAggregatorService} there is no boxing of prices and quantities
+ * and no map entries being churned, so after construction the l2update path does not allocate.
+ *
+ * With only "maxSize" levels per side the arrays fit in a handful of cache lines, so the binary search and the
+ * {@link System#arraycopy(Object, int, Object, int, int)} shifts on insert/remove are very cheap.
+ */
+public class SortedArrayOrderBookAggregatorService extends OrderBookAggregatorService {
+
+    private final SortedPriceLevels asks;
+    private final SortedPriceLevels bids;
+
+    public SortedArrayOrderBookAggregatorService(String market) {
+        this(market, DEFAULT_DEPTH);
+    }
+
+    public SortedArrayOrderBookAggregatorService(String market, int depth) {
+        this(market, depth, Decimal64.UNSCALED, Decimal64.UNSCALED);
+    }
+
+    public SortedArrayOrderBookAggregatorService(String market, int depth, int priceScale, int quantityScale) {
+        super(market, depth, priceScale, quantityScale);
+        this.asks = new SortedPriceLevels(maxSize, false);
+        this.bids = new SortedPriceLevels(maxSize, true);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected boolean updateOrderBookLevel(Side side) {
+        SortedPriceLevels workingOn = side == BID ? bids : asks;
+        return workingOn.update(priceQuantityArray[0], priceQuantityArray[1]);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void copyToOutputArray(AtomicLongArray out, Side side) {
+        if (side == BID) {
+            bids.copyBestFirst(out);
+        } else {
+            // asks are printed top down, so the best (lowest) ask goes at the end of the array
+            asks.copyBestLast(out);
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.afcrowther.coinbase.connector.service;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * One side of an order book held as two parallel primitive arrays (prices and quantities) that are kept sorted with
+ * the best price at index 0. Lookups are done with a binary search and inserts/removals shift the tail of the arrays
+ * using {@link System#arraycopy(Object, int, Object, int, int)}, so once constructed this never allocates or boxes.
+ *
+ * As with the rest of the order book classes, this is not thread safe.
+ */
+class SortedPriceLevels {
+
+    private final long[] prices;
+    private final long[] quantities;
+    private final int capacity;
+    // bids are sorted highest price first, asks lowest price first
+    private final boolean descending;
+    private int size;
+
+    SortedPriceLevels(int capacity, boolean descending) {
+        this.prices = new long[capacity];
+        this.quantities = new long[capacity];
+        this.capacity = capacity;
+        this.descending = descending;
+        this.size = 0;
+    }
+
+    /**
+     * Applies a level update, a quantity of 0 removes the level. If we are at capacity, a new level that is better than
+     * our worst level will push the worst level out, and a new level that is worse than it is ignored.
+     *
+     * @param price    The price of the level
+     * @param quantity The new quantity at that price
+     * @return Whether or not this update occurred at a level we are tracking
+     */
+    boolean update(long price, long quantity) {
+        int index = indexOf(price);
+        if (quantity == 0) {
+            if (index < 0) {
+                return false;
+            }
+            // shift everything behind the removed level forward by one
+            int toMove = size - index - 1;
+            System.arraycopy(prices, index + 1, prices, index, toMove);
+            System.arraycopy(quantities, index + 1, quantities, index, toMove);
+            size--;
+            return true;
+        }
+        if (index >= 0) {
+            // we can replace a level that already exists
+            quantities[index] = quantity;
+            return true;
+        }
+        int insertionPoint = -(index + 1);
+        if (size == capacity) {
+            if (insertionPoint == capacity) {
+                // worse than everything we are tracking
+                return false;
+            }
+            // we need to remove the worst level due to size constraints, it gets overwritten by the shift below
+            size--;
+        }
+        int toMove = size - insertionPoint;
+        System.arraycopy(prices, insertionPoint, prices, insertionPoint + 1, toMove);
+        System.arraycopy(quantities, insertionPoint, quantities, insertionPoint + 1, toMove);
+        prices[insertionPoint] = price;
+        quantities[insertionPoint] = quantity;
+        size++;
+        return true;
+    }
+
+    /**
+     * Copies the levels best first, every even index will hold a price and every odd index will hold it's associated
+     * quantity. Any space left over is filled with -1 to denote an empty level.
+     */
+    void copyBestFirst(AtomicLongArray out) {
+        int idx = 0;
+        for (int i = 0; i < size && idx < out.length(); i++) {
+            // use lazySet to take advantage of cpu store buffers
+            out.lazySet(idx++, prices[i]);
+            out.lazySet(idx++, quantities[i]);
+        }
+        while (idx < out.length()) {
+            out.lazySet(idx++, -1);
+        }
+    }
+
+    /**
+     * Copies the levels best last (so the best level is held in the last two indexes of the array), every even index
+     * will hold a price and every odd index will hold it's associated quantity. Any space left over at the start of
+     * the array is filled with -1 to denote an empty level.
+     */
+    void copyBestLast(AtomicLongArray out) {
+        int idx = out.length() - 1;
+        for (int i = 0; i < size && idx > 0; i++) {
+            // use lazySet to take advantage of cpu store buffers
+            out.lazySet(idx--, quantities[i]);
+            out.lazySet(idx--, prices[i]);
+        }
+        while (idx > -1) {
+            out.lazySet(idx--, -1);
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Binary search for the price, following the same contract as {@link java.util.Arrays#binarySearch(long[], long)},
+     * i.e. returns the index if found, otherwise {@code -(insertion point) - 1}.
+     */
+    private int indexOf(long price) {
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long midPrice = prices[mid];
+            if (midPrice == price) {
+                return mid;
+            } else if (descending ? midPrice > price : midPrice < price) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return -(low + 1);
+    }
+}
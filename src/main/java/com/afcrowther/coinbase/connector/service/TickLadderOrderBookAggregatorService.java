@@ -0,0 +1,107 @@
+package com.afcrowther.coinbase.connector.service;
+
+import com.afcrowther.coinbase.connector.domain.Side;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static com.afcrowther.coinbase.connector.domain.Side.BID;
+
+/**
+ * A full depth order book, each side is a {@link PriceLadder} which maps each price directly to a slot in a
+ * {@code long[]} using the tick size of the market. Unlike the other implementations no levels are ever dropped, so
+ * when the market sweeps through the top of the book the levels behind it are still there to take its place.
+ *
+ * Only the levels within "maxSize" of the best price count as tracked, so {@link #updateOrderBook} reports changes in
+ * the same way as the depth limited implementations.
+ */
+public class TickLadderOrderBookAggregatorService extends OrderBookAggregatorService {
+
+    // 4096 ticks is ~$40 either side of the best price on BTC-USD, more than enough for the levels we copy out
+    private static final int INITIAL_LADDER_CAPACITY = 4096;
+    // 1M ticks (8MB) per side is the most we let a ladder grow to, anything deeper stays in the overflow
+    private static final int MAX_LADDER_CAPACITY = 1 << 20;
+
+    private final PriceLadder asks;
+    private final PriceLadder bids;
+
+    /**
+     * @param market   The market of the order book
+     * @param tickSize The quote increment of the market, in the same units as the prices parsed from the feed
+     */
+    public TickLadderOrderBookAggregatorService(String market, long tickSize) {
+        this(market, tickSize, DEFAULT_DEPTH);
+    }
+
+    /**
+     * @param market   The market of the order book
+     * @param tickSize The quote increment of the market, in the same units as the prices parsed from the feed
+     * @param depth    The number of levels of each side of the order book that are copied to the output arrays
+     */
+    public TickLadderOrderBookAggregatorService(String market, long tickSize, int depth) {
+        this(market, tickSize, depth, Decimal64.UNSCALED, Decimal64.UNSCALED);
+    }
+
+    /**
+     * @param market        The market of the order book
+     * @param tickSize      The quote increment of the market, as a fixed point long with the price scale (see
+     *                      {@link Decimal64#unitsOf(String)})
+     * @param depth         The number of levels of each side of the order book that are copied to the output arrays
+     * @param priceScale    The number of decimal places prices are normalized to
+     * @param quantityScale The number of decimal places quantities are normalized to
+     */
+    public TickLadderOrderBookAggregatorService(String market, long tickSize, int depth, int priceScale,
+                                                int quantityScale) {
+        super(market, depth, priceScale, quantityScale);
+        if (tickSize <= 0) {
+            throw new IllegalArgumentException("Tick size must be positive");
+        }
+        this.asks = new PriceLadder(tickSize, false, INITIAL_LADDER_CAPACITY, MAX_LADDER_CAPACITY, maxSize);
+        this.bids = new PriceLadder(tickSize, true, INITIAL_LADDER_CAPACITY, MAX_LADDER_CAPACITY, maxSize);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected boolean updateOrderBookLevel(Side side) {
+        PriceLadder workingOn = side == BID ? bids : asks;
+        return workingOn.update(priceQuantityArray[0], priceQuantityArray[1]);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void copyToOutputArray(AtomicLongArray out, Side side) {
+        if (side == BID) {
+            bids.copyTo(out, false);
+        } else {
+            // asks are printed top down, so the best (lowest) ask goes at the end of the array
+            asks.copyTo(out, true);
+        }
+    }
+
+    int getBidLevels() {
+        return bids.size();
+    }
+
+    int getAskLevels() {
+        return asks.size();
+    }
+
+    /**
+     * @return The number of level updates whose price was not a multiple of the tick size, and were rounded to the next
+     * worse tick
+     */
+    public long getOffTickPrices() {
+        return bids.offTickPrices() + asks.offTickPrices();
+    }
+
+    /**
+     * We keep the full depth of the book, so we want every level of the snapshot.
+     */
+    @Override
+    protected int getSnapshotLevelLimit() {
+        return Integer.MAX_VALUE;
+    }
+}
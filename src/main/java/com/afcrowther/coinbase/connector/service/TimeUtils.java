@@ -0,0 +1,125 @@
+package com.afcrowther.coinbase.connector.service;
+
+import static com.afcrowther.coinbase.connector.service.UtilsConstants.ZERO;
+
+/**
+ * Formats and parses the ISO-8601 timestamps of the Coinbase Pro feed, e.g. "2021-04-28T15:27:02.638954Z", straight
+ * to and from a byte array, without going through java.time (or allocating).
+ */
+public class TimeUtils {
+
+    private TimeUtils() {}
+
+    // the length of "2021-04-28T15:27:02.638954Z"
+    public static final int ISO_TIMESTAMP_MICROS_LENGTH = 27;
+
+    private static final long MICROS_PER_SECOND = 1_000_000;
+    private static final long SECONDS_PER_DAY = 86_400;
+    private static final byte Z = 90;
+
+    /**
+     * Writes the time given as a UTC ISO-8601 timestamp with microseconds, the same as the "time" of the messages of
+     * the feed, e.g. "2021-04-28T15:27:02.638954Z".
+     *
+     * @param epochMicros The time, in microseconds since the epoch, which must be after the epoch
+     * @param dst         The array to write to, which must have room for {@link #ISO_TIMESTAMP_MICROS_LENGTH} bytes
+     * @param index       The index of the array to start writing at
+     * @return The index after the last character written
+     */
+    public static int putIsoTimestamp(long epochMicros, byte[] dst, int index) {
+        long epochSeconds = epochMicros / MICROS_PER_SECOND;
+        int micros = (int) (epochMicros - epochSeconds * MICROS_PER_SECOND);
+        long epochDay = epochSeconds / SECONDS_PER_DAY;
+        int secondOfDay = (int) (epochSeconds - epochDay * SECONDS_PER_DAY);
+
+        // the civil date of the day, counting in eras of 400 years from 0000-03-01, so that the leap day is the last
+        // day of each year (see http://howardhinnant.github.io/date_algorithms.html#civil_from_days)
+        long days = epochDay + 719_468;
+        long era = days / 146_097;
+        int dayOfEra = (int) (days - era * 146_097);
+        int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36_524 - dayOfEra / 146_096) / 365;
+        int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        int shiftedMonth = (5 * dayOfYear + 2) / 153;
+        int day = dayOfYear - (153 * shiftedMonth + 2) / 5 + 1;
+        int month = shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9;
+        int year = (int) (yearOfEra + era * 400) + (month <= 2 ? 1 : 0);
+
+        index = putDigits(year, 4, dst, index);
+        dst[index++] = '-';
+        index = putDigits(month, 2, dst, index);
+        dst[index++] = '-';
+        index = putDigits(day, 2, dst, index);
+        dst[index++] = 'T';
+        index = putDigits(secondOfDay / 3600, 2, dst, index);
+        dst[index++] = ':';
+        index = putDigits(secondOfDay / 60 % 60, 2, dst, index);
+        dst[index++] = ':';
+        index = putDigits(secondOfDay % 60, 2, dst, index);
+        dst[index++] = '.';
+        index = putDigits(micros, 6, dst, index);
+        dst[index++] = 'Z';
+        return index;
+    }
+
+    /**
+     * Parses a UTC ISO-8601 timestamp, as given by the "time" of the messages of the feed, with any number of digits of
+     * fraction (or none), e.g. "2019-08-14T20:42:27.265Z" or "2021-04-28T15:27:02.638954Z". Digits past the
+     * microseconds are dropped.
+     *
+     * @param src   The array holding the timestamp
+     * @param index The index of the first digit of the year
+     * @return The time, in microseconds since the epoch
+     */
+    public static long parseIsoTimestamp(byte[] src, int index) {
+        int year = parseDigits(src, index, 4);
+        int month = parseDigits(src, index + 5, 2);
+        int day = parseDigits(src, index + 8, 2);
+        int hour = parseDigits(src, index + 11, 2);
+        int minute = parseDigits(src, index + 14, 2);
+        int second = parseDigits(src, index + 17, 2);
+
+        // the inverse of the above (see http://howardhinnant.github.io/date_algorithms.html#days_from_civil)
+        int shiftedYear = month <= 2 ? year - 1 : year;
+        int era = shiftedYear / 400;
+        int yearOfEra = shiftedYear - era * 400;
+        int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        long epochDay = era * 146_097L + dayOfEra - 719_468;
+        long epochSeconds = epochDay * SECONDS_PER_DAY + hour * 3600 + minute * 60 + second;
+
+        int micros = 0;
+        int currentIndex = index + 19;
+        if (src[currentIndex] != Z) {
+            // skip the decimal point, then take up to six digits of the fraction, up to the 'Z'
+            currentIndex++;
+            int digits = 0;
+            for (byte next = src[currentIndex]; next != Z; next = src[++currentIndex]) {
+                if (digits < 6) {
+                    micros = micros * 10 + (next - ZERO);
+                    digits++;
+                }
+            }
+            for (; digits < 6; digits++) {
+                micros *= 10;
+            }
+        }
+        return epochSeconds * MICROS_PER_SECOND + micros;
+    }
+
+    private static int parseDigits(byte[] src, int index, int digits) {
+        int value = 0;
+        for (int i = index; i < index + digits; i++) {
+            value = value * 10 + (src[i] - ZERO);
+        }
+        return value;
+    }
+
+    // the value zero padded to the number of digits given
+    private static int putDigits(int value, int digits, byte[] dst, int index) {
+        for (int i = index + digits - 1; i >= index; i--) {
+            dst[i] = (byte) (ZERO + value % 10);
+            value /= 10;
+        }
+        return index + digits;
+    }
+}
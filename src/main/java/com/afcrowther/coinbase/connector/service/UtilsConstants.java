@@ -14,6 +14,8 @@ public class UtilsConstants {
     static final byte[] NUMBERS_TO_LATIN_1 = new byte[255];
     // vice-versa
     static final byte[] LATIN_1_TO_NUMBERS = new byte[255];
+    // 10^i at index i, up to the largest power of ten that fits in a long
+    static final long[] POWERS_OF_TEN = new long[19];
 
     static {
         Arrays.fill(NUMBERS_TO_LATIN_1, (byte) -1);
@@ -24,5 +26,9 @@ public class UtilsConstants {
         for (int i = 48; i < 58; i++) {
             LATIN_1_TO_NUMBERS[i] = (byte) (i - 48);
         }
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
     }
 }
@@ -0,0 +1,96 @@
+package com.afcrowther.coinbase.connector.shard;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import static java.lang.String.format;
+
+/**
+ * The ways the markets can be split between the shards of the connector, each shard being a
+ * {@link com.afcrowther.coinbase.connector.CoinbaseConnectorVerticle} with an event loop and WebSocket connection of
+ * its own, so that it can be picked at startup (e.g. "--shard-by rate").
+ */
+public enum ShardAssignment {
+
+    HASH("hash") {
+        @Override
+        public List<List<String>> assign(List<String> markets, int shards, Map<String, Double> rates) {
+            List<List<String>> assigned = emptyShards(shards);
+            for (String market : markets) {
+                // String.hashCode is part of its contract, so a market lands on the same shard from one run to the next
+                assigned.get(Math.floorMod(market.hashCode(), shards)).add(market);
+            }
+            return assigned;
+        }
+    },
+    RATE("rate") {
+        @Override
+        public List<List<String>> assign(List<String> markets, int shards, Map<String, Double> rates) {
+            // a market we have no rate for is taken to be as busy as the average of those we do
+            double defaultRate = rates.values().stream().mapToDouble(Double::doubleValue).average().orElse(1);
+            List<String> busiestFirst = new ArrayList<>(markets);
+            busiestFirst.sort(Comparator.comparingDouble((String market) -> rates.getOrDefault(market, defaultRate))
+                    .reversed().thenComparing(Comparator.naturalOrder()));
+            // the busiest markets are placed first, each on whichever shard has the least to do so far
+            List<List<String>> assigned = emptyShards(shards);
+            double[] load = new double[shards];
+            for (String market : busiestFirst) {
+                int quietest = 0;
+                for (int i = 1; i < shards; i++) {
+                    if (load[i] < load[quietest]) {
+                        quietest = i;
+                    }
+                }
+                assigned.get(quietest).add(market);
+                load[quietest] += rates.getOrDefault(market, defaultRate);
+            }
+            return assigned;
+        }
+    };
+
+    private final String assignmentName;
+
+    ShardAssignment(String assignmentName) {
+        this.assignmentName = assignmentName;
+    }
+
+    /**
+     * @param markets The markets to split between the shards
+     * @param shards  The number of shards
+     * @param rates   The measured number of messages a second of each market (see
+     *                {@link com.afcrowther.coinbase.connector.metrics.MetricsLogger#readL2UpdateRates}), only used by
+     *                {@link #RATE}
+     * @return The markets of each shard, one list per shard, some of which may be empty
+     */
+    public abstract List<List<String>> assign(List<String> markets, int shards, Map<String, Double> rates);
+
+    private static List<List<String>> emptyShards(int shards) {
+        List<List<String>> assigned = new ArrayList<>(shards);
+        for (int i = 0; i < shards; i++) {
+            assigned.add(new ArrayList<>());
+        }
+        return assigned;
+    }
+
+    public String getAssignmentName() {
+        return assignmentName;
+    }
+
+    /**
+     * @param assignmentName The name of the assignment as given on the command line, e.g. "hash"
+     * @return The matching assignment
+     * @throws IllegalArgumentException If there is no assignment with that name
+     */
+    public static ShardAssignment fromAssignmentName(String assignmentName) {
+        String normalized = assignmentName.toLowerCase(Locale.ROOT);
+        for (ShardAssignment assignment : values()) {
+            if (assignment.assignmentName.equals(normalized)) {
+                return assignment;
+            }
+        }
+        throw new IllegalArgumentException(format("Unknown shard assignment [%s]", assignmentName));
+    }
+}
@@ -0,0 +1,170 @@
+package com.afcrowther.coinbase.connector.standin;
+
+import com.afcrowther.coinbase.connector.printer.ConsolePrinter;
+import com.afcrowther.coinbase.connector.printer.Printer;
+import io.vertx.core.Vertx;
+import io.vertx.core.VertxOptions;
+import io.vertx.core.cli.CLI;
+import io.vertx.core.cli.CommandLine;
+import io.vertx.core.cli.Option;
+
+import java.util.Arrays;
+
+import static java.lang.String.format;
+
+/**
+ * Runs a {@link StandInServerVerticle} on this machine, so that the whole of the connector (the Rest call, the
+ * WebSocket, parsing, the order book and printing) can be run against a feed far busier than the live one, e.g.
+ * <pre>
+ *     java -cp coinbase-connector-jar-with-dependencies.jar \
+ *         com.afcrowther.coinbase.connector.standin.CoinbaseProStandIn --rate 100000
+ *     ./application_start.sh BTC-USD --rest-url http://localhost:8080 --feed-url ws://localhost:8080
+ * </pre>
+ * The number of messages sent in the last second is printed every second.
+ */
+public class CoinbaseProStandIn {
+
+    private static final String DEFAULT_PORT = "8080";
+    private static final String DEFAULT_RATE = "10000";
+    private static final long REPORT_PERIOD_MILLIS = 1000;
+
+    private final CLI cli;
+    private final Printer printer;
+    private long lastSentMessages;
+
+    public CoinbaseProStandIn(CLI cli, Printer printer) {
+        this.cli = cli;
+        this.printer = printer;
+    }
+
+    private void initialize(String[] args) {
+        CommandLine commandLine = cli.parse(Arrays.asList(args));
+        if (!commandLine.isValid() || commandLine.isAskingForHelp()) {
+            printUsageAndExit();
+        }
+
+        int port = parsePositive(commandLine, "port");
+        int rate = parsePositive(commandLine, "rate");
+        L2UpdateGeneratorOptions generatorOptions = null;
+        try {
+            generatorOptions = new L2UpdateGeneratorOptions()
+                    .setMidPrice(commandLine.getOptionValue("mid-price"))
+                    .setLevels(Integer.parseInt(commandLine.getOptionValue("levels")))
+                    .setSkew(Double.parseDouble(commandLine.getOptionValue("skew")))
+                    .setSweepProbability(Double.parseDouble(commandLine.getOptionValue("sweep-probability")))
+                    .setMaxSweepLevels(Integer.parseInt(commandLine.getOptionValue("max-sweep-levels")))
+                    .setBurstProbability(Double.parseDouble(commandLine.getOptionValue("burst-probability")))
+                    .setMaxChangesPerMessage(Integer.parseInt(commandLine.getOptionValue("max-changes")))
+                    .setSeed(Long.parseLong(commandLine.getOptionValue("seed")));
+            // fail here rather than on the first subscription
+            new L2UpdateGenerator(StandInServerVerticle.product("BTC-USD"), generatorOptions);
+        } catch (IllegalArgumentException e) {
+            // including the NumberFormatExceptions
+            printer.printLine(e.getMessage());
+            printUsageAndExit();
+        }
+
+        // the server gets an event loop of its own, a connector run on the same machine should get the rest
+        Vertx vertx = Vertx.vertx(new VertxOptions()
+                .setEventLoopPoolSize(1)
+                .setWorkerPoolSize(1)
+                .setPreferNativeTransport(true));
+        StandInServerVerticle server = new StandInServerVerticle(port, rate, generatorOptions);
+        vertx.deployVerticle(server).onComplete(ar -> {
+            if (ar.failed()) {
+                printer.printLine(format("Failed to start the stand-in: [%s]", ar.cause().getMessage()));
+                vertx.close(v -> System.exit(1));
+                return;
+            }
+            printer.printLine(format("Coinbase Pro stand-in listening, connect with '--rest-url http://localhost:%d " +
+                    "--feed-url ws://localhost:%d'", server.getPort(), server.getPort()));
+            vertx.setPeriodic(REPORT_PERIOD_MILLIS, id -> {
+                long sentMessages = server.getSentMessages();
+                if (sentMessages != lastSentMessages) {
+                    printer.printLine(format("Sent %d l2update messages in the last second",
+                            sentMessages - lastSentMessages));
+                    lastSentMessages = sentMessages;
+                }
+            });
+        });
+    }
+
+    private int parsePositive(CommandLine commandLine, String option) {
+        int value = -1;
+        try {
+            value = Integer.parseInt(commandLine.getOptionValue(option));
+        } catch (NumberFormatException e) {
+            // handled below
+        }
+        if (value < 1) {
+            printer.printLine(format("The %s provided must be a positive whole number", option));
+            printUsageAndExit();
+        }
+        return value;
+    }
+
+    private void printUsageAndExit() {
+        StringBuilder sb = new StringBuilder();
+        cli.usage(sb);
+        printer.printLine(sb);
+        System.exit(1);
+    }
+
+    private static CLI getCli() {
+        return CLI.create("Coinbase Pro Stand-in")
+                .setSummary("Serves the Coinbase Pro Rest API's /products/{id} and a level2 WebSocket feed of " +
+                        "generated l2update messages, for running the Coinbase Connector against a feed busier than " +
+                        "the live one.")
+                .addOption(new Option()
+                        .setLongName("port")
+                        .setDefaultValue(DEFAULT_PORT)
+                        .setDescription("The port to serve both the Rest API and the WebSocket feed on"))
+                .addOption(new Option()
+                        .setLongName("rate")
+                        .setShortName("r")
+                        .setDefaultValue(DEFAULT_RATE)
+                        .setDescription("The number of l2update messages a second sent to each subscriber, e.g. " +
+                                "1000 up to several hundred thousand"))
+                .addOption(new Option()
+                        .setLongName("mid-price")
+                        .setDefaultValue(L2UpdateGeneratorOptions.DEFAULT_MID_PRICE)
+                        .setDescription("The price the book of each market starts around"))
+                .addOption(new Option()
+                        .setLongName("levels")
+                        .setDefaultValue(String.valueOf(L2UpdateGeneratorOptions.DEFAULT_LEVELS))
+                        .setDescription("The number of levels each side of the snapshot"))
+                .addOption(new Option()
+                        .setLongName("skew")
+                        .setDefaultValue(String.valueOf(L2UpdateGeneratorOptions.DEFAULT_SKEW))
+                        .setDescription("How tightly the changes are bunched around the touch, 1 spreads them " +
+                                "evenly across the book"))
+                .addOption(new Option()
+                        .setLongName("sweep-probability")
+                        .setDefaultValue(String.valueOf(L2UpdateGeneratorOptions.DEFAULT_SWEEP_PROBABILITY))
+                        .setDescription("The chance that a message sweeps a run of levels from the touch"))
+                .addOption(new Option()
+                        .setLongName("max-sweep-levels")
+                        .setDefaultValue(String.valueOf(L2UpdateGeneratorOptions.DEFAULT_MAX_SWEEP_LEVELS))
+                        .setDescription("The most levels a sweep takes out"))
+                .addOption(new Option()
+                        .setLongName("burst-probability")
+                        .setDefaultValue(String.valueOf(L2UpdateGeneratorOptions.DEFAULT_BURST_PROBABILITY))
+                        .setDescription("The chance that a message carries several changes"))
+                .addOption(new Option()
+                        .setLongName("max-changes")
+                        .setDefaultValue(String.valueOf(L2UpdateGeneratorOptions.DEFAULT_MAX_CHANGES_PER_MESSAGE))
+                        .setDescription("The most changes a message of a burst carries"))
+                .addOption(new Option()
+                        .setLongName("seed")
+                        .setDefaultValue(String.valueOf(L2UpdateGeneratorOptions.DEFAULT_SEED))
+                        .setDescription("The seed of the generated feed, the same seed and options give the same " +
+                                "messages"))
+                .addOption(new Option()
+                        .setLongName("help").setShortName("h").setFlag(true).setHelp(true));
+    }
+
+    public static void main(String[] args) {
+        CoinbaseProStandIn standIn = new CoinbaseProStandIn(getCli(), new ConsolePrinter());
+        standIn.initialize(args);
+    }
+}
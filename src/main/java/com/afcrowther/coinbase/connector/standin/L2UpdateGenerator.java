@@ -0,0 +1,342 @@
+package com.afcrowther.coinbase.connector.standin;
+
+import com.afcrowther.coinbase.connector.domain.coinbase.Product;
+import com.afcrowther.coinbase.connector.service.Decimal64;
+import com.afcrowther.coinbase.connector.service.LongUtils;
+import com.afcrowther.coinbase.connector.service.TimeUtils;
+
+import java.util.SplittableRandom;
+
+import static java.lang.String.format;
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+
+/**
+ * <p>
+ *     Generates a level 2 feed for a market, a snapshot followed by as many l2update messages as are wanted, byte for
+ *     byte in the layout the Coinbase Pro feed uses (and so the layout the order books parse, see
+ *     {@link com.afcrowther.coinbase.connector.service.OrderBookAggregatorService}). The generator keeps a book of its
+ *     own, so the updates are consistent with it: levels that are removed exist, and the bids never cross the asks.
+ * </p>
+ * <p>
+ *     The feed looks like the live one rather than uniform noise (see {@link L2UpdateGeneratorOptions}): most changes
+ *     land a few ticks from the touch with the odd one further out, every so often a sweep takes out a run of levels
+ *     from the touch in one message, and some messages come as bursts of several changes. The same seed and options
+ *     give the same feed, other than the time of each update, which is given by the caller, so benchmark runs can be
+ *     repeated.
+ * </p>
+ * <p>
+ *     Each message is written into the same array (see {@link #getFrame()}), so generating doesn't allocate. The array
+ *     is only valid until the next message is generated.
+ * </p>
+ */
+public class L2UpdateGenerator {
+
+    // the chance that a change removes a level rather than setting the quantity of one
+    private static final double REMOVE_PROBABILITY = 0.3;
+    // the chance that a change improves on the touch, rather than landing on or behind it
+    private static final double IMPROVE_PROBABILITY = 0.05;
+    // the biggest quantity, in lots of the base increment, e.g. 10 BTC
+    private static final int MAX_QUANTITY = 1_000_000_000;
+    // the gaps between the levels of the snapshot, in ticks
+    private static final int MAX_SNAPSHOT_GAP = 3;
+    // room for '["10101.10000000","0.45054140"],' at the widest
+    private static final int MAX_LEVEL_LENGTH = 48;
+
+    private static final byte[] SNAPSHOT_START = "{\"type\":\"snapshot\",\"product_id\":\"".getBytes(ISO_8859_1);
+    private static final byte[] ASKS_START = "\",\"asks\":[".getBytes(ISO_8859_1);
+    private static final byte[] BIDS_START = "],\"bids\":[".getBytes(ISO_8859_1);
+    private static final byte[] SNAPSHOT_END = "]}".getBytes(ISO_8859_1);
+    private static final byte[] UPDATE_START = "{\"type\":\"l2update\",\"product_id\":\"".getBytes(ISO_8859_1);
+    private static final byte[] CHANGES_START = "\",\"changes\":[".getBytes(ISO_8859_1);
+    private static final byte[] BUY = "[\"buy\",\"".getBytes(ISO_8859_1);
+    private static final byte[] SELL = "[\"sell\",\"".getBytes(ISO_8859_1);
+    private static final byte[] TIME_START = "],\"time\":\"".getBytes(ISO_8859_1);
+    private static final byte[] UPDATE_END = "\"}".getBytes(ISO_8859_1);
+
+    private final byte[] productId;
+    private final int priceScale;
+    private final int quantityScale;
+    private final long tickSize;
+    private final long basePrice;
+    private final int levels;
+    private final double skew;
+    private final double sweepProbability;
+    private final int maxSweepLevels;
+    private final double burstProbability;
+    private final int maxChangesPerMessage;
+    private final SplittableRandom random;
+    // the quantity at each tick from the base price, 0 where there is no level
+    private final long[] ladder;
+    private int bestBid;
+    private int bestAsk;
+    private int bidLevels;
+    private int askLevels;
+    private byte[] frame;
+
+    /**
+     * @param product The market to generate the feed of, only the id and the increments are used
+     * @param options The shape of the feed
+     * @throws IllegalArgumentException If the options don't make sense, e.g. a negative probability
+     */
+    public L2UpdateGenerator(Product product, L2UpdateGeneratorOptions options) {
+        validate(options);
+        this.productId = product.getId().getBytes(ISO_8859_1);
+        this.priceScale = Decimal64.scaleOf(product.getQuoteIncrement());
+        this.quantityScale = Decimal64.scaleOf(product.getBaseIncrement());
+        this.tickSize = Decimal64.unitsOf(product.getQuoteIncrement());
+        this.levels = options.getLevels();
+        this.skew = options.getSkew();
+        this.sweepProbability = options.getSweepProbability();
+        this.maxSweepLevels = options.getMaxSweepLevels();
+        this.burstProbability = options.getBurstProbability();
+        this.maxChangesPerMessage = options.getMaxChangesPerMessage();
+        this.random = new SplittableRandom(options.getSeed());
+        this.ladder = new long[levels * 2 * MAX_SNAPSHOT_GAP * 2];
+        long mid = Decimal64.parse(options.getMidPrice(), priceScale);
+        this.basePrice = mid - (ladder.length / 2) * tickSize;
+        if (basePrice <= 0) {
+            throw new IllegalArgumentException(format("Mid price [%s] is too low for [%d] levels",
+                    options.getMidPrice(), levels));
+        }
+        int maxChanges = Math.max(maxSweepLevels, maxChangesPerMessage);
+        this.frame = new byte[UPDATE_START.length + productId.length + CHANGES_START.length
+                + maxChanges * (SELL.length + MAX_LEVEL_LENGTH) + TIME_START.length
+                + TimeUtils.ISO_TIMESTAMP_MICROS_LENGTH + UPDATE_END.length];
+        fillBook();
+    }
+
+    /**
+     * Writes the snapshot of the book as it is now into the frame.
+     *
+     * @return The length of the snapshot in {@link #getFrame()}
+     */
+    public int snapshot() {
+        int levelCount = 0;
+        for (long quantity : ladder) {
+            if (quantity != 0) {
+                levelCount++;
+            }
+        }
+        int maxLength = SNAPSHOT_START.length + productId.length + ASKS_START.length + BIDS_START.length
+                + SNAPSHOT_END.length + levelCount * MAX_LEVEL_LENGTH;
+        if (frame.length < maxLength) {
+            frame = new byte[maxLength];
+        }
+        int index = put(SNAPSHOT_START, 0);
+        index = put(productId, index);
+        index = put(ASKS_START, index);
+        int first = index;
+        for (int tick = bestAsk; tick < ladder.length; tick++) {
+            if (ladder[tick] != 0) {
+                if (index != first) {
+                    frame[index++] = ',';
+                }
+                index = putLevel(tick, index);
+            }
+        }
+        index = put(BIDS_START, index);
+        first = index;
+        for (int tick = bestBid; tick >= 0; tick--) {
+            if (ladder[tick] != 0) {
+                if (index != first) {
+                    frame[index++] = ',';
+                }
+                index = putLevel(tick, index);
+            }
+        }
+        return put(SNAPSHOT_END, index);
+    }
+
+    /**
+     * Makes the next change (or changes) to the book, and writes them as an l2update message into the frame.
+     *
+     * @param epochMicros The time of the update, in microseconds since the epoch
+     * @return The length of the update in {@link #getFrame()}
+     */
+    public int nextUpdate(long epochMicros) {
+        int index = put(UPDATE_START, 0);
+        index = put(productId, index);
+        index = put(CHANGES_START, index);
+        double roll = random.nextDouble();
+        int sweepLevels = roll < sweepProbability ? 1 + random.nextInt(maxSweepLevels) : 0;
+        boolean buy = random.nextBoolean();
+        // a side is never swept bare
+        sweepLevels = Math.min(sweepLevels, (buy ? bidLevels : askLevels) - 1);
+        if (sweepLevels > 0) {
+            for (int i = 0; i < sweepLevels; i++) {
+                int tick = buy ? bestBid : bestAsk;
+                setLevel(buy, tick, 0);
+                index = putChange(buy, tick, i == 0 ? index : putComma(index));
+            }
+        } else {
+            int changes = roll < sweepProbability + burstProbability && maxChangesPerMessage > 1
+                    ? 2 + random.nextInt(maxChangesPerMessage - 1) : 1;
+            for (int i = 0; i < changes; i++) {
+                if (i > 0) {
+                    buy = random.nextBoolean();
+                }
+                int tick = nextChange(buy);
+                index = putChange(buy, tick, i == 0 ? index : putComma(index));
+            }
+        }
+        index = put(TIME_START, index);
+        index = TimeUtils.putIsoTimestamp(epochMicros, frame, index);
+        return put(UPDATE_END, index);
+    }
+
+    /**
+     * @return The frame the last snapshot or update was written to, which is replaced by a bigger one if a snapshot
+     *         doesn't fit, so should be got after the snapshot or update has been generated
+     */
+    public byte[] getFrame() {
+        return frame;
+    }
+
+    private void fillBook() {
+        int mid = ladder.length / 2;
+        int tick = mid;
+        for (int i = 0; i < levels; i++) {
+            ladder[tick] = nextQuantity();
+            tick += 1 + random.nextInt(MAX_SNAPSHOT_GAP);
+        }
+        bestAsk = mid;
+        askLevels = levels;
+        tick = mid - 1;
+        for (int i = 0; i < levels; i++) {
+            ladder[tick] = nextQuantity();
+            tick -= 1 + random.nextInt(MAX_SNAPSHOT_GAP);
+        }
+        bestBid = mid - 1;
+        bidLevels = levels;
+    }
+
+    // changes a level of the side given, returning its tick
+    private int nextChange(boolean buy) {
+        double roll = random.nextDouble();
+        int spread = bestAsk - bestBid;
+        if (roll < IMPROVE_PROBABILITY && spread > 1) {
+            // somewhere inside the spread, which refills it quickly after a sweep
+            int ticksIn = 1 + random.nextInt(spread - 1);
+            int tick = buy ? bestBid + ticksIn : bestAsk - ticksIn;
+            setLevel(buy, tick, nextQuantity());
+            return tick;
+        }
+        // raised to the skew, so that the higher it is the more changes are near the touch
+        double distance = Math.pow(random.nextDouble(), skew);
+        int ticksAway = (int) (distance * levels * MAX_SNAPSHOT_GAP);
+        int tick = buy ? Math.max(0, bestBid - ticksAway) : Math.min(ladder.length - 1, bestAsk + ticksAway);
+        // only remove levels that exist, and never the last level of a side
+        if (roll < IMPROVE_PROBABILITY + REMOVE_PROBABILITY && (buy ? bidLevels : askLevels) > 1) {
+            int existing = findLevel(buy, tick);
+            if (existing != -1) {
+                setLevel(buy, existing, 0);
+                return existing;
+            }
+        }
+        setLevel(buy, tick, nextQuantity());
+        return tick;
+    }
+
+    // the nearest level at or behind the tick given, or -1 if there isn't one
+    private int findLevel(boolean buy, int tick) {
+        if (buy) {
+            for (int i = tick; i >= 0; i--) {
+                if (ladder[i] != 0) {
+                    return i;
+                }
+            }
+        } else {
+            for (int i = tick; i < ladder.length; i++) {
+                if (ladder[i] != 0) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    private void setLevel(boolean buy, int tick, long quantity) {
+        long previous = ladder[tick];
+        ladder[tick] = quantity;
+        int added = (previous == 0 ? 1 : 0) - (quantity == 0 ? 1 : 0);
+        if (buy) {
+            bidLevels += added;
+            if (quantity != 0 && tick > bestBid) {
+                bestBid = tick;
+            } else if (quantity == 0 && tick == bestBid) {
+                bestBid = findLevel(true, tick - 1);
+            }
+        } else {
+            askLevels += added;
+            if (quantity != 0 && tick < bestAsk) {
+                bestAsk = tick;
+            } else if (quantity == 0 && tick == bestAsk) {
+                bestAsk = findLevel(false, tick + 1);
+            }
+        }
+    }
+
+    private long nextQuantity() {
+        return 1 + random.nextInt(MAX_QUANTITY);
+    }
+
+    // '["side","price","quantity"]' of a change of an update
+    private int putChange(boolean buy, int tick, int index) {
+        index = put(buy ? BUY : SELL, index);
+        return putPriceQuantity(tick, index);
+    }
+
+    // '"price","quantity"]', after the side or the opening of a level
+    private int putPriceQuantity(int tick, int index) {
+        index = LongUtils.putLong(basePrice + tick * tickSize, frame, index, priceScale);
+        frame[index++] = '"';
+        frame[index++] = ',';
+        frame[index++] = '"';
+        index = LongUtils.putLong(ladder[tick], frame, index, quantityScale);
+        frame[index++] = '"';
+        frame[index++] = ']';
+        return index;
+    }
+
+    // '["price","quantity"]' of a level of the snapshot
+    private int putLevel(int tick, int index) {
+        frame[index++] = '[';
+        frame[index++] = '"';
+        return putPriceQuantity(tick, index);
+    }
+
+    private int putComma(int index) {
+        frame[index] = ',';
+        return index + 1;
+    }
+
+    private int put(byte[] bytes, int index) {
+        System.arraycopy(bytes, 0, frame, index, bytes.length);
+        return index + bytes.length;
+    }
+
+    private static void validate(L2UpdateGeneratorOptions options) {
+        if (options.getLevels() < 1) {
+            throw new IllegalArgumentException(format("Levels [%d] must be positive", options.getLevels()));
+        } else if (!(options.getSkew() > 0)) {
+            throw new IllegalArgumentException(format("Skew [%s] must be positive", options.getSkew()));
+        } else if (!(options.getSweepProbability() >= 0) || !(options.getBurstProbability() >= 0)
+                || options.getSweepProbability() + options.getBurstProbability() > 1) {
+            throw new IllegalArgumentException(format("The sweep [%s] and burst [%s] probabilities must be between " +
+                    "0 and 1, and add up to at most 1", options.getSweepProbability(), options.getBurstProbability()));
+        } else if (options.getMaxSweepLevels() < 1 || options.getMaxChangesPerMessage() < 1) {
+            throw new IllegalArgumentException(format("The max sweep levels [%d] and max changes per message [%d] " +
+                    "must be positive", options.getMaxSweepLevels(), options.getMaxChangesPerMessage()));
+        }
+    }
+
+    // only for testing, as a fixed point long in the scale of the quote increment
+    long getBestBidPrice() {
+        return basePrice + bestBid * tickSize;
+    }
+
+    // only for testing, as a fixed point long in the scale of the quote increment
+    long getBestAskPrice() {
+        return basePrice + bestAsk * tickSize;
+    }
+}
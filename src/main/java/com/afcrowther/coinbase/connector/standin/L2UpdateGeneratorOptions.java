@@ -0,0 +1,142 @@
+package com.afcrowther.coinbase.connector.standin;
+
+/**
+ * The shape of the feed a {@link L2UpdateGenerator} generates, the defaults being close to BTC-USD on a normal day.
+ * Set in the same fluent style as the Vert.x options, e.g.
+ * <pre>
+ *     new L2UpdateGeneratorOptions().setLevels(1000).setSweepProbability(0.01).setSeed(42)
+ * </pre>
+ */
+public class L2UpdateGeneratorOptions {
+
+    public static final String DEFAULT_MID_PRICE = "50000.00";
+    public static final int DEFAULT_LEVELS = 5000;
+    public static final double DEFAULT_SKEW = 3;
+    public static final double DEFAULT_SWEEP_PROBABILITY = 0.001;
+    public static final int DEFAULT_MAX_SWEEP_LEVELS = 20;
+    public static final double DEFAULT_BURST_PROBABILITY = 0.05;
+    public static final int DEFAULT_MAX_CHANGES_PER_MESSAGE = 5;
+    public static final long DEFAULT_SEED = 1;
+
+    private String midPrice = DEFAULT_MID_PRICE;
+    private int levels = DEFAULT_LEVELS;
+    private double skew = DEFAULT_SKEW;
+    private double sweepProbability = DEFAULT_SWEEP_PROBABILITY;
+    private int maxSweepLevels = DEFAULT_MAX_SWEEP_LEVELS;
+    private double burstProbability = DEFAULT_BURST_PROBABILITY;
+    private int maxChangesPerMessage = DEFAULT_MAX_CHANGES_PER_MESSAGE;
+    private long seed = DEFAULT_SEED;
+
+    public L2UpdateGeneratorOptions() {
+    }
+
+    public L2UpdateGeneratorOptions(L2UpdateGeneratorOptions other) {
+        this.midPrice = other.midPrice;
+        this.levels = other.levels;
+        this.skew = other.skew;
+        this.sweepProbability = other.sweepProbability;
+        this.maxSweepLevels = other.maxSweepLevels;
+        this.burstProbability = other.burstProbability;
+        this.maxChangesPerMessage = other.maxChangesPerMessage;
+        this.seed = other.seed;
+    }
+
+    public String getMidPrice() {
+        return midPrice;
+    }
+
+    /**
+     * @param midPrice The price the book starts around, e.g. "50000.00"
+     */
+    public L2UpdateGeneratorOptions setMidPrice(String midPrice) {
+        this.midPrice = midPrice;
+        return this;
+    }
+
+    public int getLevels() {
+        return levels;
+    }
+
+    /**
+     * @param levels The number of levels each side of the book starts with, the prices of the book are kept within a
+     *               range a few times wider than this
+     */
+    public L2UpdateGeneratorOptions setLevels(int levels) {
+        this.levels = levels;
+        return this;
+    }
+
+    public double getSkew() {
+        return skew;
+    }
+
+    /**
+     * @param skew How tightly the changes are bunched around the touch, 1 spreads them evenly across the book, and the
+     *             higher it is the more of them land within a few ticks of the touch
+     */
+    public L2UpdateGeneratorOptions setSkew(double skew) {
+        this.skew = skew;
+        return this;
+    }
+
+    public double getSweepProbability() {
+        return sweepProbability;
+    }
+
+    /**
+     * @param sweepProbability The chance that a message is a sweep, which takes out a run of levels from the touch of
+     *                         one side in one go, as a market order would
+     */
+    public L2UpdateGeneratorOptions setSweepProbability(double sweepProbability) {
+        this.sweepProbability = sweepProbability;
+        return this;
+    }
+
+    public int getMaxSweepLevels() {
+        return maxSweepLevels;
+    }
+
+    /**
+     * @param maxSweepLevels The most levels a sweep takes out
+     */
+    public L2UpdateGeneratorOptions setMaxSweepLevels(int maxSweepLevels) {
+        this.maxSweepLevels = maxSweepLevels;
+        return this;
+    }
+
+    public double getBurstProbability() {
+        return burstProbability;
+    }
+
+    /**
+     * @param burstProbability The chance that a message, other than a sweep, carries more than one change
+     */
+    public L2UpdateGeneratorOptions setBurstProbability(double burstProbability) {
+        this.burstProbability = burstProbability;
+        return this;
+    }
+
+    public int getMaxChangesPerMessage() {
+        return maxChangesPerMessage;
+    }
+
+    /**
+     * @param maxChangesPerMessage The most changes a message that is a burst carries
+     */
+    public L2UpdateGeneratorOptions setMaxChangesPerMessage(int maxChangesPerMessage) {
+        this.maxChangesPerMessage = maxChangesPerMessage;
+        return this;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * @param seed The seed of the feed, the same seed (and options) gives the same messages
+     */
+    public L2UpdateGeneratorOptions setSeed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+}
@@ -0,0 +1,244 @@
+package com.afcrowther.coinbase.connector.standin;
+
+import com.afcrowther.coinbase.connector.domain.coinbase.Product;
+import io.netty.buffer.Unpooled;
+import io.vertx.core.AbstractVerticle;
+import io.vertx.core.Promise;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.http.HttpServer;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.http.ServerWebSocket;
+import io.vertx.core.http.WebSocketFrameType;
+import io.vertx.core.http.impl.ws.WebSocketFrameImpl;
+import io.vertx.core.json.DecodeException;
+import io.vertx.core.json.Json;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+import static java.lang.String.format;
+
+/**
+ * <p>
+ *     Stands in for the parts of Coinbase Pro the connector uses, on one port, without TLS: the Rest API's
+ *     "/products/{id}", and the level2 channel of the WebSocket feed. Any market in the "BASE-QUOTE" format exists, with
+ *     the increments of BTC-USD.
+ * </p>
+ * <p>
+ *     A subscription gets the same replies as on the live feed, the "subscriptions" message then a snapshot of each
+ *     product, followed by l2update messages from a {@link L2UpdateGenerator} for each product in turn, at the rate
+ *     given, for as long as the WebSocket is open. The messages are sent in batches on a 1ms timer, as many as are due
+ *     by then, so rates in the hundreds of thousands a second are possible. If the connector can't keep up the
+ *     messages are held back, rather than queued without limit, until the WebSocket drains, so the rate achieved can
+ *     be lower than asked for.
+ * </p>
+ */
+public class StandInServerVerticle extends AbstractVerticle {
+
+    private static final Pattern MARKET_PATTERN = Pattern.compile("[A-Z]+-[A-Z]+");
+    private static final String PRODUCTS_PATH = "/products/";
+    private static final String QUOTE_INCREMENT = "0.01";
+    private static final String BASE_INCREMENT = "0.00000001";
+    private static final long TIMER_PERIOD_MILLIS = 1;
+    // the most messages sent on one tick of the timer (up to 1M a second), so that a stall doesn't turn into one
+    // enormous burst, and the event loop is free for the Rest API in between
+    private static final int MAX_BATCH = 1_000;
+
+    private final int port;
+    private final int messagesPerSecond;
+    private final L2UpdateGeneratorOptions generatorOptions;
+    private HttpServer server;
+    // only written by the event loop of the server
+    private volatile long sentMessages;
+
+    /**
+     * @param port              The port to listen on, or 0 for any free port (see {@link #getPort()})
+     * @param messagesPerSecond The number of l2update messages to send each subscriber a second, across its products
+     * @param generatorOptions  The shape of the feed of each product, each product of a subscription gets a seed of
+     *                          its own from the seed of these
+     */
+    public StandInServerVerticle(int port, int messagesPerSecond, L2UpdateGeneratorOptions generatorOptions) {
+        this.port = port;
+        this.messagesPerSecond = messagesPerSecond;
+        this.generatorOptions = generatorOptions;
+    }
+
+    @Override
+    public void start(Promise<Void> startPromise) {
+        vertx.createHttpServer()
+                .requestHandler(this::handleRequest)
+                .webSocketHandler(this::handleWebSocket)
+                .listen(port)
+                .onComplete(ar -> {
+                    if (ar.succeeded()) {
+                        server = ar.result();
+                        startPromise.complete();
+                    } else {
+                        startPromise.fail(ar.cause());
+                    }
+                });
+    }
+
+    /**
+     * @return The number of messages that should have been sent after the time given, at the rate given
+     */
+    static long messagesDue(long elapsedNanos, int messagesPerSecond) {
+        // the whole seconds and the rest apart, as the nanos times the rate would overflow after a few hours
+        return elapsedNanos / 1_000_000_000L * messagesPerSecond
+                + elapsedNanos % 1_000_000_000L * messagesPerSecond / 1_000_000_000L;
+    }
+
+    /**
+     * @return The number of l2update messages sent so far, across every subscriber
+     */
+    public long getSentMessages() {
+        return sentMessages;
+    }
+
+    /**
+     * @return The port the server is listening on, once started
+     */
+    public int getPort() {
+        return server.actualPort();
+    }
+
+    private void handleRequest(HttpServerRequest request) {
+        String path = request.path();
+        if (request.method() != HttpMethod.GET || !path.startsWith(PRODUCTS_PATH)) {
+            request.response().setStatusCode(404).end("{\"message\":\"NotFound\"}");
+            return;
+        }
+        String market = path.substring(PRODUCTS_PATH.length()).toUpperCase(Locale.ROOT);
+        if (!MARKET_PATTERN.matcher(market).matches()) {
+            request.response().setStatusCode(404).end("{\"message\":\"NotFound\"}");
+            return;
+        }
+        request.response()
+                .putHeader("Content-Type", "application/json")
+                .end(Json.encodeToBuffer(product(market)));
+    }
+
+    private void handleWebSocket(ServerWebSocket webSocket) {
+        webSocket.textMessageHandler(message -> {
+            List<String> markets;
+            try {
+                markets = parseSubscription(message);
+            } catch (DecodeException | IllegalArgumentException e) {
+                webSocket.writeFinalTextFrame(new JsonObject()
+                        .put("type", "error")
+                        .put("message", format("Failed to subscribe: %s", e.getMessage()))
+                        .encode());
+                return;
+            }
+            new FeedSession(webSocket, markets).start();
+        });
+    }
+
+    // the markets of a '{"type":"subscribe","product_ids":[...],"channels":["level2"]}' message
+    private static List<String> parseSubscription(String message) {
+        JsonObject subscription = new JsonObject(message);
+        if (!"subscribe".equals(subscription.getString("type"))) {
+            throw new IllegalArgumentException(format("Unexpected message type [%s]", subscription.getString("type")));
+        }
+        JsonArray channels = subscription.getJsonArray("channels");
+        if (channels == null || !channels.contains("level2")) {
+            throw new IllegalArgumentException("Only the level2 channel is available");
+        }
+        JsonArray productIds = subscription.getJsonArray("product_ids");
+        if (productIds == null || productIds.isEmpty()) {
+            throw new IllegalArgumentException("No product_ids given");
+        }
+        List<String> markets = new ArrayList<>(productIds.size());
+        for (int i = 0; i < productIds.size(); i++) {
+            String market = productIds.getString(i);
+            if (!MARKET_PATTERN.matcher(market).matches()) {
+                throw new IllegalArgumentException(format("%s is not a valid product", market));
+            }
+            markets.add(market);
+        }
+        return markets;
+    }
+
+    static Product product(String market) {
+        int separator = market.indexOf('-');
+        Product product = new Product();
+        product.setId(market);
+        product.setBaseCurrency(market.substring(0, separator));
+        product.setQuoteCurrency(market.substring(separator + 1));
+        product.setDisplayName(market.replace('-', '/'));
+        product.setQuoteIncrement(QUOTE_INCREMENT);
+        product.setBaseIncrement(BASE_INCREMENT);
+        product.setStatus("online");
+        product.setStatusMessage("");
+        product.setTradingDisabled(false);
+        return product;
+    }
+
+    /**
+     * The feed of one subscription, only touched by the event loop of the server.
+     */
+    private class FeedSession {
+
+        private final ServerWebSocket webSocket;
+        private final List<String> markets;
+        private final L2UpdateGenerator[] generators;
+        private long timerId;
+        private long startNanos;
+        private long sent;
+        private int nextGenerator;
+
+        private FeedSession(ServerWebSocket webSocket, List<String> markets) {
+            this.webSocket = webSocket;
+            this.markets = markets;
+            this.generators = new L2UpdateGenerator[markets.size()];
+            for (int i = 0; i < generators.length; i++) {
+                generators[i] = new L2UpdateGenerator(product(markets.get(i)),
+                        new L2UpdateGeneratorOptions(generatorOptions).setSeed(generatorOptions.getSeed() + i));
+            }
+        }
+
+        private void start() {
+            webSocket.writeFinalTextFrame(new JsonObject()
+                    .put("type", "subscriptions")
+                    .put("channels", new JsonArray().add(new JsonObject()
+                            .put("name", "level2")
+                            .put("product_ids", new JsonArray(markets))))
+                    .encode());
+            for (L2UpdateGenerator generator : generators) {
+                send(generator, generator.snapshot());
+            }
+            startNanos = System.nanoTime();
+            timerId = vertx.setPeriodic(TIMER_PERIOD_MILLIS, id -> sendDue());
+            webSocket.closeHandler(v -> vertx.cancelTimer(timerId));
+        }
+
+        // sends the messages due by now at the rate asked for, holding them back while the WebSocket is backed up
+        private void sendDue() {
+            long due = messagesDue(System.nanoTime() - startNanos, messagesPerSecond);
+            long batch = Math.min(due - sent, MAX_BATCH);
+            long epochMicros = System.currentTimeMillis() * 1000;
+            long i = 0;
+            for (; i < batch && !webSocket.writeQueueFull(); i++) {
+                L2UpdateGenerator generator = generators[nextGenerator];
+                nextGenerator = nextGenerator + 1 == generators.length ? 0 : nextGenerator + 1;
+                send(generator, generator.nextUpdate(epochMicros));
+            }
+            sent += i;
+            sentMessages += i;
+            if (due - sent > MAX_BATCH) {
+                // don't try to catch up on what couldn't be sent, the rate is what the connector could take
+                sent = due - MAX_BATCH;
+            }
+        }
+
+        private void send(L2UpdateGenerator generator, int length) {
+            // the frame is queued until it is written, so it needs a copy of its own
+            webSocket.writeFrame(new WebSocketFrameImpl(WebSocketFrameType.TEXT,
+                    Unpooled.copiedBuffer(generator.getFrame(), 0, length), true));
+        }
+    }
+}
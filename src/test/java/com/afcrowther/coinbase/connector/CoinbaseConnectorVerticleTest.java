@@ -17,12 +17,16 @@ import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.mockito.runners.MockitoJUnitRunner;
 
+import java.util.Collections;
+import java.util.List;
+
 import static org.mockito.Mockito.*;
 
 @RunWith(MockitoJUnitRunner.class)
 public class CoinbaseConnectorVerticleTest {
 
     private static final String MARKET = "BTC-USD";
+    private static final List<String> MARKETS = Collections.singletonList(MARKET);
 
     private static CoinbaseConnectorVerticle UNDER_TEST;
 
@@ -53,24 +57,24 @@ public class CoinbaseConnectorVerticleTest {
         marketInfo.setTradingDisabled(false);
 
         when(coinbaseProClient.getMarketInformation(MARKET)).thenReturn(Future.succeededFuture(marketInfo));
-        when(coinbaseProClient.subscribeToMarket(MARKET, messageHandler)).thenReturn(Future.succeededFuture(webSocket));
+        when(coinbaseProClient.subscribeToMarkets(MARKETS, messageHandler)).thenReturn(Future.succeededFuture(webSocket));
 
         UNDER_TEST.connectToCoinbasePro();
 
         verify(coinbaseProClient, times(1)).getMarketInformation(MARKET);
-        verify(coinbaseProClient, times(1)).subscribeToMarket(MARKET, messageHandler);
+        verify(coinbaseProClient, times(1)).subscribeToMarkets(MARKETS, messageHandler);
     }
 
     @Test
     public void testConnectToCoinbasePro_failedMarketInfoRequest() {
         when(coinbaseProClient.getMarketInformation(MARKET)).thenReturn(Future.failedFuture("Some error"));
-        when(coinbaseProClient.subscribeToMarket(MARKET, messageHandler)).thenReturn(Future.succeededFuture(webSocket));
+        when(coinbaseProClient.subscribeToMarkets(MARKETS, messageHandler)).thenReturn(Future.succeededFuture(webSocket));
         exceptionRule.expect(CoinbaseConnectionException.class);
 
         UNDER_TEST.connectToCoinbasePro();
 
         verify(coinbaseProClient, times(1)).getMarketInformation(MARKET);
-        verify(coinbaseProClient, times(0)).subscribeToMarket(MARKET, messageHandler);
+        verify(coinbaseProClient, times(0)).subscribeToMarkets(MARKETS, messageHandler);
     }
 
     @Test
@@ -80,14 +84,14 @@ public class CoinbaseConnectorVerticleTest {
         marketInfo.setTradingDisabled(false);
 
         when(coinbaseProClient.getMarketInformation(MARKET)).thenReturn(Future.succeededFuture(marketInfo));
-        when(coinbaseProClient.subscribeToMarket(MARKET, messageHandler)).thenReturn(Future.succeededFuture(webSocket));
+        when(coinbaseProClient.subscribeToMarkets(MARKETS, messageHandler)).thenReturn(Future.succeededFuture(webSocket));
         exceptionRule.expect(CoinbaseConnectionException.class);
         exceptionRule.expectMessage("Market [BTC-USD] is currently offline, please try again later...");
 
         UNDER_TEST.connectToCoinbasePro();
 
         verify(coinbaseProClient, times(1)).getMarketInformation(MARKET);
-        verify(coinbaseProClient, times(0)).subscribeToMarket(MARKET, messageHandler);
+        verify(coinbaseProClient, times(0)).subscribeToMarkets(MARKETS, messageHandler);
     }
 
     @Test
@@ -97,14 +101,14 @@ public class CoinbaseConnectorVerticleTest {
         marketInfo.setTradingDisabled(true);
 
         when(coinbaseProClient.getMarketInformation(MARKET)).thenReturn(Future.succeededFuture(marketInfo));
-        when(coinbaseProClient.subscribeToMarket(MARKET, messageHandler)).thenReturn(Future.succeededFuture(webSocket));
+        when(coinbaseProClient.subscribeToMarkets(MARKETS, messageHandler)).thenReturn(Future.succeededFuture(webSocket));
         exceptionRule.expect(CoinbaseConnectionException.class);
         exceptionRule.expectMessage("Trading on market [BTC-USD] is disabled, please try again later...");
 
         UNDER_TEST.connectToCoinbasePro();
 
         verify(coinbaseProClient, times(1)).getMarketInformation(MARKET);
-        verify(coinbaseProClient, times(0)).subscribeToMarket(MARKET, messageHandler);
+        verify(coinbaseProClient, times(0)).subscribeToMarkets(MARKETS, messageHandler);
     }
 
     @Test
@@ -114,12 +118,12 @@ public class CoinbaseConnectorVerticleTest {
         marketInfo.setTradingDisabled(false);
 
         when(coinbaseProClient.getMarketInformation(MARKET)).thenReturn(Future.succeededFuture(marketInfo));
-        when(coinbaseProClient.subscribeToMarket(MARKET, messageHandler)).thenReturn(Future.failedFuture("Some error"));
+        when(coinbaseProClient.subscribeToMarkets(MARKETS, messageHandler)).thenReturn(Future.failedFuture("Some error"));
         exceptionRule.expect(CoinbaseConnectionException.class);
 
         UNDER_TEST.connectToCoinbasePro();
 
         verify(coinbaseProClient, times(1)).getMarketInformation(MARKET);
-        verify(coinbaseProClient, times(1)).subscribeToMarket(MARKET, messageHandler);
+        verify(coinbaseProClient, times(1)).subscribeToMarkets(MARKETS, messageHandler);
     }
 }
@@ -14,6 +14,7 @@ import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.mockito.runners.MockitoJUnitRunner;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -89,4 +90,22 @@ public class CoinbaseProClientTest {
         verify(webSocket, times(1)).writeFinalTextFrame(subscriptionFrame);
         verify(webSocket, times(1)).handler(messageHandler);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testSubscribeToMarkets() {
+        when(httpClient.webSocket(any(Integer.class), any(), any())).thenReturn(Future.succeededFuture(webSocket));
+        when(webSocket.handler(any())).thenReturn(webSocket);
+        when(webSocket.writeFinalTextFrame(any())).thenReturn(Future.succeededFuture(null));
+
+        String subscriptionFrame = "{\"type\": \"subscribe\",\"product_ids\":[\"BTC-USD\",\"ETH-USD\"]," +
+                "\"channels\":[\"level2\"]}";
+
+        WebSocket actual = UNDER_TEST.subscribeToMarkets(Arrays.asList(MARKET, "ETH-USD"), messageHandler).result();
+
+        Assert.assertEquals(webSocket, actual);
+
+        verify(httpClient, times(1)).webSocket(443,"ws-feed.pro.coinbase.com", "");
+        verify(webSocket, times(1)).writeFinalTextFrame(subscriptionFrame);
+        verify(webSocket, times(1)).handler(messageHandler);
+    }
+}
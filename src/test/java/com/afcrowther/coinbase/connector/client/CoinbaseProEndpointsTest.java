@@ -0,0 +1,47 @@
+package com.afcrowther.coinbase.connector.client;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CoinbaseProEndpointsTest {
+
+    @Test
+    public void testCoinbasePro() {
+        CoinbaseProEndpoints endpoints = CoinbaseProEndpoints.COINBASE_PRO;
+
+        Assert.assertEquals("api.pro.coinbase.com", endpoints.getRestHost());
+        Assert.assertEquals(443, endpoints.getRestPort());
+        Assert.assertEquals("ws-feed.pro.coinbase.com", endpoints.getFeedHost());
+        Assert.assertEquals(443, endpoints.getFeedPort());
+        Assert.assertEquals("", endpoints.getFeedPath());
+        Assert.assertTrue(endpoints.isSsl());
+    }
+
+    @Test
+    public void testFromUrls_plain() {
+        CoinbaseProEndpoints endpoints = CoinbaseProEndpoints.fromUrls("http://localhost:8080",
+                "ws://127.0.0.1/feed");
+
+        Assert.assertEquals("localhost", endpoints.getRestHost());
+        Assert.assertEquals(8080, endpoints.getRestPort());
+        Assert.assertEquals("127.0.0.1", endpoints.getFeedHost());
+        Assert.assertEquals(80, endpoints.getFeedPort());
+        Assert.assertEquals("/feed", endpoints.getFeedPath());
+        Assert.assertFalse(endpoints.isSsl());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testFromUrls_mixedTls() {
+        CoinbaseProEndpoints.fromUrls("https://localhost:8080", "ws://localhost:8080");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testFromUrls_unexpectedScheme() {
+        CoinbaseProEndpoints.fromUrls("ftp://localhost", "ws://localhost");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testFromUrls_noHost() {
+        CoinbaseProEndpoints.fromUrls("localhost:8080", "ws://localhost");
+    }
+}
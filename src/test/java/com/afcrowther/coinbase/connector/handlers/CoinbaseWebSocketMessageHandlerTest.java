@@ -1,21 +1,26 @@
 package com.afcrowther.coinbase.connector.handlers;
 
 import com.afcrowther.coinbase.connector.exception.CoinbaseConnectionException;
-import com.afcrowther.coinbase.connector.printer.Printer;
+import com.afcrowther.coinbase.connector.journal.FrameJournal;
+import com.afcrowther.coinbase.connector.journal.JournalReader;
+import com.afcrowther.coinbase.connector.metrics.LatencyStage;
+import com.afcrowther.coinbase.connector.metrics.MarketLatencies;
+import com.afcrowther.coinbase.connector.metrics.MarketMetrics;
+import com.afcrowther.coinbase.connector.publisher.BookEvent;
+import com.afcrowther.coinbase.connector.publisher.BookEventRingBuffer;
 import com.afcrowther.coinbase.connector.service.OrderBookAggregatorService;
-import io.vertx.core.Future;
-import io.vertx.core.Handler;
-import io.vertx.core.Vertx;
 import io.vertx.core.buffer.Buffer;
+import org.junit.Assert;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.mockito.runners.MockitoJUnitRunner;
 
-import java.util.Arrays;
-import java.util.concurrent.atomic.AtomicLongArray;
+import java.nio.file.Path;
 
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.*;
@@ -23,19 +28,24 @@ import static org.mockito.Mockito.*;
 @RunWith(MockitoJUnitRunner.class)
 public class CoinbaseWebSocketMessageHandlerTest {
 
+    private static final String UPDATE_MESSAGE = "{\"type\":\"l2update\",\"product_id\":\"BTC-USD\",\"changes\":" +
+            "[[\"sell\",\"54430.53\",\"0.00000000\"]],\"time\":\"2021-04-28T15:27:02.932274Z\"}";
+
     private CoinbaseWebSocketMessageHandler UNDER_TEST;
+    private BookEventRingBuffer ringBuffer;
 
     @Mock
     OrderBookAggregatorService orderBookAggregatorService;
-    @Mock
-    Printer printer;
-    @Mock
-    Vertx vertx;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
 
     @Before
     public void setup() {
         MockitoAnnotations.initMocks(CoinbaseWebSocketMessageHandlerTest.class);
-        UNDER_TEST = new CoinbaseWebSocketMessageHandler(orderBookAggregatorService, printer, vertx);
+        when(orderBookAggregatorService.getDepth()).thenReturn(10);
+        ringBuffer = new BookEventRingBuffer(16, 20);
+        UNDER_TEST = new CoinbaseWebSocketMessageHandler(orderBookAggregatorService, ringBuffer);
     }
 
     @Test(expected = CoinbaseConnectionException.class)
@@ -46,45 +56,114 @@ public class CoinbaseWebSocketMessageHandlerTest {
 
     @Test
     public void testHandle_snapshotMessage() {
-        when(vertx.executeBlocking(any(Handler.class))).thenReturn(Future.succeededFuture());
-
-        long[] arr = new long[20];
-        Arrays.fill(arr, 0);
-        AtomicLongArray array = new AtomicLongArray(arr);
-
         String snapshotMessage = "{\"type\":\"snapshot\",\"product_id\":\"BTC-USD\",\"bids\":[[\"10101.10\"," +
                 "\"0.45054140\"]],\"asks\":[[\"10102.55\",\"0.57753524\"]]}";
         UNDER_TEST.handle(Buffer.buffer(snapshotMessage));
 
-        verify(orderBookAggregatorService, times(1)).updateOrderBook(any(), any(), any());
-        verify(vertx, times(1)).executeBlocking(any(Handler.class));
+        verify(orderBookAggregatorService, times(1)).updateOrderBookFromSnapshot(eq(Buffer.buffer(snapshotMessage)),
+                any(), any());
+        Assert.assertEquals(0, ringBuffer.getCursor());
     }
 
     @Test
     public void testHandle_updateMessage() {
-        when(vertx.executeBlocking(any(Handler.class))).thenReturn(Future.succeededFuture());
-        when(orderBookAggregatorService.updateOrderBook(any(), any(), any(), any())).thenReturn(true);
+        when(orderBookAggregatorService.updateOrderBook(any(Buffer.class), any(), any())).thenReturn(true);
 
-        String updateMessage = "{\"type\":\"l2update\",\"product_id\":\"BTC-USD\",\"changes\":[[\"sell\"," +
-                "\"54430.53\",\"0.00000000\"]],\"time\":\"2021-04-28T15:27:02.932274Z\"}";
-        Buffer b = Buffer.buffer(updateMessage);
+        Buffer b = Buffer.buffer(UPDATE_MESSAGE);
         UNDER_TEST.handle(b);
 
-        verify(orderBookAggregatorService, times(1)).updateOrderBook(eq(b), any(), any(), any());
-        verify(vertx, times(1)).executeBlocking(any(Handler.class));
+        verify(orderBookAggregatorService, times(1)).updateOrderBook(eq(b), any(), any());
+        Assert.assertEquals(0, ringBuffer.getCursor());
     }
 
     @Test
     public void testHandle_updateMessage_noUpdates() {
-        when(vertx.executeBlocking(any(Handler.class))).thenReturn(Future.succeededFuture());
-        when(orderBookAggregatorService.updateOrderBook(any(), any(), any(), any())).thenReturn(false);
+        when(orderBookAggregatorService.updateOrderBook(any(Buffer.class), any(), any())).thenReturn(false);
 
-        String updateMessage = "{\"type\":\"l2update\",\"product_id\":\"BTC-USD\",\"changes\":[[\"sell\"," +
-                "\"54430.53\",\"0.00000000\"]],\"time\":\"2021-04-28T15:27:02.932274Z\"}";
-        Buffer b = Buffer.buffer(updateMessage);
+        Buffer b = Buffer.buffer(UPDATE_MESSAGE);
         UNDER_TEST.handle(b);
 
-        verify(orderBookAggregatorService, times(1)).updateOrderBook(eq(b), any(), any(), any());
-        verify(vertx, times(0)).executeBlocking(any(Handler.class));
+        verify(orderBookAggregatorService, times(1)).updateOrderBook(eq(b), any(), any());
+        Assert.assertEquals(-1, ringBuffer.getCursor());
+    }
+
+    @Test
+    public void testHandle_updateMessage_everyUpdatePublished() {
+        when(orderBookAggregatorService.updateOrderBook(any(Buffer.class), any(), any())).thenReturn(true);
+
+        // no consumer is running, the producer must carry on regardless
+        for (int i = 0; i < 100; i++) {
+            UNDER_TEST.handle(Buffer.buffer(UPDATE_MESSAGE));
+        }
+
+        Assert.assertEquals(99, ringBuffer.getCursor());
+    }
+
+    @Test
+    public void testHandle_journal() throws Exception {
+        when(orderBookAggregatorService.updateOrderBook(any(Buffer.class), any(), any())).thenReturn(true);
+        Path directory = folder.getRoot().toPath();
+        try (FrameJournal journal = new FrameJournal(directory, FrameJournal.DEFAULT_SEGMENT_SIZE)) {
+            CoinbaseWebSocketMessageHandler handler = new CoinbaseWebSocketMessageHandler(orderBookAggregatorService,
+                    ringBuffer, journal);
+
+            handler.handle(Buffer.buffer(UPDATE_MESSAGE));
+
+            Assert.assertEquals(1, journal.getAppendedFrames());
+        }
+        JournalReader reader = new JournalReader(directory);
+        Assert.assertTrue(reader.next());
+        Assert.assertEquals(UPDATE_MESSAGE.length(), reader.getFrameLength());
+        Assert.assertEquals(0, ringBuffer.getCursor());
+    }
+
+    @Test
+    public void testHandle_latencies() {
+        when(orderBookAggregatorService.updateOrderBook(any(Buffer.class), any(), any())).thenReturn(true, false);
+        when(orderBookAggregatorService.getLastUpdateTime()).thenReturn(1619623622932274L);
+        MarketLatencies latencies = new MarketLatencies("BTC-USD");
+        CoinbaseWebSocketMessageHandler handler = new CoinbaseWebSocketMessageHandler(orderBookAggregatorService,
+                ringBuffer, null, latencies, new MarketMetrics("BTC-USD"));
+
+        long before = System.nanoTime();
+        handler.handle(Buffer.buffer(UPDATE_MESSAGE));
+        handler.handle(Buffer.buffer(UPDATE_MESSAGE));
+        long after = System.nanoTime();
+
+        // both updates are timed, only the one that changed the top of the book is published
+        Assert.assertEquals(2, latencies.getIntervalHistogram(LatencyStage.EXCHANGE_TO_RECEIVE).getTotalCount());
+        Assert.assertEquals(2, latencies.getIntervalHistogram(LatencyStage.RECEIVE_TO_BOOK_UPDATED).getTotalCount());
+        Assert.assertEquals(0, ringBuffer.getCursor());
+        BookEvent event = new BookEvent(20);
+        Assert.assertTrue(ringBuffer.read(0, event));
+        Assert.assertTrue(event.getBookUpdatedTime() >= before && event.getBookUpdatedTime() <= after);
+    }
+
+    @Test
+    public void testHandle_metrics() {
+        when(orderBookAggregatorService.updateOrderBook(any(Buffer.class), any(), any())).thenReturn(true, false);
+        when(orderBookAggregatorService.getLastUpdateChanges()).thenReturn(3, 2);
+        MarketMetrics metrics = new MarketMetrics("BTC-USD");
+        CoinbaseWebSocketMessageHandler handler = new CoinbaseWebSocketMessageHandler(orderBookAggregatorService,
+                ringBuffer, null, null, metrics);
+
+        handler.handle(Buffer.buffer("{\"type\":\"snapshot\",\"product_id\":\"BTC-USD\",\"bids\":[],\"asks\":[]}"));
+        handler.handle(Buffer.buffer(UPDATE_MESSAGE));
+        handler.handle(Buffer.buffer(UPDATE_MESSAGE));
+        try {
+            handler.handle(Buffer.buffer("{\"type\":\"error\",\"message\":\"error message\"}"));
+            Assert.fail();
+        } catch (CoinbaseConnectionException e) {
+            // expected
+        }
+
+        Assert.assertEquals(1, metrics.getSnapshotMessages());
+        Assert.assertEquals(2, metrics.getL2UpdateMessages());
+        Assert.assertEquals(1, metrics.getErrorMessages());
+        Assert.assertEquals(5, metrics.getLevelsChanged());
+        Assert.assertEquals(1, metrics.getDepthUpdates());
+        // the snapshot and the update that changed the top of the book
+        Assert.assertEquals(2, metrics.getPublishedEvents());
+        Assert.assertEquals(1, ringBuffer.getCursor());
     }
 }
@@ -0,0 +1,100 @@
+package com.afcrowther.coinbase.connector.handlers;
+
+import io.vertx.core.buffer.Buffer;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.*;
+
+@RunWith(MockitoJUnitRunner.class)
+public class CoinbaseWebSocketMessageRouterTest {
+
+    private static final String BTC_SNAPSHOT = "{\"type\":\"snapshot\",\"product_id\":\"BTC-USD\",\"bids\":" +
+            "[[\"10101.10\",\"0.45054140\"]],\"asks\":[[\"10102.55\",\"0.57753524\"]]}";
+    private static final String ETH_UPDATE = "{\"type\":\"l2update\",\"product_id\":\"ETH-USD\",\"changes\":" +
+            "[[\"sell\",\"2743.53\",\"0.00000000\"]],\"time\":\"2021-04-28T15:27:02.932274Z\"}";
+    private static final String BTC_EUR_UPDATE = "{\"type\":\"l2update\",\"product_id\":\"BTC-EUR\",\"changes\":" +
+            "[[\"buy\",\"45430.53\",\"0.10000000\"]],\"time\":\"2021-04-28T15:27:02.932274Z\"}";
+
+    private CoinbaseWebSocketMessageRouter UNDER_TEST;
+
+    @Mock
+    CoinbaseWebSocketMessageHandler btcHandler;
+    @Mock
+    CoinbaseWebSocketMessageHandler btcEurHandler;
+    @Mock
+    CoinbaseWebSocketMessageHandler ethHandler;
+
+    @Before
+    public void setup() {
+        MockitoAnnotations.initMocks(CoinbaseWebSocketMessageRouterTest.class);
+        when(btcHandler.getMarket()).thenReturn("BTC-USD");
+        when(btcEurHandler.getMarket()).thenReturn("BTC-EUR");
+        when(ethHandler.getMarket()).thenReturn("ETH-USD");
+        UNDER_TEST = new CoinbaseWebSocketMessageRouter(Arrays.asList(btcHandler, btcEurHandler, ethHandler));
+    }
+
+    @Test
+    public void testHandle_routesByProductId() {
+        Buffer snapshot = Buffer.buffer(BTC_SNAPSHOT);
+        Buffer ethUpdate = Buffer.buffer(ETH_UPDATE);
+        Buffer btcEurUpdate = Buffer.buffer(BTC_EUR_UPDATE);
+
+        UNDER_TEST.handle(snapshot);
+        UNDER_TEST.handle(ethUpdate);
+        UNDER_TEST.handle(btcEurUpdate);
+
+        verify(btcHandler, times(1)).handle(snapshot);
+        verify(ethHandler, times(1)).handle(ethUpdate);
+        verify(btcEurHandler, times(1)).handle(btcEurUpdate);
+        verify(btcHandler, times(1)).handle(any());
+        verify(ethHandler, times(1)).handle(any());
+        verify(btcEurHandler, times(1)).handle(any());
+    }
+
+    @Test
+    public void testHandle_errorMessage() {
+        Buffer error = Buffer.buffer("{\"type\":\"error\",\"message\":\"error message\"}");
+
+        UNDER_TEST.handle(error);
+
+        // errors are for the connection, the first market's handler deals with them
+        verify(btcHandler, times(1)).handle(error);
+        verify(ethHandler, never()).handle(any());
+        verify(btcEurHandler, never()).handle(any());
+    }
+
+    @Test
+    public void testHandle_unknownMarket() {
+        UNDER_TEST.handle(Buffer.buffer(BTC_SNAPSHOT.replace("BTC-USD", "LTC-USD")));
+        // a prefix or an extension of a market we have isn't one either
+        UNDER_TEST.handle(Buffer.buffer(ETH_UPDATE.replace("ETH-USD", "ETH-US")));
+        UNDER_TEST.handle(Buffer.buffer(ETH_UPDATE.replace("ETH-USD", "ETH-USDC")));
+        UNDER_TEST.handle(Buffer.buffer("{\"type\":\"subscriptions\",\"channels\":[{\"name\":\"level2\"," +
+                "\"product_ids\":[\"BTC-USD\",\"ETH-USD\"]}]}"));
+
+        verify(btcHandler, never()).handle(any());
+        verify(ethHandler, never()).handle(any());
+        verify(btcEurHandler, never()).handle(any());
+    }
+
+    @Test
+    public void testHandle_truncatedMessage() {
+        UNDER_TEST.handle(Buffer.buffer("{\"type\":\"l2update\",\"product_id\":\"ETH-US"));
+
+        verify(ethHandler, never()).handle(any());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testConstructor_noHandlers() {
+        new CoinbaseWebSocketMessageRouter(Collections.emptyList());
+    }
+}
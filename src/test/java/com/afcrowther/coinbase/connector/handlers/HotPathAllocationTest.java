@@ -0,0 +1,181 @@
+package com.afcrowther.coinbase.connector.handlers;
+
+import com.afcrowther.coinbase.connector.domain.coinbase.Product;
+import com.afcrowther.coinbase.connector.metrics.MarketLatencies;
+import com.afcrowther.coinbase.connector.metrics.MarketMetrics;
+import com.afcrowther.coinbase.connector.publisher.BookEventRingBuffer;
+import com.afcrowther.coinbase.connector.service.OrderBookAggregatorService;
+import com.afcrowther.coinbase.connector.service.OrderBookEngine;
+import com.afcrowther.coinbase.connector.standin.L2UpdateGenerator;
+import com.afcrowther.coinbase.connector.standin.L2UpdateGeneratorOptions;
+import io.vertx.core.buffer.Buffer;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.lang.management.ManagementFactory;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * <p>
+ *     Holds the l2update hot path to its promise of not allocating: each engine, on its own and behind the
+ *     {@link CoinbaseWebSocketMessageHandler} (with the metrics and latencies on, and every change published to the
+ *     ring buffer), and behind the {@link CoinbaseWebSocketMessageRouter} of more than one market, is warmed up until the JIT has compiled it, and then has to handle thousands of messages without
+ *     the thread allocating a single object, as counted by {@link com.sun.management.ThreadMXBean}.
+ * </p>
+ * <p>
+ *     Both the recorded messages of the test resources and generated messages (with plenty of sweeps and bursts) are
+ *     run through. The simple engine boxes its prices and quantities into a TreeMap, so it is held to the opposite, as
+ *     a check that the harness does see allocation.
+ * </p>
+ */
+@RunWith(Parameterized.class)
+public class HotPathAllocationTest {
+
+    private static final String MARKET = "BTC-USD";
+    private static final int DEPTH = 10;
+    private static final int WARM_UP_PASSES = 20;
+    private static final int MEASURED_MESSAGES = 50_000;
+    // room for a JVM whose allocation counter allocates when read, but not for an object per thousand messages
+    private static final long ALLOWED_BYTES = 256;
+
+    private static com.sun.management.ThreadMXBean threadMXBean;
+    private static Product product;
+    private static Buffer[] recorded;
+    private static Buffer generatedSnapshot;
+    private static Buffer[] generated;
+
+    @Parameterized.Parameters(name = "{0}")
+    public static List<Object[]> engines() {
+        return Arrays.asList(new Object[][] { { OrderBookEngine.SORTED_ARRAY }, { OrderBookEngine.TICK_LADDER } });
+    }
+
+    @Parameterized.Parameter
+    public OrderBookEngine engine;
+
+    @BeforeClass
+    public static void setupClass() throws Exception {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        threadMXBean = (com.sun.management.ThreadMXBean) bean;
+        Assume.assumeTrue(threadMXBean.isThreadAllocatedMemorySupported());
+        threadMXBean.setThreadAllocatedMemoryEnabled(true);
+
+        product = new Product();
+        product.setId(MARKET);
+        product.setQuoteIncrement("0.01");
+        product.setBaseIncrement("0.00000001");
+
+        URL resource = HotPathAllocationTest.class.getClassLoader().getResource("data/l2updates.txt");
+        List<String> lines = Files.readAllLines(Paths.get(resource.toURI()));
+        recorded = lines.stream().filter(line -> !line.isEmpty()).map(Buffer::buffer).toArray(Buffer[]::new);
+
+        L2UpdateGenerator generator = new L2UpdateGenerator(product, new L2UpdateGeneratorOptions().setLevels(1000)
+                .setSweepProbability(0.01).setBurstProbability(0.1));
+        int snapshotLength = generator.snapshot();
+        generatedSnapshot = Buffer.buffer().appendBytes(generator.getFrame(), 0, snapshotLength);
+        List<Buffer> messages = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            messages.add(Buffer.buffer().appendBytes(generator.getFrame(), 0, generator.nextUpdate(1619623622638954L)));
+        }
+        generated = messages.toArray(new Buffer[0]);
+    }
+
+    @Test
+    public void testOrderBook_recorded() {
+        OrderBookAggregatorService orderBook = engine.create(MARKET, product, DEPTH);
+        AtomicLongArray bids = new AtomicLongArray(DEPTH * 2);
+        AtomicLongArray asks = new AtomicLongArray(DEPTH * 2);
+
+        assertNoAllocation(recorded, message -> orderBook.updateOrderBook(message, bids, asks));
+    }
+
+    @Test
+    public void testOrderBook_generated() {
+        OrderBookAggregatorService orderBook = engine.create(MARKET, product, DEPTH);
+        AtomicLongArray bids = new AtomicLongArray(DEPTH * 2);
+        AtomicLongArray asks = new AtomicLongArray(DEPTH * 2);
+        orderBook.updateOrderBookFromSnapshot(generatedSnapshot, bids, asks);
+
+        assertNoAllocation(generated, message -> orderBook.updateOrderBook(message, bids, asks));
+    }
+
+    @Test
+    public void testMessageHandler_generated() {
+        CoinbaseWebSocketMessageHandler handler = new CoinbaseWebSocketMessageHandler(
+                engine.create(MARKET, product, DEPTH), new BookEventRingBuffer(1024, DEPTH * 2), null,
+                new MarketLatencies(MARKET), new MarketMetrics(MARKET));
+        handler.handle(generatedSnapshot);
+
+        assertNoAllocation(generated, handler::handle);
+    }
+
+    @Test
+    public void testMessageRouter_generated() {
+        CoinbaseWebSocketMessageHandler handler = new CoinbaseWebSocketMessageHandler(
+                engine.create(MARKET, product, DEPTH), new BookEventRingBuffer(1024, DEPTH * 2));
+        Product other = new Product();
+        other.setId("BTC-EUR");
+        other.setQuoteIncrement("0.01");
+        other.setBaseIncrement("0.00000001");
+        CoinbaseWebSocketMessageRouter router = new CoinbaseWebSocketMessageRouter(Arrays.asList(
+                new CoinbaseWebSocketMessageHandler(engine.create("BTC-EUR", other, DEPTH),
+                        new BookEventRingBuffer(1024, DEPTH * 2)), handler));
+        router.handle(generatedSnapshot);
+
+        assertNoAllocation(generated, router::handle);
+    }
+
+    @Test
+    public void testSimpleEngine_allocates() {
+        OrderBookAggregatorService orderBook = OrderBookEngine.SIMPLE.create(MARKET, product, DEPTH);
+        AtomicLongArray bids = new AtomicLongArray(DEPTH * 2);
+        AtomicLongArray asks = new AtomicLongArray(DEPTH * 2);
+        orderBook.updateOrderBookFromSnapshot(generatedSnapshot, bids, asks);
+        warmUp(generated, message -> orderBook.updateOrderBook(message, bids, asks));
+
+        long allocated = allocatedBytes(generated, message -> orderBook.updateOrderBook(message, bids, asks));
+
+        Assert.assertTrue(allocated + " bytes", allocated > ALLOWED_BYTES);
+    }
+
+    private void assertNoAllocation(Buffer[] messages, MessageConsumer consumer) {
+        warmUp(messages, consumer);
+
+        long allocated = allocatedBytes(messages, consumer);
+
+        Assert.assertTrue(String.format("%s allocated %d bytes over %d messages", engine, allocated,
+                MEASURED_MESSAGES), allocated <= ALLOWED_BYTES);
+    }
+
+    private static void warmUp(Buffer[] messages, MessageConsumer consumer) {
+        for (int pass = 0; pass < WARM_UP_PASSES; pass++) {
+            for (Buffer message : messages) {
+                consumer.accept(message);
+            }
+        }
+    }
+
+    private static long allocatedBytes(Buffer[] messages, MessageConsumer consumer) {
+        long threadId = Thread.currentThread().getId();
+        long before = threadMXBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < MEASURED_MESSAGES; i++) {
+            consumer.accept(messages[i % messages.length]);
+        }
+        return threadMXBean.getThreadAllocatedBytes(threadId) - before;
+    }
+
+    // a Consumer<Buffer> that doesn't box the boolean results
+    private interface MessageConsumer {
+        void accept(Buffer message);
+    }
+}
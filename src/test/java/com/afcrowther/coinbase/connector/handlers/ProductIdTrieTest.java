@@ -0,0 +1,56 @@
+package com.afcrowther.coinbase.connector.handlers;
+
+import io.vertx.core.buffer.Buffer;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ProductIdTrieTest {
+
+    private final ProductIdTrie<String> UNDER_TEST = new ProductIdTrie<>();
+
+    @Test
+    public void testGet() {
+        UNDER_TEST.put("BTC-USD", "btc");
+        UNDER_TEST.put("BTC-USDC", "btc-usdc");
+        UNDER_TEST.put("ETH-BTC", "eth");
+
+        Assert.assertEquals("btc", UNDER_TEST.get(Buffer.buffer("\"BTC-USD\""), 1));
+        Assert.assertEquals("btc-usdc", UNDER_TEST.get(Buffer.buffer("\"BTC-USDC\""), 1));
+        Assert.assertEquals("eth", UNDER_TEST.get(Buffer.buffer("xxETH-BTC\",\"changes\""), 2));
+        // a prefix of a product id is only found if it is a product id itself
+        Assert.assertNull(UNDER_TEST.get(Buffer.buffer("\"BTC-US\""), 1));
+        Assert.assertNull(UNDER_TEST.get(Buffer.buffer("\"LTC-USD\""), 1));
+        Assert.assertNull(UNDER_TEST.get(Buffer.buffer("\"\""), 1));
+    }
+
+    @Test
+    public void testGet_unterminated() {
+        UNDER_TEST.put("BTC-USD", "btc");
+
+        Assert.assertNull(UNDER_TEST.get(Buffer.buffer("\"BTC-USD"), 1));
+        Assert.assertNull(UNDER_TEST.get(Buffer.buffer("\"BTC-USD"), 10));
+    }
+
+    @Test
+    public void testGet_nonAscii() {
+        UNDER_TEST.put("BTC-USD", "btc");
+
+        Assert.assertNull(UNDER_TEST.get(Buffer.buffer("\"BTCéUSD\""), 1));
+    }
+
+    @Test
+    public void testPut_grows() {
+        for (int i = 0; i < 500; i++) {
+            UNDER_TEST.put("M" + i + "-USD", "market " + i);
+        }
+
+        for (int i = 0; i < 500; i++) {
+            Assert.assertEquals("market " + i, UNDER_TEST.get(Buffer.buffer("M" + i + "-USD\""), 0));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testPut_invalid() {
+        UNDER_TEST.put("BTC\"USD", "btc");
+    }
+}
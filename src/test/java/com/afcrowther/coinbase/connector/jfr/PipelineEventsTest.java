@@ -0,0 +1,96 @@
+package com.afcrowther.coinbase.connector.jfr;
+
+import com.afcrowther.coinbase.connector.domain.coinbase.Product;
+import com.afcrowther.coinbase.connector.handlers.CoinbaseWebSocketMessageHandler;
+import com.afcrowther.coinbase.connector.publisher.BookEventRingBuffer;
+import com.afcrowther.coinbase.connector.service.OrderBookEngine;
+import com.afcrowther.coinbase.connector.standin.L2UpdateGenerator;
+import com.afcrowther.coinbase.connector.standin.L2UpdateGeneratorOptions;
+import io.vertx.core.buffer.Buffer;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+
+public class PipelineEventsTest {
+
+    private static final String MARKET = "BTC-USD";
+    private static final int UPDATES = 100;
+
+    @Test
+    public void testMessageHandler_events() throws Exception {
+        Product product = new Product();
+        product.setId(MARKET);
+        product.setQuoteIncrement("0.01");
+        product.setBaseIncrement("0.00000001");
+        L2UpdateGenerator generator = new L2UpdateGenerator(product, new L2UpdateGeneratorOptions());
+        BookEventRingBuffer ringBuffer = new BookEventRingBuffer(1024, 20);
+        CoinbaseWebSocketMessageHandler handler = new CoinbaseWebSocketMessageHandler(
+                OrderBookEngine.SORTED_ARRAY.create(MARKET, product, 10), ringBuffer);
+
+        List<RecordedEvent> events;
+        try (Recording recording = new Recording()) {
+            recording.enable(FrameReceiveEvent.class).withThreshold(Duration.ZERO);
+            recording.enable(SnapshotParseEvent.class).withThreshold(Duration.ZERO);
+            recording.enable(OrderBookUpdateEvent.class).withThreshold(Duration.ZERO);
+            recording.enable(PublishEvent.class).withThreshold(Duration.ZERO);
+            recording.start();
+            int snapshotLength = generator.snapshot();
+            handler.handle(Buffer.buffer().appendBytes(generator.getFrame(), 0, snapshotLength));
+            for (int i = 0; i < UPDATES; i++) {
+                handler.handle(Buffer.buffer().appendBytes(generator.getFrame(), 0,
+                        generator.nextUpdate(1619623622638954L)));
+            }
+            recording.stop();
+            events = read(recording);
+        }
+
+        List<RecordedEvent> received = ofType(events, "FrameReceive");
+        Assert.assertEquals(UPDATES + 1, received.size());
+        Assert.assertEquals("snapshot", received.get(0).getString("type"));
+        Assert.assertTrue(received.stream().skip(1).allMatch(event -> "l2update".equals(event.getString("type"))));
+        Assert.assertTrue(received.stream().allMatch(event -> MARKET.equals(event.getString("market"))));
+
+        List<RecordedEvent> snapshots = ofType(events, "SnapshotParse");
+        Assert.assertEquals(1, snapshots.size());
+        Assert.assertEquals(received.get(0).getInt("size"), snapshots.get(0).getInt("size"));
+
+        List<RecordedEvent> updates = ofType(events, "OrderBookUpdate");
+        Assert.assertEquals(UPDATES, updates.size());
+        Assert.assertTrue(updates.stream().allMatch(event -> event.getInt("changes") > 0));
+        long topOfBookChanges = updates.stream().filter(event -> event.getBoolean("topOfBookChanged")).count();
+
+        // the snapshot and every update that changed the top of the book, in the order they were published
+        List<RecordedEvent> published = ofType(events, "Publish");
+        Assert.assertEquals(topOfBookChanges + 1, published.size());
+        for (int i = 0; i < published.size(); i++) {
+            Assert.assertEquals(i, published.get(i).getLong("sequence"));
+        }
+        Assert.assertEquals(ringBuffer.getCursor(), published.get(published.size() - 1).getLong("sequence"));
+    }
+
+    // the events of the recording, in the order they ended
+    private static List<RecordedEvent> read(Recording recording) throws Exception {
+        Path file = Files.createTempFile("pipeline-events", ".jfr");
+        try {
+            recording.dump(file);
+            return RecordingFile.readAllEvents(file).stream()
+                    .sorted((a, b) -> a.getEndTime().compareTo(b.getEndTime()))
+                    .collect(Collectors.toList());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    private static List<RecordedEvent> ofType(List<RecordedEvent> events, String name) {
+        return events.stream().filter(event -> event.getEventType().getName().endsWith("." + name))
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,133 @@
+package com.afcrowther.coinbase.connector.journal;
+
+import io.netty.buffer.Unpooled;
+import io.vertx.core.buffer.Buffer;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+
+public class FrameJournalTest {
+
+    private static final String UPDATE_MESSAGE = "{\"type\":\"l2update\",\"product_id\":\"BTC-USD\",\"changes\":" +
+            "[[\"sell\",\"54430.53\",\"0.00000000\"]],\"time\":\"2021-04-28T15:27:02.932274Z\"}";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testAppend_readBack() throws Exception {
+        Path directory = folder.getRoot().toPath().resolve("journal");
+        long before = System.currentTimeMillis();
+        try (FrameJournal journal = new FrameJournal(directory, FrameJournal.DEFAULT_SEGMENT_SIZE)) {
+            Assert.assertTrue(journal.append(Buffer.buffer(UPDATE_MESSAGE)));
+            // frames that aren't backed by an array are recorded as well
+            Buffer direct = Buffer.buffer(Unpooled.directBuffer().writeBytes("{\"type\":\"snapshot\"}".getBytes()));
+            Assert.assertTrue(journal.append(direct));
+            Assert.assertEquals(2, journal.getAppendedFrames());
+            Assert.assertEquals(0, journal.getDroppedFrames());
+        }
+
+        JournalReader reader = new JournalReader(directory);
+        Assert.assertTrue(reader.next());
+        Assert.assertEquals(UPDATE_MESSAGE, frameString(reader));
+        long firstNanoTime = reader.getReceivedNanoTime();
+        Assert.assertTrue(reader.getReceivedEpochMillis() >= before);
+        Assert.assertTrue(reader.next());
+        Assert.assertEquals("{\"type\":\"snapshot\"}", frameString(reader));
+        Assert.assertTrue(reader.getReceivedNanoTime() >= firstNanoTime);
+        Assert.assertFalse(reader.next());
+    }
+
+    @Test
+    public void testAppend_rollsSegments() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        int frames = 50;
+        try (FrameJournal journal = new FrameJournal(directory, 512)) {
+            for (int i = 0; i < frames; i++) {
+                Buffer frame = Buffer.buffer(UPDATE_MESSAGE + i);
+                // the next segment is prepared in the background, the frame is dropped rather than waiting for it
+                while (!journal.append(frame)) {
+                    Thread.sleep(1);
+                }
+            }
+            Assert.assertEquals(frames, journal.getAppendedFrames());
+        }
+
+        try (Stream<Path> files = Files.list(directory)) {
+            Assert.assertTrue(files.count() > 1);
+        }
+        JournalReader reader = new JournalReader(directory);
+        for (int i = 0; i < frames; i++) {
+            Assert.assertTrue(reader.next());
+            Assert.assertEquals(UPDATE_MESSAGE + i, frameString(reader));
+        }
+        Assert.assertFalse(reader.next());
+    }
+
+    @Test
+    public void testAppend_rollsSegmentsBackToBack() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        // one frame to a segment, retried without a pause, so the journal rolls again as soon as the background thread
+        // has a segment ready, often before it has got to the segment before
+        int segmentSize = 256;
+        int frames = 500;
+        FrameJournal journal = new FrameJournal(directory, segmentSize);
+        for (int i = 0; i < frames; i++) {
+            Buffer frame = Buffer.buffer(UPDATE_MESSAGE + i);
+            while (!journal.append(frame)) {
+                Thread.onSpinWait();
+            }
+        }
+        journal.close();
+
+        // every segment the journal moved on from was forced and unmapped, none were passed over
+        Assert.assertEquals(frames - 1, journal.getRolledSegments());
+        Assert.assertEquals(frames - 1, journal.getRetiredSegments());
+        JournalReader reader = new JournalReader(directory);
+        for (int i = 0; i < frames; i++) {
+            Assert.assertTrue(reader.next());
+            Assert.assertEquals(UPDATE_MESSAGE + i, frameString(reader));
+        }
+        Assert.assertFalse(reader.next());
+    }
+
+    @Test
+    public void testAppend_dropsFramesBiggerThanASegment() throws Exception {
+        try (FrameJournal journal = new FrameJournal(folder.getRoot().toPath(), 128)) {
+            Assert.assertFalse(journal.append(Buffer.buffer(UPDATE_MESSAGE)));
+            Assert.assertFalse(journal.append(Buffer.buffer()));
+            Assert.assertTrue(journal.append(Buffer.buffer("{}")));
+
+            Assert.assertEquals(1, journal.getAppendedFrames());
+            Assert.assertEquals(2, journal.getDroppedFrames());
+        }
+    }
+
+    @Test
+    public void testJournalReader_emptyDirectory() {
+        Assert.assertFalse(new JournalReader(folder.getRoot().toPath()).next());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testJournalReader_notASegment() throws Exception {
+        Files.write(folder.getRoot().toPath().resolve("frames-0-00000.journal"), "not a journal".getBytes());
+
+        new JournalReader(folder.getRoot().toPath()).next();
+    }
+
+    private static String frameString(JournalReader reader) {
+        ByteBuffer frame = reader.getFrame();
+        byte[] bytes = new byte[frame.remaining()];
+        frame.get(bytes);
+        Assert.assertEquals(reader.getFrameLength(), bytes.length);
+        return new String(bytes, ISO_8859_1);
+    }
+}
@@ -0,0 +1,169 @@
+package com.afcrowther.coinbase.connector.journal;
+
+import com.afcrowther.coinbase.connector.domain.coinbase.Product;
+import io.vertx.core.buffer.Buffer;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+public class JournalReplayerTest {
+
+    private static final String UPDATE_MESSAGE = "{\"type\":\"l2update\",\"product_id\":\"BTC-USD\",\"changes\":" +
+            "[[\"sell\",\"54430.53\",\"0.00000000\"]],\"time\":\"2021-04-28T15:27:02.932274Z\"}";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testRun_asFastAsPossible() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        int frames = 100;
+        try (FrameJournal journal = new FrameJournal(directory, FrameJournal.DEFAULT_SEGMENT_SIZE)) {
+            for (int i = 0; i < frames; i++) {
+                journal.append(Buffer.buffer(UPDATE_MESSAGE + i));
+            }
+        }
+
+        List<String> replayed = new ArrayList<>();
+        JournalReplayer replayer = new JournalReplayer(new JournalReader(directory), frame -> replayed.add(frame.toString()),
+                JournalReplayer.AS_FAST_AS_POSSIBLE);
+        replayer.run();
+
+        Assert.assertEquals(frames, replayer.getReplayedFrames());
+        Assert.assertEquals(frames, replayed.size());
+        for (int i = 0; i < frames; i++) {
+            Assert.assertEquals(UPDATE_MESSAGE + i, replayed.get(i));
+        }
+    }
+
+    @Test
+    public void testRun_reusesBuffer() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        try (FrameJournal journal = new FrameJournal(directory, FrameJournal.DEFAULT_SEGMENT_SIZE)) {
+            journal.append(Buffer.buffer(UPDATE_MESSAGE));
+            journal.append(Buffer.buffer("{}"));
+        }
+
+        List<Buffer> replayed = new ArrayList<>();
+        new JournalReplayer(new JournalReader(directory), replayed::add, JournalReplayer.AS_FAST_AS_POSSIBLE).run();
+
+        Assert.assertSame(replayed.get(0), replayed.get(1));
+        // a shorter frame doesn't leave the end of the longer one before it behind
+        Assert.assertEquals("{}", replayed.get(1).toString());
+    }
+
+    @Test
+    public void testRun_keepsTheGapsScaledBySpeed() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        try (FrameJournal journal = new FrameJournal(directory, FrameJournal.DEFAULT_SEGMENT_SIZE)) {
+            journal.append(Buffer.buffer(UPDATE_MESSAGE));
+            Thread.sleep(200);
+            journal.append(Buffer.buffer(UPDATE_MESSAGE));
+        }
+
+        JournalReader reader = new JournalReader(directory);
+        reader.next();
+        long firstReceived = reader.getReceivedNanoTime();
+        reader.next();
+        long gap = reader.getReceivedNanoTime() - firstReceived;
+
+        JournalReplayer replayer = new JournalReplayer(new JournalReader(directory), frame -> { }, 4);
+        replayer.run();
+
+        Assert.assertEquals(2, replayer.getReplayedFrames());
+        Assert.assertTrue(replayer.getElapsedNanos() + " vs " + gap, replayer.getElapsedNanos() >= gap / 4);
+        Assert.assertTrue(replayer.getElapsedNanos() + " vs " + gap, replayer.getElapsedNanos() < gap);
+    }
+
+    @Test
+    public void testRun_carriesOnTimingAcrossRuns() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        try (FrameJournal journal = new FrameJournal(directory, FrameJournal.DEFAULT_SEGMENT_SIZE)) {
+            journal.append(Buffer.buffer(UPDATE_MESSAGE));
+        }
+        // the next run needs a segment prefix of its own
+        Thread.sleep(5);
+        try (FrameJournal journal = new FrameJournal(directory, FrameJournal.DEFAULT_SEGMENT_SIZE)) {
+            journal.append(Buffer.buffer(UPDATE_MESSAGE));
+            Thread.sleep(100);
+            journal.append(Buffer.buffer(UPDATE_MESSAGE));
+        }
+        // as if the second run was on a JVM whose nano time was an hour ahead
+        Path secondRun;
+        try (Stream<Path> files = Files.list(directory)) {
+            secondRun = files.filter(path -> path.toString().endsWith(FrameJournal.SEGMENT_SUFFIX))
+                    .sorted(Comparator.reverseOrder())
+                    .filter(path -> path.getFileName().toString().endsWith("-00000" + FrameJournal.SEGMENT_SUFFIX))
+                    .findFirst()
+                    .orElseThrow();
+        }
+        try (FileChannel channel = FileChannel.open(secondRun, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+            segment.order(ByteOrder.LITTLE_ENDIAN);
+            int position = FrameJournal.SEGMENT_HEADER_LENGTH;
+            while (segment.getInt(position) != 0) {
+                segment.putLong(position + 4, segment.getLong(position + 4) + TimeUnit.HOURS.toNanos(1));
+                position += FrameJournal.RECORD_HEADER_LENGTH + segment.getInt(position);
+            }
+        }
+
+        JournalReader reader = new JournalReader(directory);
+        List<Integer> runs = new ArrayList<>();
+        while (reader.next()) {
+            runs.add(reader.getRun());
+        }
+        JournalReplayer replayer = new JournalReplayer(new JournalReader(directory), frame -> { }, 1);
+        replayer.run();
+
+        Assert.assertEquals(List.of(0, 1, 1), runs);
+        Assert.assertEquals(3, replayer.getReplayedFrames());
+        // the gap within the second run is kept, the hour between the runs' clocks is not
+        Assert.assertTrue(String.valueOf(replayer.getElapsedNanos()),
+                replayer.getElapsedNanos() >= TimeUnit.MILLISECONDS.toNanos(100));
+        Assert.assertTrue(String.valueOf(replayer.getElapsedNanos()),
+                replayer.getElapsedNanos() < TimeUnit.SECONDS.toNanos(10));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testConstructor_negativeSpeed() {
+        new JournalReplayer(new JournalReader(folder.getRoot().toPath()), frame -> { }, -1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testConstructor_nanSpeed() {
+        new JournalReplayer(new JournalReader(folder.getRoot().toPath()), frame -> { }, Double.NaN);
+    }
+
+    @Test
+    public void testWriteProduct_readBack() {
+        Path directory = folder.getRoot().toPath();
+        Product product = new Product();
+        product.setId("BTC-USD");
+        product.setBaseIncrement("0.00000001");
+        product.setQuoteIncrement("0.01");
+        product.setStatus("online");
+        try (FrameJournal journal = new FrameJournal(directory, FrameJournal.DEFAULT_SEGMENT_SIZE)) {
+            journal.writeProduct(product);
+        }
+
+        Product read = new JournalReader(directory).readProduct();
+
+        Assert.assertEquals("BTC-USD", read.getId());
+        Assert.assertEquals("0.00000001", read.getBaseIncrement());
+        Assert.assertEquals("0.01", read.getQuoteIncrement());
+        Assert.assertEquals("online", read.getStatus());
+    }
+}
@@ -0,0 +1,80 @@
+package com.afcrowther.coinbase.connector.metrics;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.SplittableRandom;
+
+public class LatencyHistogramTest {
+
+    private final LatencyHistogram UNDER_TEST = new LatencyHistogram();
+
+    @Test
+    public void testIndexOf_withinOnePercent() {
+        SplittableRandom random = new SplittableRandom(1);
+        for (int i = 0; i < 1_000_000; i++) {
+            // spread across every power of 2
+            long value = random.nextLong(Long.MAX_VALUE) >>> random.nextInt(63);
+            int index = LatencyHistogram.indexOf(value);
+            long highest = LatencyHistogram.highestEquivalentValue(index);
+
+            Assert.assertTrue(value + " " + highest, highest >= value);
+            Assert.assertTrue(value + " " + highest, highest - value <= value / 100);
+            Assert.assertEquals(index, LatencyHistogram.indexOf(highest));
+        }
+        Assert.assertEquals(Long.MAX_VALUE,
+                LatencyHistogram.highestEquivalentValue(LatencyHistogram.indexOf(Long.MAX_VALUE)));
+    }
+
+    @Test
+    public void testPercentiles() {
+        for (int i = 1; i <= 100_000; i++) {
+            UNDER_TEST.record(i * 1000L);
+        }
+
+        Assert.assertEquals(100_000, UNDER_TEST.getTotalCount());
+        Assert.assertEquals(1000, UNDER_TEST.getMin());
+        Assert.assertEquals(100_000_000, UNDER_TEST.getMax());
+        Assert.assertEquals(50_000_500, UNDER_TEST.getMean(), 0.001);
+        assertWithinOnePercent(50_000_000, UNDER_TEST.getValueAtPercentile(50));
+        assertWithinOnePercent(99_000_000, UNDER_TEST.getValueAtPercentile(99));
+        assertWithinOnePercent(99_900_000, UNDER_TEST.getValueAtPercentile(99.9));
+        Assert.assertEquals(100_000_000, UNDER_TEST.getValueAtPercentile(100));
+        assertWithinOnePercent(1000, UNDER_TEST.getValueAtPercentile(0));
+    }
+
+    @Test
+    public void testRecord_negative() {
+        UNDER_TEST.record(-5);
+
+        Assert.assertEquals(1, UNDER_TEST.getTotalCount());
+        Assert.assertEquals(0, UNDER_TEST.getMax());
+        Assert.assertEquals(0, UNDER_TEST.getValueAtPercentile(50));
+    }
+
+    @Test
+    public void testAddAndReset() {
+        LatencyHistogram other = new LatencyHistogram();
+        UNDER_TEST.record(10);
+        other.record(20);
+        other.record(30);
+
+        UNDER_TEST.add(other);
+
+        Assert.assertEquals(3, UNDER_TEST.getTotalCount());
+        Assert.assertEquals(10, UNDER_TEST.getMin());
+        Assert.assertEquals(30, UNDER_TEST.getMax());
+        Assert.assertEquals(20, UNDER_TEST.getValueAtPercentile(50));
+
+        UNDER_TEST.reset();
+
+        Assert.assertEquals(0, UNDER_TEST.getTotalCount());
+        Assert.assertEquals(0, UNDER_TEST.getMin());
+        Assert.assertEquals(0, UNDER_TEST.getMax());
+        Assert.assertEquals(0, UNDER_TEST.getValueAtPercentile(99));
+    }
+
+    private static void assertWithinOnePercent(long expected, long actual) {
+        Assert.assertTrue(expected + " vs " + actual, Math.abs(expected - actual) <= expected / 100);
+    }
+}
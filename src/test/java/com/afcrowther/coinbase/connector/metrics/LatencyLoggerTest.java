@@ -0,0 +1,68 @@
+package com.afcrowther.coinbase.connector.metrics;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+public class LatencyLoggerTest {
+
+    private static final Pattern LINE_PATTERN = Pattern.compile("[0-9T:.Z-]+ (BTC-USD|ETH-USD) ([a-z-]+) " +
+            "count=([0-9]+) mean=[0-9]+\\.[0-9]us p50=([0-9]+)us p90=[0-9]+us p99=[0-9]+us p99\\.9=[0-9]+us " +
+            "max=([0-9]+)us");
+
+    private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+    @Test
+    public void testLog() {
+        MarketLatencies btc = new MarketLatencies("BTC-USD");
+        MarketLatencies eth = new MarketLatencies("ETH-USD");
+        LatencyLogger logger = new LatencyLogger(Arrays.asList(btc, eth), new PrintStream(output, true));
+        btc.record(LatencyStage.RECEIVE_TO_BOOK_UPDATED, 5_000);
+        btc.record(LatencyStage.RECEIVE_TO_BOOK_UPDATED, 7_000);
+        // a message the exchange sent a second before we received it
+        long received = System.nanoTime();
+        long exchangeTime = ChronoUnit.MICROS.between(Instant.EPOCH, Instant.now().minusSeconds(1));
+        btc.recordExchangeToReceive(exchangeTime, received);
+
+        logger.log();
+        String[] lines = new String(output.toByteArray(), UTF_8).split(System.lineSeparator());
+
+        Assert.assertEquals(6, lines.length);
+        assertLine(lines[0], "BTC-USD", LatencyStage.EXCHANGE_TO_RECEIVE, 1);
+        long exchangeToReceive = Long.parseLong(match(lines[0]).group(5));
+        Assert.assertTrue(lines[0], exchangeToReceive >= 990_000 && exchangeToReceive <= 1_100_000);
+        assertLine(lines[1], "BTC-USD", LatencyStage.RECEIVE_TO_BOOK_UPDATED, 2);
+        Assert.assertEquals("5", match(lines[1]).group(4));
+        Assert.assertEquals("7", match(lines[1]).group(5));
+        assertLine(lines[2], "BTC-USD", LatencyStage.BOOK_UPDATED_TO_PRINTED, 0);
+        assertLine(lines[3], "ETH-USD", LatencyStage.EXCHANGE_TO_RECEIVE, 0);
+
+        // the next interval starts from nothing
+        output.reset();
+        logger.log();
+        lines = new String(output.toByteArray(), UTF_8).split(System.lineSeparator());
+        assertLine(lines[1], "BTC-USD", LatencyStage.RECEIVE_TO_BOOK_UPDATED, 0);
+    }
+
+    private static void assertLine(String line, String market, LatencyStage stage, long count) {
+        Matcher matcher = match(line);
+        Assert.assertEquals(market, matcher.group(1));
+        Assert.assertEquals(stage.getStageName(), matcher.group(2));
+        Assert.assertEquals(count, Long.parseLong(matcher.group(3)));
+    }
+
+    private static Matcher match(String line) {
+        Matcher matcher = LINE_PATTERN.matcher(line);
+        Assert.assertTrue(line, matcher.matches());
+        return matcher;
+    }
+}
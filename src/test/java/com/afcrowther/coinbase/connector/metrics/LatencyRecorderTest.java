@@ -0,0 +1,48 @@
+package com.afcrowther.coinbase.connector.metrics;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LatencyRecorderTest {
+
+    private final LatencyRecorder UNDER_TEST = new LatencyRecorder();
+
+    @Test
+    public void testGetIntervalHistogram() {
+        UNDER_TEST.record(100);
+        UNDER_TEST.record(200);
+
+        LatencyHistogram first = UNDER_TEST.getIntervalHistogram();
+        UNDER_TEST.record(300);
+        LatencyHistogram second = UNDER_TEST.getIntervalHistogram();
+        LatencyHistogram third = UNDER_TEST.getIntervalHistogram();
+
+        Assert.assertEquals(2, first.getTotalCount());
+        Assert.assertEquals(200, first.getMax());
+        Assert.assertEquals(1, second.getTotalCount());
+        Assert.assertEquals(300, second.getMin());
+        Assert.assertEquals(0, third.getTotalCount());
+    }
+
+    @Test
+    public void testGetIntervalHistogram_whileRecording() throws Exception {
+        int values = 5_000_000;
+        Thread recorder = new Thread(() -> {
+            for (int i = 0; i < values; i++) {
+                UNDER_TEST.record(i & 1023);
+            }
+        });
+        recorder.start();
+
+        // every value ends up in exactly one interval
+        LatencyHistogram interval = new LatencyHistogram();
+        long total = 0;
+        while (recorder.isAlive()) {
+            total += UNDER_TEST.getIntervalHistogram(interval).getTotalCount();
+        }
+        recorder.join();
+        total += UNDER_TEST.getIntervalHistogram(interval).getTotalCount();
+
+        Assert.assertEquals(values, total);
+    }
+}
@@ -0,0 +1,86 @@
+package com.afcrowther.coinbase.connector.metrics;
+
+import com.afcrowther.coinbase.connector.publisher.BookEventProcessor;
+import com.afcrowther.coinbase.connector.publisher.BookEventRingBuffer;
+import com.afcrowther.coinbase.connector.publisher.WaitStrategy;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+public class MarketMetricsTest {
+
+    private final MarketMetrics UNDER_TEST = new MarketMetrics("BTC-USD");
+
+    @After
+    public void teardown() {
+        UNDER_TEST.unregister();
+    }
+
+    @Test
+    public void testRegister() throws Exception {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName("com.afcrowther.coinbase.connector:type=MarketMetrics,market=BTC-USD");
+        UNDER_TEST.l2UpdateMessages().add(42);
+
+        UNDER_TEST.register();
+
+        Assert.assertEquals(42L, server.getAttribute(name, "L2UpdateMessages"));
+        Assert.assertEquals("BTC-USD", server.getAttribute(name, "Market"));
+        UNDER_TEST.unregister();
+        Assert.assertFalse(server.isRegistered(name));
+    }
+
+    @Test
+    public void testPrinterGauges() {
+        BookEventRingBuffer ringBuffer = new BookEventRingBuffer(4, 2);
+        BookEventProcessor processor = new BookEventProcessor(ringBuffer, (event, sequence, endOfBatch) -> { },
+                WaitStrategy.PARK);
+        UNDER_TEST.setPrinterProcessor(processor);
+        for (int i = 0; i < 3; i++) {
+            ringBuffer.publish(new AtomicLongArray(2), new AtomicLongArray(2));
+            UNDER_TEST.depthUpdates().increment();
+        }
+
+        // the processor has yet to run
+        Assert.assertEquals(3, UNDER_TEST.getPrinterBacklog());
+        Assert.assertEquals(0, UNDER_TEST.getSkippedEvents());
+        Assert.assertEquals(0, UNDER_TEST.getConflatedEvents());
+
+        UNDER_TEST.printedEvents().increment();
+        Thread thread = new Thread(processor);
+        thread.start();
+        while (UNDER_TEST.getPrinterBacklog() != 0) {
+            Thread.yield();
+        }
+        processor.halt();
+
+        // one of the three was printed, the handler passed over the other two
+        Assert.assertEquals(2, UNDER_TEST.getConflatedEvents());
+    }
+
+    @Test
+    public void testPaddedCounter() throws Exception {
+        PaddedCounter counter = UNDER_TEST.levelsChanged();
+        Thread writer = new Thread(() -> {
+            for (int i = 0; i < 1_000_000; i++) {
+                counter.increment();
+            }
+        });
+        writer.start();
+
+        // the reader only ever sees the count go up
+        long last = 0;
+        while (writer.isAlive()) {
+            long count = counter.get();
+            Assert.assertTrue(count >= last);
+            last = count;
+        }
+        writer.join();
+        Assert.assertEquals(1_000_000, UNDER_TEST.getLevelsChanged());
+    }
+}
@@ -0,0 +1,77 @@
+package com.afcrowther.coinbase.connector.metrics;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+public class MetricsLoggerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+    private final AtomicLong nanoClock = new AtomicLong();
+    private final MarketMetrics metrics = new MarketMetrics("BTC-USD");
+    private final MetricsLogger UNDER_TEST = new MetricsLogger(Collections.singletonList(metrics),
+            new PrintStream(output, true), nanoClock::get);
+
+    @Test
+    public void testLog() {
+        metrics.l2UpdateMessages().add(500);
+        metrics.levelsChanged().add(1000);
+        nanoClock.addAndGet(TimeUnit.SECONDS.toNanos(2));
+
+        UNDER_TEST.log();
+        String line = new String(output.toByteArray(), UTF_8).trim();
+
+        Assert.assertTrue(line, line.matches("[0-9T:.Z-]+ BTC-USD snapshot=0\\.0/s l2update=250\\.0/s error=0\\.0/s " +
+                "levels-changed=500\\.0/s depth-updates=0\\.0/s published=0\\.0/s printed=0\\.0/s skipped=0 " +
+                "conflated=0 backlog=0"));
+
+        // the rates are of the interval only
+        output.reset();
+        metrics.l2UpdateMessages().add(100);
+        nanoClock.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        UNDER_TEST.log();
+        line = new String(output.toByteArray(), UTF_8).trim();
+
+        Assert.assertTrue(line, line.contains(" l2update=100.0/s "));
+        Assert.assertTrue(line, line.contains(" levels-changed=0.0/s "));
+    }
+
+    @Test
+    public void testReadL2UpdateRates() throws Exception {
+        MarketMetrics eth = new MarketMetrics("ETH-USD");
+        MetricsLogger logger = new MetricsLogger(Arrays.asList(metrics, eth), new PrintStream(output, true),
+                nanoClock::get);
+        metrics.l2UpdateMessages().add(100);
+        eth.l2UpdateMessages().add(10);
+        nanoClock.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        logger.log();
+        metrics.l2UpdateMessages().add(300);
+        nanoClock.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        logger.log();
+        Path file = folder.newFile().toPath();
+        Files.write(file, output.toByteArray());
+
+        Map<String, Double> rates = MetricsLogger.readL2UpdateRates(file);
+
+        // the average of each market's lines
+        Assert.assertEquals(2, rates.size());
+        Assert.assertEquals(200.0, rates.get("BTC-USD"), 0.001);
+        Assert.assertEquals(5.0, rates.get("ETH-USD"), 0.001);
+    }
+}
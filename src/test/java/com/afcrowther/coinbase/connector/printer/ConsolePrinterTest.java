@@ -1,12 +1,24 @@
 package com.afcrowther.coinbase.connector.printer;
 
 import com.afcrowther.coinbase.connector.domain.coinbase.Product;
+import com.afcrowther.coinbase.connector.jfr.PrintEvent;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.ByteArrayOutputStream;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicLongArray;
 
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+
 public class ConsolePrinterTest {
 
     private ConsolePrinter UNDER_TEST;
@@ -17,7 +29,6 @@ public class ConsolePrinterTest {
         marketInfo.setBaseIncrement("0.00000001");
         marketInfo.setQuoteIncrement("0.01");
         UNDER_TEST = new ConsolePrinter(marketInfo);
-        UNDER_TEST.clean();
     }
 
     @Test
@@ -35,8 +46,8 @@ public class ConsolePrinterTest {
                 "5.82816063\n3433.59\t\t5.82860160\n3433.33\t\t59.00100350\n\u001B[0m\u001B[32m\n3433.03\t\t" +
                 "0.31000000\n3433.02\t\t2.00576190\n3433.01\t\t17.19605004\n3432.72\t\t13.42894532\n3432.71\t\t" +
                 "9.30000000\n3432.64\t\t15.82697127\n3432.38\t\t0.04601780\n3432.05\t\t1.00000000\n3432.03\t\t" +
-                "1.79690823\n3431.58\t\t3.14660000\n\u001B[0m";
-        String actual = UNDER_TEST.buildOrderBookStringRepresentation(asks, bids).toString();
+                "1.79690823\n3431.58\t\t3.14660000\n\u001B[0m\n\nSpread: 0.30\n";
+        String actual = render(UNDER_TEST, asks, bids);
 
         Assert.assertEquals(expected, actual);
     }
@@ -56,8 +67,26 @@ public class ConsolePrinterTest {
                 "5.82816063\n\u001B[0m\u001B[32m\n3433.03\t\t" +
                 "0.31000000\n3433.02\t\t2.00576190\n3433.01\t\t17.19605004\n3432.72\t\t13.42894532\n3432.71\t\t" +
                 "9.30000000\n3432.64\t\t15.82697127\n3432.38\t\t0.04601780\n3432.05\t\t1.00000000\n3432.03\t\t" +
-                "1.79690823\n\u001B[0m";
-        String actual = UNDER_TEST.buildOrderBookStringRepresentation(asks, bids).toString();
+                "1.79690823\n\u001B[0m\n\nSpread: 0.87\n";
+        String actual = render(UNDER_TEST, asks, bids);
+
+        Assert.assertEquals(expected, actual);
+    }
+
+    @Test
+    public void testBuildOrderBookStringRepresentation_topOfBookOnly() {
+        Product marketInfo = new Product();
+        marketInfo.setBaseIncrement("0.00000001");
+        marketInfo.setQuoteIncrement("0.01");
+        ConsolePrinter topOfBookPrinter = new ConsolePrinter(marketInfo, 1);
+
+        AtomicLongArray asks = new AtomicLongArray(new long[] { 343333, 5900100350l });
+        AtomicLongArray bids = new AtomicLongArray(new long[] { 343303, 31000000 });
+
+        String expected = "\n\n\n\n\n\n\n\n\n\n\nPrice \t\t\t Quantity\n" +
+                "\u001B[31m\n3433.33\t\t59.00100350\n\u001B[0m\u001B[32m\n3433.03\t\t0.31000000\n\u001B[0m" +
+                "\n\nSpread: 0.30\n";
+        String actual = render(topOfBookPrinter, asks, bids);
 
         Assert.assertEquals(expected, actual);
     }
@@ -66,7 +95,7 @@ public class ConsolePrinterTest {
     public void testGetNumberOfDecimalPlaces() {
         String input = "0.00000001";
         int expected = 8;
-        int actual = UNDER_TEST.getNumberOfDecimalPlaces(input);
+        int actual = ConsolePrinter.getNumberOfDecimalPlaces(input);
 
         Assert.assertEquals(expected, actual);
     }
@@ -75,7 +104,7 @@ public class ConsolePrinterTest {
     public void testGetNumberOfDecimalPlaces_trailingZeros() {
         String input = "0.01000000";
         int expected = 2;
-        int actual = UNDER_TEST.getNumberOfDecimalPlaces(input);
+        int actual = ConsolePrinter.getNumberOfDecimalPlaces(input);
 
         Assert.assertEquals(expected, actual);
     }
@@ -84,7 +113,7 @@ public class ConsolePrinterTest {
     public void testGetNumberOfDecimalPlaces_noDecimal() {
         String input = "100000001";
         int expected = 0;
-        int actual = UNDER_TEST.getNumberOfDecimalPlaces(input);
+        int actual = ConsolePrinter.getNumberOfDecimalPlaces(input);
 
         Assert.assertEquals(expected, actual);
     }
@@ -93,8 +122,82 @@ public class ConsolePrinterTest {
     public void testGetNumberOfDecimalPlaces_shorterString() {
         String input = "0.01";
         int expected = 2;
-        int actual = UNDER_TEST.getNumberOfDecimalPlaces(input);
+        int actual = ConsolePrinter.getNumberOfDecimalPlaces(input);
 
         Assert.assertEquals(expected, actual);
     }
+
+    @Test
+    public void testPrintOrderBook_writesFrameEachTime() {
+        Product marketInfo = new Product();
+        marketInfo.setBaseIncrement("0.00000001");
+        marketInfo.setQuoteIncrement("0.01");
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ConsolePrinter printer = new ConsolePrinter(marketInfo, 1, Channels.newChannel(output));
+
+        AtomicLongArray asks = new AtomicLongArray(new long[] { 343333, 5900100350l });
+        AtomicLongArray bids = new AtomicLongArray(new long[] { 343303, 31000000 });
+        printer.printOrderBook(asks, bids);
+        bids.set(0, -1);
+        printer.printOrderBook(asks, bids);
+
+        String first = "\n\n\n\n\n\n\n\n\n\n\nPrice \t\t\t Quantity\n" +
+                "\u001B[31m\n3433.33\t\t59.00100350\n\u001B[0m\u001B[32m\n3433.03\t\t0.31000000\n\u001B[0m" +
+                "\n\nSpread: 0.30\n";
+        String second = "\n\n\n\n\n\n\n\n\n\n\nPrice \t\t\t Quantity\n" +
+                "\u001B[31m\n3433.33\t\t59.00100350\n\u001B[0m\u001B[32m\n\u001B[0m" +
+                "\n\nSpread: N/A\n";
+        Assert.assertEquals(first + second, output.toString(ISO_8859_1));
+    }
+
+    @Test
+    public void testPrintOrderBook_marketLine() {
+        Product marketInfo = new Product();
+        marketInfo.setId("ETH-USD");
+        marketInfo.setBaseIncrement("0.00000001");
+        marketInfo.setQuoteIncrement("0.01");
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ConsolePrinter printer = new ConsolePrinter(marketInfo, 1, Channels.newChannel(output));
+
+        printer.printOrderBook(new AtomicLongArray(new long[] { 343333, 5900100350l }),
+                new AtomicLongArray(new long[] { 343303, 31000000 }));
+
+        // one more new line to push the market line off the screen along with the rest
+        String expected = "\n\n\n\n\n\n\n\n\n\n\n\nETH-USD\nPrice \t\t\t Quantity\n" +
+                "\u001B[31m\n3433.33\t\t59.00100350\n\u001B[0m\u001B[32m\n3433.03\t\t0.31000000\n\u001B[0m" +
+                "\n\nSpread: 0.30\n";
+        Assert.assertEquals(expected, output.toString(ISO_8859_1));
+    }
+
+    @Test
+    public void testPrintOrderBook_printEvent() throws Exception {
+        Product marketInfo = new Product();
+        marketInfo.setId("BTC-USD");
+        marketInfo.setBaseIncrement("0.00000001");
+        marketInfo.setQuoteIncrement("0.01");
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ConsolePrinter printer = new ConsolePrinter(marketInfo, 1, Channels.newChannel(output));
+        AtomicLongArray asks = new AtomicLongArray(new long[] { 343333, 5900100350l });
+        AtomicLongArray bids = new AtomicLongArray(new long[] { 343303, 31000000 });
+
+        Path file = Files.createTempFile("print-event", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable(PrintEvent.class).withThreshold(Duration.ZERO);
+            recording.start();
+            printer.printOrderBook(asks, bids);
+            recording.stop();
+            recording.dump(file);
+            List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+
+            Assert.assertEquals(1, events.size());
+            Assert.assertEquals("BTC-USD", events.get(0).getString("market"));
+            Assert.assertEquals(output.size(), events.get(0).getInt("bytes"));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    private static String render(ConsolePrinter printer, AtomicLongArray asks, AtomicLongArray bids) {
+        return new String(printer.getFrame(), 0, printer.render(asks, bids), ISO_8859_1);
+    }
 }
@@ -0,0 +1,138 @@
+package com.afcrowther.coinbase.connector.printer;
+
+import com.afcrowther.coinbase.connector.domain.coinbase.Product;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.channels.Channels;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+
+public class DiffConsolePrinterTest {
+
+    private Product marketInfo;
+
+    @Before
+    public void setup() {
+        marketInfo = new Product();
+        marketInfo.setBaseIncrement("0.00000001");
+        marketInfo.setQuoteIncrement("0.01");
+    }
+
+    @Test
+    public void testRender_firstFrameDrawsEverything() {
+        DiffConsolePrinter printer = new DiffConsolePrinter(marketInfo, 1);
+        AtomicLongArray asks = new AtomicLongArray(new long[] { 343333, 5900100350l });
+        AtomicLongArray bids = new AtomicLongArray(new long[] { 343303, 31000000 });
+
+        String expected = "\u001B[H\u001B[2JPrice \t\t\t Quantity" +
+                "\u001B[2;1H\u001B[2K\u001B[31m3433.33\t\t59.00100350\u001B[0m" +
+                "\u001B[4;1H\u001B[2K\u001B[32m3433.03\t\t0.31000000\u001B[0m" +
+                "\u001B[6;1H\u001B[2KSpread: 0.30" +
+                "\u001B[7;1H";
+        String actual = render(printer, asks, bids);
+
+        Assert.assertEquals(expected, actual);
+    }
+
+    @Test
+    public void testRender_onlyChangedRows() {
+        DiffConsolePrinter printer = new DiffConsolePrinter(marketInfo, 1);
+        AtomicLongArray asks = new AtomicLongArray(new long[] { 343333, 5900100350l });
+        AtomicLongArray bids = new AtomicLongArray(new long[] { 343303, 31000000 });
+        render(printer, asks, bids);
+
+        bids.set(1, 41000000);
+        String expected = "\u001B[4;1H\u001B[2K\u001B[32m3433.03\t\t0.41000000\u001B[0m\u001B[7;1H";
+        String actual = render(printer, asks, bids);
+
+        Assert.assertEquals(expected, actual);
+    }
+
+    @Test
+    public void testRender_spreadChange() {
+        DiffConsolePrinter printer = new DiffConsolePrinter(marketInfo, 1);
+        AtomicLongArray asks = new AtomicLongArray(new long[] { 343333, 5900100350l });
+        AtomicLongArray bids = new AtomicLongArray(new long[] { 343303, 31000000 });
+        render(printer, asks, bids);
+
+        asks.set(0, 343343);
+        String expected = "\u001B[2;1H\u001B[2K\u001B[31m3433.43\t\t59.00100350\u001B[0m" +
+                "\u001B[6;1H\u001B[2KSpread: 0.40\u001B[7;1H";
+        String actual = render(printer, asks, bids);
+
+        Assert.assertEquals(expected, actual);
+    }
+
+    @Test
+    public void testRender_nothingChanged() {
+        DiffConsolePrinter printer = new DiffConsolePrinter(marketInfo, 1);
+        AtomicLongArray asks = new AtomicLongArray(new long[] { 343333, 5900100350l });
+        AtomicLongArray bids = new AtomicLongArray(new long[] { 343303, 31000000 });
+        render(printer, asks, bids);
+
+        Assert.assertEquals(0, printer.render(asks, bids));
+    }
+
+    @Test
+    public void testRender_emptyLevels() {
+        DiffConsolePrinter printer = new DiffConsolePrinter(marketInfo, 2);
+        AtomicLongArray asks = new AtomicLongArray(new long[] { 343340, 100000000, -1, -1 });
+        AtomicLongArray bids = new AtomicLongArray(new long[] { -1, -1, -1, -1 });
+
+        // the only ask is kept on the row next to the bids
+        String expected = "\u001B[H\u001B[2JPrice \t\t\t Quantity" +
+                "\u001B[2;1H\u001B[2K" +
+                "\u001B[3;1H\u001B[2K\u001B[31m3433.40\t\t1.00000000\u001B[0m" +
+                "\u001B[5;1H\u001B[2K" +
+                "\u001B[6;1H\u001B[2K" +
+                "\u001B[8;1H\u001B[2KSpread: N/A" +
+                "\u001B[9;1H";
+        String actual = render(printer, asks, bids);
+
+        Assert.assertEquals(expected, actual);
+    }
+
+    @Test
+    public void testRender_fewerBytesThanFullPrint() {
+        AtomicLongArray asks = new AtomicLongArray(new long[] { 343444, 1000000000, 343440, 1578900, 343424, 859700000, 343418, 582780904, 343417,
+                86343450, 343414, 299982311, 343410, 58000000, 343390, 582816063, 343359, 582860160, 343333,
+                5900100350l });
+        AtomicLongArray bids = new AtomicLongArray(new long[] { 343303, 31000000, 343302, 200576190, 343301, 1719605004,
+                343272, 1342894532, 343271, 930000000, 343264, 1582697127, 343238, 4601780, 343205, 100000000, 343203,
+                179690823, 343158, 314660000 });
+        DiffConsolePrinter printer = new DiffConsolePrinter(marketInfo, 10);
+        render(printer, asks, bids);
+
+        bids.set(5, 200576191);
+        int fullLength = new ConsolePrinter(marketInfo, 10).render(asks, bids);
+        int diffLength = printer.render(asks, bids);
+
+        Assert.assertTrue(diffLength + " vs " + fullLength, diffLength * 10 < fullLength);
+    }
+
+    @Test
+    public void testPrintOrderBook_writesOnlyChanges() {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        DiffConsolePrinter printer = new DiffConsolePrinter(marketInfo, 1, Channels.newChannel(output));
+        AtomicLongArray asks = new AtomicLongArray(new long[] { 343333, 5900100350l });
+        AtomicLongArray bids = new AtomicLongArray(new long[] { 343303, 31000000 });
+
+        printer.printOrderBook(asks, bids);
+        int firstLength = output.size();
+        printer.printOrderBook(asks, bids);
+        Assert.assertEquals(firstLength, output.size());
+
+        bids.set(0, -1);
+        printer.printOrderBook(asks, bids);
+        String expected = "\u001B[4;1H\u001B[2K\u001B[6;1H\u001B[2KSpread: N/A\u001B[7;1H";
+        Assert.assertEquals(expected, output.toString(ISO_8859_1).substring(firstLength));
+    }
+
+    private static String render(DiffConsolePrinter printer, AtomicLongArray asks, AtomicLongArray bids) {
+        return new String(printer.getFrame(), 0, printer.render(asks, bids), ISO_8859_1);
+    }
+}
@@ -0,0 +1,241 @@
+package com.afcrowther.coinbase.connector.publisher;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+
+public class BookEventRingBufferTest {
+
+    private static final int OUTPUT_LENGTH = 20;
+
+    private final BookEventRingBuffer UNDER_TEST = new BookEventRingBuffer(8, OUTPUT_LENGTH);
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCapacityNotPowerOfTwo() {
+        new BookEventRingBuffer(12, OUTPUT_LENGTH);
+    }
+
+    @Test
+    public void testPublishAndRead() {
+        BookEvent event = new BookEvent(OUTPUT_LENGTH);
+
+        Assert.assertEquals(-1, UNDER_TEST.getCursor());
+        Assert.assertEquals(0, UNDER_TEST.publish(filled(1), filled(-1)));
+        Assert.assertEquals(1, UNDER_TEST.publish(filled(2), filled(-2)));
+
+        Assert.assertEquals(1, UNDER_TEST.getCursor());
+        Assert.assertTrue(UNDER_TEST.read(0, event));
+        assertEvent(event, 0, 1);
+        Assert.assertTrue(UNDER_TEST.read(1, event));
+        assertEvent(event, 1, 2);
+    }
+
+    @Test
+    public void testPublishAndRead_bookUpdatedTime() {
+        BookEvent event = new BookEvent(OUTPUT_LENGTH);
+        BookEvent copy = new BookEvent(OUTPUT_LENGTH);
+
+        UNDER_TEST.publish(filled(1), filled(-1), 12345);
+        UNDER_TEST.publish(filled(2), filled(-2));
+
+        Assert.assertTrue(UNDER_TEST.read(0, event));
+        Assert.assertEquals(12345, event.getBookUpdatedTime());
+        event.copyTo(copy);
+        Assert.assertEquals(12345, copy.getBookUpdatedTime());
+        Assert.assertTrue(UNDER_TEST.read(1, event));
+        Assert.assertEquals(0, event.getBookUpdatedTime());
+    }
+
+    @Test
+    public void testRead_overwritten() {
+        BookEvent event = new BookEvent(OUTPUT_LENGTH);
+        for (int i = 0; i < 9; i++) {
+            UNDER_TEST.publish(filled(i), filled(-i));
+        }
+
+        // sequence 0 has been overwritten by sequence 8
+        Assert.assertFalse(UNDER_TEST.read(0, event));
+        Assert.assertTrue(UNDER_TEST.read(8, event));
+        assertEvent(event, 8, 8);
+    }
+
+    @Test
+    public void testProcessor_batchesInOrder() throws Exception {
+        List<Long> sequences = new CopyOnWriteArrayList<>();
+        List<Boolean> endOfBatches = new CopyOnWriteArrayList<>();
+        BookEventProcessor processor = new BookEventProcessor(UNDER_TEST, (event, sequence, endOfBatch) -> {
+            sequences.add(sequence);
+            endOfBatches.add(endOfBatch);
+        }, WaitStrategy.YIELD);
+
+        for (int i = 0; i < 5; i++) {
+            UNDER_TEST.publish(filled(i), filled(-i));
+        }
+        Thread thread = new Thread(processor);
+        thread.start();
+        waitFor(() -> sequences.size() == 5);
+        processor.halt();
+        thread.join();
+
+        Assert.assertEquals(List.of(0L, 1L, 2L, 3L, 4L), sequences);
+        Assert.assertEquals(List.of(false, false, false, false, true), endOfBatches);
+        Assert.assertEquals(0, processor.getSkippedEvents());
+    }
+
+    @Test
+    public void testProcessor_lappedSkipsAhead() throws Exception {
+        List<Long> sequences = new CopyOnWriteArrayList<>();
+        BookEventProcessor processor = new BookEventProcessor(UNDER_TEST,
+                (event, sequence, endOfBatch) -> sequences.add(sequence), WaitStrategy.BUSY_SPIN);
+
+        // 20 events into 8 slots before the processor starts, the first 12 are gone
+        for (int i = 0; i < 20; i++) {
+            UNDER_TEST.publish(filled(i), filled(-i));
+        }
+        Thread thread = new Thread(processor);
+        thread.start();
+        waitFor(() -> sequences.size() == 8);
+        processor.halt();
+        thread.join();
+
+        Assert.assertEquals(List.of(12L, 13L, 14L, 15L, 16L, 17L, 18L, 19L), sequences);
+        Assert.assertEquals(12, processor.getSkippedEvents());
+    }
+
+    @Test
+    public void testProcessor_latestOnlyCopiesJustTheLatest() {
+        List<Long> sequences = new CopyOnWriteArrayList<>();
+        List<Boolean> endOfBatches = new CopyOnWriteArrayList<>();
+        BookEvent latest = new BookEvent(OUTPUT_LENGTH);
+        BookEventProcessor processor = new BookEventProcessor(UNDER_TEST, new BookEventHandler() {
+            @Override
+            public void onEvent(BookEvent event, long sequence, boolean endOfBatch) {
+                sequences.add(sequence);
+                endOfBatches.add(endOfBatch);
+                event.copyTo(latest);
+            }
+
+            @Override
+            public boolean latestOnly() {
+                return true;
+            }
+        }, WaitStrategy.BUSY_SPIN);
+
+        // lapped as well, the overwritten events are passed over along with the rest rather than skipped
+        for (int i = 0; i < 20; i++) {
+            UNDER_TEST.publish(filled(i), filled(-i));
+        }
+        Assert.assertTrue(processor.poll());
+        Assert.assertFalse(processor.poll());
+
+        Assert.assertEquals(List.of(19L), sequences);
+        Assert.assertEquals(List.of(true), endOfBatches);
+        assertEvent(latest, 19, 19);
+        Assert.assertEquals(0, processor.getSkippedEvents());
+        Assert.assertEquals(0, processor.getBacklog());
+    }
+
+    @Test
+    public void testProcessor_neverTorn() throws Exception {
+        // every publish fills both arrays with the sequence, so a handler must never see two different values, and
+        // must always end up at the latest event however far behind it falls
+        AtomicReference<String> failure = new AtomicReference<>();
+        AtomicLong lastSequence = new AtomicLong(-1);
+        BookEventProcessor processor = new BookEventProcessor(UNDER_TEST, (event, sequence, endOfBatch) -> {
+            if (sequence <= lastSequence.get()) {
+                failure.set("Sequence went backwards " + lastSequence.get() + " -> " + sequence);
+            }
+            for (int i = 0; i < OUTPUT_LENGTH; i++) {
+                if (event.getBids().get(i) != sequence || event.getAsks().get(i) != -sequence) {
+                    failure.set("Torn read at sequence " + sequence);
+                }
+            }
+            lastSequence.set(sequence);
+        }, WaitStrategy.BUSY_SPIN);
+        Thread thread = new Thread(processor);
+        thread.start();
+
+        AtomicLongArray bidsIn = new AtomicLongArray(OUTPUT_LENGTH);
+        AtomicLongArray asksIn = new AtomicLongArray(OUTPUT_LENGTH);
+        long last = 1_000_000;
+        for (long sequence = 0; sequence <= last && failure.get() == null; sequence++) {
+            for (int i = 0; i < OUTPUT_LENGTH; i++) {
+                bidsIn.lazySet(i, sequence);
+                asksIn.lazySet(i, -sequence);
+            }
+            UNDER_TEST.publish(bidsIn, asksIn);
+        }
+        waitFor(() -> lastSequence.get() == last || failure.get() != null);
+        processor.halt();
+        thread.join();
+
+        Assert.assertNull(failure.get());
+    }
+
+    @Test
+    public void testProcessorGroup_drainsEveryRingBufferOnOneThread() throws Exception {
+        BookEventRingBuffer other = new BookEventRingBuffer(8, OUTPUT_LENGTH);
+        List<String> handled = new CopyOnWriteArrayList<>();
+        List<Thread> threads = new CopyOnWriteArrayList<>();
+        BookEventProcessor first = new BookEventProcessor(UNDER_TEST, (event, sequence, endOfBatch) -> {
+            handled.add("first-" + sequence);
+            threads.add(Thread.currentThread());
+        }, WaitStrategy.BUSY_SPIN);
+        BookEventProcessor second = new BookEventProcessor(other, (event, sequence, endOfBatch) -> {
+            handled.add("second-" + sequence);
+            threads.add(Thread.currentThread());
+        }, WaitStrategy.BUSY_SPIN);
+        BookEventProcessorGroup group = new BookEventProcessorGroup(List.of(first, second), WaitStrategy.YIELD);
+
+        for (int i = 0; i < 3; i++) {
+            UNDER_TEST.publish(filled(i), filled(-i));
+        }
+        other.publish(filled(1), filled(-1));
+        Thread thread = new Thread(group);
+        thread.start();
+        waitFor(() -> handled.size() == 4);
+        other.publish(filled(2), filled(-2));
+        waitFor(() -> handled.size() == 5);
+        group.halt();
+        thread.join();
+
+        Assert.assertEquals(List.of("first-0", "first-1", "first-2", "second-0", "second-1"), handled);
+        for (Thread handledOn : threads) {
+            Assert.assertSame(thread, handledOn);
+        }
+        Assert.assertEquals(0, first.getBacklog());
+        Assert.assertEquals(0, second.getBacklog());
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                Assert.fail("Timed out waiting for the processor");
+            }
+            Thread.sleep(1);
+        }
+    }
+
+    private static void assertEvent(BookEvent event, long sequence, long value) {
+        Assert.assertEquals(sequence, event.getSequence());
+        for (int i = 0; i < OUTPUT_LENGTH; i++) {
+            Assert.assertEquals(value, event.getBids().get(i));
+            Assert.assertEquals(-value, event.getAsks().get(i));
+        }
+    }
+
+    private static AtomicLongArray filled(long value) {
+        AtomicLongArray array = new AtomicLongArray(OUTPUT_LENGTH);
+        for (int i = 0; i < OUTPUT_LENGTH; i++) {
+            array.set(i, value);
+        }
+        return array;
+    }
+}
@@ -0,0 +1,89 @@
+package com.afcrowther.coinbase.connector.publisher;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class BookEventTest {
+
+    private static final int OUTPUT_LENGTH = 20;
+
+    private final BookEvent UNDER_TEST = new BookEvent(OUTPUT_LENGTH);
+
+    @Test
+    public void testSequence_nothingWritten() {
+        Assert.assertEquals(BookEvent.WRITING, UNDER_TEST.getSequence());
+        Assert.assertFalse(UNDER_TEST.copyTo(0, new BookEvent(OUTPUT_LENGTH)));
+    }
+
+    @Test
+    public void testWrite_copyTo() {
+        BookEvent out = new BookEvent(OUTPUT_LENGTH);
+
+        UNDER_TEST.write(0, filled(1), filled(-1), 0);
+        UNDER_TEST.write(1, filled(2), filled(-2), 42);
+
+        Assert.assertEquals(1, UNDER_TEST.getSequence());
+        // only the sequence held can be copied
+        Assert.assertFalse(UNDER_TEST.copyTo(0, out));
+        Assert.assertTrue(UNDER_TEST.copyTo(1, out));
+        Assert.assertEquals(1, out.getSequence());
+        Assert.assertEquals(42, out.getBookUpdatedTime());
+        for (int i = 0; i < OUTPUT_LENGTH; i++) {
+            Assert.assertEquals(2, out.getBids().get(i));
+            Assert.assertEquals(-2, out.getAsks().get(i));
+        }
+    }
+
+    @Test
+    public void testCopyTo_neverTorn() throws Exception {
+        // every write fills both arrays with its sequence, so a copy that succeeds must never hold two different values
+        AtomicBoolean stop = new AtomicBoolean();
+        AtomicReference<String> failure = new AtomicReference<>();
+        Thread reader = new Thread(() -> {
+            BookEvent out = new BookEvent(OUTPUT_LENGTH);
+            long lastSequence = -1;
+            while (!stop.get() && failure.get() == null) {
+                long sequence = UNDER_TEST.getSequence();
+                if (sequence == BookEvent.WRITING || !UNDER_TEST.copyTo(sequence, out)) {
+                    continue;
+                }
+                if (sequence < lastSequence) {
+                    failure.set("Sequence went backwards " + lastSequence + " -> " + sequence);
+                }
+                for (int i = 0; i < OUTPUT_LENGTH; i++) {
+                    if (out.getBids().get(i) != sequence || out.getAsks().get(i) != -sequence) {
+                        failure.set("Torn copy of sequence " + sequence);
+                    }
+                }
+                lastSequence = sequence;
+            }
+        });
+        reader.start();
+
+        AtomicLongArray bidsIn = new AtomicLongArray(OUTPUT_LENGTH);
+        AtomicLongArray asksIn = new AtomicLongArray(OUTPUT_LENGTH);
+        for (long sequence = 0; sequence < 2_000_000 && failure.get() == null; sequence++) {
+            for (int i = 0; i < OUTPUT_LENGTH; i++) {
+                bidsIn.lazySet(i, sequence);
+                asksIn.lazySet(i, -sequence);
+            }
+            UNDER_TEST.write(sequence, bidsIn, asksIn, 0);
+        }
+        stop.set(true);
+        reader.join();
+
+        Assert.assertNull(failure.get());
+    }
+
+    private static AtomicLongArray filled(long value) {
+        AtomicLongArray array = new AtomicLongArray(OUTPUT_LENGTH);
+        for (int i = 0; i < OUTPUT_LENGTH; i++) {
+            array.set(i, value);
+        }
+        return array;
+    }
+}
@@ -0,0 +1,115 @@
+package com.afcrowther.coinbase.connector.publisher;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+public class ConflatingEventHandlerTest {
+
+    private static final int OUTPUT_LENGTH = 2;
+
+    private final List<Long> delivered = new ArrayList<>();
+    private final List<Long> deliveredBids = new ArrayList<>();
+    private final BookEventHandler consumer = (event, sequence, endOfBatch) -> {
+        delivered.add(sequence);
+        deliveredBids.add(event.getBids().get(0));
+    };
+    private long now = 0;
+
+    @Test
+    public void testEveryUpdate() {
+        ConflatingEventHandler UNDER_TEST = new ConflatingEventHandler(consumer, ConflationPolicy.EVERY_UPDATE, 0,
+                OUTPUT_LENGTH, () -> now);
+
+        UNDER_TEST.onEvent(event(0), 0, false);
+        UNDER_TEST.onEvent(event(1), 1, true);
+
+        Assert.assertEquals(List.of(0L, 1L), delivered);
+    }
+
+    @Test
+    public void testLatestOnly() {
+        Assert.assertFalse(new ConflatingEventHandler(consumer, ConflationPolicy.EVERY_UPDATE, 0, OUTPUT_LENGTH,
+                () -> now).latestOnly());
+        Assert.assertTrue(new ConflatingEventHandler(consumer, ConflationPolicy.LATEST, 0, OUTPUT_LENGTH,
+                () -> now).latestOnly());
+        Assert.assertTrue(new ConflatingEventHandler(consumer, ConflationPolicy.MAX_RATE, 10, OUTPUT_LENGTH,
+                () -> now).latestOnly());
+    }
+
+    @Test
+    public void testLatest() {
+        ConflatingEventHandler UNDER_TEST = new ConflatingEventHandler(consumer, ConflationPolicy.LATEST, 0,
+                OUTPUT_LENGTH, () -> now);
+
+        UNDER_TEST.onEvent(event(0), 0, false);
+        UNDER_TEST.onEvent(event(1), 1, false);
+        UNDER_TEST.onEvent(event(2), 2, true);
+        UNDER_TEST.onEvent(event(3), 3, true);
+
+        Assert.assertEquals(List.of(2L, 3L), delivered);
+    }
+
+    @Test
+    public void testMaxRate() {
+        // 10 a second, so one every 100ms
+        ConflatingEventHandler UNDER_TEST = new ConflatingEventHandler(consumer, ConflationPolicy.MAX_RATE, 10,
+                OUTPUT_LENGTH, () -> now);
+
+        // the first goes straight through
+        UNDER_TEST.onEvent(event(0), 0, true);
+        Assert.assertEquals(List.of(0L), delivered);
+
+        // then nothing until the interval is up
+        now += TimeUnit.MILLISECONDS.toNanos(50);
+        UNDER_TEST.onEvent(event(1), 1, true);
+        UNDER_TEST.onEvent(event(2), 2, true);
+        UNDER_TEST.onIdle();
+        Assert.assertEquals(List.of(0L), delivered);
+
+        // the latest held back event is delivered once the interval is up, even with no new events
+        now += TimeUnit.MILLISECONDS.toNanos(50);
+        UNDER_TEST.onIdle();
+        Assert.assertEquals(List.of(0L, 2L), delivered);
+        Assert.assertEquals(List.of(0L, 2L), deliveredBids);
+
+        // and only once
+        now += TimeUnit.MILLISECONDS.toNanos(200);
+        UNDER_TEST.onIdle();
+        Assert.assertEquals(List.of(0L, 2L), delivered);
+
+        // the interval is already up, so the next event goes straight through
+        UNDER_TEST.onEvent(event(3), 3, true);
+        Assert.assertEquals(List.of(0L, 2L, 3L), delivered);
+    }
+
+    @Test
+    public void testMaxRate_heldEventIsACopy() {
+        ConflatingEventHandler UNDER_TEST = new ConflatingEventHandler(consumer, ConflationPolicy.MAX_RATE, 10,
+                OUTPUT_LENGTH, () -> now);
+        UNDER_TEST.onEvent(event(0), 0, true);
+
+        // the processor reuses the same event for every sequence, the held back event must not change with it
+        BookEvent reused = event(1);
+        UNDER_TEST.onEvent(reused, 1, true);
+        reused.getBids().set(0, 99);
+        now += TimeUnit.MILLISECONDS.toNanos(100);
+        UNDER_TEST.onIdle();
+
+        Assert.assertEquals(List.of(0L, 1L), deliveredBids);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMaxRate_invalidRate() {
+        new ConflatingEventHandler(consumer, ConflationPolicy.MAX_RATE, 0, OUTPUT_LENGTH);
+    }
+
+    private static BookEvent event(long bid) {
+        BookEvent event = new BookEvent(OUTPUT_LENGTH);
+        event.getBids().set(0, bid);
+        return event;
+    }
+}
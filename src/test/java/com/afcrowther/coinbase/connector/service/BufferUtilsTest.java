@@ -4,6 +4,9 @@ import io.vertx.core.buffer.Buffer;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
 public class BufferUtilsTest {
 
     @Test
@@ -84,4 +87,140 @@ public class BufferUtilsTest {
         Assert.assertEquals(expected, output[1]);
         Assert.assertEquals(expectedIndexOut, indexOut);
     }
+
+    @Test
+    public void parseOrderBookLevel_bytes() {
+        byte[] input = "{\"type\":\"l2update\",\"product_id\":\"BTC-USD\",\"changes\":[[\"sell\",\"54157.12\",\"0.01119600\"]],\"time\":\"2021-04-28T15:27:02.931174Z\"}".getBytes();
+
+        long[] output = new long[2];
+        long expectedPrice = 5415712;
+        long expectedQuantity = 1119600;
+        int expectedIndexOut = 84;
+
+        int indexOut = BufferUtils.parseOrderBookLevel(input, 61, output, Decimal64.UNSCALED,
+                Decimal64.UNSCALED);
+
+        Assert.assertEquals(expectedPrice, output[0]);
+        Assert.assertEquals(expectedQuantity, output[1]);
+        Assert.assertEquals(expectedIndexOut, indexOut);
+    }
+
+    @Test
+    public void testConvertBytesToLong_withDecimal() {
+        byte[] input = "13.45".getBytes();
+
+        long expected = 1345;
+        long actual = BufferUtils.convertBytesToLong(input, 0, 5);
+
+        Assert.assertEquals(expected, actual);
+    }
+
+    @Test
+    public void testParseNumber_bytes() {
+        byte[] input = "\"123.45\"".getBytes();
+        long[] output = new long[2];
+
+        long expected = 12345;
+        int expectedIndexOut = 7;
+
+        int indexOut = BufferUtils.parseNumber(input, 1, output, 1, Decimal64.UNSCALED);
+
+        Assert.assertEquals(expected, output[1]);
+        Assert.assertEquals(expectedIndexOut, indexOut);
+    }
+
+    @Test
+    public void testParseNumber_bytesMatchesBuffer() {
+        // every number of digits either side of the decimal point, at every offset from the end of the array, so that
+        // we go through both the 8 byte and the single byte paths, and every split between them
+        long[] output = new long[1];
+        for (int integerDigits = 1; integerDigits <= 10; integerDigits++) {
+            for (int fractionDigits = 0; fractionDigits <= 8; fractionDigits++) {
+                String number = "98765432109".substring(0, integerDigits)
+                        + (fractionDigits == 0 ? "" : "." + "12345678".substring(0, fractionDigits));
+                for (int padding = 0; padding <= 9; padding++) {
+                    assertParseNumberMatches("\"" + number + "\"" + "]".repeat(padding), output);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testParseNumber_bytesMatchesBufferRandom() {
+        Random random = new Random(7);
+        long[] output = new long[1];
+        for (int i = 0; i < 100_000; i++) {
+            StringBuilder number = new StringBuilder("\"");
+            int integerDigits = 1 + random.nextInt(10);
+            for (int digit = 0; digit < integerDigits; digit++) {
+                number.append((char) ('0' + random.nextInt(10)));
+            }
+            int fractionDigits = random.nextInt(9);
+            if (fractionDigits > 0) {
+                number.append('.');
+                for (int digit = 0; digit < fractionDigits; digit++) {
+                    number.append((char) ('0' + random.nextInt(10)));
+                }
+            }
+            number.append("\",\"").append("]".repeat(random.nextInt(10)));
+            assertParseNumberMatches(number.toString(), output);
+        }
+    }
+
+    @Test
+    public void testParseNumber_bytesLevelsFromFeed() {
+        long[] output = new long[1];
+        String[] numbers = { "10101.80000000", "0.162567", "54157.12", "0.01119600", "0", "0.00000000",
+                "3403.58", "1.20000000", "100000", "0.00000001", "123456789.12345678" };
+        for (String number : numbers) {
+            assertParseNumberMatches("\"" + number + "\"],[\"buy\",\"", output);
+            assertParseNumberMatches("\"" + number + "\"", output);
+        }
+    }
+
+    private static void assertParseNumberMatches(String input, long[] output) {
+        byte[] bytes = input.getBytes(StandardCharsets.ISO_8859_1);
+        int expectedIndexOut = input.indexOf('"', 1);
+        long expected = BufferUtils.convertBufferToLong(Buffer.buffer(bytes), 1, expectedIndexOut);
+
+        int indexOut = BufferUtils.parseNumber(bytes, 1, output, 0, Decimal64.UNSCALED);
+
+        Assert.assertEquals(input, expected, output[0]);
+        Assert.assertEquals(input, expectedIndexOut, indexOut);
+
+        // and normalized to a scale, should match parsing the String
+        for (int scale = 0; scale <= 10; scale++) {
+            BufferUtils.parseNumber(bytes, 1, output, 0, scale);
+            Assert.assertEquals(input, Decimal64.parse(input.substring(1, expectedIndexOut), scale), output[0]);
+        }
+    }
+
+    @Test
+    public void parseOrderBookLevel_bytesScaled() {
+        byte[] input = "[\"buy\",\"54157.1\",\"0.011196\"]".getBytes();
+
+        long[] output = new long[2];
+        long expectedPrice = 5415710;
+        long expectedQuantity = 1119600;
+        int expectedIndexOut = 27;
+
+        int indexOut = BufferUtils.parseOrderBookLevel(input, 7, output, 2, 8);
+
+        Assert.assertEquals(expectedPrice, output[0]);
+        Assert.assertEquals(expectedQuantity, output[1]);
+        Assert.assertEquals(expectedIndexOut, indexOut);
+    }
+
+    @Test
+    public void parseOrderBookLevel_bytesQuantityBeyondScaleRoundsUp() {
+        byte[] input = "[\"buy\",\"54157.129\",\"0.0000000001\"]".getBytes();
+
+        long[] output = new long[2];
+
+        BufferUtils.parseOrderBookLevel(input, 7, output, 2, 8);
+
+        // the price is truncated, but the quantity is kept as the smallest there can be rather than becoming a removal
+        Assert.assertEquals(5415712, output[0]);
+        Assert.assertEquals(1, output[1]);
+    }
 }
@@ -0,0 +1,71 @@
+package com.afcrowther.coinbase.connector.service;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.vertx.core.buffer.Buffer;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+public class BufferViewTest {
+
+    private final BufferView UNDER_TEST = new BufferView();
+
+    @Test
+    public void testWrap_heapBuffer() {
+        Buffer buffer = Buffer.buffer("[\"buy\",\"54157.12\"]");
+
+        UNDER_TEST.wrap(buffer);
+
+        Assert.assertSame(buffer.getByteBuf().array(), UNDER_TEST.getArray());
+        assertSameBytes(buffer, UNDER_TEST);
+    }
+
+    @Test
+    public void testWrap_slicedBuffer() {
+        Buffer buffer = Buffer.buffer("{\"type\":\"l2update\"}").slice(9, 17);
+
+        UNDER_TEST.wrap(buffer);
+
+        Assert.assertEquals(8, UNDER_TEST.getLength());
+        Assert.assertEquals(9, UNDER_TEST.getOffset());
+        assertSameBytes(buffer, UNDER_TEST);
+    }
+
+    @Test
+    public void testWrap_directBuffer() {
+        ByteBuf direct = Unpooled.directBuffer(16);
+        direct.writeBytes("[\"sell\",\"0.01\"]".getBytes(StandardCharsets.ISO_8859_1));
+        Buffer buffer = Buffer.buffer(direct);
+
+        UNDER_TEST.wrap(buffer);
+
+        Assert.assertEquals(0, UNDER_TEST.getOffset());
+        assertSameBytes(buffer, UNDER_TEST);
+    }
+
+    @Test
+    public void testWrap_directBufferBiggerThanScratch() {
+        byte[] bytes = new byte[10_000];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) ('0' + i % 10);
+        }
+        ByteBuf direct = Unpooled.directBuffer(bytes.length);
+        direct.writeBytes(bytes);
+        Buffer buffer = Buffer.buffer(direct);
+
+        UNDER_TEST.wrap(Buffer.buffer(Unpooled.directBuffer(8).writeByte('1')));
+        UNDER_TEST.wrap(buffer);
+
+        Assert.assertEquals(bytes.length, UNDER_TEST.getLength());
+        assertSameBytes(buffer, UNDER_TEST);
+    }
+
+    private static void assertSameBytes(Buffer expected, BufferView actual) {
+        Assert.assertEquals(expected.length(), actual.getLength());
+        for (int i = 0; i < expected.length(); i++) {
+            Assert.assertEquals(expected.getByte(i), actual.getArray()[actual.getOffset() + i]);
+        }
+    }
+}
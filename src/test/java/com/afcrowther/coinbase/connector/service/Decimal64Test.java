@@ -0,0 +1,82 @@
+package com.afcrowther.coinbase.connector.service;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class Decimal64Test {
+
+    @Test
+    public void testScaleOf() {
+        Assert.assertEquals(8, Decimal64.scaleOf("0.00000001"));
+        Assert.assertEquals(2, Decimal64.scaleOf("0.01000000"));
+        Assert.assertEquals(3, Decimal64.scaleOf("0.00500000"));
+        Assert.assertEquals(0, Decimal64.scaleOf("1.00000000"));
+        Assert.assertEquals(0, Decimal64.scaleOf("10"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testScaleOf_tooManyDecimalPlaces() {
+        Decimal64.scaleOf("0.0000000000000000001");
+    }
+
+    @Test
+    public void testUnitsOf() {
+        Assert.assertEquals(1, Decimal64.unitsOf("0.01000000"));
+        Assert.assertEquals(5, Decimal64.unitsOf("0.00500000"));
+        Assert.assertEquals(1, Decimal64.unitsOf("0.00000001"));
+        Assert.assertEquals(1, Decimal64.unitsOf("1.00000000"));
+        Assert.assertEquals(10, Decimal64.unitsOf("10"));
+    }
+
+    @Test
+    public void testParse_paddingDoesNotMatter() {
+        Assert.assertEquals(10000000, Decimal64.parse("0.1", 8));
+        Assert.assertEquals(10000000, Decimal64.parse("0.10000000", 8));
+        Assert.assertEquals(340358, Decimal64.parse("3403.58", 2));
+        Assert.assertEquals(340358, Decimal64.parse("3403.58000000", 2));
+        Assert.assertEquals(340300, Decimal64.parse("3403", 2));
+    }
+
+    @Test
+    public void testParse_truncatesBeyondScale() {
+        Assert.assertEquals(340358, Decimal64.parse("3403.5899", 2));
+        Assert.assertEquals(3403, Decimal64.parse("3403.58", 0));
+    }
+
+    @Test
+    public void testParse_unscaled() {
+        Assert.assertEquals(LongUtils.convertStringToLong("0.1"), Decimal64.parse("0.1", Decimal64.UNSCALED));
+        Assert.assertEquals(LongUtils.convertStringToLong("0.10000000"),
+                Decimal64.parse("0.10000000", Decimal64.UNSCALED));
+        Assert.assertEquals(LongUtils.convertStringToLong("3403"), Decimal64.parse("3403", Decimal64.UNSCALED));
+    }
+
+    @Test
+    public void testRescale() {
+        Assert.assertEquals(1000, Decimal64.rescale(1, 1, 4));
+        Assert.assertEquals(1, Decimal64.rescale(1000, 4, 1));
+        Assert.assertEquals(1234, Decimal64.rescale(1234, 2, 2));
+        Assert.assertEquals(1234, Decimal64.rescale(1234, 7, Decimal64.UNSCALED));
+        Assert.assertEquals(0, Decimal64.rescale(1234, 20, 0));
+    }
+
+    @Test
+    public void testRescaleUp() {
+        Assert.assertEquals(1000, Decimal64.rescaleUp(1, 1, 4));
+        Assert.assertEquals(1, Decimal64.rescaleUp(1000, 4, 1));
+        Assert.assertEquals(2, Decimal64.rescaleUp(1001, 4, 1));
+        Assert.assertEquals(1, Decimal64.rescaleUp(1, 4, 1));
+        Assert.assertEquals(0, Decimal64.rescaleUp(0, 4, 1));
+        Assert.assertEquals(1234, Decimal64.rescaleUp(1234, 7, Decimal64.UNSCALED));
+        Assert.assertEquals(1, Decimal64.rescaleUp(1234, 20, 0));
+        Assert.assertEquals(0, Decimal64.rescaleUp(0, 20, 0));
+    }
+
+    @Test
+    public void testParseQuantity_roundsUpBeyondScale() {
+        Assert.assertEquals(1, Decimal64.parseQuantity("0.0000000001", 8));
+        Assert.assertEquals(340359, Decimal64.parseQuantity("3403.5801", 2));
+        Assert.assertEquals(340358, Decimal64.parseQuantity("3403.5800", 2));
+        Assert.assertEquals(0, Decimal64.parseQuantity("0.0000000000", 8));
+    }
+}
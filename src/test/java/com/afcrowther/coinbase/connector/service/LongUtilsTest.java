@@ -3,6 +3,10 @@ package com.afcrowther.coinbase.connector.service;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
 public class LongUtilsTest {
 
     @Test
@@ -41,6 +45,83 @@ public class LongUtilsTest {
         Assert.assertEquals(expected, actual);
     }
 
+    @Test
+    public void testPutLong() {
+        byte[] output = "some-test-data-------".getBytes();
+
+        String expected = "some-test-data1220.24";
+        int index = LongUtils.putLong(122024, output, 14, 2);
+
+        Assert.assertEquals(expected, new String(output));
+        Assert.assertEquals(21, index);
+    }
+
+    @Test
+    public void testFormatters_matchBigDecimal() {
+        long[] values = { 0, 1, 9, 10, 99, 100, 564, 12224, 122024, 5900100350L, 999999999999999999L,
+                1000000000000000000L, Long.MAX_VALUE };
+        ByteBuffer direct = ByteBuffer.allocateDirect(64);
+        for (long value : values) {
+            for (int decimals = 0; decimals <= 20; decimals++) {
+                String expected = BigDecimal.valueOf(value, decimals).toPlainString();
+
+                byte[] output = new byte[64];
+                int index = LongUtils.putLong(value, output, 3, decimals);
+                Assert.assertEquals(expected, new String(output, 3, index - 3, StandardCharsets.ISO_8859_1));
+
+                StringBuilder sb = new StringBuilder("abc");
+                LongUtils.appendLongToStringBuilder(value, sb, decimals);
+                Assert.assertEquals("abc" + expected, sb.toString());
+
+                direct.clear().position(5);
+                LongUtils.putLong(value, direct, decimals);
+                byte[] written = new byte[direct.position() - 5];
+                direct.flip().position(5);
+                direct.get(written);
+                Assert.assertEquals(expected, new String(written, StandardCharsets.ISO_8859_1));
+            }
+        }
+    }
+
+    @Test
+    public void testPutLong_heapByteBuffer() {
+        // a slice, so that the array offset isn't 0
+        ByteBuffer buffer = ByteBuffer.wrap("xxsome-test-data-------".getBytes()).position(2).slice();
+        buffer.position(14);
+
+        LongUtils.putLong(122024, buffer, 2);
+
+        Assert.assertEquals(21, buffer.position());
+        Assert.assertEquals("xxsome-test-data1220.24", new String(buffer.array()));
+    }
+
+    @Test
+    public void testPutLong_negativeByteBuffer() {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(4);
+
+        LongUtils.putLong(-5, buffer, 2);
+
+        Assert.assertEquals(0, buffer.position());
+    }
+
+    @Test
+    public void testPutLong_noDecimals() {
+        byte[] output = "x-----".getBytes();
+
+        Assert.assertEquals(2, LongUtils.putLong(0, output, 1, 0));
+        Assert.assertEquals(3, LongUtils.putLong(7, output, 2, 0));
+        Assert.assertEquals(6, LongUtils.putLong(123, output, 3, 0));
+        Assert.assertEquals("x07123", new String(output));
+    }
+
+    @Test
+    public void testPutLong_negative() {
+        byte[] output = new byte[4];
+
+        Assert.assertEquals(1, LongUtils.putLong(-5, output, 1, 2));
+        Assert.assertArrayEquals(new byte[4], output);
+    }
+
     @Test
     public void testConvertStringToLong() {
         String s = "123";
@@ -86,15 +167,7 @@ public class LongUtilsTest {
         long input = 1000;
 
         int expected = 4;
-        int actual = LongUtils.getNumberOfDigits(input);
-
-        Assert.assertEquals(expected, actual);
-
-        actual = LongUtils.getNumberOfDigitsJavaStdLib(input);
-
-        Assert.assertEquals(expected, actual);
-
-        actual = LongUtils.getNumberOfDigitsBinarySearch(input);
+        int actual = LongUtils.getNumberOfDigitsBranchFree(input);
 
         Assert.assertEquals(expected, actual);
     }
@@ -104,15 +177,7 @@ public class LongUtilsTest {
         long input = 5169;
 
         int expected = 4;
-        int actual = LongUtils.getNumberOfDigits(input);
-
-        Assert.assertEquals(expected, actual);
-
-        actual = LongUtils.getNumberOfDigitsJavaStdLib(input);
-
-        Assert.assertEquals(expected, actual);
-
-        actual = LongUtils.getNumberOfDigitsBinarySearch(input);
+        int actual = LongUtils.getNumberOfDigitsBranchFree(input);
 
         Assert.assertEquals(expected, actual);
     }
@@ -122,15 +187,7 @@ public class LongUtilsTest {
         long input = 999;
 
         int expected = 3;
-        int actual = LongUtils.getNumberOfDigits(input);
-
-        Assert.assertEquals(expected, actual);
-
-        actual = LongUtils.getNumberOfDigitsJavaStdLib(input);
-
-        Assert.assertEquals(expected, actual);
-
-        actual = LongUtils.getNumberOfDigitsBinarySearch(input);
+        int actual = LongUtils.getNumberOfDigitsBranchFree(input);
 
         Assert.assertEquals(expected, actual);
     }
@@ -140,15 +197,7 @@ public class LongUtilsTest {
         long input = 0;
 
         int expected = 1;
-        int actual = LongUtils.getNumberOfDigits(input);
-
-        Assert.assertEquals(expected, actual);
-
-        actual = LongUtils.getNumberOfDigitsJavaStdLib(input);
-
-        Assert.assertEquals(expected, actual);
-
-        actual = LongUtils.getNumberOfDigitsBinarySearch(input);
+        int actual = LongUtils.getNumberOfDigitsBranchFree(input);
 
         Assert.assertEquals(expected, actual);
     }
@@ -158,33 +207,7 @@ public class LongUtilsTest {
         long input = 6;
 
         int expected = 1;
-        int actual = LongUtils.getNumberOfDigits(input);
-
-        Assert.assertEquals(expected, actual);
-
-        actual = LongUtils.getNumberOfDigitsJavaStdLib(input);
-
-        Assert.assertEquals(expected, actual);
-
-        actual = LongUtils.getNumberOfDigitsBinarySearch(input);
-
-        Assert.assertEquals(expected, actual);
-    }
-
-    @Test
-    public void testGetNumberOfDigits_negative() {
-        long input = -999;
-
-        int expected = 3;
-        int actual = LongUtils.getNumberOfDigits(input);
-
-        Assert.assertEquals(expected, actual);
-
-        actual = LongUtils.getNumberOfDigitsJavaStdLib(input);
-
-        Assert.assertEquals(expected, actual);
-
-        actual = LongUtils.getNumberOfDigitsBinarySearch(input);
+        int actual = LongUtils.getNumberOfDigitsBranchFree(input);
 
         Assert.assertEquals(expected, actual);
     }
@@ -194,15 +217,7 @@ public class LongUtilsTest {
         long input = 55032049512458l;
 
         int expected = 14;
-        int actual = LongUtils.getNumberOfDigits(input);
-
-        Assert.assertEquals(expected, actual);
-
-        actual = LongUtils.getNumberOfDigitsJavaStdLib(input);
-
-        Assert.assertEquals(expected, actual);
-
-        actual = LongUtils.getNumberOfDigitsBinarySearch(input);
+        int actual = LongUtils.getNumberOfDigitsBranchFree(input);
 
         Assert.assertEquals(expected, actual);
     }
@@ -212,15 +227,7 @@ public class LongUtilsTest {
         long input = 1000000000000000l;
 
         int expected = 16;
-        int actual = LongUtils.getNumberOfDigits(input);
-
-        Assert.assertEquals(expected, actual);
-
-        actual = LongUtils.getNumberOfDigitsJavaStdLib(input);
-
-        Assert.assertEquals(expected, actual);
-
-        actual = LongUtils.getNumberOfDigitsBinarySearch(input);
+        int actual = LongUtils.getNumberOfDigitsBranchFree(input);
 
         Assert.assertEquals(expected, actual);
     }
@@ -230,16 +237,28 @@ public class LongUtilsTest {
         long input = 999999999999999l;
 
         int expected = 15;
-        int actual = LongUtils.getNumberOfDigits(input);
+        int actual = LongUtils.getNumberOfDigitsBranchFree(input);
 
         Assert.assertEquals(expected, actual);
+    }
 
-        actual = LongUtils.getNumberOfDigitsJavaStdLib(input);
-
-        Assert.assertEquals(expected, actual);
-
-        actual = LongUtils.getNumberOfDigitsBinarySearch(input);
-
-        Assert.assertEquals(expected, actual);
+    @Test
+    public void testGetNumberOfDigitsBranchFree() {
+        Assert.assertEquals(1, LongUtils.getNumberOfDigitsBranchFree(0));
+        Assert.assertEquals(19, LongUtils.getNumberOfDigitsBranchFree(Long.MAX_VALUE));
+        // either side of every power of ten, and of every power of two
+        for (int exponent = 0; exponent <= 18; exponent++) {
+            long power = BigDecimal.TEN.pow(exponent).longValueExact();
+            for (long value = power - 1; value <= power + 1; value++) {
+                Assert.assertEquals(String.valueOf(value), String.valueOf(value).length(),
+                        LongUtils.getNumberOfDigitsBranchFree(value));
+            }
+        }
+        for (int bit = 0; bit < 63; bit++) {
+            for (long value = (1L << bit) - 1; value <= (1L << bit) + 1; value++) {
+                Assert.assertEquals(String.valueOf(value), String.valueOf(value).length(),
+                        LongUtils.getNumberOfDigitsBranchFree(value));
+            }
+        }
     }
 }
@@ -1,7 +1,6 @@
 package com.afcrowther.coinbase.connector.service;
 
 import com.afcrowther.coinbase.connector.domain.coinbase.OrderBookSnapshot;
-import io.vertx.core.Future;
 import io.vertx.core.buffer.Buffer;
 import io.vertx.core.json.Json;
 import org.junit.Assert;
@@ -44,6 +43,22 @@ public class SimpleOrderBookAggregatorServiceTest {
         Assert.assertArrayEquals(asksExpected, toArray(asksOutput));
     }
 
+    @Test
+    public void testUpdateOrderBookFromSnapshot() throws Exception {
+        String snapshotString = getResourceAsString("data/snapshot.txt");
+
+        long[] bidsExpected = new long[] { 340249, 47440000, 340248, 1137592625, 340227, 290000000, 340226, 1720880000,
+                340214, 1590000000, 340213, 167000000, 340212, 167000000, 340203, 66034179, 340199, 55413887, 340193,
+                56104752 };
+        long[] asksExpected = new long[] { 340466, 353000000, 340453, 58440224, 340450, 113800000, 340432, 79370000,
+                340415, 94679443, 340410, 100000000, 340398, 15000000, 340392, 113800000, 340379, 147168432, 340366,
+                247908992 };
+        UNDER_TEST.updateOrderBookFromSnapshot(Buffer.buffer(snapshotString), bidsOutput, asksOutput);
+
+        Assert.assertArrayEquals(bidsExpected, toArray(bidsOutput));
+        Assert.assertArrayEquals(asksExpected, toArray(asksOutput));
+    }
+
     @Test
     public void testUpdateOrderBook_update() throws Exception {
         String snapshotString = getResourceAsString("data/snapshot.txt");
@@ -60,7 +75,7 @@ public class SimpleOrderBookAggregatorServiceTest {
 
         String updates = "{\"type\":\"l2update\",\"product_id\":\"ETH-USD\",\"changes\":[[\"sell\",\"3403.58\",\"1.20000000\"], [\"buy\",\"3402.49\",\"0.04500000\"]],\"time\":\"2021-04-28T15:27:02.721425Z\"}";
 
-        boolean updated = UNDER_TEST.updateOrderBook(Buffer.buffer(updates), bidsOutput, asksOutput, Future.succeededFuture());
+        boolean updated = UNDER_TEST.updateOrderBook(Buffer.buffer(updates), bidsOutput, asksOutput);
 
         Assert.assertTrue(updated);
         Assert.assertArrayEquals(bidsExpected, toArray(bidsOutput));
@@ -82,7 +97,7 @@ public class SimpleOrderBookAggregatorServiceTest {
 
         String updates = "{\"type\":\"l2update\",\"product_id\":\"ETH-USD\",\"changes\":[[\"sell\",\"3403.66\",\"0.00000000\"], [\"buy\",\"3402.49\",\"0.00000000\"]],\"time\":\"2021-04-28T15:27:02.721425Z\"}";
 
-        boolean updated = UNDER_TEST.updateOrderBook(Buffer.buffer(updates), bidsOutput, asksOutput, Future.succeededFuture());
+        boolean updated = UNDER_TEST.updateOrderBook(Buffer.buffer(updates), bidsOutput, asksOutput);
 
         Assert.assertTrue(updated);
         Assert.assertArrayEquals(bidsExpected, toArray(bidsOutput));
@@ -100,7 +115,7 @@ public class SimpleOrderBookAggregatorServiceTest {
 
         String updates = "{\"type\":\"l2update\",\"product_id\":\"ETH-USD\",\"changes\":[[\"sell\",\"34030.66\",\"0.00000000\"], [\"buy\",\"1.49\",\"0.00000000\"]],\"time\":\"2021-04-28T15:27:02.721425Z\"}";
 
-        boolean updated = UNDER_TEST.updateOrderBook(Buffer.buffer(updates), bidsOutput, asksOutput, Future.succeededFuture());
+        boolean updated = UNDER_TEST.updateOrderBook(Buffer.buffer(updates), bidsOutput, asksOutput);
 
         Assert.assertFalse(updated);
         // should have made no changes to the output arrays
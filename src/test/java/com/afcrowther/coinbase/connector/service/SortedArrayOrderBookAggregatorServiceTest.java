@@ -0,0 +1,273 @@
+package com.afcrowther.coinbase.connector.service;
+
+import com.afcrowther.coinbase.connector.domain.coinbase.OrderBookSnapshot;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.Json;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+public class SortedArrayOrderBookAggregatorServiceTest {
+
+    private final AtomicLongArray bidsOutput = new AtomicLongArray(20);
+    private final AtomicLongArray asksOutput = new AtomicLongArray(20);
+
+    private SortedArrayOrderBookAggregatorService UNDER_TEST;
+
+    @Before
+    public void setup() {
+        UNDER_TEST = new SortedArrayOrderBookAggregatorService("ETH-USD");
+    }
+
+    @Test
+    public void testUpdateOrderBook_snapshot() throws Exception {
+        String snapshotString = getResourceAsString("data/snapshot.txt");
+        OrderBookSnapshot snapshot = Json.decodeValue(snapshotString, OrderBookSnapshot.class);
+
+        long[] bidsExpected = new long[] { 340249, 47440000, 340248, 1137592625, 340227, 290000000, 340226, 1720880000,
+                340214, 1590000000, 340213, 167000000, 340212, 167000000, 340203, 66034179, 340199, 55413887, 340193,
+                56104752 };
+        long[] asksExpected = new long[] { 340466, 353000000, 340453, 58440224, 340450, 113800000, 340432, 79370000,
+                340415, 94679443, 340410, 100000000, 340398, 15000000, 340392, 113800000, 340379, 147168432, 340366,
+                247908992 };
+        UNDER_TEST.updateOrderBook(snapshot, bidsOutput, asksOutput);
+
+        Assert.assertArrayEquals(bidsExpected, toArray(bidsOutput));
+        Assert.assertArrayEquals(asksExpected, toArray(asksOutput));
+    }
+
+    @Test
+    public void testUpdateOrderBookFromSnapshot() throws Exception {
+        String snapshotString = getResourceAsString("data/snapshot.txt");
+
+        long[] bidsExpected = new long[] { 340249, 47440000, 340248, 1137592625, 340227, 290000000, 340226, 1720880000,
+                340214, 1590000000, 340213, 167000000, 340212, 167000000, 340203, 66034179, 340199, 55413887, 340193,
+                56104752 };
+        long[] asksExpected = new long[] { 340466, 353000000, 340453, 58440224, 340450, 113800000, 340432, 79370000,
+                340415, 94679443, 340410, 100000000, 340398, 15000000, 340392, 113800000, 340379, 147168432, 340366,
+                247908992 };
+        UNDER_TEST.updateOrderBookFromSnapshot(Buffer.buffer(snapshotString), bidsOutput, asksOutput);
+
+        Assert.assertArrayEquals(bidsExpected, toArray(bidsOutput));
+        Assert.assertArrayEquals(asksExpected, toArray(asksOutput));
+    }
+
+    @Test
+    public void testUpdateOrderBookFromSnapshot_bidsBeforeAsks() {
+        String snapshot = "{\"type\":\"snapshot\",\"product_id\":\"ETH-USD\",\"bids\":[[\"3402.49\",\"0.47440000\"]," +
+                "[\"3402.48\",\"11.37592625\"]],\"asks\":[[\"3403.66\",\"2.47908992\"]]}";
+
+        long[] bidsExpected = new long[] { 340249, 47440000, 340248, 1137592625, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1,
+                -1, -1, -1, -1, -1, -1 };
+        long[] asksExpected = new long[] { -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1,
+                340366, 247908992 };
+        UNDER_TEST.updateOrderBookFromSnapshot(Buffer.buffer(snapshot), bidsOutput, asksOutput);
+
+        Assert.assertArrayEquals(bidsExpected, toArray(bidsOutput));
+        Assert.assertArrayEquals(asksExpected, toArray(asksOutput));
+    }
+
+    @Test
+    public void testUpdateOrderBookFromSnapshot_emptySide() {
+        String snapshot = "{\"type\":\"snapshot\",\"product_id\":\"ETH-USD\",\"asks\":[],\"bids\":[[\"3402.49\"," +
+                "\"0.47440000\"]]}";
+
+        long[] bidsExpected = new long[] { 340249, 47440000, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1,
+                -1, -1, -1 };
+        long[] asksExpected = new long[] { -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1,
+                -1 };
+        UNDER_TEST.updateOrderBookFromSnapshot(Buffer.buffer(snapshot), bidsOutput, asksOutput);
+
+        Assert.assertArrayEquals(bidsExpected, toArray(bidsOutput));
+        Assert.assertArrayEquals(asksExpected, toArray(asksOutput));
+    }
+
+    @Test
+    public void testUpdateOrderBook_update() throws Exception {
+        String snapshotString = getResourceAsString("data/snapshot.txt");
+        OrderBookSnapshot snapshot = Json.decodeValue(snapshotString, OrderBookSnapshot.class);
+
+        UNDER_TEST.updateOrderBook(snapshot, bidsOutput, asksOutput);
+
+        long[] bidsExpected = new long[] { 340249, 4500000, 340248, 1137592625, 340227, 290000000, 340226, 1720880000,
+                340214, 1590000000, 340213, 167000000, 340212, 167000000, 340203, 66034179, 340199, 55413887, 340193,
+                56104752 };
+        long[] asksExpected = new long[] { 340453, 58440224, 340450, 113800000, 340432, 79370000,
+                340415, 94679443, 340410, 100000000, 340398, 15000000, 340392, 113800000, 340379, 147168432, 340366,
+                247908992, 340358, 120000000 };
+
+        String updates = "{\"type\":\"l2update\",\"product_id\":\"ETH-USD\",\"changes\":[[\"sell\",\"3403.58\",\"1.20000000\"], [\"buy\",\"3402.49\",\"0.04500000\"]],\"time\":\"2021-04-28T15:27:02.721425Z\"}";
+
+        boolean updated = UNDER_TEST.updateOrderBook(Buffer.buffer(updates), bidsOutput, asksOutput);
+
+        Assert.assertTrue(updated);
+        Assert.assertArrayEquals(bidsExpected, toArray(bidsOutput));
+        Assert.assertArrayEquals(asksExpected, toArray(asksOutput));
+    }
+
+    @Test
+    public void testUpdateOrderBook_time() {
+        String update = "{\"type\":\"l2update\",\"product_id\":\"ETH-USD\",\"changes\":[[\"buy\",\"3402.49\",\"0.04500000\"]],\"time\":\"2021-04-28T15:27:02.721425Z\"}";
+        String noTime = "{\"type\":\"l2update\",\"product_id\":\"ETH-USD\",\"changes\":[[\"buy\",\"3402.49\",\"0.04500000\"]]}";
+
+        UNDER_TEST.updateOrderBook(Buffer.buffer(update), bidsOutput, asksOutput);
+        Assert.assertEquals(1619623622721425L, UNDER_TEST.getLastUpdateTime());
+        Assert.assertEquals(1, UNDER_TEST.getLastUpdateChanges());
+
+        UNDER_TEST.updateOrderBook(Buffer.buffer(noTime), bidsOutput, asksOutput);
+        Assert.assertEquals(0, UNDER_TEST.getLastUpdateTime());
+    }
+
+    @Test
+    public void testUpdateOrderBook_slicedBuffer() throws Exception {
+        String snapshotString = getResourceAsString("data/snapshot.txt");
+        OrderBookSnapshot snapshot = Json.decodeValue(snapshotString, OrderBookSnapshot.class);
+
+        UNDER_TEST.updateOrderBook(snapshot, bidsOutput, asksOutput);
+
+        // the message does not start at the beginning of the array backing the buffer
+        String updates = "garbage{\"type\":\"l2update\",\"product_id\":\"ETH-USD\",\"changes\":[[\"buy\",\"3402.49\",\"0.04500000\"]],\"time\":\"2021-04-28T15:27:02.721425Z\"}";
+        Buffer buffer = Buffer.buffer(updates).slice(7, updates.length());
+
+        boolean updated = UNDER_TEST.updateOrderBook(buffer, bidsOutput, asksOutput);
+
+        Assert.assertTrue(updated);
+        Assert.assertEquals(340249, bidsOutput.get(0));
+        Assert.assertEquals(4500000, bidsOutput.get(1));
+    }
+
+    @Test
+    public void testUpdateOrderBook_updateRemovesLevels() throws Exception {
+        String snapshotString = getResourceAsString("data/snapshot.txt");
+        OrderBookSnapshot snapshot = Json.decodeValue(snapshotString, OrderBookSnapshot.class);
+
+        UNDER_TEST.updateOrderBook(snapshot, bidsOutput, asksOutput);
+
+        long[] bidsExpected = new long[] { 340248, 1137592625, 340227, 290000000, 340226, 1720880000,
+                340214, 1590000000, 340213, 167000000, 340212, 167000000, 340203, 66034179, 340199, 55413887, 340193,
+                56104752, 340184, 321133965 };
+        long[] asksExpected = new long[] { 340476, 111970550, 340466, 353000000, 340453, 58440224, 340450, 113800000, 340432, 79370000,
+                340415, 94679443, 340410, 100000000, 340398, 15000000, 340392, 113800000, 340379, 147168432 };
+
+        String updates = "{\"type\":\"l2update\",\"product_id\":\"ETH-USD\",\"changes\":[[\"sell\",\"3403.66\",\"0.00000000\"], [\"buy\",\"3402.49\",\"0.00000000\"]],\"time\":\"2021-04-28T15:27:02.721425Z\"}";
+
+        boolean updated = UNDER_TEST.updateOrderBook(Buffer.buffer(updates), bidsOutput, asksOutput);
+
+        Assert.assertTrue(updated);
+        Assert.assertArrayEquals(bidsExpected, toArray(bidsOutput));
+        Assert.assertArrayEquals(asksExpected, toArray(asksOutput));
+    }
+
+    @Test
+    public void testUpdateOrderBook_updateOutOfMarket() throws Exception {
+        String snapshotString = getResourceAsString("data/snapshot.txt");
+        OrderBookSnapshot snapshot = Json.decodeValue(snapshotString, OrderBookSnapshot.class);
+
+        UNDER_TEST.updateOrderBook(snapshot, bidsOutput, asksOutput);
+        long[] bidsBefore = toArray(bidsOutput);
+        long[] asksBefore = toArray(asksOutput);
+
+        String updates = "{\"type\":\"l2update\",\"product_id\":\"ETH-USD\",\"changes\":[[\"sell\",\"34030.66\",\"0.00000000\"], [\"buy\",\"1.49\",\"0.00000000\"]],\"time\":\"2021-04-28T15:27:02.721425Z\"}";
+
+        boolean updated = UNDER_TEST.updateOrderBook(Buffer.buffer(updates), bidsOutput, asksOutput);
+
+        Assert.assertFalse(updated);
+        Assert.assertArrayEquals(bidsBefore, toArray(bidsOutput));
+        Assert.assertArrayEquals(asksBefore, toArray(asksOutput));
+    }
+
+    @Test
+    public void testUpdateOrderBook_newLevelWorseThanTrackedLevelsIgnored() throws Exception {
+        String snapshotString = getResourceAsString("data/snapshot.txt");
+        OrderBookSnapshot snapshot = Json.decodeValue(snapshotString, OrderBookSnapshot.class);
+
+        UNDER_TEST.updateOrderBook(snapshot, bidsOutput, asksOutput);
+
+        // both prices are beyond the 20 levels being tracked on each side
+        String updates = "{\"type\":\"l2update\",\"product_id\":\"ETH-USD\",\"changes\":[[\"sell\",\"3406.20\",\"1.00000000\"], [\"buy\",\"3399.70\",\"1.00000000\"]],\"time\":\"2021-04-28T15:27:02.721425Z\"}";
+
+        boolean updated = UNDER_TEST.updateOrderBook(Buffer.buffer(updates), bidsOutput, asksOutput);
+
+        Assert.assertFalse(updated);
+    }
+
+    @Test
+    public void testUpdateOrderBook_emptyBook() {
+        String updates = "{\"type\":\"l2update\",\"product_id\":\"ETH-USD\",\"changes\":[[\"sell\",\"3403.58\",\"1.20000000\"], [\"buy\",\"3402.49\",\"0.04500000\"], [\"buy\",\"3402.50\",\"0.10000000\"]],\"time\":\"2021-04-28T15:27:02.721425Z\"}";
+
+        long[] bidsExpected = new long[] { 340250, 10000000, 340249, 4500000, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1,
+                -1, -1, -1, -1, -1, -1 };
+        long[] asksExpected = new long[] { -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1,
+                340358, 120000000 };
+
+        boolean updated = UNDER_TEST.updateOrderBook(Buffer.buffer(updates), bidsOutput, asksOutput);
+
+        Assert.assertTrue(updated);
+        Assert.assertArrayEquals(bidsExpected, toArray(bidsOutput));
+        Assert.assertArrayEquals(asksExpected, toArray(asksOutput));
+    }
+
+    @Test
+    public void testUpdateOrderBook_topOfBookOnly() throws Exception {
+        SortedArrayOrderBookAggregatorService topOfBook = new SortedArrayOrderBookAggregatorService("ETH-USD", 1);
+        AtomicLongArray bidsOut = new AtomicLongArray(2);
+        AtomicLongArray asksOut = new AtomicLongArray(2);
+
+        String snapshotString = getResourceAsString("data/snapshot.txt");
+        OrderBookSnapshot snapshot = Json.decodeValue(snapshotString, OrderBookSnapshot.class);
+        topOfBook.updateOrderBook(snapshot, bidsOut, asksOut);
+
+        Assert.assertArrayEquals(new long[] { 340249, 47440000 }, toArray(bidsOut));
+        Assert.assertArrayEquals(new long[] { 340366, 247908992 }, toArray(asksOut));
+
+        // the best ask and bid are removed, the second levels are still tracked so they take their place
+        String updates = "{\"type\":\"l2update\",\"product_id\":\"ETH-USD\",\"changes\":[[\"sell\",\"3403.66\",\"0.00000000\"], [\"buy\",\"3402.49\",\"0.00000000\"]],\"time\":\"2021-04-28T15:27:02.721425Z\"}";
+        boolean updated = topOfBook.updateOrderBook(Buffer.buffer(updates), bidsOut, asksOut);
+
+        Assert.assertTrue(updated);
+        Assert.assertArrayEquals(new long[] { 340248, 1137592625 }, toArray(bidsOut));
+        Assert.assertArrayEquals(new long[] { 340379, 147168432 }, toArray(asksOut));
+
+        // the third level is outside of the 2 levels tracked for a depth of 1
+        updates = "{\"type\":\"l2update\",\"product_id\":\"ETH-USD\",\"changes\":[[\"sell\",\"3404.10\",\"0.00000000\"]],\"time\":\"2021-04-28T15:27:02.721425Z\"}";
+        updated = topOfBook.updateOrderBook(Buffer.buffer(updates), bidsOut, asksOut);
+
+        Assert.assertFalse(updated);
+    }
+
+    @Test
+    public void testUpdateOrderBook_scaledPaddingDoesNotMatter() throws Exception {
+        SortedArrayOrderBookAggregatorService scaled = new SortedArrayOrderBookAggregatorService("ETH-USD", 10, 2, 8);
+
+        String snapshotString = getResourceAsString("data/snapshot.txt");
+        scaled.updateOrderBookFromSnapshot(Buffer.buffer(snapshotString), bidsOutput, asksOutput);
+        Assert.assertEquals(340249, bidsOutput.get(0));
+
+        // the same best bid, padded differently to the snapshot, should replace it rather than add a new level
+        String updates = "{\"type\":\"l2update\",\"product_id\":\"ETH-USD\",\"changes\":[[\"buy\",\"3402.490\",\"0.045\"]],\"time\":\"2021-04-28T15:27:02.721425Z\"}";
+        boolean updated = scaled.updateOrderBook(Buffer.buffer(updates), bidsOutput, asksOutput);
+
+        Assert.assertTrue(updated);
+        Assert.assertEquals(340249, bidsOutput.get(0));
+        Assert.assertEquals(4500000, bidsOutput.get(1));
+        Assert.assertEquals(340248, bidsOutput.get(2));
+    }
+
+    private String getResourceAsString(String resource) throws Exception {
+        URL resourceUrl = this.getClass().getClassLoader().getResource(resource);
+        return Files.readString(Path.of(resourceUrl.toURI()));
+    }
+
+    private long[] toArray(AtomicLongArray arr) {
+        long[] out = new long[arr.length()];
+        for (int i = 0; i < arr.length(); i++) {
+            out[i] = arr.get(i);
+        }
+        return out;
+    }
+}
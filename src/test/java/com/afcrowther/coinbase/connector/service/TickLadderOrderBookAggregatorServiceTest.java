@@ -0,0 +1,219 @@
+package com.afcrowther.coinbase.connector.service;
+
+import com.afcrowther.coinbase.connector.domain.coinbase.OrderBookSnapshot;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.Json;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+public class TickLadderOrderBookAggregatorServiceTest {
+
+    private final AtomicLongArray bidsOutput = new AtomicLongArray(20);
+    private final AtomicLongArray asksOutput = new AtomicLongArray(20);
+
+    private TickLadderOrderBookAggregatorService UNDER_TEST;
+
+    @Before
+    public void setup() {
+        UNDER_TEST = new TickLadderOrderBookAggregatorService("ETH-USD", 1);
+    }
+
+    @Test
+    public void testUpdateOrderBook_snapshot() throws Exception {
+        String snapshotString = getResourceAsString("data/snapshot.txt");
+        OrderBookSnapshot snapshot = Json.decodeValue(snapshotString, OrderBookSnapshot.class);
+
+        long[] bidsExpected = new long[] { 340249, 47440000, 340248, 1137592625, 340227, 290000000, 340226, 1720880000,
+                340214, 1590000000, 340213, 167000000, 340212, 167000000, 340203, 66034179, 340199, 55413887, 340193,
+                56104752 };
+        long[] asksExpected = new long[] { 340466, 353000000, 340453, 58440224, 340450, 113800000, 340432, 79370000,
+                340415, 94679443, 340410, 100000000, 340398, 15000000, 340392, 113800000, 340379, 147168432, 340366,
+                247908992 };
+        UNDER_TEST.updateOrderBook(snapshot, bidsOutput, asksOutput);
+
+        Assert.assertArrayEquals(bidsExpected, toArray(bidsOutput));
+        Assert.assertArrayEquals(asksExpected, toArray(asksOutput));
+    }
+
+    @Test
+    public void testUpdateOrderBookFromSnapshot_loadsFullDepth() throws Exception {
+        String snapshotString = getResourceAsString("data/snapshot.txt");
+        OrderBookSnapshot snapshot = Json.decodeValue(snapshotString, OrderBookSnapshot.class);
+
+        UNDER_TEST.updateOrderBookFromSnapshot(Buffer.buffer(snapshotString), bidsOutput, asksOutput);
+
+        // both the buffer and the decoded snapshot should load every level, so they should agree on the whole book
+        TickLadderOrderBookAggregatorService fromDecoded = new TickLadderOrderBookAggregatorService("ETH-USD", 1);
+        AtomicLongArray bidsDecoded = new AtomicLongArray(20);
+        AtomicLongArray asksDecoded = new AtomicLongArray(20);
+        fromDecoded.updateOrderBook(snapshot, bidsDecoded, asksDecoded);
+
+        Assert.assertArrayEquals(toArray(bidsDecoded), toArray(bidsOutput));
+        Assert.assertArrayEquals(toArray(asksDecoded), toArray(asksOutput));
+        Assert.assertEquals(snapshot.getBids().length, UNDER_TEST.getBidLevels());
+        Assert.assertEquals(snapshot.getAsks().length, UNDER_TEST.getAskLevels());
+    }
+
+    @Test
+    public void testUpdateOrderBook_update() throws Exception {
+        String snapshotString = getResourceAsString("data/snapshot.txt");
+        OrderBookSnapshot snapshot = Json.decodeValue(snapshotString, OrderBookSnapshot.class);
+
+        UNDER_TEST.updateOrderBook(snapshot, bidsOutput, asksOutput);
+
+        long[] bidsExpected = new long[] { 340249, 4500000, 340248, 1137592625, 340227, 290000000, 340226, 1720880000,
+                340214, 1590000000, 340213, 167000000, 340212, 167000000, 340203, 66034179, 340199, 55413887, 340193,
+                56104752 };
+        long[] asksExpected = new long[] { 340453, 58440224, 340450, 113800000, 340432, 79370000,
+                340415, 94679443, 340410, 100000000, 340398, 15000000, 340392, 113800000, 340379, 147168432, 340366,
+                247908992, 340358, 120000000 };
+
+        String updates = "{\"type\":\"l2update\",\"product_id\":\"ETH-USD\",\"changes\":[[\"sell\",\"3403.58\",\"1.20000000\"], [\"buy\",\"3402.49\",\"0.04500000\"]],\"time\":\"2021-04-28T15:27:02.721425Z\"}";
+
+        boolean updated = UNDER_TEST.updateOrderBook(Buffer.buffer(updates), bidsOutput, asksOutput);
+
+        Assert.assertTrue(updated);
+        Assert.assertArrayEquals(bidsExpected, toArray(bidsOutput));
+        Assert.assertArrayEquals(asksExpected, toArray(asksOutput));
+    }
+
+    @Test
+    public void testUpdateOrderBook_updateOutOfMarket() throws Exception {
+        String snapshotString = getResourceAsString("data/snapshot.txt");
+        OrderBookSnapshot snapshot = Json.decodeValue(snapshotString, OrderBookSnapshot.class);
+
+        UNDER_TEST.updateOrderBook(snapshot, bidsOutput, asksOutput);
+
+        // both levels exist deep in the book, but are well outside of the levels being tracked
+        String updates = "{\"type\":\"l2update\",\"product_id\":\"ETH-USD\",\"changes\":[[\"sell\",\"3406.37\",\"0.00000000\"], [\"buy\",\"3399.63\",\"0.00000000\"]],\"time\":\"2021-04-28T15:27:02.721425Z\"}";
+
+        boolean updated = UNDER_TEST.updateOrderBook(Buffer.buffer(updates), bidsOutput, asksOutput);
+
+        Assert.assertFalse(updated);
+    }
+
+    @Test
+    public void testUpdateOrderBook_sweepKeepsDeeperLevels() throws Exception {
+        String snapshotString = getResourceAsString("data/snapshot.txt");
+        OrderBookSnapshot snapshot = Json.decodeValue(snapshotString, OrderBookSnapshot.class);
+
+        UNDER_TEST.updateOrderBook(snapshot, bidsOutput, asksOutput);
+
+        // remove the 20 best bids, the depth limited books would now be empty on this side
+        StringBuilder updates = new StringBuilder("{\"type\":\"l2update\",\"product_id\":\"ETH-USD\",\"changes\":[");
+        for (int i = 0; i < 20; i++) {
+            String[] level = snapshot.getBids()[i];
+            updates.append(i == 0 ? "" : ",").append("[\"buy\",\"").append(level[0]).append("\",\"0.00000000\"]");
+        }
+        updates.append("],\"time\":\"2021-04-28T15:27:02.721425Z\"}");
+
+        boolean updated = UNDER_TEST.updateOrderBook(Buffer.buffer(updates.toString()), bidsOutput, asksOutput);
+
+        Assert.assertTrue(updated);
+        for (int i = 0; i < 10; i++) {
+            String[] level = snapshot.getBids()[20 + i];
+            Assert.assertEquals(LongUtils.convertStringToLong(level[0]), bidsOutput.get(i * 2));
+            Assert.assertEquals(LongUtils.convertStringToLong(level[1]), bidsOutput.get(i * 2 + 1));
+        }
+    }
+
+    @Test
+    public void testPriceLadder_offTickPriceRoundsToWorseTick() {
+        PriceLadder asks = new PriceLadder(5, false, 16, 64, 8);
+        PriceLadder bids = new PriceLadder(5, true, 16, 64, 8);
+        AtomicLongArray out = new AtomicLongArray(4);
+
+        Assert.assertTrue(asks.update(1_002, 10));
+        Assert.assertTrue(asks.update(1_000, 20));
+        Assert.assertTrue(bids.update(998, 30));
+        Assert.assertTrue(bids.update(990, 40));
+
+        asks.copyTo(out, false);
+        Assert.assertArrayEquals(new long[] { 1_000, 20, 1_005, 10 }, toArray(out));
+        bids.copyTo(out, false);
+        Assert.assertArrayEquals(new long[] { 995, 30, 990, 40 }, toArray(out));
+        Assert.assertEquals(1, asks.offTickPrices());
+        Assert.assertEquals(1, bids.offTickPrices());
+
+        // removing the level by its original price still finds it
+        Assert.assertTrue(asks.update(1_002, 0));
+        Assert.assertEquals(1, asks.size());
+    }
+
+    @Test
+    public void testPriceLadder_matchesSortedMap() {
+        // small ladders so that we are constantly recentering, overflowing and growing
+        Random random = new Random(42);
+        for (boolean descending : new boolean[] { true, false }) {
+            PriceLadder ladder = new PriceLadder(5, descending, 16, 64, 8);
+            TreeMap<Long, Long> expected = descending ? new TreeMap<>(Comparator.reverseOrder()) : new TreeMap<>();
+            AtomicLongArray out = new AtomicLongArray(10);
+            long mid = 100_000;
+            for (int i = 0; i < 200_000; i++) {
+                // random walk with the occasional big jump, to move the window around
+                mid += random.nextInt(100) == 0 ? (random.nextInt(401) - 200) * 5 : (random.nextInt(3) - 1) * 5;
+                mid = Math.max(mid, 10_000);
+                long price = mid + (random.nextInt(81) - 40) * 5;
+                long quantity = random.nextInt(3) == 0 ? 0 : random.nextInt(1000) + 1;
+
+                boolean expectedTracked;
+                if (quantity == 0) {
+                    expectedTracked = expected.containsKey(price) && expected.headMap(price).size() < 8;
+                    expected.remove(price);
+                } else {
+                    expected.put(price, quantity);
+                    expectedTracked = expected.headMap(price).size() < 8;
+                }
+
+                Assert.assertEquals(expectedTracked, ladder.update(price, quantity));
+                Assert.assertEquals(expected.size(), ladder.size());
+                if (i % 97 == 0) {
+                    ladder.copyTo(out, !descending);
+                    assertTopLevels(expected, out, !descending);
+                }
+            }
+            Assert.assertTrue(ladder.capacity() <= 64);
+        }
+    }
+
+    private void assertTopLevels(TreeMap<Long, Long> expected, AtomicLongArray out, boolean bestLast) {
+        int levels = out.length() / 2;
+        int level = 0;
+        for (Map.Entry<Long, Long> entry : expected.entrySet()) {
+            if (level == levels) {
+                break;
+            }
+            int idx = bestLast ? out.length() - 2 - level * 2 : level * 2;
+            Assert.assertEquals(entry.getKey().longValue(), out.get(idx));
+            Assert.assertEquals(entry.getValue().longValue(), out.get(idx + 1));
+            level++;
+        }
+        for (; level < levels; level++) {
+            int idx = bestLast ? out.length() - 2 - level * 2 : level * 2;
+            Assert.assertEquals(-1, out.get(idx));
+        }
+    }
+
+    private String getResourceAsString(String resource) throws Exception {
+        URL resourceUrl = this.getClass().getClassLoader().getResource(resource);
+        return Files.readString(Path.of(resourceUrl.toURI()));
+    }
+
+    private long[] toArray(AtomicLongArray arr) {
+        long[] out = new long[arr.length()];
+        for (int i = 0; i < arr.length(); i++) {
+            out[i] = arr.get(i);
+        }
+        return out;
+    }
+}
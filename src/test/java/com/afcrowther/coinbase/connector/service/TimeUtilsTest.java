@@ -0,0 +1,75 @@
+package com.afcrowther.coinbase.connector.service;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.SplittableRandom;
+
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+
+public class TimeUtilsTest {
+
+    @Test
+    public void testPutIsoTimestamp() {
+        byte[] dst = new byte[TimeUtils.ISO_TIMESTAMP_MICROS_LENGTH + 2];
+
+        int end = TimeUtils.putIsoTimestamp(1619623622638954L, dst, 1);
+
+        Assert.assertEquals(TimeUtils.ISO_TIMESTAMP_MICROS_LENGTH + 1, end);
+        Assert.assertEquals("2021-04-28T15:27:02.638954Z", new String(dst, 1, end - 1, ISO_8859_1));
+    }
+
+    @Test
+    public void testPutIsoTimestamp_matchesInstant() {
+        SplittableRandom random = new SplittableRandom(1);
+        byte[] dst = new byte[TimeUtils.ISO_TIMESTAMP_MICROS_LENGTH];
+        // every day from the epoch to 2100, leap years and all, at random times of the day
+        long lastDay = Instant.parse("2100-01-01T00:00:00Z").getEpochSecond() / 86_400;
+        for (long day = 0; day < lastDay; day++) {
+            long epochMicros = day * 86_400_000_000L + random.nextLong(86_400_000_000L);
+            Instant instant = Instant.EPOCH.plus(epochMicros, ChronoUnit.MICROS);
+            // Instant leaves off the zeroes at the end of the fraction, the feed doesn't
+            String expected = instant.toString().replace("Z", "");
+            expected = (expected.indexOf('.') == -1 ? expected + "." : expected) + "000000";
+            expected = expected.substring(0, TimeUtils.ISO_TIMESTAMP_MICROS_LENGTH - 1) + "Z";
+
+            TimeUtils.putIsoTimestamp(epochMicros, dst, 0);
+
+            Assert.assertEquals(expected, new String(dst, ISO_8859_1));
+        }
+    }
+
+    @Test
+    public void testParseIsoTimestamp() {
+        byte[] src = "\"time\":\"2021-04-28T15:27:02.638954Z\"".getBytes(ISO_8859_1);
+
+        Assert.assertEquals(1619623622638954L, TimeUtils.parseIsoTimestamp(src, 8));
+    }
+
+    @Test
+    public void testParseIsoTimestamp_fractionDigits() {
+        Assert.assertEquals(Instant.parse("2019-08-14T20:42:27.265Z").toEpochMilli() * 1000,
+                TimeUtils.parseIsoTimestamp("2019-08-14T20:42:27.265Z".getBytes(ISO_8859_1), 0));
+        Assert.assertEquals(Instant.parse("2019-08-14T20:42:27Z").getEpochSecond() * 1_000_000,
+                TimeUtils.parseIsoTimestamp("2019-08-14T20:42:27Z".getBytes(ISO_8859_1), 0));
+        // anything past the microseconds is dropped
+        Assert.assertEquals(1565815347123456L,
+                TimeUtils.parseIsoTimestamp("2019-08-14T20:42:27.123456789Z".getBytes(ISO_8859_1), 0));
+    }
+
+    @Test
+    public void testParseIsoTimestamp_reversesPut() {
+        SplittableRandom random = new SplittableRandom(2);
+        byte[] dst = new byte[TimeUtils.ISO_TIMESTAMP_MICROS_LENGTH];
+        long lastDay = Instant.parse("2100-01-01T00:00:00Z").getEpochSecond() / 86_400;
+        for (long day = 0; day < lastDay; day++) {
+            long epochMicros = day * 86_400_000_000L + random.nextLong(86_400_000_000L);
+
+            TimeUtils.putIsoTimestamp(epochMicros, dst, 0);
+
+            Assert.assertEquals(epochMicros, TimeUtils.parseIsoTimestamp(dst, 0));
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.afcrowther.coinbase.connector.shard;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class ShardAssignmentTest {
+
+    private static final List<String> MARKETS = Arrays.asList("BTC-USD", "ETH-USD", "LTC-USD", "BTC-EUR", "ETH-BTC",
+            "XLM-USD");
+
+    @Test
+    public void testHash() {
+        List<List<String>> shards = ShardAssignment.HASH.assign(MARKETS, 3, Collections.emptyMap());
+
+        Assert.assertEquals(3, shards.size());
+        int assigned = 0;
+        for (int i = 0; i < shards.size(); i++) {
+            for (String market : shards.get(i)) {
+                Assert.assertEquals(market, Math.floorMod(market.hashCode(), 3), i);
+                assigned++;
+            }
+        }
+        Assert.assertEquals(MARKETS.size(), assigned);
+        // the same markets land on the same shards each time
+        Assert.assertEquals(shards, ShardAssignment.HASH.assign(MARKETS, 3, Collections.emptyMap()));
+    }
+
+    @Test
+    public void testRate() {
+        Map<String, Double> rates = new HashMap<>();
+        rates.put("BTC-USD", 900.0);
+        rates.put("ETH-USD", 500.0);
+        rates.put("LTC-USD", 400.0);
+        rates.put("BTC-EUR", 100.0);
+        rates.put("ETH-BTC", 100.0);
+        rates.put("XLM-USD", 100.0);
+
+        List<List<String>> shards = ShardAssignment.RATE.assign(MARKETS, 2, rates);
+
+        // the busiest market against the next two, with the quiet markets evening them out (1100 and 1000 a second)
+        Assert.assertEquals(Arrays.asList("BTC-USD", "BTC-EUR", "XLM-USD"), shards.get(0));
+        Assert.assertEquals(Arrays.asList("ETH-USD", "LTC-USD", "ETH-BTC"), shards.get(1));
+    }
+
+    @Test
+    public void testRate_unknownRates() {
+        Map<String, Double> rates = new HashMap<>();
+        rates.put("BTC-USD", 1000.0);
+        rates.put("ETH-USD", 200.0);
+
+        // the markets without a rate count as the average of 600
+        List<List<String>> shards = ShardAssignment.RATE.assign(MARKETS, 3, rates);
+
+        Assert.assertEquals(Arrays.asList("BTC-USD", "ETH-USD"), shards.get(0));
+        Assert.assertEquals(Arrays.asList("BTC-EUR", "LTC-USD"), shards.get(1));
+        Assert.assertEquals(Arrays.asList("ETH-BTC", "XLM-USD"), shards.get(2));
+    }
+
+    @Test
+    public void testRate_noRates() {
+        List<List<String>> shards = ShardAssignment.RATE.assign(MARKETS, 4, Collections.emptyMap());
+
+        // every market is as busy as the next, so they are dealt out evenly
+        int[] sizes = shards.stream().mapToInt(List::size).toArray();
+        Assert.assertArrayEquals(new int[] { 2, 2, 1, 1 }, sizes);
+    }
+
+    @Test
+    public void testFromAssignmentName() {
+        Assert.assertEquals(ShardAssignment.HASH, ShardAssignment.fromAssignmentName("hash"));
+        Assert.assertEquals(ShardAssignment.RATE, ShardAssignment.fromAssignmentName("RATE"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testFromAssignmentName_unknown() {
+        ShardAssignment.fromAssignmentName("round-robin");
+    }
+}
@@ -0,0 +1,177 @@
+package com.afcrowther.coinbase.connector.standin;
+
+import com.afcrowther.coinbase.connector.domain.coinbase.OrderBookSnapshot;
+import com.afcrowther.coinbase.connector.domain.coinbase.Product;
+import com.afcrowther.coinbase.connector.service.OrderBookAggregatorService;
+import com.afcrowther.coinbase.connector.service.OrderBookEngine;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.Json;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.regex.Pattern;
+
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+
+public class L2UpdateGeneratorTest {
+
+    // 2021-04-28T15:27:02.638954Z
+    private static final long EPOCH_MICROS = 1619623622638954L;
+    private static final String CHANGE = "\\[\"(buy|sell)\",\"[0-9]+\\.[0-9]{2}\",\"[0-9]+\\.[0-9]{8}\"]";
+    private static final Pattern UPDATE_PATTERN = Pattern.compile("\\{\"type\":\"l2update\",\"product_id\":" +
+            "\"BTC-USD\",\"changes\":\\[" + CHANGE + "(," + CHANGE + ")*]," +
+            "\"time\":\"2021-04-28T15:27:02\\.638954Z\"}");
+
+    private Product product;
+
+    @Before
+    public void setup() {
+        product = new Product();
+        product.setId("BTC-USD");
+        product.setQuoteIncrement("0.01");
+        product.setBaseIncrement("0.00000001");
+    }
+
+    @Test
+    public void testNextUpdate_layout() {
+        L2UpdateGenerator generator = new L2UpdateGenerator(product, new L2UpdateGeneratorOptions().setLevels(100));
+
+        for (int i = 0; i < 1000; i++) {
+            String update = new String(generator.getFrame(), 0, generator.nextUpdate(EPOCH_MICROS), ISO_8859_1);
+            Assert.assertTrue(update, UPDATE_PATTERN.matcher(update).matches());
+        }
+    }
+
+    @Test
+    public void testSnapshot_decodes() {
+        L2UpdateGenerator generator = new L2UpdateGenerator(product, new L2UpdateGeneratorOptions().setLevels(100));
+
+        int length = generator.snapshot();
+        Buffer snapshot = Buffer.buffer().appendBytes(generator.getFrame(), 0, length);
+        OrderBookSnapshot decoded = Json.decodeValue(snapshot, OrderBookSnapshot.class);
+
+        Assert.assertEquals("BTC-USD", decoded.getProductId());
+        Assert.assertEquals(100, decoded.getAsks().length);
+        Assert.assertEquals(100, decoded.getBids().length);
+        Assert.assertEquals("50000.00", decoded.getAsks()[0][0]);
+        Assert.assertEquals("49999.99", decoded.getBids()[0][0]);
+    }
+
+    @Test
+    public void testNextUpdate_sameSeedSameFeed() {
+        L2UpdateGenerator first = new L2UpdateGenerator(product, new L2UpdateGeneratorOptions().setLevels(100).setSeed(7));
+        L2UpdateGenerator second = new L2UpdateGenerator(product, new L2UpdateGeneratorOptions().setLevels(100).setSeed(7));
+
+        int firstLength = first.snapshot();
+        int secondLength = second.snapshot();
+        Assert.assertArrayEquals(Arrays.copyOf(first.getFrame(), firstLength),
+                Arrays.copyOf(second.getFrame(), secondLength));
+        for (int i = 0; i < 1000; i++) {
+            Assert.assertArrayEquals(Arrays.copyOf(first.getFrame(), first.nextUpdate(EPOCH_MICROS)),
+                    Arrays.copyOf(second.getFrame(), second.nextUpdate(EPOCH_MICROS)));
+        }
+    }
+
+    @Test
+    public void testNextUpdate_orderBookFollowsGenerator() {
+        // plenty of sweeps and bursts, to check the book stays consistent through them
+        L2UpdateGenerator generator = new L2UpdateGenerator(product, new L2UpdateGeneratorOptions().setLevels(500)
+                .setSweepProbability(0.05).setBurstProbability(0.2).setSeed(3));
+        // the full depth order book, the others only keep the levels near the touch
+        OrderBookAggregatorService orderBook = OrderBookEngine.TICK_LADDER.create("BTC-USD", product, 1);
+        AtomicLongArray bids = new AtomicLongArray(2);
+        AtomicLongArray asks = new AtomicLongArray(2);
+        Buffer frame = Buffer.buffer();
+
+        int length = generator.snapshot();
+        frame.appendBytes(generator.getFrame(), 0, length);
+        orderBook.updateOrderBookFromSnapshot(frame, bids, asks);
+        for (int i = 0; i < 100_000; i++) {
+            frame = Buffer.buffer().appendBytes(generator.getFrame(), 0, generator.nextUpdate(EPOCH_MICROS));
+            orderBook.updateOrderBook(frame, bids, asks);
+
+            Assert.assertEquals(generator.getBestBidPrice(), bids.get(0));
+            Assert.assertEquals(generator.getBestAskPrice(), asks.get(0));
+            Assert.assertTrue(bids.get(0) < asks.get(0));
+        }
+    }
+
+    @Test
+    public void testNextUpdate_sweepsAndBursts() {
+        L2UpdateGenerator generator = new L2UpdateGenerator(product, new L2UpdateGeneratorOptions().setLevels(100)
+                .setSweepProbability(0.1).setMaxSweepLevels(10).setBurstProbability(0.3).setMaxChangesPerMessage(4));
+        int sweeps = 0;
+        int bursts = 0;
+        int maxChanges = 0;
+        for (int i = 0; i < 10_000; i++) {
+            String update = new String(generator.getFrame(), 0, generator.nextUpdate(EPOCH_MICROS), ISO_8859_1);
+            Assert.assertTrue(update, UPDATE_PATTERN.matcher(update).matches());
+            int changes = count(update, "[\"");
+            int removals = count(update, "\"0.00000000\"]");
+            if (changes > 1 && changes == removals) {
+                sweeps++;
+            } else if (changes > 1) {
+                bursts++;
+            }
+            maxChanges = Math.max(maxChanges, changes);
+        }
+
+        // a tenth of the messages should be sweeps, most of which are more than one level
+        Assert.assertTrue(String.valueOf(sweeps), sweeps > 500 && sweeps < 1000);
+        Assert.assertTrue(String.valueOf(bursts), bursts > 2500 && bursts < 3500);
+        Assert.assertEquals(10, maxChanges);
+    }
+
+    @Test
+    public void testNextUpdate_skew() {
+        long evenDistance = meanTicksFromTouch(1);
+        long skewedDistance = meanTicksFromTouch(5);
+
+        Assert.assertTrue(skewedDistance + " vs " + evenDistance, skewedDistance * 3 < evenDistance);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testConstructor_midPriceTooLow() {
+        new L2UpdateGenerator(product, new L2UpdateGeneratorOptions().setMidPrice("1.00"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testConstructor_probabilitiesAddUpToMoreThanOne() {
+        new L2UpdateGenerator(product, new L2UpdateGeneratorOptions().setSweepProbability(0.5)
+                .setBurstProbability(0.6));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testConstructor_noSkew() {
+        new L2UpdateGenerator(product, new L2UpdateGeneratorOptions().setSkew(0));
+    }
+
+    // the mean distance of the changes from the touch of the order book, before the change
+    private long meanTicksFromTouch(double skew) {
+        L2UpdateGenerator generator = new L2UpdateGenerator(product, new L2UpdateGeneratorOptions().setLevels(1000)
+                .setSkew(skew).setSweepProbability(0).setBurstProbability(0));
+        long total = 0;
+        int updates = 10_000;
+        for (int i = 0; i < updates; i++) {
+            long bestBid = generator.getBestBidPrice();
+            long bestAsk = generator.getBestAskPrice();
+            String update = new String(generator.getFrame(), 0, generator.nextUpdate(EPOCH_MICROS), ISO_8859_1);
+            int priceStart = update.indexOf("\",\"", update.indexOf("changes")) + 3;
+            long price = Long.parseLong(update.substring(priceStart, update.indexOf('"', priceStart))
+                    .replace(".", ""));
+            total += update.contains("buy") ? Math.abs(bestBid - price) : Math.abs(price - bestAsk);
+        }
+        return total / updates;
+    }
+
+    private static int count(String value, String part) {
+        int count = 0;
+        for (int i = value.indexOf(part); i != -1; i = value.indexOf(part, i + 1)) {
+            count++;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,109 @@
+package com.afcrowther.coinbase.connector.standin;
+
+import com.afcrowther.coinbase.connector.client.CoinbaseProClient;
+import com.afcrowther.coinbase.connector.client.CoinbaseProEndpoints;
+import com.afcrowther.coinbase.connector.domain.coinbase.Product;
+import com.afcrowther.coinbase.connector.exception.InvalidMarketException;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.WebSocket;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+public class StandInServerVerticleTest {
+
+    private Vertx vertx;
+    private StandInServerVerticle server;
+    private HttpClient httpClient;
+    private CoinbaseProClient client;
+
+    @Before
+    public void setup() throws Exception {
+        vertx = Vertx.vertx();
+        server = new StandInServerVerticle(0, 10_000, new L2UpdateGeneratorOptions().setLevels(100));
+        await(vertx.deployVerticle(server));
+        String address = "localhost:" + server.getPort();
+        httpClient = vertx.createHttpClient();
+        client = new CoinbaseProClient(httpClient,
+                CoinbaseProEndpoints.fromUrls("http://" + address, "ws://" + address));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        await(vertx.close());
+    }
+
+    @Test
+    public void testGetMarketInformation() throws Exception {
+        Product product = await(client.getMarketInformation("ETH-USD"));
+
+        Assert.assertEquals("ETH-USD", product.getId());
+        Assert.assertEquals("0.01", product.getQuoteIncrement());
+        Assert.assertEquals("0.00000001", product.getBaseIncrement());
+        Assert.assertEquals("online", product.getStatus());
+        Assert.assertFalse(product.isTradingDisabled());
+    }
+
+    @Test
+    public void testGetMarketInformation_invalidMarket() throws Exception {
+        try {
+            await(client.getMarketInformation("BTCUSD"));
+            Assert.fail();
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof InvalidMarketException);
+        }
+    }
+
+    @Test
+    public void testSubscribeToMarket() throws Exception {
+        List<String> messages = new CopyOnWriteArrayList<>();
+
+        WebSocket webSocket = await(client.subscribeToMarket("BTC-USD", buffer -> messages.add(buffer.toString())));
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (messages.size() < 100 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        await(webSocket.close());
+
+        Assert.assertTrue(messages.size() >= 100);
+        Assert.assertEquals("{\"type\":\"subscriptions\",\"channels\":[{\"name\":\"level2\",\"product_ids\":" +
+                "[\"BTC-USD\"]}]}", messages.get(0));
+        Assert.assertTrue(messages.get(1).startsWith("{\"type\":\"snapshot\",\"product_id\":\"BTC-USD\",\"asks\":" +
+                "[[\"50000.00\","));
+        for (int i = 2; i < messages.size(); i++) {
+            Assert.assertTrue(messages.get(i).startsWith("{\"type\":\"l2update\",\"product_id\":\"BTC-USD\""));
+        }
+        Assert.assertTrue(server.getSentMessages() > 0);
+    }
+
+    @Test
+    public void testMessagesDue() {
+        Assert.assertEquals(0, StandInServerVerticle.messagesDue(0, 500_000));
+        Assert.assertEquals(250_000, StandInServerVerticle.messagesDue(TimeUnit.MILLISECONDS.toNanos(500), 500_000));
+        Assert.assertEquals(750_000, StandInServerVerticle.messagesDue(TimeUnit.MILLISECONDS.toNanos(1_500), 500_000));
+        // the elapsed nanos times the rate is past Long.MAX_VALUE by now
+        Assert.assertEquals(500_000L * 6 * 60 * 60,
+                StandInServerVerticle.messagesDue(TimeUnit.HOURS.toNanos(6), 500_000));
+    }
+
+    private static <T> T await(Future<T> future) throws Exception {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        future.onComplete(ar -> {
+            if (ar.succeeded()) {
+                result.complete(ar.result());
+            } else {
+                result.completeExceptionally(ar.cause());
+            }
+        });
+        return result.get(10, TimeUnit.SECONDS);
+    }
+}